@@ -55,6 +55,7 @@ public class UserCoreConstants {
 
     public static final int MAX_USER_ROLE_LIST = 100;
     public static final int MAX_SEARCH_TIME = 10000;   // ms
+    public static final int SECONDARY_USER_STORE_SEARCH_TIME_OUT = 15000;   // ms
 
     public static final String INTERNAL_DOMAIN = "Internal";
     public static final String PRIMARY_DEFAULT_DOMAIN_NAME = "PRIMARY";
@@ -86,6 +87,9 @@ public class UserCoreConstants {
     public static final String SHARED_ROLE_TENANT_COMBINER = "~";
 
     public static final int USER_ROLE_CACHE_DEFAULT_TIME_OUT = 5;
+    public static final int AUTHENTICATION_CACHE_DEFAULT_TIME_OUT = 10;
+    public static final int USER_DOMAIN_CACHE_DEFAULT_TIME_OUT = 60;
+    public static final int UNIQUE_CLAIM_CACHE_DEFAULT_TIME_OUT = 15;
     public static final String INVOKE_SERVICE_PERMISSION = "invoke-service";
     public static final String AUTHZ_CACHE = "AuthzCache";
     public static final String ROLE_CACHE = "RoleCache";
@@ -180,11 +184,38 @@ public class UserCoreConstants {
         /*configuration to enable or disable user role caching*/
         public static final String PROPERTY_ROLES_CACHE_ENABLED = "UserRolesCacheEnabled";
 
+        //configuration to cache authentication results for a short time
+        public static final String PROPERTY_AUTHENTICATION_CACHE_ENABLED = "AuthenticationCacheEnabled";
+
+        //time in seconds for which authentication results are cached
+        public static final String PROPERTY_AUTHENTICATION_CACHE_TIME_OUT = "AuthenticationCacheTimeOut";
+
+        //time in milliseconds to wait for the secondary user stores when searching all the user stores
+        public static final String PROPERTY_SECONDARY_USER_STORE_SEARCH_TIME_OUT = "SecondaryUserStoreSearchTimeOut";
+
+        //configuration to remember the user store each user is in, for logins without a domain
+        public static final String PROPERTY_USER_DOMAIN_CACHE_ENABLED = "UserDomainCacheEnabled";
+
+        //time in minutes for which the user store of a user is remembered
+        public static final String PROPERTY_USER_DOMAIN_CACHE_TIME_OUT = "UserDomainCacheTimeOut";
+
+        //comma separated URIs of the claims only one user may have a value of, e.g. the email address,
+        //whose users are cached when looked up by claim value
+        public static final String PROPERTY_UNIQUE_CLAIMS = "UniqueClaims";
+
+        //time in minutes for which the user having a value of a unique claim is cached
+        public static final String PROPERTY_UNIQUE_CLAIM_CACHE_TIME_OUT = "UniqueClaimCacheTimeOut";
+
         //configuration to enable or disable authorization caching
         public static final String PROPERTY_AUTHORIZATION_CACHE_ENABLED = "AuthorizationCacheEnabled";
 
         public static final String PROPERTY_CASE_SENSITIVITY = "CaseSensitiveAuthorizationRules";
 
+        //configuration to read the permission tree without locks and apply updates on copies of it
+        public static final String PROPERTY_COPY_ON_WRITE_PERMISSION_TREE = "CopyOnWritePermissionTree";
+        //configuration to update the permission tree from the permission change log instead of reloading it
+        public static final String PROPERTY_INCREMENTAL_PERMISSION_TREE_RELOAD = "IncrementalPermissionTreeReload";
+
         //configuration to identify the cache uniquely
         public static final String PROPERTY_USER_CORE_CACHE_IDENTIFIER = "UserCoreCacheIdentifier";
 
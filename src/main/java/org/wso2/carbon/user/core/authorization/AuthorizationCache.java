@@ -22,6 +22,7 @@ import javax.cache.Cache;
 import javax.cache.CacheManager;
 import javax.cache.CacheStatistics;
 import javax.cache.Caching;
+import java.util.Random;
 
 /**
  * Date: Oct 1, 2010 Time: 10:32:26 AM
@@ -33,11 +34,18 @@ import javax.cache.Caching;
 public class AuthorizationCache {
     public static final String AUTHORIZATION_CACHE_MANAGER = "AUTHORIZATION_CACHE_MANAGER";
     public static final String AUTHORIZATION_CACHE_NAME = "AUTHORIZATION_CACHE";
+    public static final String AUTHORIZATION_GENERATION_CACHE_NAME = "AUTHORIZATION_GENERATION_CACHE";
     private static Log log = LogFactory.getLog(AuthorizationCache.class);
     private static Boolean isEnable = true;
 
     private static AuthorizationCache authorizationCache = new AuthorizationCache();
 
+    /**
+     * Generations are random, so that a generation which has been evicted from the cache is
+     * replaced by a new one instead of starting over from a value used before.
+     */
+    private static final Random generations = new Random();
+
     private AuthorizationCache() {
     }
 
@@ -64,6 +72,74 @@ public class AuthorizationCache {
         return cache;
     }
 
+    /**
+     * Generations of the tenants, users, resources and servers, kept in a cache next to the
+     * decisions so that every node sees the same generations.
+     */
+    private Cache<AuthorizationGenerationKey, Long> getGenerationCache() {
+        Cache<AuthorizationGenerationKey, Long> cache = null;
+        if (isEnable) {
+            CacheManager cacheManager = Caching.getCacheManagerFactory().getCacheManager(AUTHORIZATION_CACHE_MANAGER);
+            cache = cacheManager.getCache(AUTHORIZATION_GENERATION_CACHE_NAME);
+        }
+        return cache;
+    }
+
+    /**
+     * @return the sum of the current generations of the tenant, user, resource and server of a
+     * decision. The user and server are left out when not given.
+     */
+    private long getGeneration(String serverId, int tenantId, String userName, String resourceId) {
+        Cache<AuthorizationGenerationKey, Long> cache = this.getGenerationCache();
+        if (cache == null) {
+            return 0;
+        }
+        long generation = getGeneration(cache, new AuthorizationGenerationKey(
+                AuthorizationGenerationKey.TENANT, tenantId, null));
+        generation += getGeneration(cache, new AuthorizationGenerationKey(
+                AuthorizationGenerationKey.RESOURCE, tenantId, resourceId));
+        if (userName != null) {
+            generation += getGeneration(cache, new AuthorizationGenerationKey(
+                    AuthorizationGenerationKey.USER, tenantId, userName));
+        }
+        if (serverId != null) {
+            generation += getGeneration(cache, new AuthorizationGenerationKey(
+                    AuthorizationGenerationKey.SERVER, 0, serverId));
+        }
+        return generation;
+    }
+
+    /**
+     * @return the current generation of the given key. A key without a generation, i.e. never
+     * invalidated or evicted from the cache, is moved to a new one.
+     */
+    private long getGeneration(Cache<AuthorizationGenerationKey, Long> cache, AuthorizationGenerationKey key) {
+        Long generation = cache.get(key);
+        if (generation == null) {
+            Long newGeneration = generations.nextLong();
+            if (cache.putIfAbsent(key, newGeneration)) {
+                return newGeneration;
+            }
+            generation = cache.get(key);
+            if (generation == null) {
+                return newGeneration;
+            }
+        }
+        return generation;
+    }
+
+    /**
+     * Move the given key to a new generation, which makes the decisions made in the previous
+     * one stale. The stale entries are replaced when the decision is made again, or left to be
+     * evicted.
+     */
+    private void newGeneration(char scope, int tenantId, String name) {
+        Cache<AuthorizationGenerationKey, Long> cache = this.getGenerationCache();
+        if (cache != null) {
+            cache.put(new AuthorizationGenerationKey(scope, tenantId, name), generations.nextLong());
+        }
+    }
+
     /**
      * Avoiding NullPointerException when the cache is null
      *
@@ -111,7 +187,8 @@ public class AuthorizationCache {
             return;
         }
         AuthorizationKey key = new AuthorizationKey(serverId, tenantId, userName, resourceId, action);
-        AuthorizeCacheEntry cacheEntry = new AuthorizeCacheEntry(isAuthorized);
+        AuthorizeCacheEntry cacheEntry = new AuthorizeCacheEntry(isAuthorized,
+                getGeneration(serverId, tenantId, userName, resourceId));
         cache.put(key, cacheEntry);
     }
 
@@ -149,6 +226,11 @@ public class AuthorizationCache {
 
         AuthorizeCacheEntry entry = (AuthorizeCacheEntry) cache.get(key);
         if (entry != null) {
+            if (entry.getGeneration() != getGeneration(serverId, tenantId, userName, resourceId)) {
+                // decision made before its tenant, user, resource or server was invalidated
+                throw new AuthorizationCacheException(
+                        "Authorization information not found in the cache.");
+            }
             return entry.isUserAuthorized();
         } else {
             return null;
@@ -193,23 +275,27 @@ public class AuthorizationCache {
 
     }
 
+    /**
+     * Invalidates the cached decisions of the given user, without touching the decisions of the
+     * other users of the tenant. The user is moved to a new generation, hence this does not
+     * search the cache.
+     *
+     * @param tenantId tenant id
+     * @param userName Name of the user.
+     */
+    public void invalidateUser(int tenantId, String userName) {
+        if (userName != null) {
+            newGeneration(AuthorizationGenerationKey.USER, tenantId, userName);
+        }
+    }
+
     /**
      * Clears the cache by user name.
      *
      * @param userName Name of the user.
      */
     public void clearCacheByUser(int tenantId, String userName) {
-        Cache<AuthorizationKey, AuthorizeCacheEntry> cache = this.getAuthorizationCache();
-        // check for null
-        if (isCacheNull(cache)) {
-            return;
-        }
-        for (Cache.Entry<AuthorizationKey, AuthorizeCacheEntry> entry : cache) {
-            AuthorizationKey authorizationKey = entry.getKey();
-            if ((authorizationKey.getTenantId() == tenantId) && (authorizationKey.getUserName().equalsIgnoreCase(userName))) {
-                cache.remove(authorizationKey);
-            }
-        }
+        invalidateUser(tenantId, userName);
     }
 
     /**
@@ -236,18 +322,7 @@ public class AuthorizationCache {
      * @param tenantId
      */
     public void clearCacheByTenant(int tenantId) {
-        Cache<AuthorizationKey, AuthorizeCacheEntry> cache = this.getAuthorizationCache();
-        // check for null
-        if (isCacheNull(cache)) {
-            return;
-        }
-
-        for (Cache.Entry<AuthorizationKey, AuthorizeCacheEntry> entry : cache) {
-            AuthorizationKey authorizationKey = entry.getKey();
-            if (tenantId == (authorizationKey.getTenantId())) {
-                cache.remove(authorizationKey);
-            }
-        }
+        newGeneration(AuthorizationGenerationKey.TENANT, tenantId, null);
     }
 
     /**
@@ -257,18 +332,8 @@ public class AuthorizationCache {
      * @param serverId unique identifier for carbon server instance
      */
     public void clearCacheByServerId(String serverId) {
-        Cache<AuthorizationKey, AuthorizeCacheEntry> cache = this.getAuthorizationCache();
-        // check for null
-        if (isCacheNull(cache) || serverId == null) {
-            return;
-        }
-
-        for (Cache.Entry<AuthorizationKey, AuthorizeCacheEntry> entry : cache) {
-            AuthorizationKey authorizationKey = entry.getKey();
-            if (serverId.equals(authorizationKey.getServerId())) {
-                cache.remove(authorizationKey);
-            }
-
+        if (serverId != null) {
+            newGeneration(AuthorizationGenerationKey.SERVER, 0, serverId);
         }
     }
 
@@ -281,22 +346,8 @@ public class AuthorizationCache {
      */
     public void clearCacheByResource(String serverId, int tenantID,
                                      String resourceID) {
-        Cache<AuthorizationKey, AuthorizeCacheEntry> cache = this.getAuthorizationCache();
-        // check for null
-        if (isCacheNull(cache)) {
-            return;
-        }
-
-        for (Cache.Entry<AuthorizationKey, AuthorizeCacheEntry> entry : cache) {
-            AuthorizationKey authorizationKey = entry.getKey();
-            if ((tenantID == (authorizationKey.getTenantId()))
-                    && (resourceID.equals(authorizationKey.getResourceId()))
-                    && (serverId == null || serverId.equals(authorizationKey
-                    .getServerId()))) {
-                cache.remove(authorizationKey);
-            }
-        }
-
+        // the decisions on the resource are invalidated for all the servers
+        newGeneration(AuthorizationGenerationKey.RESOURCE, tenantID, resourceID);
     }
 
     /**
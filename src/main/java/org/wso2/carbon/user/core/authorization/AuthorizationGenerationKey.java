@@ -0,0 +1,68 @@
+/*
+*  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.user.core.authorization;
+
+import java.io.Serializable;
+import java.util.Locale;
+
+/**
+ * Key of the generation of a tenant, user, resource or server in the authorization generation
+ * cache. User names are compared ignoring case, as in AuthorizationKey.
+ */
+public class AuthorizationGenerationKey implements Serializable {
+
+    static final char TENANT = 'T';
+    static final char USER = 'U';
+    static final char RESOURCE = 'R';
+    static final char SERVER = 'S';
+
+    private static final long serialVersionUID = -3390285162380537217L;
+
+    private char scope;
+
+    private int tenantId;
+
+    private String name;
+
+    public AuthorizationGenerationKey(char scope, int tenantId, String name) {
+        this.scope = scope;
+        this.tenantId = tenantId;
+        if (name == null) {
+            this.name = "";
+        } else if (scope == USER) {
+            this.name = name.toLowerCase(Locale.ENGLISH);
+        } else {
+            this.name = name;
+        }
+    }
+
+    @Override
+    public boolean equals(Object otherObject) {
+        if (!(otherObject instanceof AuthorizationGenerationKey)) {
+            return false;
+        }
+        AuthorizationGenerationKey secondObject = (AuthorizationGenerationKey) otherObject;
+        return scope == secondObject.scope && tenantId == secondObject.tenantId &&
+                name.equals(secondObject.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return (scope * 31 + tenantId) * 31 + name.hashCode();
+    }
+}
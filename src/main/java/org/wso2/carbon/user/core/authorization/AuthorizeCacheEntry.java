@@ -29,11 +29,26 @@ public class AuthorizeCacheEntry implements Serializable {
     private static final long serialVersionUID = 1125082384187016686L;
     private boolean isUserAuthorized;
 
+    /**
+     * Sum of the generations of the tenant, user, resource and server when the decision was
+     * made. The decision is stale once any of them has moved to another generation.
+     */
+    private long generation;
+
     public AuthorizeCacheEntry(boolean userAuthorized) {
+        this(userAuthorized, 0);
+    }
+
+    public AuthorizeCacheEntry(boolean userAuthorized, long generation) {
         isUserAuthorized = userAuthorized;
+        this.generation = generation;
     }
 
     public boolean isUserAuthorized() {
         return isUserAuthorized;
     }
+
+    public long getGeneration() {
+        return generation;
+    }
 }
\ No newline at end of file
@@ -32,6 +32,13 @@ public class DBConstants {
             "UM_ACTION=? AND UM_TENANT_ID=?";
     public static final String ADD_PERMISSION_SQL = "INSERT INTO UM_PERMISSION (UM_RESOURCE_ID, UM_ACTION, " +
             "UM_TENANT_ID) VALUES (?, ?, ?)";
+    // followed by the placeholders of the resource ids and a closing parenthesis
+    public static final String GET_PERMISSION_IDS_SQL = "SELECT UM_ID, UM_RESOURCE_ID, UM_ACTION FROM UM_PERMISSION " +
+            "WHERE UM_TENANT_ID=? AND UM_RESOURCE_ID IN (";
+    public static final String GET_DOMAIN_ID_SQL = "SELECT UM_DOMAIN_ID FROM UM_DOMAIN WHERE UM_TENANT_ID=? AND " +
+            "UM_DOMAIN_NAME=?";
+    public static final String GET_ROLE_PERMISSION_IDS_WITH_DOMAIN_ID_SQL = "SELECT UM_PERMISSION_ID, UM_IS_ALLOWED " +
+            "FROM UM_ROLE_PERMISSION WHERE UM_ROLE_NAME=? AND UM_TENANT_ID=? AND UM_DOMAIN_ID=?";
 
     public static final String ADD_ROLE_PERMISSION_SQL = "INSERT INTO UM_ROLE_PERMISSION (UM_PERMISSION_ID," +
             " UM_ROLE_NAME, UM_IS_ALLOWED, UM_TENANT_ID, UM_DOMAIN_ID) VALUES (?, ?, ?, ?, (SELECT UM_DOMAIN_ID FROM UM_DOMAIN WHERE UM_TENANT_ID=? AND UM_DOMAIN_NAME=?))";
@@ -59,6 +66,9 @@ public class DBConstants {
             "AND UM_PERMISSION_ID = (SELECT UM_ID FROM UM_PERMISSION WHERE UM_RESOURCE_ID = ? AND " +
             "UM_ACTION = ? AND UM_TENANT_ID=?) AND UM_TENANT_ID=? AND UM_DOMAIN_ID=?";
 
+    public static final String DELETE_ROLE_PERMISSION_BY_ID_SQL = "DELETE FROM UM_ROLE_PERMISSION WHERE UM_ROLE_NAME=? " +
+            "AND UM_PERMISSION_ID=? AND UM_TENANT_ID=? AND UM_DOMAIN_ID=?";
+
     public static final String DELETE_USER_PERMISSION_SQL = "DELETE FROM UM_USER_PERMISSION WHERE UM_USER_NAME=? " +
             "AND UM_PERMISSION_ID = (SELECT UM_ID FROM UM_PERMISSION WHERE UM_RESOURCE_ID = ? AND " +
             "UM_ACTION = ? AND UM_TENANT_ID=?) AND UM_TENANT_ID=?";
@@ -73,5 +83,22 @@ public class DBConstants {
     public static final String UPDATE_UM_ROLE_NAME_PERMISSION_SQL = "UPDATE UM_ROLE_PERMISSION set UM_ROLE_NAME=? WHERE UM_ROLE_NAME=? AND UM_TENANT_ID=? " +
             "AND UM_DOMAIN_ID=(SELECT UM_DOMAIN_ID FROM UM_DOMAIN WHERE UM_TENANT_ID=? AND UM_DOMAIN_NAME=?)";
 
+    // permission change log, replayed to update permission trees incrementally
+    public static final String ADD_PERMISSION_CHANGE_SQL = "INSERT INTO UM_PERMISSION_CHANGE_LOG (UM_TENANT_ID, " +
+            "UM_VERSION, UM_ENTITY_TYPE, UM_ENTITY_NAME, UM_DOMAIN_NAME, UM_RESOURCE_ID, UM_ACTION, UM_OPERATION) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    public static final String DELETE_PERMISSION_CHANGES_SQL = "DELETE FROM UM_PERMISSION_CHANGE_LOG WHERE UM_TENANT_ID=?";
+    public static final String DELETE_OLD_PERMISSION_CHANGES_SQL = "DELETE FROM UM_PERMISSION_CHANGE_LOG " +
+            "WHERE UM_TENANT_ID=? AND UM_VERSION <= ?";
+    public static final String GET_PERMISSION_CHANGES_SQL = "SELECT UM_VERSION, UM_ENTITY_TYPE, UM_ENTITY_NAME, " +
+            "UM_DOMAIN_NAME, UM_RESOURCE_ID, UM_ACTION, UM_OPERATION FROM UM_PERMISSION_CHANGE_LOG " +
+            "WHERE UM_TENANT_ID=? AND UM_VERSION > ? ORDER BY UM_VERSION, UM_ID";
+    public static final String ADD_PERMISSION_VERSION_SQL = "INSERT INTO UM_PERMISSION_VERSION (UM_TENANT_ID, " +
+            "UM_VERSION) VALUES (?, ?)";
+    public static final String INCREMENT_PERMISSION_VERSION_SQL = "UPDATE UM_PERMISSION_VERSION SET " +
+            "UM_VERSION=UM_VERSION+1 WHERE UM_TENANT_ID=?";
+    public static final String GET_PERMISSION_VERSION_SQL = "SELECT UM_VERSION FROM UM_PERMISSION_VERSION " +
+            "WHERE UM_TENANT_ID=?";
+
     public static final String IS_SYSTEM_ROLE = "SELECT UM_ID FROM UM_SYSTEM_ROLE WHERE UM_ROLE_NAME=? AND UM_TENANT_ID=?";
 }
@@ -21,6 +21,7 @@ import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.CarbonConstants;
 import org.wso2.carbon.user.api.RealmConfiguration;
 import org.wso2.carbon.user.core.AuthorizationManager;
+import org.wso2.carbon.user.core.Permission;
 import org.wso2.carbon.user.core.UserCoreConstants;
 import org.wso2.carbon.user.core.UserRealm;
 import org.wso2.carbon.user.core.UserStoreException;
@@ -42,11 +43,13 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import javax.sql.DataSource;
 
 public class JDBCAuthorizationManager implements AuthorizationManager {
@@ -60,6 +63,7 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
     private final String GET_ALL_ROLES_OF_USER_ENABLED = "GetAllRolesOfUserEnabled";
     private DataSource dataSource = null;
     private PermissionTree permissionTree = null;
+    private PermissionChangeLog permissionChangeLog = null;
     private AuthorizationCache authorizationCache = null;
     private UserRealm userRealm = null;
     private RealmConfiguration realmConfig = null;
@@ -75,12 +79,18 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
             "UM_TENANT_ID=? AND UM_DOMAIN_NAME=?)";
     private static final String DELETE_ROLE_PERMISSIONS = "DeleteRolePermissions";
     private static final String DELETE_USER_PERMISSIONS = "DeleteUserPermissions";
+    // maximum number of resource ids in the IN clause of a permission id query
+    private static final int MAX_PERMISSION_ID_QUERY_SIZE = 100;
     private static final ThreadLocal<Boolean> isSecureCall = new ThreadLocal<Boolean>() {
         @Override
         protected Boolean initialValue() {
             return Boolean.FALSE;
         }
     };
+    /**
+     * Methods run by callSecure, resolved once per name and argument types.
+     */
+    private static final ConcurrentMap<String, Method> secureMethods = new ConcurrentHashMap<String, Method>();
 
     public JDBCAuthorizationManager(RealmConfiguration realmConfig, Map<String, Object> properties,
                                     ClaimManager claimManager, ProfileConfigurationManager profileManager, UserRealm realm,
@@ -128,7 +138,17 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
 
         this.isCascadeDeleteEnabled = realmConfig.getRealmProperty(CASCADE_DELETE_ENABLED);
 
-        this.permissionTree = new PermissionTree(cacheIdentifier, tenantId, dataSource);
+        boolean copyOnWritePermissionTree = "true".equals(realmConfig.getAuthorizationManagerProperty(
+                UserCoreConstants.RealmConfig.PROPERTY_COPY_ON_WRITE_PERMISSION_TREE));
+        if ("true".equals(realmConfig.getAuthorizationManagerProperty(
+                UserCoreConstants.RealmConfig.PROPERTY_INCREMENTAL_PERMISSION_TREE_RELOAD))) {
+            PermissionChangeLog changeLog = new PermissionChangeLog(tenantId);
+            if (changeLog.init(dataSource)) {
+                this.permissionChangeLog = changeLog;
+            }
+        }
+        this.permissionTree = new PermissionTree(cacheIdentifier, tenantId, dataSource,
+                copyOnWritePermissionTree, permissionChangeLog);
         this.realmConfig = realmConfig;
         this.userRealm = realm;
         this.tenantId = tenantId;
@@ -142,7 +162,7 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
 
     public boolean isRoleAuthorized(String roleName, String resourceId, String action) throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, String.class, String.class};
             Object object = callSecure("isRoleAuthorized", new Object[]{roleName, resourceId, action}, argTypes);
             return (Boolean) object;
@@ -160,24 +180,87 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
         action = modify(action);
 
         permissionTree.updatePermissionTree();
-        SearchResult sr = permissionTree.getRolePermission(roleName, PermissionTreeUtil
-                .actionToPermission(action), null, null, PermissionTreeUtil
-                .toComponenets(resourceId));
+        boolean roleAllowed = permissionTree.resolveRolePermission(roleName,
+                PermissionTreeUtil.actionToPermission(action), resourceId) == TreeNode.PERMISSION_ALLOWED;
 
 
         if (log.isDebugEnabled()) {
-            if (!sr.getLastNodeAllowedAccess()) {
+            if (!roleAllowed) {
                 log.debug(roleName + " role is not Authorized to perform " + action + " on " + resourceId);
             }
         }
 
-        return sr.getLastNodeAllowedAccess();
+        return roleAllowed;
+    }
+
+    /**
+     * Checks whether any of the given roles is authorized. All of the roles are resolved in a
+     * single pass, hence this is cheaper than calling isRoleAuthorized for each role. This is not
+     * part of the AuthorizationManager interface, so that existing implementations of that
+     * interface are not required to provide it.
+     *
+     * @param roleNames  The role names, typically all the roles of a user
+     * @param resourceId Resource Id String
+     * @param action     The action the roles are trying to perform
+     * @return Returns true when at least one of the roles is authorized to perform the action on
+     * the resource and false otherwise
+     * @throws UserStoreException
+     */
+    public boolean isAnyRoleAuthorized(String[] roleNames, String resourceId, String action)
+            throws UserStoreException {
+
+        if (isSecureCallRequired()) {
+            Class argTypes[] = new Class[]{String[].class, String.class, String.class};
+            Object object = callSecure("isAnyRoleAuthorized", new Object[]{roleNames, resourceId, action},
+                    argTypes);
+            return (Boolean) object;
+        }
+
+        if (roleNames == null || roleNames.length == 0) {
+            return false;
+        }
+
+        Collection<AuthorizationManagerListener> listeners = UMListenerServiceComponent
+                .getAuthorizationManagerListeners();
+        if (!listeners.isEmpty()) {
+            List<String> permittedRoles = new ArrayList<String>(roleNames.length);
+            for (String roleName : roleNames) {
+                boolean permitted = true;
+                for (AuthorizationManagerListener listener : listeners) {
+                    if (!listener.isRoleAuthorized(roleName, resourceId, action, this)) {
+                        permitted = false;
+                        break;
+                    }
+                }
+                if (permitted) {
+                    permittedRoles.add(roleName);
+                }
+            }
+            roleNames = permittedRoles.toArray(new String[permittedRoles.size()]);
+        }
+
+        roleNames = modify(roleNames);
+        resourceId = modify(resourceId);
+        action = modify(action);
+
+        permissionTree.updatePermissionTree();
+        boolean roleAllowed = permissionTree.isAnyRoleAuthorized(roleNames,
+                PermissionTreeUtil.actionToPermission(action), resourceId);
+
+        if (log.isDebugEnabled()) {
+            if (!roleAllowed) {
+                log.debug("None of the " + roleNames.length + " roles is Authorized to perform " + action +
+                        " on " + resourceId);
+            }
+        }
+
+        return roleAllowed;
     }
 
     public boolean isUserAuthorized(String userName, String resourceId, String action)
             throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, String.class, String.class};
             Object object = callSecure("isUserAuthorized", new Object[]{userName, resourceId, action}, argTypes);
             return (Boolean) object;
@@ -227,59 +310,52 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
         permissionTree.updatePermissionTree();
 
         //following is related with user permission, and it is not hit in the current flow.
-        SearchResult sr =
-                permissionTree.getUserPermission(userName,
-                        PermissionTreeUtil.actionToPermission(action),
-                        null, null,
-                        PermissionTreeUtil.toComponenets(resourceId));
-        if (sr.getLastNodeAllowedAccess()) {
+        if (permissionTree.resolveUserPermission(userName, PermissionTreeUtil.actionToPermission(action),
+                resourceId) == TreeNode.PERMISSION_ALLOWED) {
             authorizationCache.addToCache(cacheIdentifier, tenantId, userName, resourceId, action, true);
             return true;
         }
 
 
         boolean userAllowed = false;
-        String[] allowedRoles = modify(getAllowedRolesForResource(resourceId, action));
-
 
-        if (allowedRoles != null && allowedRoles.length > 0) {
-            if (log.isDebugEnabled()) {
-                log.debug("Roles which have permission for resource : " + resourceId + " action : " + action);
-                for (String allowedRole : allowedRoles) {
-                    log.debug("Role :  " + allowedRole);
+        if (verifyByRetrievingAllUserRoles) {
+            String[] roles = null;
+            try {
+                roles = userRealm.getUserStoreManager().getRoleListOfUser(userName);
+            } catch (UserStoreException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Error getting role list of user : " + userName, e);
                 }
             }
 
-            if (verifyByRetrievingAllUserRoles) {
-                String[] roles = null;
-                try {
-                    roles = userRealm.getUserStoreManager().getRoleListOfUser(userName);
-                } catch (UserStoreException e) {
-                    if (log.isDebugEnabled()) {
-                        log.debug("Error getting role list of user : " + userName, e);
-                    }
-                }
+            if (roles == null || roles.length == 0) {
+                AbstractUserStoreManager manager = (AbstractUserStoreManager) userRealm.getUserStoreManager();
+                roles = manager.doGetRoleListOfUser(userName, "*");
+            }
+
+            // resolve all the roles of the user in a single walk of the permission tree
+            userAllowed = roles != null && permissionTree.isAnyRoleAuthorized(modify(roles),
+                    PermissionTreeUtil.actionToPermission(action), resourceId);
 
-                if (roles == null || roles.length == 0) {
-                    AbstractUserStoreManager manager = (AbstractUserStoreManager) userRealm.getUserStoreManager();
-                    roles = manager.doGetRoleListOfUser(userName, "*");
+            if (log.isDebugEnabled()) {
+                if (userAllowed) {
+                    log.debug(userName + " user has a permitted role for resource : " + resourceId +
+                            " action : " + action);
                 }
+            }
 
-                Set<String> allowedRoleSet = new HashSet<String>(Arrays.asList(allowedRoles));
-                Set<String> userRoleSet = new HashSet<String>(Arrays.asList(modify(roles)));
-                allowedRoleSet.retainAll(userRoleSet);
+        } else {
+            String[] allowedRoles = modify(getAllowedRolesForResource(resourceId, action));
 
+            if (allowedRoles != null && allowedRoles.length > 0) {
                 if (log.isDebugEnabled()) {
-                    for (String allowedRole : allowedRoleSet) {
-                        log.debug(userName + " user has permitted role :  " + allowedRole);
+                    log.debug("Roles which have permission for resource : " + resourceId + " action : " + action);
+                    for (String allowedRole : allowedRoles) {
+                        log.debug("Role :  " + allowedRole);
                     }
                 }
 
-                if (!allowedRoleSet.isEmpty()) {
-                    userAllowed = true;
-                }
-
-            } else {
                 AbstractUserStoreManager manager = (AbstractUserStoreManager) userRealm.getUserStoreManager();
                 for (String role : allowedRoles) {
                     try {
@@ -300,10 +376,10 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
                         }
                     }
                 }
-            }
-        } else {
-            if (log.isDebugEnabled()) {
-                log.debug("No roles have permission for resource : " + resourceId + " action : " + action);
+            } else {
+                if (log.isDebugEnabled()) {
+                    log.debug("No roles have permission for resource : " + resourceId + " action : " + action);
+                }
             }
         }
 
@@ -323,7 +399,7 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
     public String[] getAllowedRolesForResource(String resourceId, String action)
             throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, String.class};
             Object object = callSecure("getAllowedRolesForResource", new Object[]{resourceId, action}, argTypes);
             return (String[]) object;
@@ -352,7 +428,7 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
 
     public String[] getExplicitlyAllowedUsersForResource(String resourceId, String action)
             throws UserStoreException {
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, String.class};
             Object object = callSecure("getExplicitlyAllowedUsersForResource", new Object[]{resourceId, action},
                     argTypes);
@@ -381,7 +457,7 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
 
     public String[] getDeniedRolesForResource(String resourceId, String action)
             throws UserStoreException {
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, String.class};
             Object object = callSecure("getDeniedRolesForResource", new Object[]{resourceId, action}, argTypes);
             return (String[]) object;
@@ -400,7 +476,7 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
 
     public String[] getExplicitlyDeniedUsersForResource(String resourceId, String action)
             throws UserStoreException {
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, String.class};
             Object object = callSecure("getExplicitlyDeniedUsersForResource", new Object[]{resourceId, action},
                     argTypes);
@@ -420,7 +496,7 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
 
     public String[] getAllowedUIResourcesForUser(String userName, String permissionRootPath)
             throws UserStoreException {
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, String.class};
             Object object = callSecure("getAllowedUIResourcesForUser", new Object[]{userName, permissionRootPath},
                     argTypes);
@@ -428,13 +504,10 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
         }
         if (verifyByRetrievingAllUserRoles) {
 
-            List<String> lstPermissions = new ArrayList<String>();
             String[] roles = this.userRealm.getUserStoreManager().getRoleListOfUser(userName);
             roles = modify(roles);
             permissionTree.updatePermissionTree();
-            permissionTree.getUIResourcesForRoles(roles, lstPermissions, permissionRootPath);
-            String[] permissions = lstPermissions.toArray(new String[lstPermissions.size()]);
-            return UserCoreUtil.optimizePermissions(permissions);
+            return permissionTree.getAllowedUIResourcesForRoles(roles, permissionRootPath);
 
         } else {
 
@@ -473,7 +546,7 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
     public void authorizeRole(String roleName, String resourceId, String action)
             throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, String.class, String.class};
             callSecure("authorizeRole", new Object[]{roleName, resourceId, action}, argTypes);
             return;
@@ -499,7 +572,7 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
     public void denyRole(String roleName, String resourceId, String action)
             throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, String.class, String.class};
             callSecure("denyRole", new Object[]{roleName, resourceId, action}, argTypes);
             return;
@@ -522,10 +595,81 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
         addAuthorizationForRole(roleName, resourceId, action, UserCoreConstants.DENY, true);
     }
 
+    /**
+     * Grants a set of authorizations to a role. This is cheaper than calling authorizeRole for
+     * each permission, as all of them are written in one transaction. This is not part of the
+     * AuthorizationManager interface, so that existing implementations of that interface are not
+     * required to provide it.
+     *
+     * @param roleName    The role name
+     * @param permissions The resources and actions granted to the role
+     * @throws UserStoreException
+     */
+    public void authorizeRole(String roleName, Permission[] permissions) throws UserStoreException {
+
+        if (isSecureCallRequired()) {
+            Class argTypes[] = new Class[]{String.class, Permission[].class};
+            callSecure("authorizeRole", new Object[]{roleName, permissions}, argTypes);
+            return;
+        }
+
+        validatePermissions(permissions);
+        List<Permission> permissionList = new ArrayList<Permission>(permissions.length);
+        for (Permission permission : permissions) {
+            validatePermission(permission);
+            boolean authorize = true;
+            for (AuthorizationManagerListener listener : UMListenerServiceComponent
+                    .getAuthorizationManagerListeners()) {
+                if (!listener.authorizeRole(roleName, permission.getResourceId(), permission.getAction(), this)) {
+                    authorize = false;
+                    break;
+                }
+            }
+            if (authorize) {
+                permissionList.add(modify(permission));
+            }
+        }
+        addAuthorizationsForRole(modify(roleName), permissionList, UserCoreConstants.ALLOW);
+    }
+
+    /**
+     * Deny a set of authorizations to a role, in one transaction.
+     *
+     * @param roleName    The role name
+     * @param permissions The resources and actions denied to the role
+     * @throws UserStoreException
+     */
+    public void denyRole(String roleName, Permission[] permissions) throws UserStoreException {
+
+        if (isSecureCallRequired()) {
+            Class argTypes[] = new Class[]{String.class, Permission[].class};
+            callSecure("denyRole", new Object[]{roleName, permissions}, argTypes);
+            return;
+        }
+
+        validatePermissions(permissions);
+        List<Permission> permissionList = new ArrayList<Permission>(permissions.length);
+        for (Permission permission : permissions) {
+            validatePermission(permission);
+            boolean deny = true;
+            for (AuthorizationManagerListener listener : UMListenerServiceComponent
+                    .getAuthorizationManagerListeners()) {
+                if (!listener.denyRole(roleName, permission.getResourceId(), permission.getAction(), this)) {
+                    deny = false;
+                    break;
+                }
+            }
+            if (deny) {
+                permissionList.add(modify(permission));
+            }
+        }
+        addAuthorizationsForRole(modify(roleName), permissionList, UserCoreConstants.DENY);
+    }
+
     public void authorizeUser(String userName, String resourceId, String action)
             throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, String.class, String.class};
             callSecure("authorizeUser", new Object[]{userName, resourceId, action}, argTypes);
             return;
@@ -551,7 +695,7 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
     public void denyUser(String userName, String resourceId, String action)
             throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, String.class, String.class};
             callSecure("denyUser", new Object[]{userName, resourceId, action}, argTypes);
             return;
@@ -578,7 +722,7 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
 
     public void clearResourceAuthorizations(String resourceId) throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class};
             callSecure("clearResourceAuthorizations", new Object[]{resourceId}, argTypes);
             return;
@@ -607,6 +751,9 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
             }
             DatabaseUtil.updateDatabase(dbConnection, DBConstants.DELETE_PERMISSION_SQL,
                     resourceId, tenantId);
+            if (permissionChangeLog != null) {
+                permissionChangeLog.addReset(dbConnection);
+            }
             permissionTree.clearResourceAuthorizations(resourceId);
             dbConnection.commit();
         } catch (SQLException e) {
@@ -624,7 +771,7 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
     public void clearRoleAuthorization(String roleName, String resourceId, String action)
             throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, String.class, String.class};
             callSecure("clearRoleAuthorization", new Object[]{roleName, resourceId, action}, argTypes);
             return;
@@ -654,6 +801,10 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
             }
             DatabaseUtil.updateDatabase(dbConnection, DBConstants.DELETE_ROLE_PERMISSION_SQL,
                     UserCoreUtil.removeDomainFromName(roleName), resourceId, action, tenantId, tenantId, tenantId, domain);
+            if (permissionChangeLog != null) {
+                permissionChangeLog.addRoleChange(dbConnection, UserCoreUtil.removeDomainFromName(roleName), domain,
+                        resourceId, action, PermissionChangeLog.CLEAR);
+            }
             permissionTree.clearRoleAuthorization(roleName, resourceId, action);
             dbConnection.commit();
         } catch (SQLException e) {
@@ -669,9 +820,81 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
         }
     }
 
+    /**
+     * Deletes a set of already granted authorizations of a role, in one transaction.
+     *
+     * @param roleName    The role name
+     * @param permissions The resources and actions granted
+     * @throws UserStoreException
+     */
+    public void clearRoleAuthorization(String roleName, Permission[] permissions) throws UserStoreException {
+
+        if (isSecureCallRequired()) {
+            Class argTypes[] = new Class[]{String.class, Permission[].class};
+            callSecure("clearRoleAuthorization", new Object[]{roleName, permissions}, argTypes);
+            return;
+        }
+
+        validatePermissions(permissions);
+        List<Permission> permissionList = new ArrayList<Permission>(permissions.length);
+        for (Permission permission : permissions) {
+            validatePermission(permission);
+            boolean clear = true;
+            for (AuthorizationManagerListener listener : UMListenerServiceComponent
+                    .getAuthorizationManagerListeners()) {
+                if (!listener.clearRoleAuthorization(roleName, permission.getResourceId(), permission.getAction(),
+                        this)) {
+                    clear = false;
+                    break;
+                }
+            }
+            if (clear) {
+                permissionList.add(modify(permission));
+            }
+        }
+        if (permissionList.isEmpty()) {
+            return;
+        }
+        roleName = modify(roleName);
+
+        /*need to clear tenant authz cache once role authorization is removed, currently there is
+        no way to remove cache entry by role.*/
+        authorizationCache.clearCacheByTenant(this.tenantId);
+
+        Connection dbConnection = null;
+        try {
+            dbConnection = getDBConnection();
+            String domain = getRoleDomain(roleName);
+            int domainId = getDomainId(dbConnection, domain);
+            String roleNameWithoutDomain = UserCoreUtil.removeDomainFromName(roleName);
+            List<Object[]> rows = new ArrayList<Object[]>(permissionList.size());
+            for (Permission permission : permissionList) {
+                rows.add(new Object[]{roleNameWithoutDomain, permission.getResourceId(), permission.getAction(),
+                        tenantId, tenantId, domainId});
+            }
+            DatabaseUtil.updateDatabaseInBatch(dbConnection, DBConstants.DELETE_ROLE_PERMISSION_WITH_DOMAIN_ID_SQL,
+                    rows);
+            if (permissionChangeLog != null) {
+                permissionChangeLog.addRoleChanges(dbConnection, roleNameWithoutDomain, domain, permissionList,
+                        PermissionChangeLog.CLEAR);
+            }
+            permissionTree.clearRoleAuthorization(roleName, permissionList, true);
+            dbConnection.commit();
+        } catch (SQLException e) {
+            String errorMessage = "Error occurred while clearing " + permissionList.size() +
+                    " permissions of role : " + roleName;
+            if (log.isDebugEnabled()) {
+                log.debug(errorMessage, e);
+            }
+            throw new UserStoreException(errorMessage, e);
+        } finally {
+            DatabaseUtil.closeAllConnections(dbConnection);
+        }
+    }
+
     public void clearUserAuthorization(String userName, String resourceId, String action)
             throws UserStoreException {
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, String.class, String.class};
             callSecure("clearUserAuthorization", new Object[]{userName, resourceId, action}, argTypes);
             return;
@@ -700,6 +923,10 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
             }
             DatabaseUtil.updateDatabase(dbConnection, DBConstants.DELETE_USER_PERMISSION_SQL,
                     userName, resourceId, action, tenantId, tenantId);
+            if (permissionChangeLog != null) {
+                permissionChangeLog.addUserChange(dbConnection, userName, resourceId, action,
+                        PermissionChangeLog.CLEAR);
+            }
             permissionTree.clearUserAuthorization(userName, resourceId, action);
             dbConnection.commit();
         } catch (SQLException e) {
@@ -717,7 +944,7 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
 
     public void clearRoleActionOnAllResources(String roleName, String action)
             throws UserStoreException {
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, String.class};
             callSecure("clearRoleActionOnAllResources", new Object[]{roleName, action}, argTypes);
             return;
@@ -748,6 +975,10 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
             DatabaseUtil.updateDatabase(dbConnection,
                     DBConstants.DELETE_ROLE_PERMISSIONS_BASED_ON_ACTION, UserCoreUtil.removeDomainFromName(roleName),
                     action, tenantId, tenantId, tenantId, domain);
+            if (permissionChangeLog != null) {
+                permissionChangeLog.addRoleChange(dbConnection, UserCoreUtil.removeDomainFromName(roleName), domain,
+                        null, action, PermissionChangeLog.CLEAR);
+            }
             dbConnection.commit();
         } catch (SQLException e) {
             String errorMessage =
@@ -764,7 +995,7 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
 
     public void clearRoleAuthorization(String roleName) throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class};
             callSecure("clearRoleAuthorization", new Object[]{roleName}, argTypes);
             return;
@@ -794,6 +1025,10 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
             DatabaseUtil.updateDatabase(dbConnection,
                     DBConstants.ON_DELETE_ROLE_DELETE_PERMISSION_SQL, UserCoreUtil.removeDomainFromName(roleName),
                     tenantId, tenantId, domain);
+            if (permissionChangeLog != null) {
+                permissionChangeLog.addRoleChange(dbConnection, UserCoreUtil.removeDomainFromName(roleName), domain,
+                        null, null, PermissionChangeLog.CLEAR);
+            }
             dbConnection.commit();
         } catch (SQLException e) {
             String errorMessage = "Error occurred while clearing role authorization for role : " + roleName;
@@ -808,7 +1043,7 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
 
     public void clearUserAuthorization(String userName) throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class};
             callSecure("clearUserAuthorization", new Object[]{userName}, argTypes);
             return;
@@ -832,6 +1067,9 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
             permissionTree.clearUserAuthorization(userName);
             DatabaseUtil.updateDatabase(dbConnection,
                     DBConstants.ON_DELETE_USER_DELETE_PERMISSION_SQL, userName, tenantId);
+            if (permissionChangeLog != null) {
+                permissionChangeLog.addUserChange(dbConnection, userName, null, null, PermissionChangeLog.CLEAR);
+            }
             dbConnection.commit();
         } catch (SQLException e) {
             String errorMessage = "Error occurred while clearing user authorization for user : " + userName;
@@ -848,7 +1086,7 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
     public void resetPermissionOnUpdateRole(String roleName, String newRoleName)
             throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, String.class};
             callSecure("resetPermissionOnUpdateRole", new Object[]{roleName, newRoleName}, argTypes);
             return;
@@ -884,6 +1122,9 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
                 domain = domain.toUpperCase();
             }
             DatabaseUtil.updateDatabase(dbConnection, sqlStmt, newRoleName, roleName, tenantId, tenantId, domain);
+            if (permissionChangeLog != null) {
+                permissionChangeLog.addReset(dbConnection);
+            }
             dbConnection.commit();
         } catch (SQLException e) {
             String errorMessage =
@@ -901,7 +1142,7 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
     public void addAuthorization(String subject, String resourceId, String action,
                                  boolean authorized, boolean isRole) throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, String.class, String.class, boolean.class, boolean.class};
             callSecure("addAuthorization", new Object[]{subject, resourceId, action, authorized, isRole}, argTypes);
             return;
@@ -920,7 +1161,7 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
 
     private void addAuthorizationForRole(String roleName, String resourceId, String action,
                                          short allow, boolean updateCache) throws UserStoreException {
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, String.class, String.class, short.class, boolean.class};
             callSecure("addAuthorizationForRole", new Object[]{roleName, resourceId, action, allow, updateCache},
                     argTypes);
@@ -1000,6 +1241,10 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
                 DatabaseUtil.updateDatabase(dbConnection, DBConstants.ADD_ROLE_PERMISSION_SQL,
                                             permissionId, UserCoreUtil.removeDomainFromName(roleName), allow,
                                             tenantId, tenantId, domain);
+                if (permissionChangeLog != null) {
+                    permissionChangeLog.addRoleChange(dbConnection, UserCoreUtil.removeDomainFromName(roleName),
+                            domain, resourceId, action, allow);
+                }
             }
 
             if (updateCache) {
@@ -1050,7 +1295,7 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
 
     private void addAuthorizationForUser(String userName, String resourceId, String action,
                                          short allow, boolean updateCache) throws UserStoreException {
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, String.class, String.class, short.class, boolean.class};
             callSecure("addAuthorizationForUser", new Object[]{userName, resourceId, action, allow, updateCache},
                     argTypes);
@@ -1074,6 +1319,9 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
                     userName, resourceId, action, tenantId, tenantId);
             DatabaseUtil.updateDatabase(dbConnection, DBConstants.ADD_USER_PERMISSION_SQL,
                     permissionId, userName, allow, tenantId);
+            if (permissionChangeLog != null) {
+                permissionChangeLog.addUserChange(dbConnection, userName, resourceId, action, allow);
+            }
             if (updateCache) {
                 if (allow == UserCoreConstants.ALLOW) {
                     permissionTree.authorizeUserInTree(userName, resourceId, action, true);
@@ -1111,6 +1359,216 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
         }
     }
 
+    /**
+     * Allow or deny the given permissions to a role. Permission ids are resolved with a few
+     * queries and the role permissions are written with JDBC batches, all in one transaction,
+     * and the permission tree is updated and invalidated once.
+     */
+    private void addAuthorizationsForRole(String roleName, List<Permission> permissions, short allow)
+            throws UserStoreException {
+        Map<String, Permission> uniquePermissions = new LinkedHashMap<String, Permission>();
+        for (Permission permission : permissions) {
+            uniquePermissions.put(getPermissionKey(permission), permission);
+        }
+        if (uniquePermissions.isEmpty()) {
+            return;
+        }
+        permissions = new ArrayList<Permission>(uniquePermissions.values());
+
+        /*need to clear tenant authz cache once role authorization is added, currently there is
+        no way to remove cache entry by role.*/
+        authorizationCache.clearCacheByTenant(this.tenantId);
+
+        Connection dbConnection = null;
+        PreparedStatement prepStmt = null;
+        ResultSet rs = null;
+        try {
+            dbConnection = getDBConnection();
+            Map<String, Integer> permissionIds = getPermissionIds(dbConnection, permissions);
+            List<Permission> newPermissions = new ArrayList<Permission>();
+            List<Object[]> rows = new ArrayList<Object[]>();
+            for (Permission permission : permissions) {
+                if (!permissionIds.containsKey(getPermissionKey(permission))) {
+                    newPermissions.add(permission);
+                    rows.add(new Object[]{permission.getResourceId(), permission.getAction(), tenantId});
+                }
+            }
+            if (!newPermissions.isEmpty()) {
+                DatabaseUtil.updateDatabaseInBatch(dbConnection, DBConstants.ADD_PERMISSION_SQL, rows);
+                permissionIds.putAll(getPermissionIds(dbConnection, newPermissions));
+            }
+
+            String domain = getRoleDomain(roleName);
+            int domainId = getDomainId(dbConnection, domain);
+            String roleNameWithoutDomain = UserCoreUtil.removeDomainFromName(roleName);
+
+            Map<Integer, Short> existingPermissions = new HashMap<Integer, Short>();
+            prepStmt = dbConnection.prepareStatement(DBConstants.GET_ROLE_PERMISSION_IDS_WITH_DOMAIN_ID_SQL);
+            prepStmt.setString(1, roleNameWithoutDomain);
+            prepStmt.setInt(2, tenantId);
+            prepStmt.setInt(3, domainId);
+            rs = prepStmt.executeQuery();
+            while (rs.next()) {
+                existingPermissions.put(rs.getInt(1), rs.getShort(2));
+            }
+
+            List<Permission> changedPermissions = new ArrayList<Permission>();
+            List<Object[]> deleteRows = new ArrayList<Object[]>();
+            List<Object[]> addRows = new ArrayList<Object[]>();
+            for (Permission permission : permissions) {
+                Integer permissionId = permissionIds.get(getPermissionKey(permission));
+                Short isAllowed = existingPermissions.get(permissionId);
+                if (isAllowed != null && isAllowed == allow) {
+                    continue;
+                } else if (isAllowed != null) {
+                    deleteRows.add(new Object[]{roleNameWithoutDomain, permissionId, tenantId, domainId});
+                }
+                addRows.add(new Object[]{permissionId, roleNameWithoutDomain, allow, tenantId, domainId});
+                changedPermissions.add(permission);
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Adding " + addRows.size() + " permissions to the role: " + roleNameWithoutDomain +
+                          " of tenant: " + tenantId + " of domain: " + domain);
+            }
+            DatabaseUtil.updateDatabaseInBatch(dbConnection, DBConstants.DELETE_ROLE_PERMISSION_BY_ID_SQL,
+                    deleteRows);
+            DatabaseUtil.updateDatabaseInBatch(dbConnection, DBConstants.ADD_ROLE_PERMISSION_WITH_DOMAIN_SQL,
+                    addRows);
+            if (permissionChangeLog != null && !changedPermissions.isEmpty()) {
+                permissionChangeLog.addRoleChanges(dbConnection, roleNameWithoutDomain, domain,
+                        changedPermissions, allow);
+            }
+            permissionTree.authorizeRoleInTree(roleName, permissions, allow == UserCoreConstants.ALLOW, true);
+            dbConnection.commit();
+        } catch (Exception e) {
+            try {
+                if (dbConnection != null) {
+                    dbConnection.rollback();
+                }
+            } catch (SQLException e1) {
+                String errorMessage = "Error in DB connection rollback for role : " + roleName;
+                if (log.isDebugEnabled()) {
+                    log.debug(errorMessage, e1);
+                }
+                throw new UserStoreException(errorMessage, e1);
+            }
+            String errorMessage = "Error occurred while adding " + permissions.size() +
+                    " authorizations for role : " + roleName + " & allow : " + allow;
+            if (log.isDebugEnabled()) {
+                log.debug(errorMessage, e);
+            }
+            throw new UserStoreException(errorMessage, e);
+        } finally {
+            DatabaseUtil.closeAllConnections(dbConnection, rs, prepStmt);
+        }
+    }
+
+    /**
+     * Get the ids of the given permissions, querying the resource ids in chunks.
+     *
+     * @return map from the permission keys to the ids, without the permissions which do not exist
+     */
+    private Map<String, Integer> getPermissionIds(Connection dbConnection, List<Permission> permissions)
+            throws UserStoreException {
+        Map<String, Integer> permissionIds = new HashMap<String, Integer>();
+        Map<String, Permission> wanted = new LinkedHashMap<String, Permission>();
+        for (Permission permission : permissions) {
+            wanted.put(getPermissionKey(permission), permission);
+        }
+        List<String> resourceIds = new ArrayList<String>();
+        for (Permission permission : wanted.values()) {
+            if (!resourceIds.contains(permission.getResourceId())) {
+                resourceIds.add(permission.getResourceId());
+            }
+        }
+        for (int start = 0; start < resourceIds.size(); start += MAX_PERMISSION_ID_QUERY_SIZE) {
+            List<String> chunk = resourceIds.subList(start,
+                    Math.min(start + MAX_PERMISSION_ID_QUERY_SIZE, resourceIds.size()));
+            StringBuilder sqlBuilder = new StringBuilder(DBConstants.GET_PERMISSION_IDS_SQL);
+            for (int i = 0; i < chunk.size(); i++) {
+                sqlBuilder.append(i == 0 ? "?" : ", ?");
+            }
+            sqlBuilder.append(")");
+
+            PreparedStatement prepStmt = null;
+            ResultSet rs = null;
+            try {
+                prepStmt = dbConnection.prepareStatement(sqlBuilder.toString());
+                prepStmt.setInt(1, tenantId);
+                for (int i = 0; i < chunk.size(); i++) {
+                    prepStmt.setString(i + 2, chunk.get(i));
+                }
+                rs = prepStmt.executeQuery();
+                while (rs.next()) {
+                    String key = getPermissionKey(rs.getString(2), rs.getString(3));
+                    if (wanted.containsKey(key)) {
+                        permissionIds.put(key, rs.getInt(1));
+                    }
+                }
+            } catch (SQLException e) {
+                String errorMessage = "Error occurred while getting permission ids of " + chunk.size() +
+                        " resources";
+                if (log.isDebugEnabled()) {
+                    log.debug(errorMessage, e);
+                }
+                throw new UserStoreException(errorMessage, e);
+            } finally {
+                DatabaseUtil.closeAllConnections(null, rs, prepStmt);
+            }
+        }
+        return permissionIds;
+    }
+
+    private int getDomainId(Connection dbConnection, String domain) throws UserStoreException {
+        int domainId = DatabaseUtil.getIntegerValueFromDatabase(dbConnection, DBConstants.GET_DOMAIN_ID_SQL,
+                tenantId, domain);
+        if (domainId == -1) {
+            throw new UserStoreException("Domain " + domain + " does not exist in tenant " + tenantId);
+        }
+        return domainId;
+    }
+
+    /**
+     * Get the domain under which the permissions of the given role are stored, which is the
+     * system domain for system roles and the primary domain if the role has no domain.
+     */
+    private String getRoleDomain(String roleName) throws UserStoreException {
+        if (UserCoreUtil.isSystemRole(roleName, this.tenantId, this.dataSource)) {
+            return UserCoreConstants.SYSTEM_DOMAIN_NAME;
+        }
+        String domain = UserCoreUtil.extractDomainFromName(roleName);
+        if (domain == null) {
+            return UserCoreConstants.PRIMARY_DEFAULT_DOMAIN_NAME;
+        }
+        return domain.toUpperCase();
+    }
+
+    private static String getPermissionKey(Permission permission) {
+        return getPermissionKey(permission.getResourceId(), permission.getAction());
+    }
+
+    private static String getPermissionKey(String resourceId, String action) {
+        return action + '|' + resourceId;
+    }
+
+    private void validatePermission(Permission permission) throws UserStoreException {
+        if (permission == null || permission.getResourceId() == null || permission.getAction() == null) {
+            log.error("Invalid data provided at authorization code");
+            throw new UserStoreException("Invalid data provided");
+        }
+    }
+
+    private void validatePermissions(Permission[] permissions) throws UserStoreException {
+        if (permissions == null) {
+            log.error("Invalid data provided at authorization code");
+            throw new UserStoreException("Invalid data provided");
+        }
+    }
+
+    private Permission modify(Permission permission) {
+        return new Permission(modify(permission.getResourceId()), modify(permission.getAction()));
+    }
+
     private List<String> getUIPermissionId() throws UserStoreException {
 
         Connection dbConnection = null;
@@ -1204,7 +1662,7 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
     }
 
     public void populatePermissionTreeFromDB() throws UserStoreException {
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[0];
             callSecure("populatePermissionTreeFromDB", new Object[0], argTypes);
             return;
@@ -1217,7 +1675,7 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
      * scenario.
      */
     public void clearPermissionTree() {
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[0];
             try {
                 callSecure("clearPermissionTree", new Object[0], argTypes);
@@ -1332,25 +1790,41 @@ public class JDBCAuthorizationManager implements AuthorizationManager {
         return roles;
     }
 
+    /**
+     * A call has to be run in a privileged block only when a security manager is installed, and
+     * only once per call stack. Otherwise the method body is run directly, without reflection.
+     */
+    private static boolean isSecureCallRequired() {
+        return System.getSecurityManager() != null && !isSecureCall.get();
+    }
+
+    private static Method getSecureMethod(String methodName, Class[] argTypes) throws NoSuchMethodException {
+        StringBuilder key = new StringBuilder(methodName);
+        for (Class argType : argTypes) {
+            key.append(',').append(argType.getName());
+        }
+        Method method = secureMethods.get(key.toString());
+        if (method == null) {
+            method = JDBCAuthorizationManager.class.getDeclaredMethod(methodName, argTypes);
+            secureMethods.put(key.toString(), method);
+        }
+        return method;
+    }
+
     private Object callSecure(final String methodName, final Object[] objects, final Class[] argTypes)
             throws UserStoreException {
 
         final JDBCAuthorizationManager instance = this;
 
-        isSecureCall.set(Boolean.TRUE);
         final Method method;
         try {
-            Class clazz = Class.forName("org.wso2.carbon.user.core.authorization.JDBCAuthorizationManager");
-            method = clazz.getDeclaredMethod(methodName, argTypes);
-
+            method = getSecureMethod(methodName, argTypes);
         } catch (NoSuchMethodException e) {
             log.error("Error occurred when calling method " + methodName, e);
             throw new UserStoreException(e);
-        } catch (ClassNotFoundException e) {
-            log.error("Error occurred when calling class " + methodName, e);
-            throw new UserStoreException(e);
         }
 
+        isSecureCall.set(Boolean.TRUE);
         try {
             return AccessController.doPrivileged(new PrivilegedExceptionAction<Object>() {
                 @Override
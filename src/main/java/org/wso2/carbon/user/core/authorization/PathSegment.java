@@ -0,0 +1,74 @@
+/*
+*  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.user.core.authorization;
+
+/**
+ * A reusable view over a segment of a resource path, used to look up the children of a
+ * {@link TreeNode} without creating a substring for each path segment.
+ * <p/>
+ * The hash code is the same as the hash code of the equivalent String, and a segment is equal
+ * to a String with the same characters, so a segment can be used as the key when getting a value
+ * from a Map keyed by Strings. Note that the equality is not symmetric, hence a segment must never
+ * be put in to a Map.
+ */
+final class PathSegment {
+
+    private String path;
+    private int start;
+    private int end;
+    private int hash;
+
+    /**
+     * Points this segment to the characters between the given offsets of the path.
+     *
+     * @param path  the resource path
+     * @param start the offset of the first character of the segment
+     * @param end   the offset after the last character of the segment
+     * @return this segment
+     */
+    PathSegment set(String path, int start, int end) {
+        this.path = path;
+        this.start = start;
+        this.end = end;
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + path.charAt(i);
+        }
+        this.hash = h;
+        return this;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object otherObject) {
+        if (otherObject instanceof String) {
+            String other = (String) otherObject;
+            return other.length() == end - start && path.regionMatches(start, other, 0, end - start);
+        }
+        return otherObject == this;
+    }
+
+    @Override
+    public String toString() {
+        return path.substring(start, end);
+    }
+}
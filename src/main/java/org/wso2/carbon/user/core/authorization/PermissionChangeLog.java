@@ -0,0 +1,324 @@
+/*
+*  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.user.core.authorization;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.user.core.Permission;
+import org.wso2.carbon.user.core.UserCoreConstants;
+import org.wso2.carbon.user.core.UserStoreException;
+import org.wso2.carbon.user.core.util.DatabaseUtil;
+import org.wso2.carbon.user.core.util.UserCoreUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+
+/**
+ * Versioned log of the permission changes of a tenant, kept in the UM_PERMISSION_CHANGE_LOG table.
+ * Every permission change is recorded in the same transaction as the change itself. A node which
+ * has loaded the permission tree at some version can then bring it up to date by replaying the
+ * entries added after that version, instead of loading all the permissions of the tenant again.
+ * <p/>
+ * The version of a tenant is kept in a row of the UM_PERMISSION_VERSION table, which is
+ * incremented by the transaction recording the change. The increment locks the row until that
+ * transaction ends, so the versions are committed in order and a node never sees a version
+ * before all the lower versions are visible too. Auto generated ids do not give that guarantee,
+ * as concurrent transactions can commit their ids out of order.
+ * <p/>
+ * Changes which can not be replayed cheaply (e.g. renaming a role) are recorded as a reset,
+ * which makes the nodes load the whole tree again. The older entries of the tenant are removed
+ * when a reset is recorded, as they will never be replayed. Otherwise only the latest
+ * MAX_RETAINED_VERSIONS versions are kept; a node whose tree is older than that finds a gap in
+ * the versions and loads the whole tree again too.
+ * <p/>
+ * The tables are not part of every database schema. If they are missing, the log is disabled
+ * and the permission trees are always loaded as a whole.
+ */
+final class PermissionChangeLog {
+
+    static final String ROLE = "R";
+    static final String USER = "U";
+    static final String RESET = "A";
+
+    /**
+     * Operation of a change which removes the permission, in addition to UserCoreConstants.ALLOW
+     * and UserCoreConstants.DENY. If the resource is not given, the permission is removed from
+     * all the resources, and if the action is not given too, all the permissions are removed.
+     */
+    static final short CLEAR = 2;
+
+    /**
+     * Number of versions kept in the log, older entries are removed every PRUNE_INTERVAL versions.
+     */
+    static final int MAX_RETAINED_VERSIONS = 1000;
+    static final int PRUNE_INTERVAL = 100;
+
+    private static Log log = LogFactory.getLog(PermissionChangeLog.class);
+
+    private final int tenantId;
+
+    PermissionChangeLog(int tenantId) {
+        this.tenantId = tenantId;
+    }
+
+    /**
+     * Create the version row of the tenant if it does not exist yet, so that recording a change
+     * only has to increment it.
+     *
+     * @param dataSource data source of the permission tables
+     * @return false if the log tables are not available, in which case the log must not be used
+     */
+    boolean init(DataSource dataSource) {
+        Connection dbConnection = null;
+        try {
+            dbConnection = DatabaseUtil.getDBConnection(dataSource);
+            if (getVersion(dbConnection) >= 0) {
+                return true;
+            }
+            try {
+                DatabaseUtil.updateDatabase(dbConnection, DBConstants.ADD_PERMISSION_VERSION_SQL, tenantId, 0);
+                dbConnection.commit();
+            } catch (UserStoreException e) {
+                DatabaseUtil.rollBack(dbConnection);
+                // another node may have created the row at the same time
+                if (getVersion(dbConnection) < 0) {
+                    throw e;
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            log.warn("Permission change log of tenant " + tenantId + " is not available, the permission tree " +
+                    "will be loaded as a whole on every change. Error message is " + e.getMessage());
+            if (log.isDebugEnabled()) {
+                log.debug("Error creating the permission version of tenant " + tenantId, e);
+            }
+            return false;
+        } finally {
+            DatabaseUtil.closeAllConnections(dbConnection);
+        }
+    }
+
+    /**
+     * Record a change in the permissions of a role.
+     *
+     * @param dbConnection connection of the transaction which changes the permission
+     * @param roleName     name of the role without the domain
+     * @param domain       domain of the role
+     * @param resourceId   resource id, or null for all the resources
+     * @param action       action, or null for all the actions
+     * @param operation    UserCoreConstants.ALLOW, UserCoreConstants.DENY or CLEAR
+     * @throws UserStoreException if the change can not be recorded
+     */
+    void addRoleChange(Connection dbConnection, String roleName, String domain, String resourceId,
+                       String action, short operation) throws UserStoreException {
+        DatabaseUtil.updateDatabase(dbConnection, DBConstants.ADD_PERMISSION_CHANGE_SQL, tenantId,
+                nextVersion(dbConnection), ROLE, roleName, domain, resourceId, action, operation);
+    }
+
+    /**
+     * Record a change of several permissions of a role, in a single batch.
+     *
+     * @param dbConnection connection of the transaction which changes the permissions
+     * @param roleName     name of the role without the domain
+     * @param domain       domain of the role
+     * @param permissions  permissions which are changed
+     * @param operation    UserCoreConstants.ALLOW, UserCoreConstants.DENY or CLEAR
+     * @throws UserStoreException if the changes can not be recorded
+     */
+    void addRoleChanges(Connection dbConnection, String roleName, String domain, List<Permission> permissions,
+                        short operation) throws UserStoreException {
+        if (permissions.isEmpty()) {
+            return;
+        }
+        int version = nextVersion(dbConnection);
+        List<Object[]> rows = new ArrayList<Object[]>(permissions.size());
+        for (Permission permission : permissions) {
+            rows.add(new Object[]{tenantId, version, ROLE, roleName, domain, permission.getResourceId(),
+                    permission.getAction(), operation});
+        }
+        DatabaseUtil.updateDatabaseInBatch(dbConnection, DBConstants.ADD_PERMISSION_CHANGE_SQL, rows);
+    }
+
+    /**
+     * Record a change in the permissions of a user.
+     *
+     * @param dbConnection connection of the transaction which changes the permission
+     * @param userName     name of the user
+     * @param resourceId   resource id, or null for all the resources
+     * @param action       action, or null for all the actions
+     * @param operation    UserCoreConstants.ALLOW, UserCoreConstants.DENY or CLEAR
+     * @throws UserStoreException if the change can not be recorded
+     */
+    void addUserChange(Connection dbConnection, String userName, String resourceId, String action,
+                       short operation) throws UserStoreException {
+        DatabaseUtil.updateDatabase(dbConnection, DBConstants.ADD_PERMISSION_CHANGE_SQL, tenantId,
+                nextVersion(dbConnection), USER, userName, null, resourceId, action, operation);
+    }
+
+    /**
+     * Record a change after which the whole permission tree has to be loaded again.
+     *
+     * @param dbConnection connection of the transaction which changes the permissions
+     * @throws UserStoreException if the change can not be recorded
+     */
+    void addReset(Connection dbConnection) throws UserStoreException {
+        DatabaseUtil.updateDatabase(dbConnection, DBConstants.DELETE_PERMISSION_CHANGES_SQL, tenantId);
+        DatabaseUtil.updateDatabase(dbConnection, DBConstants.ADD_PERMISSION_CHANGE_SQL, tenantId,
+                nextVersion(dbConnection), RESET, null, null, null, null, CLEAR);
+    }
+
+    /**
+     * Increment the version of the tenant in the given transaction. The version row stays locked
+     * until the transaction ends, hence concurrent changes of the tenant commit in version order.
+     * Every PRUNE_INTERVAL versions, the entries older than MAX_RETAINED_VERSIONS are removed.
+     *
+     * @param dbConnection connection of the transaction which changes the permissions
+     * @return the version of the permissions after the change
+     * @throws UserStoreException if the version can not be incremented
+     */
+    private int nextVersion(Connection dbConnection) throws UserStoreException {
+        PreparedStatement prepStmt = null;
+        try {
+            prepStmt = dbConnection.prepareStatement(DBConstants.INCREMENT_PERMISSION_VERSION_SQL);
+            prepStmt.setInt(1, tenantId);
+            if (prepStmt.executeUpdate() == 0) {
+                // the row is created on start up, this happens only if it was removed afterwards
+                DatabaseUtil.updateDatabase(dbConnection, DBConstants.ADD_PERMISSION_VERSION_SQL, tenantId, 1);
+                return 1;
+            }
+        } catch (SQLException e) {
+            throw new UserStoreException("Error updating the permission version of tenant " + tenantId, e);
+        } finally {
+            DatabaseUtil.closeAllConnections(null, prepStmt);
+        }
+        int version = getVersion(dbConnection);
+        if (version % PRUNE_INTERVAL == 0 && version > MAX_RETAINED_VERSIONS) {
+            DatabaseUtil.updateDatabase(dbConnection, DBConstants.DELETE_OLD_PERMISSION_CHANGES_SQL, tenantId,
+                    version - MAX_RETAINED_VERSIONS);
+        }
+        return version;
+    }
+
+    /**
+     * @param dbConnection database connection
+     * @return the latest version of the permissions of the tenant
+     * @throws UserStoreException if the version can not be read
+     */
+    int getVersion(Connection dbConnection) throws UserStoreException {
+        return DatabaseUtil.getIntegerValueFromDatabase(dbConnection,
+                DBConstants.GET_PERMISSION_VERSION_SQL, tenantId);
+    }
+
+    /**
+     * Apply the changes made after the given version to the given tree.
+     *
+     * @param dbConnection database connection
+     * @param tree         permission tree which is at the given version
+     * @param version      version of the tree
+     * @return the version of the tree after applying the changes, or -1 if the tree has to be
+     * loaded again from the permission tables, i.e. after a reset or if the entries following the
+     * given version have been pruned
+     * @throws SQLException       if the changes can not be read
+     * @throws UserStoreException if the changes can not be applied
+     */
+    int replay(Connection dbConnection, PermissionTree tree, int version)
+            throws SQLException, UserStoreException {
+        int latestVersion = getVersion(dbConnection);
+        if (latestVersion == version) {
+            return version;
+        } else if (latestVersion < version) {
+            // the version row has been removed
+            return -1;
+        }
+
+        PreparedStatement prepStmt = null;
+        ResultSet rs = null;
+        try {
+            prepStmt = dbConnection.prepareStatement(DBConstants.GET_PERMISSION_CHANGES_SQL);
+            prepStmt.setInt(1, tenantId);
+            prepStmt.setInt(2, version);
+            rs = prepStmt.executeQuery();
+            int count = 0;
+            while (rs.next()) {
+                int changeVersion = rs.getInt(1);
+                if (changeVersion > version + 1) {
+                    // the entries of the versions in between have been pruned
+                    return -1;
+                }
+                String entityType = rs.getString(2);
+                String resourceId = rs.getString(5);
+                String action = rs.getString(6);
+                short operation = rs.getShort(7);
+                if (ROLE.equals(entityType)) {
+                    String roleName = UserCoreUtil.addDomainToName(rs.getString(3), rs.getString(4));
+                    applyRoleChange(tree, roleName, resourceId, action, operation);
+                } else if (USER.equals(entityType)) {
+                    applyUserChange(tree, rs.getString(3), resourceId, action, operation);
+                } else {
+                    return -1;
+                }
+                version = changeVersion;
+                count++;
+            }
+            if (version < latestVersion) {
+                // the entries up to the latest version have been pruned
+                return -1;
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Applied " + count + " permission changes of tenant " + tenantId +
+                        ", permission tree is at version " + version);
+            }
+            return version;
+        } finally {
+            DatabaseUtil.closeAllConnections(null, rs, prepStmt);
+        }
+    }
+
+    private void applyRoleChange(PermissionTree tree, String roleName, String resourceId, String action,
+                                 short operation) throws UserStoreException {
+        if (operation == UserCoreConstants.ALLOW) {
+            tree.authorizeRoleInTree(roleName, resourceId, action, false);
+        } else if (operation == UserCoreConstants.DENY) {
+            tree.denyRoleInTree(roleName, resourceId, action, false);
+        } else if (resourceId != null) {
+            tree.clearRoleAuthorization(roleName, resourceId, action, false);
+        } else if (action != null) {
+            tree.clearRoleAuthorization(roleName, action, false);
+        } else {
+            tree.clearRoleAuthorization(roleName, false);
+        }
+    }
+
+    private void applyUserChange(PermissionTree tree, String userName, String resourceId, String action,
+                                 short operation) throws UserStoreException {
+        if (operation == UserCoreConstants.ALLOW) {
+            tree.authorizeUserInTree(userName, resourceId, action, false);
+        } else if (operation == UserCoreConstants.DENY) {
+            tree.denyUserInTree(userName, resourceId, action, false);
+        } else if (resourceId != null) {
+            tree.clearUserAuthorization(userName, resourceId, action, false);
+        } else {
+            tree.clearUserAuthorization(userName, false);
+        }
+    }
+}
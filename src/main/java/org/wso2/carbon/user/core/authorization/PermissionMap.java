@@ -0,0 +1,202 @@
+/*
+*  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.user.core.authorization;
+
+import java.util.Arrays;
+
+/**
+ * Compact map from role or user ids given by a {@link SymbolTable} to the set of permissions
+ * granted (or denied) to them on a tree node. The ids are kept sorted in an int array and the
+ * permissions are kept as bit masks of the {@link TreeNode.Permission} ordinals in a parallel
+ * long array, so a lookup is a binary search over the ids followed by a single array read.
+ */
+final class PermissionMap {
+
+    private static final int[] EMPTY_IDS = new int[0];
+    private static final long[] EMPTY_MASKS = new long[0];
+
+    static {
+        if (TreeNode.Permission.values().length > Long.SIZE) {
+            throw new IllegalStateException("Permissions do not fit in to a long bit mask");
+        }
+    }
+
+    private int[] ids = EMPTY_IDS;
+    private long[] masks = EMPTY_MASKS;
+    private int size;
+
+    /**
+     * Get the permission mask of the given id.
+     *
+     * @param id role or user id
+     * @return the permission mask, 0 if there is no entry for the id
+     */
+    long get(int id) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        return index < 0 ? 0L : masks[index];
+    }
+
+    /**
+     * Whether the given permission is set for the given id.
+     *
+     * @param id         role or user id
+     * @param permission ordinal of the permission
+     * @return true if set
+     */
+    boolean get(int id, int permission) {
+        return (get(id) & (1L << permission)) != 0;
+    }
+
+    /**
+     * Whether there is an entry for the given id, even if no permission is set in it.
+     *
+     * @param id role or user id
+     * @return true if there is an entry
+     */
+    boolean contains(int id) {
+        return Arrays.binarySearch(ids, 0, size, id) >= 0;
+    }
+
+    /**
+     * Set the given permission for the given id, adding an entry if needed.
+     *
+     * @param id         role or user id
+     * @param permission ordinal of the permission
+     */
+    void set(int id, int permission) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index < 0) {
+            index = insert(-(index + 1), id);
+        }
+        masks[index] |= 1L << permission;
+    }
+
+    /**
+     * Clear the given permission of the given id, if there is an entry for the id.
+     *
+     * @param id         role or user id
+     * @param permission ordinal of the permission
+     */
+    void clear(int id, int permission) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index >= 0) {
+            masks[index] &= ~(1L << permission);
+        }
+    }
+
+    /**
+     * Put the given permission mask for the given id, replacing any existing mask.
+     *
+     * @param id   role or user id
+     * @param mask permission mask
+     */
+    void put(int id, long mask) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index < 0) {
+            index = insert(-(index + 1), id);
+        }
+        masks[index] = mask;
+    }
+
+    /**
+     * Remove the entry of the given id.
+     *
+     * @param id role or user id
+     * @return true if there was an entry for the id
+     */
+    boolean remove(int id) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index < 0) {
+            return false;
+        }
+        int moved = size - index - 1;
+        if (moved > 0) {
+            System.arraycopy(ids, index + 1, ids, index, moved);
+            System.arraycopy(masks, index + 1, masks, index, moved);
+        }
+        size--;
+        return true;
+    }
+
+    void clear() {
+        ids = EMPTY_IDS;
+        masks = EMPTY_MASKS;
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param index index of an entry, between 0 and size() - 1
+     * @return the id of the entry
+     */
+    int idAt(int index) {
+        return ids[index];
+    }
+
+    /**
+     * @param index index of an entry, between 0 and size() - 1
+     * @return the permission mask of the entry
+     */
+    long maskAt(int index) {
+        return masks[index];
+    }
+
+    PermissionMap copy() {
+        PermissionMap copy = new PermissionMap();
+        if (size > 0) {
+            copy.ids = Arrays.copyOf(ids, size);
+            copy.masks = Arrays.copyOf(masks, size);
+            copy.size = size;
+        }
+        return copy;
+    }
+
+    private int insert(int index, int id) {
+        if (size == ids.length) {
+            int capacity = size < 2 ? 2 : size + (size >> 1);
+            ids = Arrays.copyOf(ids, capacity);
+            masks = Arrays.copyOf(masks, capacity);
+        }
+        int moved = size - index;
+        if (moved > 0) {
+            System.arraycopy(ids, index, ids, index + 1, moved);
+            System.arraycopy(masks, index, masks, index + 1, moved);
+        }
+        ids[index] = id;
+        masks[index] = 0L;
+        size++;
+        return index;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        for (int i = 0; i < size; i++) {
+            hash = 31 * hash + ids[i];
+            hash = 31 * hash + (int) (masks[i] ^ (masks[i] >>> 32));
+        }
+        return hash;
+    }
+}
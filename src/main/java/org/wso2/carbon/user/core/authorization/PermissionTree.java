@@ -21,6 +21,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.CarbonConstants;
 import org.wso2.carbon.registry.api.GhostResource;
+import org.wso2.carbon.user.core.Permission;
 import org.wso2.carbon.user.core.UserCoreConstants;
 import org.wso2.carbon.user.core.UserStoreException;
 import org.wso2.carbon.user.core.util.DatabaseUtil;
@@ -34,9 +35,12 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.BitSet;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -45,16 +49,50 @@ public class PermissionTree {
 
     private static final String PERMISSION_CACHE_MANAGER = "PERMISSION_CACHE_MANAGER";
     private static final String PERMISSION_CACHE = "PERMISSION_CACHE";
+    private static final int MAX_UI_RESOURCE_CACHE_SIZE = 1000;
     public static final String ILLEGAL_STATE_EXCEPTION_MESSAGE = "The cache status is not STARTED";
     private static Log log = LogFactory.getLog(PermissionTree.class);
     private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
     private final Lock read = readWriteLock.readLock();
     private final Lock write = readWriteLock.writeLock();
-    protected TreeNode root;
+    private static final ThreadLocal<PathSegment> pathSegment = new ThreadLocal<PathSegment>() {
+        @Override
+        protected PathSegment initialValue() {
+            return new PathSegment();
+        }
+    };
+    protected volatile TreeNode root;
     protected int tenantId;
     protected String cacheIdentifier;
     protected volatile int hashValueOfRootNode;
     protected DataSource dataSource;
+    /**
+     * Ids of the role and user names used in the tree. Shared by all versions of the tree.
+     */
+    private final SymbolTable symbols;
+    /**
+     * When enabled, published tree nodes are never modified. Writers build a path copied version
+     * of the tree and swap the root reference, so readers can walk the tree without locking.
+     */
+    private final boolean copyOnWrite;
+    /**
+     * Log of the permission changes to update the tree from, null if the tree is always loaded
+     * as a whole.
+     */
+    private final PermissionChangeLog changeLog;
+    /**
+     * Version of the permission change log the tree is at, -1 if unknown.
+     */
+    private volatile int changeLogVersion = -1;
+    /**
+     * Incremented whenever the tree is changed, so that results computed from the tree can be
+     * reused until the next change.
+     */
+    private volatile long treeVersion;
+    /**
+     * Allowed UI resources computed for sets of roles at a version of the tree.
+     */
+    private volatile UIResourceCache uiResourceCache = new UIResourceCache(-1);
 
     /**
      * On the server startup, all permissions are populated from the DB and the
@@ -64,18 +102,49 @@ public class PermissionTree {
      */
 
     public PermissionTree(String cacheIdentifier, int tenantId, DataSource dataSource) {
-        root = new TreeNode("/");
+        this(cacheIdentifier, tenantId, dataSource, false);
+    }
+
+    /**
+     * @param cacheIdentifier identifier of the permission tree cache
+     * @param tenantId        tenant id
+     * @param dataSource      data source to load the permissions from
+     * @param copyOnWrite     whether to read the tree without locks and apply updates on copies
+     */
+    public PermissionTree(String cacheIdentifier, int tenantId, DataSource dataSource,
+                          boolean copyOnWrite) {
+        this(cacheIdentifier, tenantId, dataSource, copyOnWrite, null);
+    }
+
+    /**
+     * @param cacheIdentifier identifier of the permission tree cache
+     * @param tenantId        tenant id
+     * @param dataSource      data source to load the permissions from
+     * @param copyOnWrite     whether to read the tree without locks and apply updates on copies
+     * @param changeLog       log of the permission changes to update the tree from, or null
+     */
+    PermissionTree(String cacheIdentifier, int tenantId, DataSource dataSource, boolean copyOnWrite,
+                   PermissionChangeLog changeLog) {
+        this.symbols = new SymbolTable();
+        root = new TreeNode("/", symbols);
         this.cacheIdentifier = cacheIdentifier;
         this.tenantId = tenantId;
         this.dataSource = dataSource;
+        this.copyOnWrite = copyOnWrite;
+        this.changeLog = changeLog;
     }
 
     /**
      * This private constructor will be used by the database loading code to
      * create a new copy of the permission node.
+     *
+     * @param symbols the symbol table of the tree which will use the loaded nodes
      */
-    private PermissionTree() {
-        root = new TreeNode("/");
+    private PermissionTree(SymbolTable symbols) {
+        this.symbols = symbols;
+        root = new TreeNode("/", symbols);
+        copyOnWrite = false;
+        changeLog = null;
     }
 
     /**
@@ -92,7 +161,8 @@ public class PermissionTree {
     void authorizeUserInTree(String userName, String resourceId, String action, boolean updateCache) throws UserStoreException {
         write.lock();
         try {
-            SearchResult sr = getNode(root, PermissionTreeUtil.toComponenets(resourceId));
+            TreeNode workingRoot = getWorkingRoot();
+            SearchResult sr = getNodeForUpdate(workingRoot, PermissionTreeUtil.toComponenets(resourceId));
             if (sr.getUnprocessedPaths() != null) {
                 List<String> paths = sr.getUnprocessedPaths();
                 TreeNode tn = sr.getLastNode().create(paths);
@@ -102,6 +172,7 @@ public class PermissionTree {
                 sr.getLastNode().authorizeUser(userName,
                         PermissionTreeUtil.actionToPermission(action));
             }
+            publish(workingRoot);
             if (updateCache) {
                 invalidateCache(root);
             }
@@ -116,7 +187,8 @@ public class PermissionTree {
     void denyUserInTree(String userName, String resourceId, String action, boolean updateCache) throws UserStoreException {
         write.lock();
         try {
-            SearchResult sr = getNode(root, PermissionTreeUtil.toComponenets(resourceId));
+            TreeNode workingRoot = getWorkingRoot();
+            SearchResult sr = getNodeForUpdate(workingRoot, PermissionTreeUtil.toComponenets(resourceId));
             if (sr.getUnprocessedPaths() != null) {
                 List<String> paths = sr.getUnprocessedPaths();
                 TreeNode tn = sr.getLastNode().create(paths);
@@ -124,6 +196,7 @@ public class PermissionTree {
             } else {
                 sr.getLastNode().denyUser(userName, PermissionTreeUtil.actionToPermission(action));
             }
+            publish(workingRoot);
             if (updateCache) {
                 invalidateCache(root);
             }
@@ -138,7 +211,8 @@ public class PermissionTree {
     void authorizeRoleInTree(String roleName, String resourceId, String action, boolean updateCache) throws UserStoreException {
         write.lock();
         try {
-            SearchResult sr = getNode(root, PermissionTreeUtil.toComponenets(resourceId));
+            TreeNode workingRoot = getWorkingRoot();
+            SearchResult sr = getNodeForUpdate(workingRoot, PermissionTreeUtil.toComponenets(resourceId));
             if (sr.getUnprocessedPaths() != null) {
                 List<String> paths = sr.getUnprocessedPaths();
                 TreeNode tn = sr.getLastNode().create(paths);
@@ -148,6 +222,7 @@ public class PermissionTree {
                 sr.getLastNode().authorizeRole(roleName,
                         PermissionTreeUtil.actionToPermission(action));
             }
+            publish(workingRoot);
             if (updateCache) {
                 invalidateCache(root);
             }
@@ -162,7 +237,8 @@ public class PermissionTree {
     void denyRoleInTree(String roleName, String resourceId, String action, boolean updateCache) throws UserStoreException {
         write.lock();
         try {
-            SearchResult sr = getNode(root, PermissionTreeUtil.toComponenets(resourceId));
+            TreeNode workingRoot = getWorkingRoot();
+            SearchResult sr = getNodeForUpdate(workingRoot, PermissionTreeUtil.toComponenets(resourceId));
             if (sr.getUnprocessedPaths() != null) {
                 List<String> paths = sr.getUnprocessedPaths();
                 TreeNode tn = sr.getLastNode().create(paths);
@@ -171,6 +247,7 @@ public class PermissionTree {
             } else {
                 sr.getLastNode().denyRole(roleName, PermissionTreeUtil.actionToPermission(action));
             }
+            publish(workingRoot);
             if (updateCache) {
                 invalidateCache(root);
             }
@@ -196,7 +273,7 @@ public class PermissionTree {
      */
     SearchResult getRolePermission(String role, TreeNode.Permission permission, SearchResult sr,
                                    TreeNode node, List<String> pathParts) {
-        read.lock();
+        lockRead();
         try {
             if (node == null) {
                 node = root;
@@ -232,7 +309,7 @@ public class PermissionTree {
                 return sr;
             }
         } finally {
-            read.unlock();
+            unlockRead();
         }
     }
 
@@ -250,7 +327,7 @@ public class PermissionTree {
      */
     SearchResult getUserPermission(String user, TreeNode.Permission permission, SearchResult sr,
                                    TreeNode node, List<String> pathParts) {
-        read.lock();
+        lockRead();
         try {
             if (node == null) {
                 node = root;
@@ -285,10 +362,169 @@ public class PermissionTree {
                 return sr;
             }
         } finally {
-            read.unlock();
+            unlockRead();
+        }
+    }
+
+    /**
+     * Resolves the permission of the given 'role' on the given resource by walking the tree
+     * iteratively. Unlike {@link #getRolePermission}, the resource path is not split in to
+     * components and no search result is created.
+     *
+     * @param role       the role for which the permission is resolved
+     * @param permission the permission checked
+     * @param resourceId the resource path
+     * @return TreeNode.PERMISSION_ALLOWED, TreeNode.PERMISSION_DENIED or
+     * TreeNode.PERMISSION_NOT_DEFINED if there is no explicit permission on the path
+     */
+    int resolveRolePermission(String role, TreeNode.Permission permission, String resourceId) {
+        return resolvePermission(symbols.getId(role), symbols.getId(TreeNode.modify(role)), true,
+                permission.ordinal(), resourceId);
+    }
+
+    /**
+     * Resolves the permission of the given 'user' on the given resource by walking the tree
+     * iteratively. Unlike {@link #getUserPermission}, the resource path is not split in to
+     * components and no search result is created.
+     *
+     * @param user       the user for which the permission is resolved
+     * @param permission the permission checked
+     * @param resourceId the resource path
+     * @return TreeNode.PERMISSION_ALLOWED, TreeNode.PERMISSION_DENIED or
+     * TreeNode.PERMISSION_NOT_DEFINED if there is no explicit permission on the path
+     */
+    int resolveUserPermission(String user, TreeNode.Permission permission, String resourceId) {
+        return resolvePermission(symbols.getId(user), SymbolTable.NOT_FOUND, false, permission.ordinal(),
+                resourceId);
+    }
+
+    private int resolvePermission(int id, int allowKey, boolean isRole, int permission,
+                                  String resourceId) {
+        if (id == SymbolTable.NOT_FOUND && allowKey == SymbolTable.NOT_FOUND) {
+            // no permission has ever been given to this name
+            return TreeNode.PERMISSION_NOT_DEFINED;
+        }
+        PathSegment segment = pathSegment.get();
+        lockRead();
+        try {
+            TreeNode node = root;
+            int result = getAuthorization(node, id, allowKey, isRole, permission);
+            int length = resourceId.length();
+            int start = (length > 0 && resourceId.charAt(0) == '/') ? 1 : 0;
+            while (start < length) {
+                int end = resourceId.indexOf('/', start);
+                if (end < 0) {
+                    end = length;
+                }
+                if (end == start) {
+                    // empty path segment
+                    break;
+                }
+                node = node.getChild(segment.set(resourceId, start, end));
+                if (node == null) {
+                    break;
+                }
+                int nodeResult = getAuthorization(node, id, allowKey, isRole, permission);
+                if (nodeResult != TreeNode.PERMISSION_NOT_DEFINED) {
+                    result = nodeResult;
+                }
+                start = end + 1;
+            }
+            return result;
+        } finally {
+            unlockRead();
+        }
+    }
+
+    /**
+     * Checks whether any of the given roles is allowed the permission on the given resource,
+     * walking the tree once for all of the roles. Each role is resolved the same way as in
+     * {@link #resolveRolePermission}, i.e. the deepest explicit permission on the path wins.
+     *
+     * @param roles      the roles to check
+     * @param permission the permission checked
+     * @param resourceId the resource path
+     * @return true if at least one of the roles is allowed
+     */
+    boolean isAnyRoleAuthorized(String[] roles, TreeNode.Permission permission, String resourceId) {
+        int[] roleIds = new int[roles.length];
+        int[] allowKeys = new int[roles.length];
+        int count = 0;
+        for (String role : roles) {
+            if (role == null) {
+                continue;
+            }
+            int roleId = symbols.getId(role);
+            int allowKey = symbols.getId(TreeNode.modify(role));
+            if (roleId != SymbolTable.NOT_FOUND || allowKey != SymbolTable.NOT_FOUND) {
+                roleIds[count] = roleId;
+                allowKeys[count] = allowKey;
+                count++;
+            }
+        }
+        if (count == 0) {
+            // none of the roles has ever been given a permission
+            return false;
+        }
+
+        int ordinal = permission.ordinal();
+        int[] results = new int[count];
+        Arrays.fill(results, TreeNode.PERMISSION_NOT_DEFINED);
+        PathSegment segment = pathSegment.get();
+        lockRead();
+        try {
+            TreeNode node = root;
+            getRoleAuthorizations(node, roleIds, allowKeys, count, ordinal, results);
+            int length = resourceId.length();
+            int start = (length > 0 && resourceId.charAt(0) == '/') ? 1 : 0;
+            while (start < length) {
+                int end = resourceId.indexOf('/', start);
+                if (end < 0) {
+                    end = length;
+                }
+                if (end == start) {
+                    // empty path segment
+                    break;
+                }
+                node = node.getChild(segment.set(resourceId, start, end));
+                if (node == null) {
+                    break;
+                }
+                getRoleAuthorizations(node, roleIds, allowKeys, count, ordinal, results);
+                start = end + 1;
+            }
+        } finally {
+            unlockRead();
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (results[i] == TreeNode.PERMISSION_ALLOWED) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void getRoleAuthorizations(TreeNode node, int[] roleIds, int[] allowKeys, int count,
+                                       int permission, int[] results) {
+        if (node.getRoleAllowPermissions().isEmpty() && node.getRoleDenyPermissions().isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            int nodeResult = node.getRoleAuthorization(roleIds[i], allowKeys[i], permission);
+            if (nodeResult != TreeNode.PERMISSION_NOT_DEFINED) {
+                results[i] = nodeResult;
+            }
         }
     }
 
+    private int getAuthorization(TreeNode node, int id, int allowKey, boolean isRole, int permission) {
+        if (isRole) {
+            return node.getRoleAuthorization(id, allowKey, permission);
+        }
+        return node.getUserAuthorization(id, permission);
+    }
+
     /**
      * Find the allowed Users for a given resource by traversing the whole
      * pemission tree.
@@ -302,7 +538,7 @@ public class PermissionTree {
 
     SearchResult getAllowedUsersForResource(SearchResult sr, TreeNode node,
                                             TreeNode.Permission permission, List<String> pathParts) {
-        read.lock();
+        lockRead();
         try {
             if (node == null) {
                 node = root;
@@ -314,12 +550,13 @@ public class PermissionTree {
             /**
              * Add allowed users of the current node to our list in the sr
              */
-            Map<String, BitSet> allowUsers = node.getUserAllowPermissions();
-            for (Map.Entry<String, BitSet> entry : allowUsers.entrySet()) {
-                BitSet bs = entry.getValue();
-                if (bs.get(permission.ordinal())) {
-                    if (!sr.getAllowedEntities().contains(entry.getKey())) {
-                        sr.getAllowedEntities().add(entry.getKey());
+            PermissionMap allowUsers = node.getUserAllowPermissions();
+            for (int i = 0; i < allowUsers.size(); i++) {
+                String name = symbols.getName(allowUsers.idAt(i));
+                boolean isSet = (allowUsers.maskAt(i) & (1L << permission.ordinal())) != 0;
+                if (isSet) {
+                    if (!sr.getAllowedEntities().contains(name)) {
+                        sr.getAllowedEntities().add(name);
                     }
                 }
             }
@@ -327,12 +564,12 @@ public class PermissionTree {
             /**
              * Remove denied users of the current node from our list in the sr
              */
-            Map<String, BitSet> denyUsers = node.getUserDenyPermissions();
-            for (Map.Entry<String, BitSet> entry : denyUsers.entrySet()) {
-                BitSet bs = entry.getValue();
-                if (bs.get(permission.ordinal())
-                        && sr.getAllowedEntities().contains(entry.getKey())) {
-                    sr.getAllowedEntities().remove(entry.getKey());
+            PermissionMap denyUsers = node.getUserDenyPermissions();
+            for (int i = 0; i < denyUsers.size(); i++) {
+                String name = symbols.getName(denyUsers.idAt(i));
+                boolean isSet = (denyUsers.maskAt(i) & (1L << permission.ordinal())) != 0;
+                if (isSet && sr.getAllowedEntities().contains(name)) {
+                    sr.getAllowedEntities().remove(name);
                 }
             }
 
@@ -353,7 +590,7 @@ public class PermissionTree {
                 return sr;
             }
         } finally {
-            read.unlock();
+            unlockRead();
         }
     }
 
@@ -370,7 +607,7 @@ public class PermissionTree {
 
     SearchResult getAllowedRolesForResource(SearchResult sr, TreeNode node,
                                             TreeNode.Permission permission, List<String> pathParts) {
-        read.lock();
+        lockRead();
         try {
             if (node == null) {
                 node = root;
@@ -383,12 +620,13 @@ public class PermissionTree {
             /**
              * Add allowed roles of the current node to our list in the sr
              */
-            Map<String, BitSet> allowRoles = node.getRoleAllowPermissions();
-            for (Map.Entry<String, BitSet> entry : allowRoles.entrySet()) {
-                BitSet bs = entry.getValue();
-                if (bs.get(permission.ordinal())) {
-                    if (!sr.getAllowedEntities().contains(entry.getKey())) {
-                        sr.getAllowedEntities().add(entry.getKey());
+            PermissionMap allowRoles = node.getRoleAllowPermissions();
+            for (int i = 0; i < allowRoles.size(); i++) {
+                String name = symbols.getName(allowRoles.idAt(i));
+                boolean isSet = (allowRoles.maskAt(i) & (1L << permission.ordinal())) != 0;
+                if (isSet) {
+                    if (!sr.getAllowedEntities().contains(name)) {
+                        sr.getAllowedEntities().add(name);
                     }
                 }
             }
@@ -396,12 +634,12 @@ public class PermissionTree {
             /**
              * Remove denied roles of the current node from our list in the sr
              */
-            Map<String, BitSet> denyRoles = node.getRoleDenyPermissions();
-            for (Map.Entry<String, BitSet> entry : denyRoles.entrySet()) {
-                BitSet bs = entry.getValue();
-                if (bs.get(permission.ordinal())
-                        && sr.getAllowedEntities().contains(entry.getKey())) {
-                    sr.getAllowedEntities().remove(entry.getKey());
+            PermissionMap denyRoles = node.getRoleDenyPermissions();
+            for (int i = 0; i < denyRoles.size(); i++) {
+                String name = symbols.getName(denyRoles.idAt(i));
+                boolean isSet = (denyRoles.maskAt(i) & (1L << permission.ordinal())) != 0;
+                if (isSet && sr.getAllowedEntities().contains(name)) {
+                    sr.getAllowedEntities().remove(name);
                 }
             }
 
@@ -422,7 +660,7 @@ public class PermissionTree {
                 return sr;
             }
         } finally {
-            read.unlock();
+            unlockRead();
         }
     }
 
@@ -439,7 +677,7 @@ public class PermissionTree {
     SearchResult getDeniedRolesForResource(SearchResult sr, TreeNode node,
                                            TreeNode.Permission permission, List<String> pathParts) {
 
-        read.lock();
+        lockRead();
         try {
             if (sr == null) {
                 sr = new SearchResult();
@@ -452,12 +690,13 @@ public class PermissionTree {
             /**
              * Add denied roles of the current node to our list in the sr
              */
-            Map<String, BitSet> denyRoles = node.getRoleDenyPermissions();
-            for (Map.Entry<String, BitSet> entry : denyRoles.entrySet()) {
-                BitSet bs = entry.getValue();
-                if (bs.get(permission.ordinal())) {
-                    if (!sr.getDeniedEntities().contains(entry.getKey())) {
-                        sr.getDeniedEntities().add(entry.getKey());
+            PermissionMap denyRoles = node.getRoleDenyPermissions();
+            for (int i = 0; i < denyRoles.size(); i++) {
+                String name = symbols.getName(denyRoles.idAt(i));
+                boolean isSet = (denyRoles.maskAt(i) & (1L << permission.ordinal())) != 0;
+                if (isSet) {
+                    if (!sr.getDeniedEntities().contains(name)) {
+                        sr.getDeniedEntities().add(name);
                     }
                 }
             }
@@ -465,11 +704,12 @@ public class PermissionTree {
             /**
              * Remove allowed roles of the current node from our list in the sr
              */
-            Map<String, BitSet> allowRoles = node.getRoleAllowPermissions();
-            for (Map.Entry<String, BitSet> entry : allowRoles.entrySet()) {
-                BitSet bs = entry.getValue();
-                if (bs.get(permission.ordinal()) && sr.getDeniedEntities().contains(entry.getKey())) {
-                    sr.getDeniedEntities().remove(entry.getKey());
+            PermissionMap allowRoles = node.getRoleAllowPermissions();
+            for (int i = 0; i < allowRoles.size(); i++) {
+                String name = symbols.getName(allowRoles.idAt(i));
+                boolean isSet = (allowRoles.maskAt(i) & (1L << permission.ordinal())) != 0;
+                if (isSet && sr.getDeniedEntities().contains(name)) {
+                    sr.getDeniedEntities().remove(name);
                 }
             }
 
@@ -490,7 +730,7 @@ public class PermissionTree {
                 return sr;
             }
         } finally {
-            read.unlock();
+            unlockRead();
         }
     }
 
@@ -506,7 +746,7 @@ public class PermissionTree {
      */
     SearchResult getDeniedUsersForResource(SearchResult sr, TreeNode node,
                                            TreeNode.Permission permission, List<String> pathParts) {
-        read.lock();
+        lockRead();
         try {
             if (sr == null) {
                 sr = new SearchResult();
@@ -519,12 +759,13 @@ public class PermissionTree {
             /**
              * Add denied users of the current node to our list in the sr
              */
-            Map<String, BitSet> denyUsers = node.getUserDenyPermissions();
-            for (Map.Entry<String, BitSet> entry : denyUsers.entrySet()) {
-                BitSet bs = entry.getValue();
-                if (bs.get(permission.ordinal())) {
-                    if (!sr.getDeniedEntities().contains(entry.getKey())) {
-                        sr.getDeniedEntities().add(entry.getKey());
+            PermissionMap denyUsers = node.getUserDenyPermissions();
+            for (int i = 0; i < denyUsers.size(); i++) {
+                String name = symbols.getName(denyUsers.idAt(i));
+                boolean isSet = (denyUsers.maskAt(i) & (1L << permission.ordinal())) != 0;
+                if (isSet) {
+                    if (!sr.getDeniedEntities().contains(name)) {
+                        sr.getDeniedEntities().add(name);
                     }
                 }
             }
@@ -532,11 +773,12 @@ public class PermissionTree {
             /**
              * Remove allowed users of the current node from our list in the sr
              */
-            Map<String, BitSet> allowUsers = node.getUserAllowPermissions();
-            for (Map.Entry<String, BitSet> entry : allowUsers.entrySet()) {
-                BitSet bs = entry.getValue();
-                if (bs.get(permission.ordinal()) && sr.getDeniedEntities().contains(entry.getKey())) {
-                    sr.getDeniedEntities().remove(entry.getKey());
+            PermissionMap allowUsers = node.getUserAllowPermissions();
+            for (int i = 0; i < allowUsers.size(); i++) {
+                String name = symbols.getName(allowUsers.idAt(i));
+                boolean isSet = (allowUsers.maskAt(i) & (1L << permission.ordinal())) != 0;
+                if (isSet && sr.getDeniedEntities().contains(name)) {
+                    sr.getDeniedEntities().remove(name);
                 }
             }
 
@@ -557,76 +799,204 @@ public class PermissionTree {
                 return sr;
             }
         } finally {
-            read.unlock();
+            unlockRead();
+        }
+    }
+
+    /**
+     * Allow or deny the given permissions to a role in a single update of the tree, hence the
+     * cached tree is invalidated only once.
+     *
+     * @param roleName    role name
+     * @param permissions permissions to allow or deny
+     * @param allow       true to allow the permissions, false to deny them
+     * @param updateCache whether to invalidate the cached tree
+     * @throws UserStoreException if the tree can not be updated
+     */
+    void authorizeRoleInTree(String roleName, List<Permission> permissions, boolean allow,
+                             boolean updateCache) throws UserStoreException {
+        write.lock();
+        try {
+            TreeNode workingRoot = getWorkingRoot();
+            for (Permission permission : permissions) {
+                SearchResult sr = getNodeForUpdate(workingRoot,
+                        PermissionTreeUtil.toComponenets(permission.getResourceId()));
+                TreeNode node = sr.getLastNode();
+                if (sr.getUnprocessedPaths() != null) {
+                    node = node.create(sr.getUnprocessedPaths());
+                }
+                if (allow) {
+                    node.authorizeRole(roleName, PermissionTreeUtil.actionToPermission(permission.getAction()));
+                } else {
+                    node.denyRole(roleName, PermissionTreeUtil.actionToPermission(permission.getAction()));
+                }
+            }
+            publish(workingRoot);
+            if (updateCache) {
+                invalidateCache(root);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new UserStoreException("Error while updating permissions of role: " + roleName +
+                    " in permission tree", e);
+        } finally {
+            write.unlock();
+        }
+    }
+
+    /**
+     * Remove the given permissions of a role in a single update of the tree, hence the cached
+     * tree is invalidated only once.
+     *
+     * @param roleName    role name
+     * @param permissions permissions to remove
+     * @param updateCache whether to invalidate the cached tree
+     * @throws UserStoreException if the tree can not be updated
+     */
+    void clearRoleAuthorization(String roleName, List<Permission> permissions, boolean updateCache)
+            throws UserStoreException {
+        int id = symbols.getId(roleName);
+        if (id == SymbolTable.NOT_FOUND) {
+            return;
+        }
+        write.lock();
+        try {
+            TreeNode workingRoot = getWorkingRoot();
+            for (Permission permission : permissions) {
+                SearchResult sr = getNodeForUpdate(workingRoot,
+                        PermissionTreeUtil.toComponenets(permission.getResourceId()));
+                if (sr.getUnprocessedPaths() == null) {
+                    int ordinal = PermissionTreeUtil.actionToPermission(permission.getAction()).ordinal();
+                    sr.getLastNode().getRoleAllowPermissions().clear(id, ordinal);
+                    sr.getLastNode().getRoleDenyPermissions().clear(id, ordinal);
+                }
+            }
+            publish(workingRoot);
+            if (updateCache) {
+                invalidateCache(root);
+            }
+        } finally {
+            write.unlock();
         }
     }
 
     void clearRoleAuthorization(String roleName, String action) throws UserStoreException {
+        clearRoleAuthorization(roleName, action, true);
+    }
+
+    void clearRoleAuthorization(String roleName, String action, boolean updateCache) throws UserStoreException {
         TreeNode.Permission permission = PermissionTreeUtil.actionToPermission(action);
-        clearRoleAuthorization(roleName, root, permission);
-        invalidateCache(root);
+        write.lock();
+        try {
+            TreeNode workingRoot = getWorkingTree();
+            clearRoleAuthorization(roleName, workingRoot, permission);
+            publish(workingRoot);
+        } finally {
+            write.unlock();
+        }
+        if (updateCache) {
+            invalidateCache(root);
+        }
     }
 
     void updateRoleNameInCache(String roleName, String newRoleName) throws UserStoreException {
-        updateRoleNameInCache(roleName, newRoleName, root);
+        write.lock();
+        try {
+            TreeNode workingRoot = getWorkingTree();
+            updateRoleNameInCache(roleName, newRoleName, workingRoot);
+            publish(workingRoot);
+        } finally {
+            write.unlock();
+        }
         invalidateCache(root);
     }
 
     void clearRoleAuthorization(String roleName) throws UserStoreException {
-        clearRoleAuthorization(roleName, root);
-        invalidateCache(root);
+        clearRoleAuthorization(roleName, true);
+    }
+
+    void clearRoleAuthorization(String roleName, boolean updateCache) throws UserStoreException {
+        write.lock();
+        try {
+            TreeNode workingRoot = getWorkingTree();
+            clearRoleAuthorization(roleName, workingRoot);
+            publish(workingRoot);
+        } finally {
+            write.unlock();
+        }
+        if (updateCache) {
+            invalidateCache(root);
+        }
     }
 
     void clearRoleAuthorization(String roleName, String resourceId, String action) throws UserStoreException {
-        SearchResult sr = getNode(root, PermissionTreeUtil.toComponenets(resourceId));
+        clearRoleAuthorization(roleName, resourceId, action, true);
+    }
+
+    void clearRoleAuthorization(String roleName, String resourceId, String action,
+                                boolean updateCache) throws UserStoreException {
         write.lock();
         try {
+            TreeNode workingRoot = getWorkingRoot();
+            SearchResult sr = getNodeForUpdate(workingRoot, PermissionTreeUtil.toComponenets(resourceId));
             if (sr.getUnprocessedPaths() == null) {
                 TreeNode.Permission permission = PermissionTreeUtil.actionToPermission(action);
 
-                Map<String, BitSet> allowRoles = sr.getLastNode().getRoleAllowPermissions();
-                BitSet bs = allowRoles.get(roleName);
-                if (bs != null) {
-                    bs.clear(permission.ordinal());
-                }
-
-                Map<String, BitSet> denyRoles = sr.getLastNode().getRoleDenyPermissions();
-                bs = denyRoles.get(roleName);
-                if (bs != null) {
-                    bs.clear(permission.ordinal());
+                int id = symbols.getId(roleName);
+                if (id != SymbolTable.NOT_FOUND) {
+                    sr.getLastNode().getRoleAllowPermissions().clear(id, permission.ordinal());
+                    sr.getLastNode().getRoleDenyPermissions().clear(id, permission.ordinal());
                 }
+                publish(workingRoot);
+            }
+            if (updateCache) {
+                invalidateCache(root);
             }
-            invalidateCache(root);
         } finally {
             write.unlock();
         }
     }
 
     void clearUserAuthorization(String userName) throws UserStoreException {
-        clearUserAuthorization(userName, root);
-        invalidateCache(root);
+        clearUserAuthorization(userName, true);
+    }
+
+    void clearUserAuthorization(String userName, boolean updateCache) throws UserStoreException {
+        write.lock();
+        try {
+            TreeNode workingRoot = getWorkingTree();
+            clearUserAuthorization(userName, workingRoot);
+            publish(workingRoot);
+        } finally {
+            write.unlock();
+        }
+        if (updateCache) {
+            invalidateCache(root);
+        }
     }
 
     void clearUserAuthorization(String userName, String resourceId, String action) throws UserStoreException {
+        clearUserAuthorization(userName, resourceId, action, true);
+    }
+
+    void clearUserAuthorization(String userName, String resourceId, String action,
+                                boolean updateCache) throws UserStoreException {
         write.lock();
         try {
-            SearchResult sr = getNode(root, PermissionTreeUtil.toComponenets(resourceId));
+            TreeNode workingRoot = getWorkingRoot();
+            SearchResult sr = getNodeForUpdate(workingRoot, PermissionTreeUtil.toComponenets(resourceId));
             if (sr.getUnprocessedPaths() == null || sr.getUnprocessedPaths().isEmpty()) {
                 TreeNode.Permission permission = PermissionTreeUtil.actionToPermission(action);
 
-                Map<String, BitSet> allowUsers = sr.getLastNode().getUserAllowPermissions();
-                BitSet bs = allowUsers.get(userName);
-                if (bs != null) {
-                    bs.clear(permission.ordinal());
-                }
-
-                Map<String, BitSet> denyUsers = sr.getLastNode().getUserDenyPermissions();
-                bs = denyUsers.get(userName);
-                if (bs != null) {
-                    bs.clear(permission.ordinal());
+                int id = symbols.getId(userName);
+                if (id != SymbolTable.NOT_FOUND) {
+                    sr.getLastNode().getUserAllowPermissions().clear(id, permission.ordinal());
+                    sr.getLastNode().getUserDenyPermissions().clear(id, permission.ordinal());
                 }
+                publish(workingRoot);
+            }
+            if (updateCache) {
+                invalidateCache(root);
             }
-            invalidateCache(root);
         } finally {
             write.unlock();
         }
@@ -641,10 +1011,47 @@ public class PermissionTree {
      * @throws UserStoreException throws
      */
 
+    /**
+     * Get the UI resources allowed for the given roles under the given path, with the resources
+     * covered by an allowed parent removed. The result is remembered for the set of roles until
+     * the tree is changed, so repeated calls for the same roles are a map lookup.
+     *
+     * @param roles roles, typically all the roles of a user
+     * @param path  permission root path
+     * @return the allowed UI resources
+     * @throws UserStoreException if the path is not a valid permission root path
+     */
+    String[] getAllowedUIResourcesForRoles(String[] roles, String path) throws UserStoreException {
+        long version = treeVersion;
+        UIResourceCache cache = uiResourceCache;
+        if (cache.version != version) {
+            cache = new UIResourceCache(version);
+            uiResourceCache = cache;
+        }
+
+        String[] sortedRoles = roles.clone();
+        Arrays.sort(sortedRoles);
+        List<String> key = new ArrayList<String>(sortedRoles.length + 1);
+        key.add(path);
+        key.addAll(Arrays.asList(sortedRoles));
+
+        String[] resources = cache.resources.get(key);
+        if (resources == null) {
+            List<String> resourceList = new ArrayList<String>();
+            getUIResourcesForRoles(roles, resourceList, path);
+            resources = UserCoreUtil.optimizePermissions(resourceList.toArray(new String[resourceList.size()]));
+            if (cache.resources.size() >= MAX_UI_RESOURCE_CACHE_SIZE) {
+                cache.resources.clear();
+            }
+            cache.resources.put(key, resources);
+        }
+        return resources.clone();
+    }
+
     void getUIResourcesForRoles(String[] roles, List<String> resources, String path) throws UserStoreException {
         List<String> paths = PermissionTreeUtil.toComponenets(path);
         TreeNode node = null;
-        read.lock();
+        lockRead();
         try {
             node = root;
             for (String name : paths) {
@@ -654,7 +1061,7 @@ public class PermissionTree {
                 }
             }
         } finally {
-            read.unlock();
+            unlockRead();
         }
 
         if (node == null) {
@@ -680,14 +1087,14 @@ public class PermissionTree {
 
     void getUIResourcesForRoles(String[] roles, List<String> resources, String path,
                                 TreeNode.Permission permission, TreeNode node) {
-        read.lock();
+        lockRead();
         try {
             String currentPath = path + "/" + node.getName();
 
-            Map<String, BitSet> bsAllowed = node.getRoleAllowPermissions();
+            PermissionMap bsAllowed = node.getRoleAllowPermissions();
             for (String role : roles) {
-                BitSet bs = bsAllowed.get(role);
-                if (bs != null && bs.get(permission.ordinal())) {
+                int id = symbols.getId(role);
+                if (id != SymbolTable.NOT_FOUND && bsAllowed.get(id, permission.ordinal())) {
                     resources.add(currentPath);
                     return;
                 }
@@ -700,7 +1107,7 @@ public class PermissionTree {
                 }
             }
         } finally {
-            read.unlock();
+            unlockRead();
         }
     }
 
@@ -708,12 +1115,14 @@ public class PermissionTree {
     void clearResourceAuthorizations(String resourceId) throws UserStoreException {
         write.lock();
         try {
-            SearchResult sr = getNode(root, PermissionTreeUtil.toComponenets(resourceId));
+            TreeNode workingRoot = getWorkingRoot();
+            SearchResult sr = getNodeForUpdate(workingRoot, PermissionTreeUtil.toComponenets(resourceId));
             if (sr.getUnprocessedPaths() == null) {
                 sr.getLastNode().getUserAllowPermissions().clear();
                 sr.getLastNode().getUserDenyPermissions().clear();
                 sr.getLastNode().getRoleAllowPermissions().clear();
                 sr.getLastNode().getRoleDenyPermissions().clear();
+                publish(workingRoot);
             }
             invalidateCache(root);
         } finally {
@@ -734,17 +1143,10 @@ public class PermissionTree {
     private void clearRoleAuthorization(String roleName, TreeNode node, TreeNode.Permission permission) {
         write.lock();
         try {
-            Map<String, BitSet> allowRoles = node.getRoleAllowPermissions();
-            Map<String, BitSet> denyRoles = node.getRoleDenyPermissions();
-
-            BitSet bs = allowRoles.get(roleName);
-            if (bs != null) {
-                bs.clear(permission.ordinal());
-            }
-
-            bs = denyRoles.get(roleName);
-            if (bs != null) {
-                bs.clear(permission.ordinal());
+            int id = symbols.getId(roleName);
+            if (id != SymbolTable.NOT_FOUND) {
+                node.getRoleAllowPermissions().clear(id, permission.ordinal());
+                node.getRoleDenyPermissions().clear(id, permission.ordinal());
             }
 
             Map<String, TreeNode> childMap = node.getChildren();
@@ -770,17 +1172,10 @@ public class PermissionTree {
     private void clearRoleAuthorization(String roleName, TreeNode node) {
         write.lock();
         try {
-            Map<String, BitSet> allowRoles = node.getRoleAllowPermissions();
-            Map<String, BitSet> denyRoles = node.getRoleDenyPermissions();
-
-            BitSet bs = allowRoles.get(roleName);
-            if (bs != null) {
-                allowRoles.remove(roleName);
-            }
-
-            bs = denyRoles.get(roleName);
-            if (bs != null) {
-                denyRoles.remove(roleName);
+            int id = symbols.getId(roleName);
+            if (id != SymbolTable.NOT_FOUND) {
+                node.getRoleAllowPermissions().remove(id);
+                node.getRoleDenyPermissions().remove(id);
             }
 
             Map<String, TreeNode> childMap = node.getChildren();
@@ -796,20 +1191,19 @@ public class PermissionTree {
     }
 
     private void updateRoleNameInCache(String roleName, String newRoleName, TreeNode node) {
-        Map<String, BitSet> allowRoles = node.getRoleAllowPermissions();
-        Map<String, BitSet> denyRoles = node.getRoleDenyPermissions();
+        PermissionMap allowRoles = node.getRoleAllowPermissions();
+        PermissionMap denyRoles = node.getRoleDenyPermissions();
         write.lock();
         try {
-            BitSet bs = allowRoles.get(roleName);
-            if (bs != null) {
-                allowRoles.remove(roleName);
-                allowRoles.put(newRoleName, bs);
+            int id = symbols.getId(roleName);
+            long mask = allowRoles.get(id);
+            if (allowRoles.remove(id)) {
+                allowRoles.put(symbols.intern(newRoleName), mask);
             }
 
-            bs = denyRoles.get(roleName);
-            if (bs != null) {
-                denyRoles.remove(roleName);
-                denyRoles.put(newRoleName, bs);
+            mask = denyRoles.get(id);
+            if (denyRoles.remove(id)) {
+                denyRoles.put(symbols.intern(newRoleName), mask);
             }
 
             Map<String, TreeNode> childMap = node.getChildren();
@@ -828,17 +1222,10 @@ public class PermissionTree {
     private void clearUserAuthorization(String userName, TreeNode node) {
         write.lock();
         try {
-            Map<String, BitSet> allowUsers = node.getUserAllowPermissions();
-            Map<String, BitSet> denyUsers = node.getUserDenyPermissions();
-
-            BitSet bs = allowUsers.get(userName);
-            if (bs != null) {
-                allowUsers.remove(userName);
-            }
-
-            bs = denyUsers.get(userName);
-            if (bs != null) {
-                denyUsers.remove(userName);
+            int id = symbols.getId(userName);
+            if (id != SymbolTable.NOT_FOUND) {
+                node.getUserAllowPermissions().remove(id);
+                node.getUserDenyPermissions().remove(id);
             }
 
             Map<String, TreeNode> childMap = node.getChildren();
@@ -862,8 +1249,15 @@ public class PermissionTree {
         if (permissionCache != null) {
             write.lock();
             try {
-                this.root.clearNodes();
+                if (copyOnWrite) {
+                    // published nodes may still be walked by readers, so just drop the reference
+                    publish(new TreeNode("/", symbols));
+                } else {
+                    this.root.clearNodes();
+                    treeVersion++;
+                }
                 this.hashValueOfRootNode = -1;
+                this.changeLogVersion = -1;
                 PermissionTreeCacheKey cacheKey = new PermissionTreeCacheKey(cacheIdentifier, tenantId);
                 // TODO Is this clear all?
                 permissionCache.remove(cacheKey);
@@ -889,7 +1283,7 @@ public class PermissionTree {
                     synchronized (this) {
                         cacheEntry = (GhostResource<TreeNode>) permissionCache.get(cacheKey);
                         if (cacheEntry.getResource() == null) {
-                            updatePermissionTreeFromDB();
+                            reloadPermissionTree();
                             cacheEntry.setResource(root);
                             if (log.isDebugEnabled()) {
                                 log.debug("Set resource to true");
@@ -899,7 +1293,7 @@ public class PermissionTree {
                 }
             } else {
                 synchronized (this) {
-                    updatePermissionTreeFromDB();
+                    reloadPermissionTree();
                     cacheKey = new PermissionTreeCacheKey(cacheIdentifier, tenantId);
                     cacheEntry = new GhostResource<TreeNode>(root);
                     try {
@@ -924,6 +1318,52 @@ public class PermissionTree {
         }
     }
 
+    /**
+     * Brings the tree up to date with the database, by applying the permission changes made since
+     * the tree was last loaded if possible, or else by loading the whole tree again.
+     *
+     * @throws UserStoreException throws if fail to update permission tree from DB
+     */
+    private void reloadPermissionTree() throws UserStoreException {
+        if (changeLog != null && changeLogVersion >= 0 && updatePermissionTreeFromChangeLog()) {
+            return;
+        }
+        updatePermissionTreeFromDB();
+    }
+
+    /**
+     * Applies the permission changes made since the current version of the tree.
+     *
+     * @return false if the tree has to be loaded as a whole instead
+     * @throws UserStoreException throws if fail to apply the changes
+     */
+    private boolean updatePermissionTreeFromChangeLog() throws UserStoreException {
+        Connection dbConnection = null;
+        try {
+            dbConnection = getDBConnection();
+            int version = changeLog.replay(dbConnection, this, changeLogVersion);
+            if (version < 0) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Permission changes of tenant " + tenantId + " since version " + changeLogVersion +
+                            " can not be applied, loading the permission tree from database");
+                }
+                return false;
+            }
+            changeLogVersion = version;
+            return true;
+        } catch (SQLException e) {
+            // e.g. the log tables have been dropped, the whole tree is loaded instead
+            log.warn("Error loading permission changes of tenant " + tenantId + ", loading the permission tree " +
+                    "from database. Error message is " + e.getMessage());
+            if (log.isDebugEnabled()) {
+                log.debug("Error loading permission changes", e);
+            }
+            return false;
+        } finally {
+            DatabaseUtil.closeAllConnections(dbConnection);
+        }
+    }
+
     private void invalidateCache(TreeNode root) throws UserStoreException {
         Cache<PermissionTreeCacheKey, GhostResource<TreeNode>> permissionCache = this.getPermissionTreeCache();
         if (permissionCache != null) {
@@ -957,13 +1397,16 @@ public class PermissionTree {
      * @throws org.wso2.carbon.user.core.UserStoreException throws if fail to update permission tree from DB
      */
     void updatePermissionTreeFromDB() throws UserStoreException {
-        PermissionTree tree = new PermissionTree();
+        PermissionTree tree = new PermissionTree(symbols);
         ResultSet rs = null;
         PreparedStatement prepStmt1 = null;
         PreparedStatement prepStmt2 = null;
         Connection dbConnection = null;
         try {
             dbConnection = getDBConnection();
+            // read the version first, changes made while loading are applied again on the next update
+            int version = changeLog != null ? changeLog.getVersion(dbConnection) : -1;
+
             // Populating role permissions
             prepStmt1 = dbConnection.prepareStatement(DBConstants.GET_EXISTING_ROLE_PERMISSIONS);
             prepStmt1.setInt(1, tenantId);
@@ -1003,7 +1446,8 @@ public class PermissionTree {
 
             write.lock();
             try {
-                this.root = tree.root;
+                publish(tree.root);
+                this.changeLogVersion = version;
             } finally {
                 write.unlock();
             }
@@ -1050,10 +1494,94 @@ public class PermissionTree {
         }
     }
 
+    /**
+     * Publishes an updated tree. Must be called while holding the write lock.
+     *
+     * @param workingRoot the updated root
+     */
+    private void publish(TreeNode workingRoot) {
+        root = workingRoot;
+        treeVersion++;
+    }
+
+    /**
+     * Gives the root to apply a single path update on. In copy-on-write mode this is a copy of the
+     * current root, which has to be published by assigning it to the root once the update is done.
+     *
+     * @return the root node to be updated
+     */
+    private TreeNode getWorkingRoot() {
+        return copyOnWrite ? root.copy() : root;
+    }
+
+    /**
+     * Gives the tree to apply an update spanning the whole tree on. In copy-on-write mode this is a
+     * copy of the current tree, which has to be published by assigning it to the root once the
+     * update is done.
+     *
+     * @return the root node to be updated
+     */
+    private TreeNode getWorkingTree() {
+        return copyOnWrite ? root.deepCopy() : root;
+    }
+
+    /**
+     * Same as {@link #getNode(TreeNode, List)}, but in copy-on-write mode each node on the path
+     * is replaced by a copy in its (already copied) parent, so the returned node can be modified
+     * without affecting the published tree.
+     *
+     * @param workingRoot the root returned by {@link #getWorkingRoot()}
+     * @param pathParts   a List of path segments - i.e. collection/resource names
+     * @return the result as a SearchResult
+     */
+    private SearchResult getNodeForUpdate(TreeNode workingRoot, List<String> pathParts) {
+        if (!copyOnWrite) {
+            return getNode(workingRoot, pathParts);
+        }
+        TreeNode node = workingRoot;
+        while (pathParts != null && !pathParts.isEmpty()) {
+            String key = pathParts.get(0);
+            if (key == null || key.length() == 0) {
+                return new SearchResult(node, pathParts);
+            }
+            TreeNode child = node.getChild(key);
+            if (child == null) {
+                return new SearchResult(node, pathParts);
+            }
+            child = child.copy();
+            node.getChildren().put(key, child);
+            node = child;
+            pathParts.remove(0);
+        }
+        return new SearchResult(node, null);
+    }
+
+    private void lockRead() {
+        if (!copyOnWrite) {
+            read.lock();
+        }
+    }
+
+    private void unlockRead() {
+        if (!copyOnWrite) {
+            read.unlock();
+        }
+    }
+
     private Connection getDBConnection() throws SQLException {
         Connection dbConnection = dataSource.getConnection();
         dbConnection.setAutoCommit(false);
         return dbConnection;
     }
 
+    private static final class UIResourceCache {
+
+        private final long version;
+        private final ConcurrentMap<List<String>, String[]> resources =
+                new ConcurrentHashMap<List<String>, String[]>();
+
+        private UIResourceCache(long version) {
+            this.version = version;
+        }
+    }
 }
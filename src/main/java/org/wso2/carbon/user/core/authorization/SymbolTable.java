@@ -0,0 +1,87 @@
+/*
+*  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.user.core.authorization;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Maps the role and user names used in a permission tree to dense int ids, so that the tree
+ * nodes can keep the permissions in primitive arrays keyed by the ids rather than in maps keyed
+ * by the names. Ids are never reused, hence a table can be shared by all the versions of the
+ * permission tree of a tenant.
+ * <p/>
+ * Ids are only added while holding the write lock of the tree, but can be looked up
+ * concurrently.
+ */
+final class SymbolTable {
+
+    static final int NOT_FOUND = -1;
+
+    private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+    private volatile String[] names = new String[64];
+    private int size;
+
+    /**
+     * Get the id of the given name.
+     *
+     * @param name role or user name
+     * @return the id, or NOT_FOUND if the name has never been added
+     */
+    int getId(String name) {
+        if (name == null) {
+            return NOT_FOUND;
+        }
+        Integer id = ids.get(name);
+        return id == null ? NOT_FOUND : id;
+    }
+
+    /**
+     * Get the id of the given name, adding the name to the table if needed.
+     *
+     * @param name role or user name
+     * @return the id of the name
+     */
+    synchronized int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        String[] currentNames = names;
+        if (size == currentNames.length) {
+            String[] newNames = new String[size + (size >> 1)];
+            System.arraycopy(currentNames, 0, newNames, 0, size);
+            currentNames = newNames;
+        }
+        currentNames[size] = name;
+        // publish the name before the id
+        names = currentNames;
+        ids.put(name, size);
+        return size++;
+    }
+
+    /**
+     * Get the name of the given id.
+     *
+     * @param id an id returned by this table
+     * @return the name
+     */
+    String getName(int id) {
+        return names[id];
+    }
+}
@@ -21,7 +21,6 @@ package org.wso2.carbon.user.core.authorization;
 import org.wso2.carbon.user.core.UserCoreConstants;
 import org.wso2.carbon.user.core.util.UserCoreUtil;
 
-import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -34,37 +33,59 @@ import java.util.Map;
  */
 public class TreeNode {
 
+    /**
+     * Primitive results of an authorization check on a node or on a path of the tree
+     */
+    static final int PERMISSION_NOT_DEFINED = -1;
+    static final int PERMISSION_DENIED = 0;
+    static final int PERMISSION_ALLOWED = 1;
+
     /**
      * The name of the node - For the Registry, this would be the name of a Collection/Resource
      */
     private String name;
+    /**
+     * Ids of the role and user names used in the permission maps, shared by all nodes of a tree
+     */
+    private final SymbolTable symbols;
     /**
      * The children of this node - maintained on a Map by the names
      */
     private Map<String, TreeNode> children = new HashMap<String, TreeNode>();
     /**
-     * Explicit allow permission for specific users
+     * Explicit allow permission for specific users, keyed by the user id in the symbol table of the tree
      */
-    private Map<String, BitSet> userAllowPermissions = new HashMap<String, BitSet>();
+    private PermissionMap userAllowPermissions = new PermissionMap();
     /**
-     * Explicit deny permission for specific users
+     * Explicit deny permission for specific users, keyed by the user id in the symbol table of the tree
      */
-    private Map<String, BitSet> userDenyPermissions = new HashMap<String, BitSet>();
+    private PermissionMap userDenyPermissions = new PermissionMap();
     /**
-     * Explicit allow permission for specific roles
+     * Explicit allow permission for specific roles, keyed by the role id in the symbol table of the tree
      */
-    private Map<String, BitSet> roleAllowPermissions = new HashMap<String, BitSet>();
+    private PermissionMap roleAllowPermissions = new PermissionMap();
     /**
-     * Explicit deny permission for specific roles
+     * Explicit deny permission for specific roles, keyed by the role id in the symbol table of the tree
      */
-    private Map<String, BitSet> roleDenyPermissions = new HashMap<String, BitSet>();
+    private PermissionMap roleDenyPermissions = new PermissionMap();
     /**
      * Constructor
      *
      * @param name the name of the TreeNode
      */
     TreeNode(String name) {
+        this(name, new SymbolTable());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param name    the name of the TreeNode
+     * @param symbols the symbol table of the tree this node belongs to
+     */
+    TreeNode(String name, SymbolTable symbols) {
         this.name = name;
+        this.symbols = symbols;
     }
 
     /**
@@ -77,6 +98,16 @@ public class TreeNode {
         return children.get(name);
     }
 
+    /**
+     * Get the child by the name given as a segment of a path
+     *
+     * @param segment segment of the path holding the name of the child node
+     * @return the child with the given name, or null
+     */
+    TreeNode getChild(PathSegment segment) {
+        return children.get(segment);
+    }
+
     /**
      * Is the 'user' authorized for the given permission on this node?
      *
@@ -85,17 +116,7 @@ public class TreeNode {
      * @return Boolean.TRUE if authorized, Boolean.FALSE if not
      */
     public Boolean isUserAuthorized(String user, Permission permission) {
-        BitSet bsAlow = userAllowPermissions.get(user);
-        BitSet bsDeny = userDenyPermissions.get(user);
-        if (bsAlow == null && bsDeny == null) {
-            return null;
-        } else if (bsDeny != null && bsDeny.get(permission.ordinal())) {
-            return Boolean.FALSE;
-        } else if (bsAlow != null && bsAlow.get(permission.ordinal())) {
-            return Boolean.TRUE;
-        }
-
-        return null;
+        return toBoolean(getUserAuthorization(symbols.getId(user), permission.ordinal()));
     }
 
     /**
@@ -106,16 +127,51 @@ public class TreeNode {
      * @return Boolean.TRUE if authorized, Boolean.FALSE if not
      */
     public Boolean isRoleAuthorized(String role, Permission permission) {
-        BitSet bsAlow = roleAllowPermissions.get(modify(role));
-        BitSet bsDeny = roleDenyPermissions.get(role);
-        if (bsAlow == null && bsDeny == null) {
-            return null;
-        } else if (bsDeny != null && bsDeny.get(permission.ordinal())) {
-            return Boolean.FALSE;
-        } else if (bsAlow != null && bsAlow.get(permission.ordinal())) {
-            return Boolean.TRUE;
+        return toBoolean(getRoleAuthorization(symbols.getId(role), symbols.getId(modify(role)),
+                permission.ordinal()));
+    }
+
+    /**
+     * Is the 'user' authorized for the given permission on this node?
+     *
+     * @param user       id of the user
+     * @param permission ordinal of the permission
+     * @return PERMISSION_ALLOWED, PERMISSION_DENIED or PERMISSION_NOT_DEFINED
+     */
+    int getUserAuthorization(int user, int permission) {
+        return getAuthorization(userAllowPermissions.get(user), userDenyPermissions.get(user), permission);
+    }
+
+    /**
+     * Is the 'role' authorized for the given permission on this node? Allow permissions are
+     * keyed by the role name as returned by {@link #modify(String)}, hence the id of that name
+     * is given separately.
+     *
+     * @param role       id of the role
+     * @param allowKey   id of the role name as returned by {@link #modify(String)}
+     * @param permission ordinal of the permission
+     * @return PERMISSION_ALLOWED, PERMISSION_DENIED or PERMISSION_NOT_DEFINED
+     */
+    int getRoleAuthorization(int role, int allowKey, int permission) {
+        return getAuthorization(roleAllowPermissions.get(allowKey), roleDenyPermissions.get(role), permission);
+    }
+
+    private static int getAuthorization(long allowMask, long denyMask, int permission) {
+        long bit = 1L << permission;
+        if ((denyMask & bit) != 0) {
+            return PERMISSION_DENIED;
+        } else if ((allowMask & bit) != 0) {
+            return PERMISSION_ALLOWED;
         }
+        return PERMISSION_NOT_DEFINED;
+    }
 
+    private static Boolean toBoolean(int authorization) {
+        if (authorization == PERMISSION_ALLOWED) {
+            return Boolean.TRUE;
+        } else if (authorization == PERMISSION_DENIED) {
+            return Boolean.FALSE;
+        }
         return null;
     }
 
@@ -126,19 +182,18 @@ public class TreeNode {
      * @param permission the permission granted
      */
     public void authorizeUser(String user, Permission permission) {
-        BitSet bsAllow = userAllowPermissions.get(user);
-        if (bsAllow == null) {
-            bsAllow = new BitSet();
-            bsAllow.set(permission.ordinal());
-            userAllowPermissions.put(user, bsAllow);
-        } else {
-            bsAllow.set(permission.ordinal());
-        }
+        authorizeUser(symbols.intern(user), permission);
+    }
 
-        BitSet bsDeny = userDenyPermissions.get(user);
-        if (bsDeny != null) {
-            bsDeny.clear(permission.ordinal());
-        }
+    /**
+     * Grant explicit authorization to the 'user' on this node for permission
+     *
+     * @param user       id of the user who is granted authorization
+     * @param permission the permission granted
+     */
+    void authorizeUser(int user, Permission permission) {
+        userAllowPermissions.set(user, permission.ordinal());
+        userDenyPermissions.clear(user, permission.ordinal());
     }
 
     /**
@@ -148,19 +203,19 @@ public class TreeNode {
      * @param permission the permission granted
      */
     public void authorizeRole(String role, Permission permission) {
-        BitSet bsAllow = roleAllowPermissions.get(modify(role));
-        if (bsAllow == null) {
-            bsAllow = new BitSet();
-            bsAllow.set(permission.ordinal());
-            roleAllowPermissions.put(modify(role), bsAllow);
-        } else {
-            bsAllow.set(permission.ordinal());
-        }
+        authorizeRole(symbols.intern(role), symbols.intern(modify(role)), permission);
+    }
 
-        BitSet bsDeny = roleDenyPermissions.get(role);
-        if (bsDeny != null) {
-            bsDeny.clear(permission.ordinal());
-        }
+    /**
+     * Grant explicit authorization to the 'role' on this node for permission
+     *
+     * @param role       id of the role that is granted authorization
+     * @param allowKey   id of the role name as returned by {@link #modify(String)}
+     * @param permission the permission granted
+     */
+    void authorizeRole(int role, int allowKey, Permission permission) {
+        roleAllowPermissions.set(allowKey, permission.ordinal());
+        roleDenyPermissions.clear(role, permission.ordinal());
     }
 
     /**
@@ -170,19 +225,18 @@ public class TreeNode {
      * @param permission the permission denied
      */
     public void denyUser(String user, Permission permission) {
-        BitSet bsDeny = userDenyPermissions.get(user);
-        if (bsDeny == null) {
-            bsDeny = new BitSet();
-            bsDeny.set(permission.ordinal());
-            userDenyPermissions.put(user, bsDeny);
-        } else {
-            bsDeny.set(permission.ordinal());
-        }
+        denyUser(symbols.intern(user), permission);
+    }
 
-        BitSet bsAllow = userAllowPermissions.get(user);
-        if (bsAllow != null) {
-            bsAllow.clear(permission.ordinal());
-        }
+    /**
+     * Deny explicit authorization to the 'user' on this node for permission
+     *
+     * @param user       id of the user that is denied authorization
+     * @param permission the permission denied
+     */
+    void denyUser(int user, Permission permission) {
+        userDenyPermissions.set(user, permission.ordinal());
+        userAllowPermissions.clear(user, permission.ordinal());
     }
 
     /**
@@ -192,19 +246,19 @@ public class TreeNode {
      * @param permission the permission denied
      */
     public void denyRole(String role, Permission permission) {
-        BitSet bsDeny = roleDenyPermissions.get(role);
-        if (bsDeny == null) {
-            bsDeny = new BitSet();
-            bsDeny.set(permission.ordinal());
-            roleDenyPermissions.put(role, bsDeny);
-        } else {
-            bsDeny.set(permission.ordinal());
-        }
+        denyRole(symbols.intern(role), symbols.intern(modify(role)), permission);
+    }
 
-        BitSet bsAllow = roleAllowPermissions.get(modify(role));
-        if (bsAllow != null) {
-            bsAllow.clear(permission.ordinal());
-        }
+    /**
+     * Deny explicit authorization to the 'role' on this node for permission
+     *
+     * @param role       id of the role that is denied authorization
+     * @param allowKey   id of the role name as returned by {@link #modify(String)}
+     * @param permission the permission denied
+     */
+    void denyRole(int role, int allowKey, Permission permission) {
+        roleDenyPermissions.set(role, permission.ordinal());
+        roleAllowPermissions.clear(allowKey, permission.ordinal());
     }
 
     /**
@@ -216,7 +270,7 @@ public class TreeNode {
     public TreeNode create(List<String> paths) {
         if (paths != null && !paths.isEmpty()) {
             String childName = paths.get(0);
-            TreeNode tn = new TreeNode(childName);
+            TreeNode tn = new TreeNode(childName, symbols);
             children.put(childName, tn);
             paths.remove(0);
             if (!paths.isEmpty()) {
@@ -229,6 +283,39 @@ public class TreeNode {
         }
     }
 
+    /**
+     * Creates a shallow copy of this node. The children map and the permission maps are copied,
+     * but the child nodes themselves are shared with this node. Used for path copying when the
+     * tree is updated in copy-on-write mode.
+     *
+     * @return a copy of this node which can be modified without affecting this node
+     */
+    TreeNode copy() {
+        TreeNode copy = new TreeNode(name, symbols);
+        copy.children = new HashMap<String, TreeNode>(children);
+        copy.userAllowPermissions = userAllowPermissions.copy();
+        copy.userDenyPermissions = userDenyPermissions.copy();
+        copy.roleAllowPermissions = roleAllowPermissions.copy();
+        copy.roleDenyPermissions = roleDenyPermissions.copy();
+        return copy;
+    }
+
+    /**
+     * Creates a copy of the whole sub tree starting from this node.
+     *
+     * @return a copy of this node and all of its descendants
+     */
+    TreeNode deepCopy() {
+        TreeNode copy = copy();
+        for (Map.Entry<String, TreeNode> entry : children.entrySet()) {
+            TreeNode child = entry.getValue();
+            if (child != null) {
+                copy.children.put(entry.getKey(), child.deepCopy());
+            }
+        }
+        return copy;
+    }
+
     /**
      * The name of the node
      *
@@ -248,19 +335,19 @@ public class TreeNode {
     }
 
     //-------- getters --------
-    public Map<String, BitSet> getUserAllowPermissions() {
+    PermissionMap getUserAllowPermissions() {
         return userAllowPermissions;
     }
 
-    public Map<String, BitSet> getUserDenyPermissions() {
+    PermissionMap getUserDenyPermissions() {
         return userDenyPermissions;
     }
 
-    public Map<String, BitSet> getRoleAllowPermissions() {
+    PermissionMap getRoleAllowPermissions() {
         return roleAllowPermissions;
     }
 
-    public Map<String, BitSet> getRoleDenyPermissions() {
+    PermissionMap getRoleDenyPermissions() {
         return roleDenyPermissions;
     }
 
@@ -305,7 +392,7 @@ public class TreeNode {
         SQS_SEND_MESSAGE, SQS_RECEIVE_MESSAGE, SQS_DELETE_MESSAGE, SQS_CHANGE_MESSAGE_VISIBILITY, SQS_GET_QUEUE_ATTRIBUTES
     }
 
-    private String modify(String name) {
+    static String modify(String name) {
         if (!name.contains(UserCoreConstants.DOMAIN_SEPARATOR)) {
             return name;
         }
@@ -0,0 +1,149 @@
+/*
+ *  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.user.core.claim;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable tables of the attributes which claims are mapped to, and of the claims which
+ * attributes are mapped from, for every user store domain. Domains which have no mapped
+ * attributes of their own use the default tables. Claims mapped to a domain specific
+ * attribute are resolved to that attribute, and the other claims to the default attribute,
+ * so that resolving a claim is a single lookup.
+ */
+public final class ClaimAttributeTable {
+
+    private final Map<String, String> defaultAttributes;
+    private final Map<String, List<String>> defaultClaims;
+    // domain names are matched ignoring case
+    private final Map<String, Map<String, String>> domainAttributes =
+            new TreeMap<String, Map<String, String>>(String.CASE_INSENSITIVE_ORDER);
+    private final Map<String, Map<String, List<String>>> domainClaims =
+            new TreeMap<String, Map<String, List<String>>>(String.CASE_INSENSITIVE_ORDER);
+
+    /**
+     * @param claimMappings claim mappings, keyed by claim URI
+     */
+    public ClaimAttributeTable(Map<String, ClaimMapping> claimMappings) {
+        defaultAttributes = new HashMap<String, String>();
+        for (Map.Entry<String, ClaimMapping> entry : claimMappings.entrySet()) {
+            String attribute = entry.getValue().getMappedAttribute();
+            if (attribute != null) {
+                defaultAttributes.put(entry.getKey(), attribute);
+            }
+        }
+        defaultClaims = getClaims(defaultAttributes);
+
+        for (ClaimMapping mapping : claimMappings.values()) {
+            Map<String, String> mappedAttributes = mapping.getMappedAttributes();
+            if (mappedAttributes == null) {
+                continue;
+            }
+            for (String domainName : mappedAttributes.keySet()) {
+                if (domainName != null && !domainAttributes.containsKey(domainName)) {
+                    // the mapped attributes are keyed by upper case domain name
+                    domainName = domainName.toUpperCase();
+                    domainAttributes.put(domainName, getAttributes(claimMappings, domainName));
+                }
+            }
+        }
+        for (Map.Entry<String, Map<String, String>> entry : domainAttributes.entrySet()) {
+            domainClaims.put(entry.getKey(), getClaims(entry.getValue()));
+        }
+    }
+
+    /**
+     * @param claimURI claim URI
+     * @return the default attribute the claim is mapped to, or null if the claim is not mapped
+     */
+    public String getAttributeName(String claimURI) {
+        return defaultAttributes.get(claimURI);
+    }
+
+    /**
+     * @param domainName user store domain name, or null for the default attribute
+     * @param claimURI   claim URI
+     * @return the attribute the claim is mapped to in the domain, or null if the claim is not mapped
+     */
+    public String getAttributeName(String domainName, String claimURI) {
+        return getAttributes(domainName).get(claimURI);
+    }
+
+    /**
+     * @param domainName    user store domain name, or null for the default attributes
+     * @param attributeName attribute name
+     * @return URIs of the claims mapped to the attribute in the domain, empty if there are none
+     */
+    public List<String> getClaimURIs(String domainName, String attributeName) {
+        Map<String, List<String>> claims = null;
+        if (domainName != null) {
+            claims = domainClaims.get(domainName);
+        }
+        if (claims == null) {
+            claims = defaultClaims;
+        }
+        List<String> claimURIs = claims.get(attributeName);
+        if (claimURIs == null) {
+            return Collections.emptyList();
+        }
+        return claimURIs;
+    }
+
+    private Map<String, String> getAttributes(String domainName) {
+        Map<String, String> attributes = null;
+        if (domainName != null) {
+            attributes = domainAttributes.get(domainName);
+        }
+        if (attributes == null) {
+            return defaultAttributes;
+        }
+        return attributes;
+    }
+
+    private Map<String, String> getAttributes(Map<String, ClaimMapping> claimMappings, String domainName) {
+        Map<String, String> attributes = new HashMap<String, String>(defaultAttributes);
+        for (Map.Entry<String, ClaimMapping> entry : claimMappings.entrySet()) {
+            Map<String, String> mappedAttributes = entry.getValue().getMappedAttributes();
+            if (mappedAttributes != null && mappedAttributes.get(domainName) != null) {
+                attributes.put(entry.getKey(), mappedAttributes.get(domainName));
+            }
+        }
+        return attributes;
+    }
+
+    private static Map<String, List<String>> getClaims(Map<String, String> attributes) {
+        Map<String, List<String>> claims = new HashMap<String, List<String>>();
+        for (Map.Entry<String, String> entry : attributes.entrySet()) {
+            List<String> claimURIs = claims.get(entry.getValue());
+            if (claimURIs == null) {
+                claimURIs = new ArrayList<String>();
+                claims.put(entry.getValue(), claimURIs);
+            }
+            claimURIs.add(entry.getKey());
+        }
+        for (Map.Entry<String, List<String>> entry : claims.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        return claims;
+    }
+}
@@ -21,16 +21,26 @@ import org.apache.commons.logging.LogFactory;
 import javax.cache.Cache;
 import javax.cache.CacheManager;
 import javax.cache.Caching;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps a version of the claim mappings of every tenant, so that a claim manager reloads the
+ * mappings of its tenant only when they were changed. The versions are shared with the other
+ * nodes through a distributed cache, which is read at most once every
+ * {@value #VERSION_CHECK_INTERVAL} ms per tenant; in between, the version known locally is used.
+ */
 public class ClaimInvalidationCache {
     private static final String CLAIM_CACHE_MANAGER = "Claim.Cache.Manager";
+    private static final long VERSION_CHECK_INTERVAL = 5 * 1000;
     private static final Object lock = new Object();
     private static Log log = LogFactory.getLog(ClaimInvalidationCache.class);
     private static ClaimInvalidationCache claimCache;
     private String CLAIM_CACHE_NAME = "Claim.Cache";
     private String INVALIDATE_CACHE_KEY = "Invalidate.Cache.Key";
 
-    private int myHashCode;
+    private final ConcurrentMap<Integer, TenantVersion> tenantVersions =
+            new ConcurrentHashMap<Integer, TenantVersion>();
 
     private ClaimInvalidationCache() {
     }
@@ -52,27 +62,67 @@ public class ClaimInvalidationCache {
         return cache;
     }
 
-    public boolean isInvalid() {
-        Integer hashCode = getValueFromCache(INVALIDATE_CACHE_KEY);
-        if (hashCode != null) {
-            if (log.isDebugEnabled()) {
-                log.debug("My Hash code of Claim cache is : " + myHashCode);
-                log.debug("Shared Hash code of Claim cache is : " + hashCode);
+    /**
+     * @param tenantId tenant id
+     * @return version of the claim mappings of the tenant, 0 if they were never changed
+     */
+    public int getVersion(int tenantId) {
+        TenantVersion tenantVersion = getTenantVersion(tenantId);
+        long now = System.currentTimeMillis();
+        if (now < tenantVersion.nextCheckTime) {
+            return tenantVersion.version;
+        }
+        synchronized (tenantVersion) {
+            if (now >= tenantVersion.nextCheckTime) {
+                Integer sharedVersion = getValueFromCache(INVALIDATE_CACHE_KEY + tenantId);
+                if (log.isDebugEnabled()) {
+                    log.debug("Claim mapping version of tenant " + tenantId + " is : " + tenantVersion.version +
+                            ", shared version is : " + sharedVersion);
+                }
+                if (sharedVersion != null && sharedVersion > tenantVersion.version) {
+                    tenantVersion.version = sharedVersion;
+                }
+                tenantVersion.nextCheckTime = now + VERSION_CHECK_INTERVAL;
             }
-            if (hashCode > myHashCode) {
-                myHashCode = hashCode;
-                return true;
+            return tenantVersion.version;
+        }
+    }
+
+    /**
+     * Make the claim mappings of the tenant known as changed, on this node at once and on the
+     * other nodes when they next read the shared version.
+     *
+     * @param tenantId tenant id
+     * @return the new version of the claim mappings of the tenant
+     */
+    public int invalidateCache(int tenantId) {
+        TenantVersion tenantVersion = getTenantVersion(tenantId);
+        synchronized (tenantVersion) {
+            Integer sharedVersion = getValueFromCache(INVALIDATE_CACHE_KEY + tenantId);
+            int version = tenantVersion.version;
+            if (sharedVersion != null && sharedVersion > version) {
+                version = sharedVersion;
+            }
+            tenantVersion.version = version + 1;
+            addToCache(INVALIDATE_CACHE_KEY + tenantId, tenantVersion.version);
+            tenantVersion.nextCheckTime = System.currentTimeMillis() + VERSION_CHECK_INTERVAL;
+            if (log.isDebugEnabled()) {
+                log.debug("Claim mapping version of tenant " + tenantId + " is : " + tenantVersion.version);
             }
+            return tenantVersion.version;
         }
-        return false;
     }
 
-    public void invalidateCache() {
-        myHashCode++;
-        addToCache(INVALIDATE_CACHE_KEY, myHashCode);
-        if (log.isDebugEnabled()) {
-            log.debug("My Hash code of Claim cache is : " + myHashCode);
+    private TenantVersion getTenantVersion(int tenantId) {
+        TenantVersion tenantVersion = tenantVersions.get(tenantId);
+        if (tenantVersion == null) {
+            tenantVersion = new TenantVersion();
+            TenantVersion existing = tenantVersions.putIfAbsent(tenantId, tenantVersion);
+            if (existing != null) {
+                tenantVersion = existing;
+            }
         }
+        return tenantVersion;
     }
 
     /**
@@ -116,10 +166,9 @@ public class ClaimInvalidationCache {
             cache.remove(key);
         }
     }
-}
-
-
-
-
-
 
+    private static class TenantVersion {
+        private volatile int version;
+        private volatile long nextCheckTime;
+    }
+}
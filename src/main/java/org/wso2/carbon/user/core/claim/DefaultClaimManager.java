@@ -39,8 +39,13 @@ public class DefaultClaimManager implements ClaimManager {
     private ClaimInvalidationCache claimCache;
     private DataSource datasource;
     private ClaimBuilder claimBuilder;
+    private int tenantId;
 
-    private Map<String, ClaimMapping> claimMapping;
+    private volatile Map<String, ClaimMapping> claimMapping;
+    // version of the claim mappings of the tenant which claimMapping holds
+    private volatile int claimVersion;
+    // built from claimMapping whenever it changes
+    private volatile ClaimAttributeTable attributeTable;
 
     /**
      * @param claimMapping
@@ -52,22 +57,63 @@ public class DefaultClaimManager implements ClaimManager {
         this.claimBuilder = new ClaimBuilder(tenantId);
         this.claimDAO = new ClaimDAO(dataSource, tenantId);
 
+        this.tenantId = tenantId;
         this.claimCache = ClaimInvalidationCache.getInstance();
-        // If there is value for hash, load existing claim mapping in db
-        if (this.claimBuilder != null && this.claimCache.isInvalid()) {
+        int version = this.claimCache.getVersion(tenantId);
+        // If the claim mappings of the tenant have a version, load existing claim mapping in db
+        if (this.claimBuilder != null && version > 0) {
             try {
-                this.claimMapping = getClaimMapFromDB();
+                setClaimMapping(getClaimMapFromDB());
+                this.claimVersion = version;
             } catch (UserStoreException e) {
-                this.claimMapping = new ConcurrentHashMap<String, ClaimMapping>();
-                this.claimMapping.putAll(claimMapping);
-                this.claimCache.invalidateCache();
+                Map<String, ClaimMapping> mappings = new ConcurrentHashMap<String, ClaimMapping>();
+                mappings.putAll(claimMapping);
+                setClaimMapping(mappings);
+                // the mappings are not of any version, they are loaded from the database on next use
+                versionChanged(0);
             }
         }
         // else this is the first instance load claims
         else {
-            this.claimMapping = new ConcurrentHashMap<String, ClaimMapping>();
-            this.claimMapping.putAll(claimMapping);
-            this.claimCache.invalidateCache();
+            Map<String, ClaimMapping> mappings = new ConcurrentHashMap<String, ClaimMapping>();
+            mappings.putAll(claimMapping);
+            setClaimMapping(mappings);
+            versionChanged(0);
+        }
+    }
+
+    private void setClaimMapping(Map<String, ClaimMapping> claimMapping) {
+        this.attributeTable = new ClaimAttributeTable(claimMapping);
+        this.claimMapping = claimMapping;
+    }
+
+    /**
+     * Reload the claim mappings from the database if they were changed by another claim
+     * manager of the tenant, on this node or another.
+     *
+     * @return the version of the claim mappings held
+     */
+    private int reloadIfChanged() throws UserStoreException {
+        int version = claimCache.getVersion(tenantId);
+        if (version != claimVersion) {
+            setClaimMapping(getClaimMapFromDB());
+            this.claimVersion = version;
+        }
+        return version;
+    }
+
+    /**
+     * Make a change of the claim mappings known to the other claim managers of the tenant. The
+     * mappings held are of the new version only if nobody else changed them since the given
+     * version. Otherwise the changes of the others are only in the database, hence the version
+     * held is left behind, and the mappings are loaded again on next use.
+     *
+     * @param loadedVersion version of the mappings the change was made to
+     */
+    private void versionChanged(int loadedVersion) {
+        int version = claimCache.invalidateCache(tenantId);
+        if (version - 1 == loadedVersion) {
+            this.claimVersion = version;
         }
     }
 
@@ -83,14 +129,8 @@ public class DefaultClaimManager implements ClaimManager {
             }
         }
 
-        if (claimCache.isInvalid()) {
-            this.claimMapping = getClaimMapFromDB();
-        }
-        ClaimMapping mapping = claimMapping.get(claimURI);
-        if (mapping != null) {
-            return mapping.getMappedAttribute();
-        }
-        return null;
+        reloadIfChanged();
+        return attributeTable.getAttributeName(claimURI);
     }
 
     /**
@@ -108,22 +148,20 @@ public class DefaultClaimManager implements ClaimManager {
             }
         }
 
-        if (claimCache.isInvalid()) {
-            this.claimMapping = getClaimMapFromDB();
-        }
-        ClaimMapping mapping = claimMapping.get(claimURI);
-        if (mapping != null) {
-            if (domainName != null) {
-                String mappedAttrib = mapping.getMappedAttribute(domainName.toUpperCase());
-                if (mappedAttrib != null) {
-                    return mappedAttrib;
-                }
-                return mapping.getMappedAttribute();
-            } else {
-                return mapping.getMappedAttribute();
-            }
-        }
-        return null;
+        reloadIfChanged();
+        return attributeTable.getAttributeName(domainName, claimURI);
+    }
+
+    /**
+     * Get the tables which resolve claims to attributes of every user store domain, and
+     * attributes to claims. The claim manager listeners are not called.
+     *
+     * @return claim attribute tables of the current claim mappings
+     * @throws UserStoreException
+     */
+    public ClaimAttributeTable getClaimAttributeTable() throws UserStoreException {
+        reloadIfChanged();
+        return attributeTable;
     }
 
     /**
@@ -138,9 +176,7 @@ public class DefaultClaimManager implements ClaimManager {
             }
         }
 
-        if (claimCache.isInvalid()) {
-            this.claimMapping = getClaimMapFromDB();
-        }
+        reloadIfChanged();
         ClaimMapping mapping = claimMapping.get(claimURI);
         if (mapping != null) {
             return mapping.getClaim();
@@ -156,9 +192,7 @@ public class DefaultClaimManager implements ClaimManager {
                 return null;
             }
         }
-        if (claimCache.isInvalid()) {
-            this.claimMapping = getClaimMapFromDB();
-        }
+        reloadIfChanged();
         return claimMapping.get(claimURI);
     }
 
@@ -174,9 +208,7 @@ public class DefaultClaimManager implements ClaimManager {
                 return null;
             }
         }
-        if (claimCache.isInvalid()) {
-            this.claimMapping = getClaimMapFromDB();
-        }
+        reloadIfChanged();
         List<ClaimMapping> claimList = new ArrayList<ClaimMapping>();
         Iterator<Entry<String, ClaimMapping>> iterator = claimMapping.entrySet().iterator();
 
@@ -203,9 +235,7 @@ public class DefaultClaimManager implements ClaimManager {
             }
         }
 
-        if (claimCache.isInvalid()) {
-            this.claimMapping = getClaimMapFromDB();
-        }
+        reloadIfChanged();
         List<ClaimMapping> claimList = null;
         claimList = new ArrayList<ClaimMapping>();
         Iterator<Entry<String, ClaimMapping>> iterator = claimMapping.entrySet().iterator();
@@ -229,9 +259,7 @@ public class DefaultClaimManager implements ClaimManager {
                 return null;
             }
         }
-        if (claimCache.isInvalid()) {
-            this.claimMapping = getClaimMapFromDB();
-        }
+        reloadIfChanged();
         List<ClaimMapping> claimList = null;
         claimList = new ArrayList<ClaimMapping>();
         Iterator<Entry<String, ClaimMapping>> iterator = claimMapping.entrySet().iterator();
@@ -257,9 +285,7 @@ public class DefaultClaimManager implements ClaimManager {
                 return null;
             }
         }
-        if (claimCache.isInvalid()) {
-            this.claimMapping = getClaimMapFromDB();
-        }
+        reloadIfChanged();
         List<ClaimMapping> claimList = null;
         claimList = new ArrayList<ClaimMapping>();
         Iterator<Entry<String, ClaimMapping>> iterator = claimMapping.entrySet().iterator();
@@ -283,9 +309,7 @@ public class DefaultClaimManager implements ClaimManager {
                 return null;
             }
         }
-        if (claimCache.isInvalid()) {
-            this.claimMapping = getClaimMapFromDB();
-        }
+        reloadIfChanged();
         return claimMapping.keySet().toArray(new String[claimMapping.size()]);
     }
 
@@ -298,11 +322,7 @@ public class DefaultClaimManager implements ClaimManager {
                 return;
             }
         }
-        if (claimCache.isInvalid()) {
-            this.claimMapping = getClaimMapFromDB();
-        }
         addNewClaimMapping(getClaimMapping(mapping));
-        this.claimCache.invalidateCache();
     }
 
     /**
@@ -318,13 +338,12 @@ public class DefaultClaimManager implements ClaimManager {
         }
         if (mapping != null && mapping.getClaim() != null) {
 
-            if (claimCache.isInvalid()) {
-                this.claimMapping = getClaimMapFromDB();
-            }
+            int loadedVersion = reloadIfChanged();
             if (!claimMapping.containsKey(mapping.getClaim().getClaimUri())) {
                 claimMapping.put(mapping.getClaim().getClaimUri(), mapping);
+                attributeTable = new ClaimAttributeTable(claimMapping);
                 claimDAO.addClaimMapping(mapping);
-                this.claimCache.invalidateCache();
+                versionChanged(loadedVersion);
             }
         }
     }
@@ -343,13 +362,12 @@ public class DefaultClaimManager implements ClaimManager {
         }
         if (mapping != null && mapping.getClaim() != null) {
 
-            if (claimCache.isInvalid()) {
-                this.claimMapping = getClaimMapFromDB();
-            }
+            int loadedVersion = reloadIfChanged();
             if (claimMapping.containsKey(mapping.getClaim().getClaimUri())) {
                 claimMapping.remove(mapping.getClaim().getClaimUri());
+                attributeTable = new ClaimAttributeTable(claimMapping);
                 claimDAO.deleteClaimMapping(getClaimMapping(mapping));
-                this.claimCache.invalidateCache();
+                versionChanged(loadedVersion);
             }
         }
     }
@@ -368,13 +386,12 @@ public class DefaultClaimManager implements ClaimManager {
         }
         if (mapping != null && mapping.getClaim() != null) {
 
-            if (claimCache.isInvalid()) {
-                this.claimMapping = getClaimMapFromDB();
-            }
+            int loadedVersion = reloadIfChanged();
             if (claimMapping.containsKey(mapping.getClaim().getClaimUri())) {
                 claimMapping.put(mapping.getClaim().getClaimUri(), getClaimMapping(mapping));
+                attributeTable = new ClaimAttributeTable(claimMapping);
                 claimDAO.updateClaim(getClaimMapping(mapping));
-                this.claimCache.invalidateCache();
+                versionChanged(loadedVersion);
             }
         }
     }
@@ -30,8 +30,10 @@ import org.wso2.carbon.user.core.UserStoreException;
 import org.wso2.carbon.user.core.UserStoreManager;
 import org.wso2.carbon.user.core.authorization.AuthorizationCache;
 import org.wso2.carbon.user.core.claim.Claim;
+import org.wso2.carbon.user.core.claim.ClaimAttributeTable;
 import org.wso2.carbon.user.core.claim.ClaimManager;
 import org.wso2.carbon.user.core.claim.ClaimMapping;
+import org.wso2.carbon.user.core.claim.DefaultClaimManager;
 import org.wso2.carbon.user.core.dto.RoleDTO;
 import org.wso2.carbon.user.core.hybrid.HybridRoleManager;
 import org.wso2.carbon.user.core.internal.UMListenerServiceComponent;
@@ -57,10 +59,14 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -102,6 +108,15 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
     protected boolean writeGroupsEnabled = false;
     private UserStoreManager secondaryUserStoreManager;
     private boolean userRolesCacheEnabled = true;
+    private AuthenticationCache authenticationCache = null;
+    private long authenticationCacheTimeOut;
+    private UserDomainCache userDomainCache = null;
+    private RoleMembershipCache roleMembershipCache = null;
+    private long roleMembershipCacheTimeOut;
+    private long userDomainCacheTimeOut;
+    private UniqueClaimCache uniqueClaimCache = null;
+    private long uniqueClaimCacheTimeOut;
+    private Set<String> uniqueClaims = Collections.emptySet();
     private String cacheIdentifier;
     private boolean replaceEscapeCharactersAtUserLogin = true;
     private Map<String, UserStoreManager> userStoreManagerHolder = new HashMap<String, UserStoreManager>();
@@ -114,6 +129,31 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
             return Boolean.FALSE;
         }
     };
+    /**
+     * Methods invoked by callSecure, keyed by the method name and the argument types.
+     */
+    private static final ConcurrentMap<String, Method> secureMethods = new ConcurrentHashMap<String, Method>();
+
+    /**
+     * @return true if the call has to go through callSecure, which is only the case for the
+     * outermost call when a security manager is installed
+     */
+    private static boolean isSecureCallRequired() {
+        return System.getSecurityManager() != null && !isSecureCall.get();
+    }
+
+    private static Method getSecureMethod(String methodName, Class[] argTypes) throws NoSuchMethodException {
+        StringBuilder key = new StringBuilder(methodName);
+        for (Class argType : argTypes) {
+            key.append(',').append(argType.getName());
+        }
+        Method method = secureMethods.get(key.toString());
+        if (method == null) {
+            method = AbstractUserStoreManager.class.getDeclaredMethod(methodName, argTypes);
+            secureMethods.put(key.toString(), method);
+        }
+        return method;
+    }
 
     /**
      * This method is used by the APIs' in the AbstractUserStoreManager
@@ -124,20 +164,15 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
 
         final AbstractUserStoreManager instance = this;
 
-        isSecureCall.set(Boolean.TRUE);
         final Method method;
         try {
-            Class clazz = Class.forName("org.wso2.carbon.user.core.common.AbstractUserStoreManager");
-            method = clazz.getDeclaredMethod(methodName, argTypes);
-
+            method = getSecureMethod(methodName, argTypes);
         } catch (NoSuchMethodException e) {
             log.error("Error occurred when calling method " + methodName, e);
             throw new UserStoreException(e);
-        } catch (ClassNotFoundException e) {
-            log.error("Error occurred when calling class " + methodName, e);
-            throw new UserStoreException(e);
         }
 
+        isSecureCall.set(Boolean.TRUE);
         try {
             return AccessController.doPrivileged(new PrivilegedExceptionAction<Object>() {
                 @Override
@@ -167,6 +202,25 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
     protected abstract Map<String, String> getUserPropertyValues(String userName,
                                                                  String[] propertyNames, String profileName) throws UserStoreException;
 
+    /**
+     * Read properties of many users. User stores which can read the properties of many users
+     * in one query should override this; by default the users are read one by one.
+     *
+     * @param userNames     domain-less user names
+     * @param propertyNames names of the properties
+     * @param profileName   profile name
+     * @return property values of each user found, keyed by user name
+     * @throws UserStoreException
+     */
+    protected Map<String, Map<String, String>> getUsersPropertyValues(String[] userNames, String[] propertyNames,
+                                                                      String profileName) throws UserStoreException {
+        Map<String, Map<String, String>> values = new HashMap<String, Map<String, String>>();
+        for (String userName : userNames) {
+            values.put(userName, getUserPropertyValues(userName, propertyNames, profileName));
+        }
+        return values;
+    }
+
     /**
      * @param roleName
      * @return
@@ -455,6 +509,140 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
         }
 
     }
+    /**
+     * Authenticates with this user store, using a recent result for the same credential if the
+     * authentication cache is enabled.
+     *
+     * @param userName   user name without the domain
+     * @param credential credential
+     * @return true if the user is authenticated
+     * @throws UserStoreException if the user store can not be reached
+     */
+    private boolean doAuthenticateWithCache(String userName, Object credential) throws UserStoreException {
+
+        if (authenticationCache == null) {
+            return doAuthenticate(userName, credential);
+        }
+        String cacheUserName = UserCoreUtil.addDomainToName(userName, getMyDomainName());
+        String fingerprint = authenticationCache.getFingerprint(tenantId, cacheUserName, credential);
+        if (fingerprint == null) {
+            return doAuthenticate(userName, credential);
+        }
+        // the result is only cached if this entry is not changed while authenticating
+        AuthenticationCacheEntry cacheEntry = authenticationCache.getCacheEntry(cacheIdentifier, tenantId,
+                cacheUserName);
+        if (cacheEntry != null) {
+            Boolean cachedResult = cacheEntry.isAuthenticated(fingerprint, System.currentTimeMillis());
+            if (cachedResult != null) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Authentication result of user " + cacheUserName + " is taken from the cache");
+                }
+                return cachedResult;
+            }
+        }
+        boolean authenticated = doAuthenticate(userName, credential);
+        authenticationCache.addToCache(cacheIdentifier, tenantId, cacheUserName, cacheEntry, fingerprint,
+                authenticated, authenticationCacheTimeOut);
+        return authenticated;
+    }
+
+    /**
+     * Removes the cached authentication results of a user, after the credential of the user is
+     * changed or the user is added or deleted.
+     *
+     * @param userName user name without the domain
+     */
+    private void clearAuthenticationCache(String userName) {
+        if (authenticationCache != null) {
+            authenticationCache.clearCacheEntry(cacheIdentifier, tenantId,
+                    UserCoreUtil.addDomainToName(userName, getMyDomainName()));
+        }
+    }
+
+    /**
+     * @return the unique claim cache key of the claim value, or null if the user having the
+     * claim value is not cached
+     */
+    private UniqueClaimCacheKey getUniqueClaimCacheKey(String claim, String claimValue, String profileName) {
+        if (uniqueClaimCache == null || claim == null || claimValue == null || !uniqueClaims.contains(claim)
+                || claimValue.contains("*") || claimValue.indexOf(CarbonConstants.DOMAIN_SEPARATOR) > 0) {
+            return null;
+        }
+        if (profileName == null) {
+            profileName = UserCoreConstants.DEFAULT_PROFILE;
+        }
+        return new UniqueClaimCacheKey(cacheIdentifier, tenantId, claim, claimValue, profileName);
+    }
+
+    /**
+     * Read the values of the unique claims of this user store manager among the given claims,
+     * which have to be removed from the unique claim cache once the claims of the user are
+     * changed. The user store manager the user is in is called within its domain free zone,
+     * after the user has been checked, so the values are read without the checks and listeners
+     * of getUserClaimValues.
+     *
+     * @param store       user store manager the user is in
+     * @param userName    user name without the domain
+     * @param claims      claims being changed
+     * @param domainName  domain of the user store the user is in
+     * @param profileName profile name
+     * @return the values of the unique claims, or null if there are none
+     */
+    private Map<String, String> getUniqueClaimValues(UserStoreManager store, String userName, String[] claims,
+                                                     String domainName, String profileName)
+            throws UserStoreException {
+        if (uniqueClaimCache == null || claims == null) {
+            return null;
+        }
+        List<String> userUniqueClaims = new ArrayList<String>();
+        for (String claim : claims) {
+            if (uniqueClaims.contains(claim)) {
+                userUniqueClaims.add(claim);
+            }
+        }
+        if (userUniqueClaims.isEmpty()) {
+            return null;
+        }
+        String[] claimsToRead = userUniqueClaims.toArray(new String[userUniqueClaims.size()]);
+        if (store instanceof AbstractUserStoreManager) {
+            return ((AbstractUserStoreManager) store).doGetUserClaimValues(userName, claimsToRead, domainName,
+                    profileName);
+        }
+        return store.getUserClaimValues(userName, claimsToRead, profileName);
+    }
+
+    private void clearUniqueClaimCache(Map<String, String> uniqueClaimValues, String profileName) {
+        if (uniqueClaimCache == null || uniqueClaimValues == null) {
+            return;
+        }
+        for (Map.Entry<String, String> entry : uniqueClaimValues.entrySet()) {
+            UniqueClaimCacheKey key = getUniqueClaimCacheKey(entry.getKey(), entry.getValue(), profileName);
+            if (key != null) {
+                uniqueClaimCache.clearCacheEntry(key);
+            }
+        }
+    }
+
+    /**
+     * @param userName   user name without the domain
+     * @param domainName domain of the user store the user was added to
+     */
+    private void addToUserDomainCache(String userName, String domainName) {
+        if (userDomainCache != null && domainName != null) {
+            userDomainCache.addToCache(cacheIdentifier, tenantId, userName, domainName.toUpperCase(),
+                    userDomainCacheTimeOut);
+        }
+    }
+
+    /**
+     * @param userName user name without the domain
+     */
+    private void clearUserDomainCache(String userName) {
+        if (userDomainCache != null) {
+            userDomainCache.clearCacheEntry(cacheIdentifier, tenantId, userName);
+        }
+    }
+
     /**
      * @param userName
      * @param credential
@@ -475,6 +663,21 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
 
         // #################### Domain Name Free Zone Starts Here ################################
 
+        // A user whose user store is known is authenticated against that user store alone
+        String knownDomain = null;
+        AbstractUserStoreManager knownUserStoreManager = null;
+        if (!domainProvided && userDomainCache != null) {
+            knownDomain = userDomainCache.getUserDomain(cacheIdentifier, tenantId, userName);
+            if (knownDomain != null && !knownDomain.equalsIgnoreCase(getMyDomainName())) {
+                UserStoreManager userStoreManager = getSecondaryUserStoreManager(knownDomain);
+                if (userStoreManager instanceof AbstractUserStoreManager) {
+                    knownUserStoreManager = (AbstractUserStoreManager) userStoreManager;
+                } else {
+                    knownDomain = null;
+                }
+            }
+        }
+
         // #################### <Listeners> #####################################################
         for (UserStoreManagerListener listener : UMListenerServiceComponent
                 .getUserStoreManagerListeners()) {
@@ -514,31 +717,47 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
             throw new UserStoreException(errorMessage, e);
         }
 
-        try {
-            // Let's authenticate with the primary UserStoreManager.
-            authenticated = doAuthenticate(userName, credential);
-        } catch (Exception e) {
-            // We can ignore and proceed. Ignore the results from this user store.
-            log.error(e);
-            authenticated = false;
-        }
+        if (knownUserStoreManager != null) {
+            // the user stores before the one of the user are skipped, as in the chain below
+            if (log.isDebugEnabled()) {
+                log.debug("Authenticating user " + userName + " with the user store of domain " + knownDomain);
+            }
+            authenticated = knownUserStoreManager.authenticate(userName, credential, true);
+        } else {
+            try {
+                // Let's authenticate with the primary UserStoreManager.
+                authenticated = doAuthenticateWithCache(userName, credential);
+            } catch (Exception e) {
+                // We can ignore and proceed. Ignore the results from this user store.
+                log.error(e);
+                authenticated = false;
+            }
 
-        if (authenticated) {
-            // Set domain in thread local variable for subsequent operations
-            String domain = UserCoreUtil.getDomainName(this.realmConfig);
-            if (domain != null) {
-                UserCoreUtil.setDomainInThreadLocal(domain.toUpperCase());
+            if (authenticated) {
+                // Set domain in thread local variable for subsequent operations
+                String domain = UserCoreUtil.getDomainName(this.realmConfig);
+                if (domain != null) {
+                    UserCoreUtil.setDomainInThreadLocal(domain.toUpperCase());
+                }
             }
         }
 
         // If authentication fails in the previous step and if the user has not specified a
         // domain- then we need to execute chained UserStoreManagers recursively.
-        if (!authenticated && !domainProvided && this.getSecondaryUserStoreManager() != null
+        if (!authenticated && !domainProvided && knownDomain == null && this.getSecondaryUserStoreManager() != null
                 && this.getSecondaryUserStoreManager() instanceof AbstractUserStoreManager) {
             authenticated = ((AbstractUserStoreManager) this.getSecondaryUserStoreManager())
                     .authenticate(userName, credential, domainProvided);
         }
 
+        if (authenticated && !domainProvided && knownUserStoreManager == null && userDomainCache != null) {
+            // the user store which authenticated the user has set its domain
+            String domain = UserCoreUtil.getDomainFromThreadLocal();
+            if (domain != null) {
+                userDomainCache.addToCache(cacheIdentifier, tenantId, userName, domain, userDomainCacheTimeOut);
+            }
+        }
+
         // You cannot change authentication decision in post handler to TRUE
         for (UserOperationEventListener listener : UMListenerServiceComponent
                 .getUserOperationEventListeners()) {
@@ -556,7 +775,7 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
     public final String getUserClaimValue(String userName, String claim, String profileName)
             throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, String.class, String.class};
             Object object = callSecure("getUserClaimValue", new Object[]{userName, claim, profileName}, argTypes);
             return (String) object;
@@ -612,7 +831,7 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
     public final Claim[] getUserClaimValues(String userName, String profileName)
             throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, String.class};
             Object object = callSecure("getUserClaimValues", new Object[]{userName, profileName}, argTypes);
             return (Claim[]) object;
@@ -671,7 +890,7 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
     public final Map<String, String> getUserClaimValues(String userName, String[] claims,
                                                         String profileName) throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, String[].class, String.class};
             Object object = callSecure("getUserClaimValues", new Object[]{userName, claims, profileName}, argTypes);
             return (Map<String, String>) object;
@@ -710,6 +929,113 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
         return finalValues;
     }
 
+    /**
+     * Get the values of the given claims of many users. The users of each user store are read
+     * with {@link #getUsersPropertyValues(String[], String[], String)}, which the user stores
+     * implement with a few queries instead of one query per user. Users are not checked for
+     * existence; a user who does not exist gets no claim values.
+     *
+     * @param userNames   user names, which may be domain qualified
+     * @param claims      claim URIs
+     * @param profileName profile name
+     * @return claim values of each user, keyed by the user names as given
+     * @throws UserStoreException
+     */
+    public final Map<String, Map<String, String>> getUsersClaimValues(String[] userNames, String[] claims,
+                                                                      String profileName)
+            throws UserStoreException {
+
+        if (isSecureCallRequired()) {
+            Class argTypes[] = new Class[]{String[].class, String[].class, String.class};
+            Object object = callSecure("getUsersClaimValues", new Object[]{userNames, claims, profileName},
+                    argTypes);
+            return (Map<String, Map<String, String>>) object;
+        }
+
+        Map<String, Map<String, String>> usersClaimValues = new HashMap<String, Map<String, String>>();
+        if (userNames == null || userNames.length == 0) {
+            return usersClaimValues;
+        }
+
+        Map<UserStoreManager, Map<String, String>> secondaryUsers =
+                new LinkedHashMap<UserStoreManager, Map<String, String>>();
+        Map<String, String> localUsers = new LinkedHashMap<String, String>();
+        String domainName = null;
+        for (String userName : userNames) {
+            UserStore userStore = getUserStore(userName);
+            if (userStore.isRecurssive()) {
+                Map<String, String> domainFreeNames = secondaryUsers.get(userStore.getUserStoreManager());
+                if (domainFreeNames == null) {
+                    domainFreeNames = new LinkedHashMap<String, String>();
+                    secondaryUsers.put(userStore.getUserStoreManager(), domainFreeNames);
+                }
+                domainFreeNames.put(userStore.getDomainFreeName(), userName);
+            } else {
+                localUsers.put(userStore.getDomainFreeName(), userName);
+                domainName = userStore.getDomainName();
+            }
+        }
+
+        for (Map.Entry<UserStoreManager, Map<String, String>> entry : secondaryUsers.entrySet()) {
+            UserStoreManager manager = entry.getKey();
+            Map<String, String> domainFreeNames = entry.getValue();
+            if (manager instanceof AbstractUserStoreManager) {
+                Map<String, Map<String, String>> values = ((AbstractUserStoreManager) manager)
+                        .getUsersClaimValues(domainFreeNames.keySet().toArray(new String[domainFreeNames.size()]),
+                                claims, profileName);
+                for (Map.Entry<String, Map<String, String>> userValues : values.entrySet()) {
+                    usersClaimValues.put(domainFreeNames.get(userValues.getKey()), userValues.getValue());
+                }
+            } else {
+                for (Map.Entry<String, String> name : domainFreeNames.entrySet()) {
+                    usersClaimValues.put(name.getValue(),
+                            manager.getUserClaimValues(name.getKey(), claims, profileName));
+                }
+            }
+        }
+
+        if (localUsers.isEmpty()) {
+            return usersClaimValues;
+        }
+
+        // #################### Domain Name Free Zone Starts Here ################################
+
+        if (profileName == null || profileName.trim().length() == 0) {
+            profileName = UserCoreConstants.DEFAULT_PROFILE;
+        }
+
+        String[] localUserNames = localUsers.keySet().toArray(new String[localUsers.size()]);
+        String[] properties = getClaimProperties(localUserNames[0], claims, domainName);
+        Map<String, Map<String, String>> usersProperties = getUsersPropertyValues(localUserNames, properties,
+                profileName);
+
+        for (String userName : localUserNames) {
+            Map<String, String> userProperties = usersProperties.get(userName);
+            if (userProperties == null) {
+                userProperties = new HashMap<String, String>();
+            }
+            Map<String, String> finalValues = getClaimValues(userName, claims, domainName, profileName,
+                    userProperties);
+
+            // #################### <Listeners> #####################################################
+            for (UserOperationEventListener listener : UMListenerServiceComponent
+                    .getUserOperationEventListeners()) {
+                if (listener instanceof AbstractUserOperationEventListener) {
+                    AbstractUserOperationEventListener newListener = (AbstractUserOperationEventListener) listener;
+                    if (!newListener.doPostGetUserClaimValues(userName, claims, profileName,
+                            finalValues, this)) {
+                        break;
+                    }
+                }
+            }
+            // #################### </Listeners> #####################################################
+
+            usersClaimValues.put(localUsers.get(userName), finalValues);
+        }
+
+        return usersClaimValues;
+    }
+
     /**
      * If the claim is domain qualified, search the users respective user store. Else we
      * return the users in all the user-stores recursively
@@ -719,12 +1045,33 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
             throws UserStoreException {
 
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, String.class, String.class};
             Object object = callSecure("getUserList", new Object[]{claim, claimValue, profileName}, argTypes);
             return (String[]) object;
         }
 
+        UniqueClaimCacheKey uniqueClaimKey = getUniqueClaimCacheKey(claim, claimValue, profileName);
+        UniqueClaimCacheEntry uniqueClaimEntry = null;
+        if (uniqueClaimKey != null) {
+            uniqueClaimEntry = uniqueClaimCache.getCacheEntry(uniqueClaimKey);
+            String userName = uniqueClaimEntry == null ? null :
+                    uniqueClaimEntry.getUserName(System.currentTimeMillis());
+            if (userName != null) {
+                return new String[]{userName};
+            }
+        }
+
+        String[] userList = doGetUserList(claim, claimValue, profileName);
+        if (uniqueClaimKey != null && userList.length == 1) {
+            uniqueClaimCache.addToCache(uniqueClaimKey, uniqueClaimEntry, userList[0], uniqueClaimCacheTimeOut);
+        }
+        return userList;
+    }
+
+    private String[] doGetUserList(String claim, String claimValue, String profileName)
+            throws UserStoreException {
+
         String property = null;
         //extracting the domain from claimValue. Not introducing a new method due to carbon patch process..
         String extractedDomain = null;
@@ -760,56 +1107,84 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
                 return UserCoreUtil.addDomainToNames(userArray, extractedDomain);
             }
         }
-        //if no domain is given then search all the user stores
-        List<String> usersFromAllStoresList = new LinkedList<String>();
-        if (this instanceof AbstractUserStoreManager) {
-            AbstractUserStoreManager currentUserStoreManager = this;
-            if (log.isDebugEnabled()) {
-                log.debug("No domain name found in claim value. " +
-                        "Searching through all user stores for possible matches");
-            }
-            do {
-                String currentDomain = currentUserStoreManager.getMyDomainName();
-                try {
-                    property = claimManager.getAttributeName(currentDomain, claim);
-                } catch (org.wso2.carbon.user.api.UserStoreException e) {
-                    throw new UserStoreException("Error occurred while retrieving attribute name " +
-                            "for domain : " + currentDomain + " and claim " + claim);
-                }
-                if (property == null) {
-                    if (log.isDebugEnabled()) {
-                        log.debug("Could not find matching property for\n" +
-                                "claim :" + claim +
-                                "domain :" + currentDomain);
+        //if no domain is given then search all the user stores, the secondary user stores
+        //while the primary user store is searched
+        if (log.isDebugEnabled()) {
+            log.debug("No domain name found in claim value. " +
+                    "Searching through all user stores for possible matches");
+        }
+        final String searchValue = claimValue;
+        final String searchProfile = profileName;
+        long deadline = System.currentTimeMillis() + getSecondaryUserStoreSearchTimeOut();
+        Map<String, Future<String[]>> secondaryUserLists = new LinkedHashMap<String, Future<String[]>>();
+        UserStoreManager secondary = this.getSecondaryUserStoreManager();
+        while (secondary instanceof AbstractUserStoreManager) {
+            final AbstractUserStoreManager storeManager = (AbstractUserStoreManager) secondary;
+            final String storeDomain = storeManager.getMyDomainName();
+            final String storeProperty = getUserListProperty(claim, claimValue, storeDomain);
+            if (storeProperty != null) {
+                secondaryUserLists.put(storeDomain, UserStoreSearchExecutor.submit(new Callable<String[]>() {
+                    public String[] call() throws Exception {
+                        String[] userArray = storeManager.getUserListFromProperties(
+                                storeProperty, searchValue, searchProfile);
+                        return UserCoreUtil.addDomainToNames(userArray, storeDomain);
                     }
-                    continue; // continue look in other stores
-                }
-                String[] userArray2 = currentUserStoreManager.getUserListFromProperties(
-                        property, claimValue, profileName);
-                if (log.isDebugEnabled()) {
-                    log.debug("searching the property :" + property + "in user store" + currentDomain +
-                            "for given claim value : " + claimValue);
-                }
-                String[] userWithDomainArray = UserCoreUtil.addDomainToNames(userArray2, currentDomain);
-                usersFromAllStoresList.addAll(Arrays.asList(userWithDomainArray));
+                }));
             }
-            while ((currentUserStoreManager.getSecondaryUserStoreManager() instanceof AbstractUserStoreManager)
-                    && ((currentUserStoreManager = (AbstractUserStoreManager) currentUserStoreManager.getSecondaryUserStoreManager()) != null)
-                    );
+            secondary = storeManager.getSecondaryUserStoreManager();
         }
+
+        List<String[]> usersFromAllStoresList = new ArrayList<String[]>();
+        String currentDomain = getMyDomainName();
+        property = getUserListProperty(claim, claimValue, currentDomain);
+        if (property != null) {
+            String[] userArray2 = getUserListFromProperties(property, claimValue, profileName);
+            usersFromAllStoresList.add(UserCoreUtil.addDomainToNames(userArray2, currentDomain));
+        }
+        // a failure of a secondary user store fails the search, as it always has
+        addSecondaryUserStoreResults(secondaryUserLists, deadline, usersFromAllStoresList, true);
         //done with all user store processing. Return the user array if not empty
-        String[] fullUserList = usersFromAllStoresList.toArray(new String[0]);
+        String[] fullUserList = UserCoreUtil.combineArrays(usersFromAllStoresList);
         Arrays.sort(fullUserList);
         return fullUserList;
     }
 
+    /**
+     * @param claim      claim URI
+     * @param claimValue claim value searched for, for logging
+     * @param domain     domain of the user store
+     * @return the attribute of the claim in the user store, or null if the claim is not mapped
+     * @throws UserStoreException if the claim mapping can not be read
+     */
+    private String getUserListProperty(String claim, String claimValue, String domain)
+            throws UserStoreException {
+        String property;
+        try {
+            property = claimManager.getAttributeName(domain, claim);
+        } catch (org.wso2.carbon.user.api.UserStoreException e) {
+            throw new UserStoreException("Error occurred while retrieving attribute name " +
+                    "for domain : " + domain + " and claim " + claim);
+        }
+        if (log.isDebugEnabled()) {
+            if (property == null) {
+                log.debug("Could not find matching property for\n" +
+                        "claim :" + claim +
+                        "domain :" + domain);
+            } else {
+                log.debug("searching the property :" + property + "in user store" + domain +
+                        "for given claim value : " + claimValue);
+            }
+        }
+        return property;
+    }
+
     /**
      * {@inheritDoc}
      */
     public final void updateCredential(String userName, Object newCredential, Object oldCredential)
             throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, Object.class, Object.class};
             callSecure("updateCredential", new Object[]{userName, newCredential, oldCredential}, argTypes);
             return;
@@ -851,6 +1226,7 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
         if (isAuth) {
 
             this.doUpdateCredential(userName, newCredential, oldCredential);
+            clearAuthenticationCache(userName);
 
             // #################### <Listeners> ##################################################
             for (UserOperationEventListener listener : UMListenerServiceComponent
@@ -874,7 +1250,7 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
     public final void updateCredentialByAdmin(String userName, Object newCredential)
             throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, Object.class};
             callSecure("updateCredentialByAdmin", new Object[]{userName, newCredential}, argTypes);
             return;
@@ -920,6 +1296,7 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
         // #################### </Listeners> #####################################################
 
         doUpdateCredentialByAdmin(userName, newCredential);
+        clearAuthenticationCache(userName);
 
         // #################### <Listeners> #####################################################
         for (UserOperationEventListener listener : UMListenerServiceComponent
@@ -951,11 +1328,21 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
                         : realmConfig.getUserStoreProperty(UserStoreConfigConstants.DOMAIN_NAME))
                         : domainName;
         String attributeName = null;
-        if (domainName != null && !domainName.equals(UserStoreConfigConstants.PRIMARY)) {
-            attributeName = claimManager.getAttributeName(domainName, claimURI);
-        }
-        if (attributeName == null || attributeName.isEmpty()) {
-            attributeName = claimManager.getAttributeName(claimURI);
+        ClaimAttributeTable attributeTable = getClaimAttributeTable();
+        if (attributeTable != null) {
+            if (domainName != null && !domainName.equals(UserStoreConfigConstants.PRIMARY)) {
+                attributeName = attributeTable.getAttributeName(domainName, claimURI);
+            }
+            if (attributeName == null || attributeName.isEmpty()) {
+                attributeName = attributeTable.getAttributeName(claimURI);
+            }
+        } else {
+            if (domainName != null && !domainName.equals(UserStoreConfigConstants.PRIMARY)) {
+                attributeName = claimManager.getAttributeName(domainName, claimURI);
+            }
+            if (attributeName == null || attributeName.isEmpty()) {
+                attributeName = claimManager.getAttributeName(claimURI);
+            }
         }
 
         if (attributeName == null) {
@@ -977,7 +1364,7 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
      */
     public final void deleteUser(String userName) throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class};
             callSecure("deleteUser", new Object[]{userName}, argTypes);
             return;
@@ -1003,9 +1390,28 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
             throw new UserStoreException(LOGGED_IN_USER + "Cannot delete logged in user");
         }
 
+        deleteUser(userName, this);
+    }
+
+    /**
+     * @param userName   user name
+     * @param cacheOwner user store manager which keeps the unique claim cache
+     */
+    private void deleteUser(String userName, AbstractUserStoreManager cacheOwner) throws UserStoreException {
+
+        String[] allUniqueClaims = cacheOwner.uniqueClaims.toArray(new String[cacheOwner.uniqueClaims.size()]);
         UserStore userStore = getUserStore(userName);
         if (userStore.isRecurssive()) {
-            userStore.getUserStoreManager().deleteUser(userStore.getDomainFreeName());
+            UserStoreManager manager = userStore.getUserStoreManager();
+            if (manager instanceof AbstractUserStoreManager) {
+                ((AbstractUserStoreManager) manager).deleteUser(userStore.getDomainFreeName(), cacheOwner);
+            } else {
+                Map<String, String> uniqueClaimValues = cacheOwner.getUniqueClaimValues(manager,
+                        userStore.getDomainFreeName(), allUniqueClaims, userStore.getDomainName(), null);
+                manager.deleteUser(userStore.getDomainFreeName());
+                cacheOwner.clearUniqueClaimCache(uniqueClaimValues, null);
+            }
+            clearUserDomainCache(userStore.getDomainFreeName());
             return;
         }
 
@@ -1043,10 +1449,16 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
             throw new UserStoreException("Cannot delete user who is not exist");
         }
 
+        Map<String, String> uniqueClaimValues = cacheOwner.getUniqueClaimValues(this, userName, allUniqueClaims,
+                userStore.getDomainName(), null);
+
         // Remove users from internal role mapping
         hybridRoleManager.deleteUser(UserCoreUtil.addDomainToName(userName, getMyDomainName()));
 
         doDeleteUser(userName);
+        clearAuthenticationCache(userName);
+        clearUserDomainCache(userName);
+        cacheOwner.clearUniqueClaimCache(uniqueClaimValues, null);
 
         // Needs to clear roles cache upon deletion of a user
         clearUserRolesCache(UserCoreUtil.addDomainToName(userName, getMyDomainName()));
@@ -1068,10 +1480,28 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
     public final void setUserClaimValue(String userName, String claimURI, String claimValue,
                                         String profileName) throws UserStoreException {
 
+        setUserClaimValue(userName, claimURI, claimValue, profileName, this);
+    }
+
+    /**
+     * @param cacheOwner user store manager which keeps the unique claim cache
+     */
+    private void setUserClaimValue(String userName, String claimURI, String claimValue, String profileName,
+                                   AbstractUserStoreManager cacheOwner) throws UserStoreException {
+
         UserStore userStore = getUserStore(userName);
         if (userStore.isRecurssive()) {
-            userStore.getUserStoreManager().setUserClaimValue(userStore.getDomainFreeName(),
-                    claimURI, claimValue, profileName);
+            UserStoreManager manager = userStore.getUserStoreManager();
+            if (manager instanceof AbstractUserStoreManager) {
+                ((AbstractUserStoreManager) manager).setUserClaimValue(userStore.getDomainFreeName(),
+                        claimURI, claimValue, profileName, cacheOwner);
+            } else {
+                Map<String, String> uniqueClaimValues = cacheOwner.getUniqueClaimValues(manager,
+                        userStore.getDomainFreeName(), new String[]{claimURI}, userStore.getDomainName(),
+                        profileName);
+                manager.setUserClaimValue(userStore.getDomainFreeName(), claimURI, claimValue, profileName);
+                cacheOwner.clearUniqueClaimCache(uniqueClaimValues, profileName);
+            }
             return;
         }
         // ################# Domain Free Zone Starts Here #######################################
@@ -1093,7 +1523,10 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
         }
         // #################### </Listeners> #####################################################
 
+        Map<String, String> uniqueClaimValues = cacheOwner.getUniqueClaimValues(this, userName,
+                new String[]{claimURI}, userStore.getDomainName(), profileName);
         doSetUserClaimValue(userName, claimURI, claimValue, profileName);
+        cacheOwner.clearUniqueClaimCache(uniqueClaimValues, profileName);
 
         // #################### <Listeners> #####################################################
         for (UserOperationEventListener listener : UMListenerServiceComponent
@@ -1112,9 +1545,31 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
     public final void setUserClaimValues(String userName, Map<String, String> claims,
                                          String profileName) throws UserStoreException {
 
+        setUserClaimValues(userName, claims, profileName, this);
+    }
+
+    /**
+     * @param cacheOwner user store manager which keeps the unique claim cache
+     */
+    private void setUserClaimValues(String userName, Map<String, String> claims, String profileName,
+                                    AbstractUserStoreManager cacheOwner) throws UserStoreException {
+
         UserStore userStore = getUserStore(userName);
         if (userStore.isRecurssive()) {
-            userStore.getUserStoreManager().setUserClaimValues(userStore.getDomainFreeName(), claims, profileName);
+            UserStoreManager manager = userStore.getUserStoreManager();
+            if (manager instanceof AbstractUserStoreManager) {
+                ((AbstractUserStoreManager) manager).setUserClaimValues(userStore.getDomainFreeName(), claims,
+                        profileName, cacheOwner);
+            } else {
+                Map<String, String> uniqueClaimValues = null;
+                if (claims != null) {
+                    uniqueClaimValues = cacheOwner.getUniqueClaimValues(manager, userStore.getDomainFreeName(),
+                            claims.keySet().toArray(new String[claims.size()]), userStore.getDomainName(),
+                            profileName);
+                }
+                manager.setUserClaimValues(userStore.getDomainFreeName(), claims, profileName);
+                cacheOwner.clearUniqueClaimCache(uniqueClaimValues, profileName);
+            }
             return;
         }
 
@@ -1153,8 +1608,11 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
         }
         // #################### </Listeners> #####################################################
 
-
+        Map<String, String> uniqueClaimValues = cacheOwner.getUniqueClaimValues(this, userName,
+                refinedClaims.keySet().toArray(new String[refinedClaims.size()]), userStore.getDomainName(),
+                profileName);
         doSetUserClaimValues(userName, refinedClaims, profileName);
+        cacheOwner.clearUniqueClaimCache(uniqueClaimValues, profileName);
 
         // #################### <Listeners> #####################################################
         for (UserOperationEventListener listener : UMListenerServiceComponent
@@ -1173,16 +1631,34 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
     public final void deleteUserClaimValue(String userName, String claimURI, String profileName)
             throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, String.class, String.class};
             callSecure("deleteUserClaimValue", new Object[]{userName, claimURI, profileName}, argTypes);
             return;
         }
 
+        deleteUserClaimValue(userName, claimURI, profileName, this);
+    }
+
+    /**
+     * @param cacheOwner user store manager which keeps the unique claim cache
+     */
+    private void deleteUserClaimValue(String userName, String claimURI, String profileName,
+                                      AbstractUserStoreManager cacheOwner) throws UserStoreException {
+
         UserStore userStore = getUserStore(userName);
         if (userStore.isRecurssive()) {
-            userStore.getUserStoreManager().deleteUserClaimValue(userStore.getDomainFreeName(),
-                    claimURI, profileName);
+            UserStoreManager manager = userStore.getUserStoreManager();
+            if (manager instanceof AbstractUserStoreManager) {
+                ((AbstractUserStoreManager) manager).deleteUserClaimValue(userStore.getDomainFreeName(),
+                        claimURI, profileName, cacheOwner);
+            } else {
+                Map<String, String> uniqueClaimValues = cacheOwner.getUniqueClaimValues(manager,
+                        userStore.getDomainFreeName(), new String[]{claimURI}, userStore.getDomainName(),
+                        profileName);
+                manager.deleteUserClaimValue(userStore.getDomainFreeName(), claimURI, profileName);
+                cacheOwner.clearUniqueClaimCache(uniqueClaimValues, profileName);
+            }
             return;
         }
 
@@ -1203,7 +1679,10 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
             throw new UserStoreException(USER_NOT_FOUND + ": User does not exist. Username : " + userName);
         }
 
+        Map<String, String> uniqueClaimValues = cacheOwner.getUniqueClaimValues(this, userName,
+                new String[]{claimURI}, userStore.getDomainName(), profileName);
         doDeleteUserClaimValue(userName, claimURI, profileName);
+        cacheOwner.clearUniqueClaimCache(uniqueClaimValues, profileName);
 
         // #################### <Listeners> #####################################################
         for (UserOperationEventListener listener : UMListenerServiceComponent
@@ -1221,16 +1700,33 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
     public final void deleteUserClaimValues(String userName, String[] claims, String profileName)
             throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, String[].class, String.class};
             callSecure("deleteUserClaimValues", new Object[]{userName, claims, profileName}, argTypes);
             return;
         }
 
+        deleteUserClaimValues(userName, claims, profileName, this);
+    }
+
+    /**
+     * @param cacheOwner user store manager which keeps the unique claim cache
+     */
+    private void deleteUserClaimValues(String userName, String[] claims, String profileName,
+                                       AbstractUserStoreManager cacheOwner) throws UserStoreException {
+
         UserStore userStore = getUserStore(userName);
         if (userStore.isRecurssive()) {
-            userStore.getUserStoreManager().deleteUserClaimValues(userStore.getDomainFreeName(),
-                    claims, profileName);
+            UserStoreManager manager = userStore.getUserStoreManager();
+            if (manager instanceof AbstractUserStoreManager) {
+                ((AbstractUserStoreManager) manager).deleteUserClaimValues(userStore.getDomainFreeName(),
+                        claims, profileName, cacheOwner);
+            } else {
+                Map<String, String> uniqueClaimValues = cacheOwner.getUniqueClaimValues(manager,
+                        userStore.getDomainFreeName(), claims, userStore.getDomainName(), profileName);
+                manager.deleteUserClaimValues(userStore.getDomainFreeName(), claims, profileName);
+                cacheOwner.clearUniqueClaimCache(uniqueClaimValues, profileName);
+            }
             return;
         }
 
@@ -1251,7 +1747,10 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
             throw new UserStoreException(USER_NOT_FOUND + ": User does not exist. Username : " + userName);
         }
 
+        Map<String, String> uniqueClaimValues = cacheOwner.getUniqueClaimValues(this, userName, claims,
+                userStore.getDomainName(), profileName);
         doDeleteUserClaimValues(userName, claims, profileName);
+        cacheOwner.clearUniqueClaimCache(uniqueClaimValues, profileName);
 
         // #################### <Listeners> #####################################################
         for (UserOperationEventListener listener : UMListenerServiceComponent
@@ -1271,7 +1770,7 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
                               Map<String, String> claims, String profileName, boolean requirePasswordChange)
             throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, Object.class, String[].class, Map.class, String.class,
                     boolean.class};
             callSecure("addUser", new Object[]{userName, credential, roleList, claims, profileName,
@@ -1283,6 +1782,7 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
         if (userStore.isRecurssive()) {
             userStore.getUserStoreManager().addUser(userStore.getDomainFreeName(), credential,
                     roleList, claims, profileName, requirePasswordChange);
+            addToUserDomainCache(userStore.getDomainFreeName(), userStore.getDomainName());
             return;
         }
 
@@ -1401,6 +1901,9 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
 
         doAddUser(userName, credential, externalRoles.toArray(new String[externalRoles.size()]),
                 claims, profileName, requirePasswordChange);
+        // a failed attempt made before the user existed may have been cached
+        clearAuthenticationCache(userName);
+        addToUserDomainCache(userName, getMyDomainName());
 
         if (internalRoles.size() > 0) {
             hybridRoleManager.updateHybridRoleListOfUser(userName, null,
@@ -1433,7 +1936,7 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
     public void addUser(String userName, Object credential, String[] roleList,
                         Map<String, String> claims, String profileName) throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, Object.class, String[].class, Map.class, String.class};
             callSecure("addUser", new Object[]{userName, credential, roleList, claims, profileName}, argTypes);
             return;
@@ -1701,7 +2204,7 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
     public final void updateRoleName(String roleName, String newRoleName) throws UserStoreException {
 
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, String.class};
             callSecure("updateRoleName", new Object[]{roleName, newRoleName}, argTypes);
             return;
@@ -1803,7 +2306,7 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
      */
     public boolean isExistingRole(String roleName) throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class};
             Object object = callSecure("isExistingRole", new Object[]{roleName}, argTypes);
             return (Boolean) object;
@@ -1864,7 +2367,7 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
      */
     public boolean isExistingShareRole(String roleName) throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class};
             Object object = callSecure("isExistingShareRole", new Object[]{roleName}, argTypes);
             return (Boolean) object;
@@ -2003,7 +2506,7 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
 
     private UserStoreManager getUserStoreWithSharedRoles() throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{};
             Object object = callSecure("getUserStoreWithSharedRoles", new Object[]{}, argTypes);
             return (UserStoreManager) object;
@@ -2039,7 +2542,7 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
      */
     public boolean isUserInRole(String userName, String roleName) throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, String.class};
             Object object = callSecure("isUserInRole", new Object[]{userName, roleName}, argTypes);
             return (Boolean) object;
@@ -2058,37 +2561,25 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
 
         if (!CarbonConstants.REGISTRY_ANONNYMOUS_USERNAME.equalsIgnoreCase(userName) &&
                 realmConfig.getEveryOneRoleName().equalsIgnoreCase(roleName) &&
-                !systemUserRoleManager.isExistingSystemUser(UserCoreUtil.
+                !systemUserRoleManager.isSystemUser(UserCoreUtil.
                         removeDomainFromName(userName))) {
             return true;
         }
 
 
-        String[] roles = null;
-
-        try {
-            roles = getRoleListOfUserFromCache(tenantId, userName);
-        } catch (Exception e) {
-            //ignore
-        }
-
-        if (roles != null) {
-            if (UserCoreUtil.isContain(roleName, roles)) {
-                return true;
-            }
-        }
-
-        // TODO create new cache for this method
-        String modifiedUserName = UserCoreConstants.IS_USER_IN_ROLE_CACHE_IDENTIFIER + userName;
-        try {
-            roles = getRoleListOfUserFromCache(tenantId, modifiedUserName);
-        } catch (Exception e) {
-            //ignore
+        if (userRolesCache != null &&
+                Boolean.TRUE.equals(userRolesCache.isUserInRole(cacheIdentifier, tenantId, userName, roleName))) {
+            return true;
         }
 
-        if (roles != null) {
-            if (UserCoreUtil.isContain(roleName, roles)) {
-                return true;
+        String membershipUserName = UserCoreUtil.addDomainToName(userName, getMyDomainName());
+        RoleMembershipCacheEntry membershipEntry = null;
+        if (roleMembershipCache != null) {
+            membershipEntry = roleMembershipCache.getCacheEntry(cacheIdentifier, tenantId, membershipUserName);
+            Boolean member = membershipEntry == null ? null :
+                    membershipEntry.isUserInRole(roleName, System.currentTimeMillis());
+            if (member != null) {
+                return member;
             }
         }
 
@@ -2096,7 +2587,7 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
                 equalsIgnoreCase(UserCoreUtil.extractDomainFromName(roleName))) {
             String[] internalRoles = doGetInternalRoleListOfUser(userName, "*");
             if (UserCoreUtil.isContain(roleName, internalRoles)) {
-                addToIsUserHasRole(modifiedUserName, roleName, roles);
+                addToRoleMembershipCache(membershipUserName, membershipEntry, roleName, true);
                 return true;
             }
         }
@@ -2141,9 +2632,9 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
                     UserCoreUtil.removeDomainFromName(roleName));
         }
 
-        // add to cache
-        if (success) {
-            addToIsUserHasRole(modifiedUserName, roleName, roles);
+        // add to cache, the answer is negative only if the user store was asked
+        if (success || readGroupsEnabled) {
+            addToRoleMembershipCache(membershipUserName, membershipEntry, roleName, success);
         }
         return success;
     }
@@ -2159,20 +2650,17 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
     /**
      * Helper method
      *
-     * @param userName
-     * @param roleName
-     * @param currentRoles
+     * @param userName user name, with the domain
+     * @param previous entry of the user read before asking the user store, or null
+     * @param roleName role name
+     * @param member   whether the user is in the role
      */
-    private void addToIsUserHasRole(String userName, String roleName, String[] currentRoles) {
-        List<String> roles;
-        if (currentRoles != null) {
-            roles = new ArrayList<String>(Arrays.asList(currentRoles));
-        } else {
-            roles = new ArrayList<String>();
+    private void addToRoleMembershipCache(String userName, RoleMembershipCacheEntry previous, String roleName,
+                                          boolean member) {
+        if (roleMembershipCache != null) {
+            roleMembershipCache.addToCache(cacheIdentifier, tenantId, userName, previous, roleName, member,
+                    roleMembershipCacheTimeOut);
         }
-        roles.add(roleName);
-        addToUserRolesCache(tenantId, UserCoreUtil.addDomainToName(userName, getMyDomainName()),
-                roles.toArray(new String[roles.size()]));
     }
 
 //////////////////////////////////// Shared role APIs finish //////////////////////////////////////////
@@ -2182,7 +2670,7 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
      */
     public boolean isExistingUser(String userName) throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class};
             Object object = callSecure("isExistingUser", new Object[]{userName}, argTypes);
             return (Boolean) object;
@@ -2213,7 +2701,7 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
      */
     public final String[] listUsers(String filter, int maxItemLimit) throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, int.class};
             Object object = callSecure("listUsers", new Object[]{filter, maxItemLimit}, argTypes);
             return (String[]) object;
@@ -2245,34 +2733,90 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
             return doListUsers(filter.substring(index + 1), maxItemLimit);
         }
 
-        String[] userList = doListUsers(filter, maxItemLimit);
-
         String primaryDomain = realmConfig
                 .getUserStoreProperty(UserCoreConstants.RealmConfig.PROPERTY_DOMAIN_NAME);
 
-        if (this.getSecondaryUserStoreManager() != null) {
-            for (Map.Entry<String, UserStoreManager> entry : userStoreManagerHolder.entrySet()) {
-                if (entry.getKey().equalsIgnoreCase(primaryDomain)) {
-                    continue;
+        if (this.getSecondaryUserStoreManager() == null) {
+            return doListUsers(filter, maxItemLimit);
+        }
+
+        // search the secondary user stores while the primary user store is searched
+        final String searchFilter = filter;
+        final int searchLimit = maxItemLimit;
+        long deadline = System.currentTimeMillis() + getSecondaryUserStoreSearchTimeOut();
+        Map<String, Future<String[]>> secondaryUserLists = new LinkedHashMap<String, Future<String[]>>();
+        for (Map.Entry<String, UserStoreManager> entry : userStoreManagerHolder.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(primaryDomain)) {
+                continue;
+            }
+            final UserStoreManager storeManager = entry.getValue();
+            secondaryUserLists.put(entry.getKey(), UserStoreSearchExecutor.submit(new Callable<String[]>() {
+                public String[] call() throws Exception {
+                    if (storeManager instanceof AbstractUserStoreManager) {
+                        return ((AbstractUserStoreManager) storeManager).doListUsers(searchFilter, searchLimit);
+                    }
+                    return storeManager.listUsers(searchFilter, searchLimit);
                 }
-                UserStoreManager storeManager = entry.getValue();
-                if (storeManager instanceof AbstractUserStoreManager) {
-                    try {
-                        String[] secondUserList = ((AbstractUserStoreManager) storeManager)
-                                .doListUsers(filter, maxItemLimit);
-                        userList = UserCoreUtil.combineArrays(userList, secondUserList);
-                    } catch (UserStoreException ex) {
-                        // We can ignore and proceed. Ignore the results from this user store.
-                        log.error(ex);
+            }));
+        }
+
+        List<String[]> userLists = new ArrayList<String[]>();
+        userLists.add(doListUsers(filter, maxItemLimit));
+        addSecondaryUserStoreResults(secondaryUserLists, deadline, userLists, false);
+        return UserCoreUtil.combineArrays(userLists);
+    }
+
+    /**
+     * Wait for the searches of the secondary user stores, and add their results in the order the
+     * searches were submitted. A search which fails or does not complete before the deadline
+     * either fails the whole search, or is logged and left out, as listUsers and getRoleNames
+     * have always ignored the user stores which fail.
+     *
+     * @param searches    searches of the secondary user stores, by domain
+     * @param deadline    time in milliseconds at which to stop waiting
+     * @param results     list to add the results to
+     * @param failOnError whether a failed search fails the whole search
+     * @throws UserStoreException if failOnError is set and a search failed or did not complete in time
+     */
+    private void addSecondaryUserStoreResults(Map<String, Future<String[]>> searches, long deadline,
+                                              List<String[]> results, boolean failOnError)
+            throws UserStoreException {
+        for (Map.Entry<String, Future<String[]>> entry : searches.entrySet()) {
+            String[] result;
+            if (failOnError) {
+                try {
+                    result = UserStoreSearchExecutor.getResultOrFail(entry.getValue(), entry.getKey(), deadline);
+                } catch (UserStoreException e) {
+                    for (Future<String[]> search : searches.values()) {
+                        search.cancel(true);
                     }
-                } else {
-                    String[] secondUserList = storeManager.listUsers(filter, maxItemLimit);
-                    userList = UserCoreUtil.combineArrays(userList, secondUserList);
+                    throw e;
                 }
+            } else {
+                result = UserStoreSearchExecutor.getResult(entry.getValue(), entry.getKey(), deadline);
+            }
+            if (result != null) {
+                results.add(result);
             }
         }
+    }
 
-        return userList;
+    /**
+     * @return time in milliseconds to wait for the secondary user stores when all the user
+     * stores are searched
+     */
+    private long getSecondaryUserStoreSearchTimeOut() {
+        String timeOut = realmConfig.getUserStoreProperty(
+                UserCoreConstants.RealmConfig.PROPERTY_SECONDARY_USER_STORE_SEARCH_TIME_OUT);
+        if (timeOut != null && timeOut.trim().length() > 0) {
+            try {
+                return Long.parseLong(timeOut.trim());
+            } catch (NumberFormatException e) {
+                log.warn("Invalid value for " +
+                        UserCoreConstants.RealmConfig.PROPERTY_SECONDARY_USER_STORE_SEARCH_TIME_OUT + " : " + timeOut);
+            }
+        }
+        return UserCoreConstants.SECONDARY_USER_STORE_SEARCH_TIME_OUT;
     }
 
     /**
@@ -2280,7 +2824,7 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
      */
     public final String[] getUserListOfRole(String roleName) throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class};
             Object object = callSecure("getUserListOfRole", new Object[]{roleName}, argTypes);
             return (String[]) object;
@@ -2361,7 +2905,7 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
 
     public String[] getRoleListOfUser(String userName) throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class};
             Object object = callSecure("getRoleListOfUser", new Object[]{userName}, argTypes);
             return (String[]) object;
@@ -2560,7 +3104,7 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
      */
     public final void deleteRole(String roleName) throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class};
             callSecure("deleteRole", new Object[]{roleName}, argTypes);
             return;
@@ -2744,7 +3288,7 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
      */
     public final String[] getAllSecondaryRoles() throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{};
             Object object = callSecure("getAllSecondaryRoles", new Object[]{}, argTypes);
             return (String[]) object;
@@ -2856,7 +3400,7 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
                                        boolean noSystemRole, boolean noSharedRoles)
             throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, int.class, boolean.class, boolean.class, boolean.class};
             Object object = callSecure("getRoleNames", new Object[]{filter, maxItemLimit, noInternalRoles,
                     noSystemRole, noSharedRoles}, argTypes);
@@ -2909,36 +3453,37 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
             }
         }
 
-        if (readGroupsEnabled) {
-            String[] externalRoles = doGetRoleNames(filter, maxItemLimit);
-            roleList = UserCoreUtil.combineArrays(externalRoles, roleList);
+        if (!readGroupsEnabled) {
+            return roleList;
         }
 
+        // search the secondary user stores while the primary user store is searched
         String primaryDomain = getMyDomainName();
-
+        final String searchFilter = filter;
+        final int searchLimit = maxItemLimit;
+        long deadline = System.currentTimeMillis() + getSecondaryUserStoreSearchTimeOut();
+        Map<String, Future<String[]>> secondaryRoleLists = new LinkedHashMap<String, Future<String[]>>();
         if (this.getSecondaryUserStoreManager() != null) {
             for (Map.Entry<String, UserStoreManager> entry : userStoreManagerHolder.entrySet()) {
                 if (entry.getKey().equalsIgnoreCase(primaryDomain)) {
                     continue;
                 }
-                UserStoreManager storeManager = entry.getValue();
-                if (storeManager instanceof AbstractUserStoreManager) {
-                    try {
-                        if (readGroupsEnabled) {
-                            String[] secondRoleList = ((AbstractUserStoreManager) storeManager)
-                                    .doGetRoleNames(filter, maxItemLimit);
-                            roleList = UserCoreUtil.combineArrays(roleList, secondRoleList);
+                if (entry.getValue() instanceof AbstractUserStoreManager) {
+                    final AbstractUserStoreManager storeManager = (AbstractUserStoreManager) entry.getValue();
+                    secondaryRoleLists.put(entry.getKey(), UserStoreSearchExecutor.submit(new Callable<String[]>() {
+                        public String[] call() throws Exception {
+                            return storeManager.doGetRoleNames(searchFilter, searchLimit);
                         }
-                    } catch (UserStoreException e) {
-                        // We can ignore and proceed. Ignore the results from this user store.
-                        log.error(e);
-                    }
-                } else {
-                    storeManager.getRoleNames();
+                    }));
                 }
             }
         }
-        return roleList;
+
+        List<String[]> roleLists = new ArrayList<String[]>();
+        roleLists.add(doGetRoleNames(filter, maxItemLimit));
+        roleLists.add(roleList);
+        addSecondaryUserStoreResults(secondaryRoleLists, deadline, roleLists, false);
+        return UserCoreUtil.combineArrays(roleLists);
     }
 
     /**
@@ -2951,7 +3496,7 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
     private Map<String, String> doGetUserClaimValues(String userName, String[] claims,
                                                      String domainName, String profileName) throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, String[].class, String.class, String.class};
             Object object = callSecure("doGetUserClaimValues", new Object[]{userName, claims, domainName,
                     profileName}, argTypes);
@@ -2959,15 +3504,27 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
         }
 
         // Here the user name should be domain-less.
-        boolean requireRoles = false;
-        boolean requireIntRoles = false;
-        boolean requireExtRoles = false;
-        String roleClaim = null;
-
         if (profileName == null || profileName.trim().length() == 0) {
             profileName = UserCoreConstants.DEFAULT_PROFILE;
         }
 
+        String[] properties = getClaimProperties(userName, claims, domainName);
+        Map<String, String> uerProperties = this.getUserPropertyValues(userName, properties,
+                profileName);
+
+        return getClaimValues(userName, claims, domainName, profileName, uerProperties);
+    }
+
+    /**
+     * @param userName   domain-less user name
+     * @param claims     claim URIs
+     * @param domainName domain of the user
+     * @return the user store attributes the claims are mapped to
+     * @throws UserStoreException
+     */
+    private String[] getClaimProperties(String userName, String[] claims, String domainName)
+            throws UserStoreException {
+
         Set<String> propertySet = new HashSet<String>();
         for (String claim : claims) {
 
@@ -2985,7 +3542,30 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
                     !UserCoreConstants.EXT_ROLE_CLAIM.equalsIgnoreCase(claim))) {
                 propertySet.add(property);
             }
+        }
 
+        return propertySet.toArray(new String[propertySet.size()]);
+    }
+
+    /**
+     * @param userName      domain-less user name
+     * @param claims        claim URIs
+     * @param domainName    domain of the user
+     * @param profileName   profile name
+     * @param uerProperties attribute values of the user, as returned by getUserPropertyValues
+     * @return claim values of the user
+     * @throws UserStoreException
+     */
+    private Map<String, String> getClaimValues(String userName, String[] claims, String domainName,
+                                               String profileName, Map<String, String> uerProperties)
+            throws UserStoreException {
+
+        boolean requireRoles = false;
+        boolean requireIntRoles = false;
+        boolean requireExtRoles = false;
+        String roleClaim = null;
+
+        for (String claim : claims) {
             if (UserCoreConstants.ROLE_CLAIM.equalsIgnoreCase(claim)) {
                 requireRoles = true;
                 roleClaim = claim;
@@ -2998,22 +3578,31 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
             }
         }
 
-        String[] properties = propertySet.toArray(new String[propertySet.size()]);
-        Map<String, String> uerProperties = this.getUserPropertyValues(userName, properties,
-                profileName);
-
         List<String> getAgain = new ArrayList<String>();
         Map<String, String> finalValues = new HashMap<String, String>();
+        ClaimAttributeTable attributeTable = getClaimAttributeTable();
 
         for (String claim : claims) {
+            String property = null;
+            String value = null;
+            if (attributeTable != null) {
+                property = attributeTable.getAttributeName(domainName, claim);
+                if (property == null && claim.equals(DISAPLAY_NAME_CLAIM)) {
+                    property = this.realmConfig.getUserStoreProperty(LDAPConstants.DISPLAY_NAME_ATTRIBUTE);
+                }
+                value = uerProperties.get(property);
+                if (value != null && value.trim().length() > 0) {
+                    finalValues.put(claim, value);
+                }
+                continue;
+            }
+
             ClaimMapping mapping;
             try {
                 mapping = (ClaimMapping) claimManager.getClaimMapping(claim);
             } catch (org.wso2.carbon.user.api.UserStoreException e) {
                 throw new UserStoreException(e);
             }
-            String property = null;
-            String value = null;
             if (mapping != null) {
                 if (domainName != null) {
                     Map<String, String> attrMap = mapping.getMappedAttributes();
@@ -3104,6 +3693,19 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
         return finalValues;
     }
 
+    /**
+     * @return the claim attribute tables of the claim manager, or null if it does not have them or
+     * claim manager listeners, which have to be called on every lookup, are registered
+     * @throws UserStoreException
+     */
+    private ClaimAttributeTable getClaimAttributeTable() throws UserStoreException {
+        if (claimManager instanceof DefaultClaimManager
+                && UMListenerServiceComponent.getClaimManagerListeners().isEmpty()) {
+            return ((DefaultClaimManager) claimManager).getClaimAttributeTable();
+        }
+        return null;
+    }
+
     /**
      * @return
      */
@@ -3125,7 +3727,7 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
      */
     protected boolean checkUserPasswordValid(Object credential) throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{Object.class};
             Object object = callSecure("checkUserPasswordValid", new Object[]{credential}, argTypes);
             return (Boolean) object;
@@ -3157,7 +3759,7 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
      */
     protected boolean checkUserNameValid(String userName) throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class};
             Object object = callSecure("checkUserNameValid", new Object[]{userName}, argTypes);
             return (Boolean) object;
@@ -3236,6 +3838,9 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
         if (userRolesCache != null) {
             userRolesCache.clearCacheByTenant(tenantID);
         }
+        if (roleMembershipCache != null) {
+            roleMembershipCache.clearCacheByTenant(tenantID);
+        }
         AuthorizationCache authorizationCache = AuthorizationCache.getInstance();
         authorizationCache.clearCacheByTenant(tenantID);
     }
@@ -3247,6 +3852,9 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
         if (userRolesCache != null) {
             userRolesCache.clearCacheEntry(cacheIdentifier, tenantId, userName);
         }
+        if (roleMembershipCache != null) {
+            roleMembershipCache.clearCacheEntry(cacheIdentifier, tenantId, userName);
+        }
         AuthorizationCache authorizationCache = AuthorizationCache.getInstance();
         authorizationCache.clearCacheByUser(tenantId, userName);
     }
@@ -3259,8 +3867,9 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
     protected void addToUserRolesCache(int tenantID, String userName, String[] roleList) {
         if (userRolesCache != null) {
             userRolesCache.addToCache(cacheIdentifier, tenantID, userName, roleList);
+            // only the decisions of this user may depend on the cached roles
             AuthorizationCache authorizationCache = AuthorizationCache.getInstance();
-            authorizationCache.clearCacheByTenant(tenantID);
+            authorizationCache.invalidateUser(tenantID, userName);
         }
     }
 
@@ -3302,8 +3911,104 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
             }
             userRolesCache = UserRolesCache.getInstance();
             userRolesCache.setTimeOut(timeOut);
+            roleMembershipCache = RoleMembershipCache.getInstance();
+            roleMembershipCacheTimeOut = timeOut * 60 * 1000L;
         }
 
+        initAuthenticationCache();
+        initUserDomainCache();
+        initUniqueClaimCache();
+    }
+
+    /**
+     * The authentication cache is disabled unless it is enabled in the user store configuration.
+     */
+    private void initAuthenticationCache() {
+
+        String authenticationCacheEnabledString = realmConfig
+                .getUserStoreProperty(UserCoreConstants.RealmConfig.PROPERTY_AUTHENTICATION_CACHE_ENABLED);
+        if (!Boolean.parseBoolean(authenticationCacheEnabledString)) {
+            authenticationCache = null;
+            return;
+        }
+        int timeOut = getCacheTimeOut(UserCoreConstants.RealmConfig.PROPERTY_AUTHENTICATION_CACHE_TIME_OUT,
+                UserCoreConstants.AUTHENTICATION_CACHE_DEFAULT_TIME_OUT);
+        authenticationCacheTimeOut = timeOut * 1000L;
+        authenticationCache = AuthenticationCache.getInstance();
+        if (log.isDebugEnabled()) {
+            log.debug("Authentication cache is enabled with a time out of " + timeOut + " seconds");
+        }
+    }
+
+    /**
+     * @param property       name of the user store property which has the time out
+     * @param defaultTimeOut time out to use if the property is not set or is not a number
+     * @return the configured time out
+     */
+    private int getCacheTimeOut(String property, int defaultTimeOut) {
+        String timeOutString = realmConfig.getUserStoreProperty(property);
+        if (timeOutString == null || timeOutString.trim().length() == 0) {
+            return defaultTimeOut;
+        }
+        try {
+            return Integer.parseInt(timeOutString.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Invalid value " + timeOutString + " for " + property + ". Default value " + defaultTimeOut +
+                    " is used instead");
+            return defaultTimeOut;
+        }
+    }
+
+    /**
+     * The unique claim cache is used only for the claims listed in the configuration of the
+     * primary user store. Only one user may have a value of such a claim; the users found by
+     * the value of the claim are cached until the value is changed through this user store
+     * manager, or the entry times out.
+     */
+    private void initUniqueClaimCache() {
+
+        String uniqueClaimsString = realmConfig.getUserStoreProperty(UserCoreConstants.RealmConfig.PROPERTY_UNIQUE_CLAIMS);
+        if (uniqueClaimsString == null || uniqueClaimsString.trim().length() == 0) {
+            uniqueClaimCache = null;
+            return;
+        }
+        Set<String> claims = new HashSet<String>();
+        for (String claim : uniqueClaimsString.split(",")) {
+            if (claim.trim().length() > 0) {
+                claims.add(claim.trim());
+            }
+        }
+        int timeOut = getCacheTimeOut(UserCoreConstants.RealmConfig.PROPERTY_UNIQUE_CLAIM_CACHE_TIME_OUT,
+                UserCoreConstants.UNIQUE_CLAIM_CACHE_DEFAULT_TIME_OUT);
+        uniqueClaims = claims;
+        uniqueClaimCacheTimeOut = timeOut * 60 * 1000L;
+        uniqueClaimCache = UniqueClaimCache.getInstance();
+        if (log.isDebugEnabled()) {
+            log.debug("Unique claim cache is enabled for " + claims + " with a time out of " + timeOut + " minutes");
+        }
+    }
+
+    /**
+     * The user domain cache is disabled unless it is enabled in the configuration of the primary
+     * user store. A user found in a user store is then looked for only in that user store, until
+     * the entry times out, hence it should not be enabled if the same user name is used in more
+     * than one user store.
+     */
+    private void initUserDomainCache() {
+
+        String userDomainCacheEnabledString = realmConfig
+                .getUserStoreProperty(UserCoreConstants.RealmConfig.PROPERTY_USER_DOMAIN_CACHE_ENABLED);
+        if (!Boolean.parseBoolean(userDomainCacheEnabledString)) {
+            userDomainCache = null;
+            return;
+        }
+        int timeOut = getCacheTimeOut(UserCoreConstants.RealmConfig.PROPERTY_USER_DOMAIN_CACHE_TIME_OUT,
+                UserCoreConstants.USER_DOMAIN_CACHE_DEFAULT_TIME_OUT);
+        userDomainCacheTimeOut = timeOut * 60 * 1000L;
+        userDomainCache = UserDomainCache.getInstance();
+        if (log.isDebugEnabled()) {
+            log.debug("User domain cache is enabled with a time out of " + timeOut + " minutes");
+        }
     }
 
     /**
@@ -3357,7 +4062,7 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
      */
     public RoleDTO[] getAllSecondaryRoleDTOs() throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{};
             Object object = callSecure("getAllSecondaryRoleDTOs", new Object[]{}, argTypes);
             return (RoleDTO[]) object;
@@ -3420,7 +4125,7 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
     public final String[] doGetRoleListOfUser(String userName, String filter)
             throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class, String.class};
             Object object = callSecure("doGetRoleListOfUser", new Object[]{userName, filter}, argTypes);
             return (String[]) object;
@@ -3857,7 +4562,7 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
     private UserStoreManager createSecondaryUserStoreManager(RealmConfiguration realmConfig,
                                                              UserRealm realm) throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{RealmConfiguration.class, UserRealm.class};
             Object object = callSecure("createSecondaryUserStoreManager", new Object[]{realmConfig, realm}, argTypes);
             return (UserStoreManager) object;
@@ -3964,7 +4669,7 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
     public void addSecondaryUserStoreManager(RealmConfiguration userStoreRealmConfig,
                                              UserRealm realm) throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{RealmConfiguration.class, UserRealm.class};
             callSecure("addSecondaryUserStoreManager", new Object[]{userStoreRealmConfig, realm}, argTypes);
             return;
@@ -4031,7 +4736,7 @@ public abstract class AbstractUserStoreManager implements UserStoreManager {
      */
     public void removeSecondaryUserStoreManager(String userStoreDomainName) throws UserStoreException {
 
-        if (!isSecureCall.get()) {
+        if (isSecureCallRequired()) {
             Class argTypes[] = new Class[]{String.class};
             callSecure("removeSecondaryUserStoreManager", new Object[]{userStoreDomainName}, argTypes);
             return;
@@ -0,0 +1,210 @@
+/*
+*  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.user.core.common;
+
+import org.apache.axiom.om.util.Base64;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.base.ServerConfiguration;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+
+/**
+ * Caches recent authentication results for a short time, so that clients which authenticate
+ * the same user again and again do not hit the user store every time. Credentials are never
+ * kept in the cache; results are stored against an HMAC of the tenant, the user name and the
+ * credential. The HMAC key is derived from the private key of the server key store, which the
+ * nodes of a cluster share, so that the nodes compute the same fingerprints.
+ */
+public class AuthenticationCache extends GenerationCache<AuthenticationCacheKey, AuthenticationCacheEntry> {
+
+    private static final String AUTHENTICATION_CACHE_MANAGER = "AUTHENTICATION_CACHE_MANAGER";
+    private static final String AUTHENTICATION_CACHE = "AUTHENTICATION_CACHE";
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final String KEY_DERIVATION_LABEL = "AUTHENTICATION_CACHE";
+    private static Log log = LogFactory.getLog(AuthenticationCache.class);
+    private static AuthenticationCache authenticationCache = new AuthenticationCache();
+
+    private final SecretKeySpec fingerprintKey;
+    private final ThreadLocal<Mac> macs = new ThreadLocal<Mac>() {
+        @Override
+        protected Mac initialValue() {
+            try {
+                Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+                mac.init(fingerprintKey);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                log.error("Error while initializing " + HMAC_ALGORITHM + " for the authentication cache", e);
+                return null;
+            }
+        }
+    };
+
+    private AuthenticationCache() {
+        super(AUTHENTICATION_CACHE_MANAGER, AUTHENTICATION_CACHE);
+        byte[] key = deriveKeyFromKeyStore();
+        if (key == null) {
+            log.warn("Could not read the server key store, the authentication cache uses a random key. " +
+                    "Results cached by the other nodes of a cluster are not used by this node");
+            key = new byte[32];
+            new SecureRandom().nextBytes(key);
+        }
+        fingerprintKey = new SecretKeySpec(key, HMAC_ALGORITHM);
+    }
+
+    /**
+     * Gets the instance of AuthenticationCache.
+     *
+     * @return the instance of AuthenticationCache.
+     */
+    public static AuthenticationCache getInstance() {
+        return authenticationCache;
+    }
+
+    /**
+     * @return a key derived from the private key of the server key store, or null if the key
+     * store can not be read
+     */
+    private static byte[] deriveKeyFromKeyStore() {
+        ServerConfiguration config = ServerConfiguration.getInstance();
+        String location = config.getFirstProperty("Security.KeyStore.Location");
+        String type = config.getFirstProperty("Security.KeyStore.Type");
+        String password = config.getFirstProperty("Security.KeyStore.Password");
+        String keyAlias = config.getFirstProperty("Security.KeyStore.KeyAlias");
+        String keyPassword = config.getFirstProperty("Security.KeyStore.KeyPassword");
+        if (location == null || type == null || password == null || keyAlias == null || keyPassword == null) {
+            return null;
+        }
+        InputStream in = null;
+        try {
+            in = new FileInputStream(new File(location).getAbsolutePath());
+            KeyStore store = KeyStore.getInstance(type);
+            store.load(in, password.toCharArray());
+            Key privateKey = store.getKey(keyAlias, keyPassword.toCharArray());
+            if (privateKey == null || privateKey.getEncoded() == null) {
+                return null;
+            }
+            // the private key itself is not used as the HMAC key
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(privateKey.getEncoded(), HMAC_ALGORITHM));
+            return mac.doFinal(KEY_DERIVATION_LABEL.getBytes("UTF-8"));
+        } catch (IOException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Error while reading the key store " + location, e);
+            }
+            return null;
+        } catch (GeneralSecurityException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Error while reading the private key of the key store " + location, e);
+            }
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    log.error("Error occurred while closing the key store file", e);
+                }
+            }
+        }
+    }
+
+    @Override
+    protected AuthenticationCacheEntry cleared(AuthenticationCacheEntry previous) {
+        return AuthenticationCacheEntry.cleared(previous);
+    }
+
+    /**
+     * @param tenantId   tenant id
+     * @param userName   user name, with the domain
+     * @param credential credential
+     * @return fingerprint of the credential, or null if the credential can not be cached
+     */
+    public String getFingerprint(int tenantId, String userName, Object credential) {
+        if (!(credential instanceof String)) {
+            return null;
+        }
+        Mac mac = macs.get();
+        if (mac == null) {
+            return null;
+        }
+        try {
+            mac.reset();
+            mac.update((tenantId + "\u0000" + userName + "\u0000").getBytes("UTF-8"));
+            return Base64.encode(mac.doFinal(((String) credential).getBytes("UTF-8")));
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported
+            return null;
+        }
+    }
+
+    /**
+     * @param serverId cache identifier of the user store
+     * @param tenantId tenant id
+     * @param userName user name, with the domain
+     * @return the cached results of the user, or null if there are none. The entry has to be
+     * passed to {@link #addToCache} when a result is added after authenticating the user.
+     */
+    public AuthenticationCacheEntry getCacheEntry(String serverId, int tenantId, String userName) {
+        return getCacheEntry(new AuthenticationCacheKey(serverId, tenantId, userName));
+    }
+
+    /**
+     * Cache the result of authenticating a user, unless the cached results of the user have
+     * changed since they were read.
+     *
+     * @param serverId      cache identifier of the user store
+     * @param tenantId      tenant id
+     * @param userName      user name, with the domain
+     * @param previous      entry of the user read before authenticating, or null if there was none
+     * @param fingerprint   fingerprint of the credential
+     * @param authenticated whether the credential was accepted
+     * @param timeOut       time in milliseconds for which the result may be used
+     */
+    public void addToCache(String serverId, int tenantId, String userName, AuthenticationCacheEntry previous,
+                           String fingerprint, boolean authenticated, long timeOut) {
+        AuthenticationCacheEntry entry = AuthenticationCacheEntry.withResult(previous, fingerprint, authenticated,
+                System.currentTimeMillis() + timeOut);
+        if (!addToCache(new AuthenticationCacheKey(serverId, tenantId, userName), previous, entry) &&
+                log.isDebugEnabled()) {
+            log.debug("Authentication result of user " + userName + " is not cached, as the cached results " +
+                    "of the user have changed");
+        }
+    }
+
+    /**
+     * Remove the cached results of a user.
+     *
+     * @param serverId cache identifier of the user store
+     * @param tenantId tenant id
+     * @param userName user name, with the domain
+     */
+    public void clearCacheEntry(String serverId, int tenantId, String userName) {
+        clearCacheEntry(new AuthenticationCacheKey(serverId, tenantId, userName));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+*  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.user.core.common;
+
+/**
+ * Recent authentication results of a user. The last successful and the last failed credential
+ * are kept separately, so that failed attempts do not evict the credential which is in use.
+ */
+public class AuthenticationCacheEntry extends GenerationCacheEntry {
+
+    private static final long serialVersionUID = 2379745290167364530L;
+
+    private final String successFingerprint;
+    private final long successExpiryTime;
+    private final String failureFingerprint;
+    private final long failureExpiryTime;
+
+    private AuthenticationCacheEntry(AuthenticationCacheEntry previous, boolean newGeneration,
+                                     String successFingerprint, long successExpiryTime,
+                                     String failureFingerprint, long failureExpiryTime) {
+        super(previous, newGeneration);
+        this.successFingerprint = successFingerprint;
+        this.successExpiryTime = successExpiryTime;
+        this.failureFingerprint = failureFingerprint;
+        this.failureExpiryTime = failureExpiryTime;
+    }
+
+    /**
+     * @param previous previous entry of the user, or null
+     * @return an entry without results, of a newer generation than the previous entry
+     */
+    public static AuthenticationCacheEntry cleared(AuthenticationCacheEntry previous) {
+        return new AuthenticationCacheEntry(previous, true, null, 0, null, 0);
+    }
+
+    /**
+     * @param previous      previous entry of the user, or null
+     * @param fingerprint   fingerprint of the credential
+     * @param authenticated whether the credential was accepted
+     * @param expiryTime    time after which the result must not be used
+     * @return an entry with the given result, and the other result of the previous entry
+     */
+    public static AuthenticationCacheEntry withResult(AuthenticationCacheEntry previous, String fingerprint,
+                                                      boolean authenticated, long expiryTime) {
+        if (previous == null) {
+            return authenticated ? new AuthenticationCacheEntry(null, false, fingerprint, expiryTime, null, 0) :
+                    new AuthenticationCacheEntry(null, false, null, 0, fingerprint, expiryTime);
+        }
+        return authenticated ?
+                new AuthenticationCacheEntry(previous, false, fingerprint, expiryTime, previous.failureFingerprint,
+                        previous.failureExpiryTime) :
+                new AuthenticationCacheEntry(previous, false, previous.successFingerprint,
+                        previous.successExpiryTime, fingerprint, expiryTime);
+    }
+
+    /**
+     * @param fingerprint fingerprint of the credential
+     * @param now         current time
+     * @return the cached result for the credential, or null if there is none
+     */
+    public Boolean isAuthenticated(String fingerprint, long now) {
+        if (fingerprint.equals(successFingerprint) && now < successExpiryTime) {
+            return Boolean.TRUE;
+        }
+        if (fingerprint.equals(failureFingerprint) && now < failureExpiryTime) {
+            return Boolean.FALSE;
+        }
+        return null;
+    }
+
+    @Override
+    public boolean equals(Object otherObject) {
+        if (!super.equals(otherObject)) {
+            return false;
+        }
+        AuthenticationCacheEntry secondObject = (AuthenticationCacheEntry) otherObject;
+        return successExpiryTime == secondObject.successExpiryTime &&
+                failureExpiryTime == secondObject.failureExpiryTime &&
+                isEqual(successFingerprint, secondObject.successFingerprint) &&
+                isEqual(failureFingerprint, secondObject.failureFingerprint);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode() * 31 + (int) (successExpiryTime * 17 + failureExpiryTime);
+    }
+
+    private static boolean isEqual(String first, String second) {
+        return first == null ? second == null : first.equals(second);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+*  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.user.core.common;
+
+import java.io.Serializable;
+
+/**
+ * Key of the authentication cache. Unlike the user roles cache, user names are compared
+ * case sensitively, as user stores may treat names which differ only in case as different users.
+ */
+public class AuthenticationCacheKey implements Serializable {
+
+    private static final long serialVersionUID = -3468132976410552184L;
+
+    private String serverId;
+    private int tenantId;
+    private String userName;
+
+    public AuthenticationCacheKey(String serverId, int tenantId, String userName) {
+        this.serverId = serverId;
+        this.tenantId = tenantId;
+        this.userName = userName;
+    }
+
+    public boolean equals(Object otherObject) {
+        if (!(otherObject instanceof AuthenticationCacheKey)) {
+            return false;
+        }
+        AuthenticationCacheKey key = (AuthenticationCacheKey) otherObject;
+        return tenantId == key.tenantId && userName.equals(key.userName) &&
+                (serverId == null ? key.serverId == null : serverId.equals(key.serverId));
+    }
+
+    public int hashCode() {
+        int hash = tenantId + userName.hashCode() * 7;
+        if (serverId != null) {
+            hash += serverId.hashCode() * 11;
+        }
+        return hash;
+    }
+
+    public String getServerId() {
+        return serverId;
+    }
+
+    public int getTenantId() {
+        return tenantId;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+}
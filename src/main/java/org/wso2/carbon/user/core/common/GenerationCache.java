@@ -0,0 +1,104 @@
+/*
+*  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.user.core.common;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+/**
+ * Cache whose entries are cleared by replacing them with an entry of a new generation, so that
+ * lookups which were running while an entry was cleared do not add their stale results. See
+ * {@link GenerationCacheEntry}.
+ *
+ * @param <K> key
+ * @param <V> entry
+ */
+public abstract class GenerationCache<K, V extends GenerationCacheEntry> {
+
+    private static Log log = LogFactory.getLog(GenerationCache.class);
+
+    private final String cacheManagerName;
+    private final String cacheName;
+
+    protected GenerationCache(String cacheManagerName, String cacheName) {
+        this.cacheManagerName = cacheManagerName;
+        this.cacheName = cacheName;
+    }
+
+    /**
+     * @param previous previous entry of the key, or null
+     * @return an entry without data, of a newer generation than the previous entry
+     */
+    protected abstract V cleared(V previous);
+
+    protected Cache<K, V> getCache() {
+        CacheManager cacheManager = Caching.getCacheManagerFactory().getCacheManager(cacheManagerName);
+        Cache<K, V> cache = cacheManager.getCache(cacheName);
+        if (cache == null && log.isDebugEnabled()) {
+            log.debug(cacheName + " doesn't exist in CacheManager");
+        }
+        return cache;
+    }
+
+    /**
+     * @param key key
+     * @return the cached entry of the key, or null if there is none. The entry has to be passed
+     * as the previous entry when data of the key is added.
+     */
+    public V getCacheEntry(K key) {
+        Cache<K, V> cache = getCache();
+        if (cache == null) {
+            return null;
+        }
+        return cache.get(key);
+    }
+
+    /**
+     * Cache an entry, unless the entry of the key has changed since it was read. In particular,
+     * the entry is not added if the key has been cleared in the meantime.
+     *
+     * @param key      key
+     * @param previous entry of the key read before looking the data up, or null if there was none
+     * @param entry    entry with the data, of the generation of the previous entry
+     * @return whether the entry was added
+     */
+    protected boolean addToCache(K key, V previous, V entry) {
+        Cache<K, V> cache = getCache();
+        if (cache == null) {
+            return false;
+        }
+        return previous == null ? cache.putIfAbsent(key, entry) : cache.replace(key, previous, entry);
+    }
+
+    /**
+     * Remove the cached data of a key. An entry of a new generation without data is left in
+     * place, so that lookups which are in progress do not add their results.
+     *
+     * @param key key
+     */
+    public void clearCacheEntry(K key) {
+        Cache<K, V> cache = getCache();
+        if (cache != null) {
+            cache.put(key, cleared(cache.get(key)));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+*  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.user.core.common;
+
+import java.io.Serializable;
+
+/**
+ * Entry of a {@link GenerationCache}.
+ * <p/>
+ * Clearing a key leaves an entry without data and with a new generation, instead of removing the
+ * entry. Data is only added if the entry is still the one read before looking the data up, so a
+ * lookup which was running while the data changed can not add its result after the clear.
+ * Entries are not changed once created, and are equal only if they are of the same generation.
+ */
+public abstract class GenerationCacheEntry implements Serializable {
+
+    private static final long serialVersionUID = 5930417265384951206L;
+
+    private final long generation;
+
+    /**
+     * @param previous      previous entry of the key, or null
+     * @param newGeneration whether the entry is of a newer generation than the previous entry,
+     *                      or of the same generation
+     */
+    protected GenerationCacheEntry(GenerationCacheEntry previous, boolean newGeneration) {
+        long previousGeneration = previous == null ? 0 : previous.generation;
+        this.generation = newGeneration ? previousGeneration + 1 : previousGeneration;
+    }
+
+    @Override
+    public boolean equals(Object otherObject) {
+        return otherObject != null && otherObject.getClass() == getClass() &&
+                generation == ((GenerationCacheEntry) otherObject).generation;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (generation ^ (generation >>> 32));
+    }
+}
@@ -0,0 +1,117 @@
+/*
+*  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.user.core.common;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.cache.Cache;
+
+/**
+ * Caches the answers of isUserInRole, both positive and negative, for each user. Entries are
+ * cleared with the user roles cache entries of the user, whenever the roles of the user or the
+ * users of a role change.
+ */
+public class RoleMembershipCache extends GenerationCache<UserRolesCacheKey, RoleMembershipCacheEntry> {
+
+    private static final String ROLE_MEMBERSHIP_CACHE_MANAGER = "ROLE_MEMBERSHIP_CACHE_MANAGER";
+    private static final String ROLE_MEMBERSHIP_CACHE = "ROLE_MEMBERSHIP_CACHE";
+    private static Log log = LogFactory.getLog(RoleMembershipCache.class);
+    private static RoleMembershipCache roleMembershipCache = new RoleMembershipCache();
+
+    private RoleMembershipCache() {
+        super(ROLE_MEMBERSHIP_CACHE_MANAGER, ROLE_MEMBERSHIP_CACHE);
+    }
+
+    /**
+     * Gets the instance of RoleMembershipCache.
+     *
+     * @return the instance of RoleMembershipCache.
+     */
+    public static RoleMembershipCache getInstance() {
+        return roleMembershipCache;
+    }
+
+    @Override
+    protected RoleMembershipCacheEntry cleared(RoleMembershipCacheEntry previous) {
+        return RoleMembershipCacheEntry.cleared(previous);
+    }
+
+    /**
+     * @param serverId cache identifier of the user store
+     * @param tenantId tenant id
+     * @param userName user name, with the domain
+     * @return the cached answers of the user, or null if there are none. The entry has to be
+     * passed to {@link #addToCache} when an answer is added after asking the user store.
+     */
+    public RoleMembershipCacheEntry getCacheEntry(String serverId, int tenantId, String userName) {
+        return getCacheEntry(new UserRolesCacheKey(serverId, tenantId, userName));
+    }
+
+    /**
+     * Cache whether a user is in a role, unless the cached answers of the user have changed
+     * since they were read.
+     *
+     * @param serverId cache identifier of the user store
+     * @param tenantId tenant id
+     * @param userName user name, with the domain
+     * @param previous entry of the user read before asking the user store, or null if there was none
+     * @param roleName role name
+     * @param member   whether the user is in the role
+     * @param timeOut  time in milliseconds for which a new entry of the user may be used
+     */
+    public void addToCache(String serverId, int tenantId, String userName, RoleMembershipCacheEntry previous,
+                           String roleName, boolean member, long timeOut) {
+        long now = System.currentTimeMillis();
+        RoleMembershipCacheEntry entry = RoleMembershipCacheEntry.withAnswer(previous, roleName, member, now,
+                now + timeOut);
+        if (!addToCache(new UserRolesCacheKey(serverId, tenantId, userName), previous, entry) &&
+                log.isDebugEnabled()) {
+            log.debug("Role membership of user " + userName + " is not cached, as the cached answers " +
+                    "of the user have changed");
+        }
+    }
+
+    /**
+     * Remove the cached answers of a user.
+     *
+     * @param serverId cache identifier of the user store
+     * @param tenantId tenant id
+     * @param userName user name, with the domain
+     */
+    public void clearCacheEntry(String serverId, int tenantId, String userName) {
+        clearCacheEntry(new UserRolesCacheKey(serverId, tenantId, userName));
+    }
+
+    /**
+     * Remove the cached answers of all users of a tenant, the same way as {@link #clearCacheEntry}.
+     *
+     * @param tenantId tenant id
+     */
+    public void clearCacheByTenant(int tenantId) {
+        Cache<UserRolesCacheKey, RoleMembershipCacheEntry> cache = getCache();
+        if (cache == null) {
+            return;
+        }
+        for (Cache.Entry<UserRolesCacheKey, RoleMembershipCacheEntry> entry : cache) {
+            if (tenantId == entry.getKey().getTenantId()) {
+                cache.put(entry.getKey(), cleared(entry.getValue()));
+            }
+        }
+    }
+}
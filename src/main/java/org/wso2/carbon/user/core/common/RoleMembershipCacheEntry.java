@@ -0,0 +1,124 @@
+/*
+*  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.user.core.common;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Roles a user is known to have and known not to have. Role names are kept in lower case, as
+ * role names are compared case insensitively.
+ */
+public class RoleMembershipCacheEntry extends GenerationCacheEntry {
+
+    private static final long serialVersionUID = 4315623470981285763L;
+
+    private final Set<String> memberRoles;
+    private final Set<String> nonMemberRoles;
+    private final long expiryTime;
+
+    private RoleMembershipCacheEntry(RoleMembershipCacheEntry previous, boolean newGeneration,
+                                     Set<String> memberRoles, Set<String> nonMemberRoles, long expiryTime) {
+        super(previous, newGeneration);
+        this.memberRoles = memberRoles;
+        this.nonMemberRoles = nonMemberRoles;
+        this.expiryTime = expiryTime;
+    }
+
+    /**
+     * @param previous previous entry of the user, or null
+     * @return an entry without answers, of a newer generation than the previous entry
+     */
+    public static RoleMembershipCacheEntry cleared(RoleMembershipCacheEntry previous) {
+        return new RoleMembershipCacheEntry(previous, true, Collections.<String>emptySet(),
+                Collections.<String>emptySet(), 0);
+    }
+
+    /**
+     * @param previous   previous entry of the user, or null
+     * @param roleName   role name
+     * @param member     whether the user is in the role
+     * @param now        current time
+     * @param expiryTime time after which the answers of a new entry must not be used
+     * @return an entry with the given answer, and the other answers of the previous entry if it
+     * has not expired
+     */
+    public static RoleMembershipCacheEntry withAnswer(RoleMembershipCacheEntry previous, String roleName,
+                                                      boolean member, long now, long expiryTime) {
+        Set<String> memberRoles = new HashSet<String>();
+        Set<String> nonMemberRoles = new HashSet<String>();
+        if (previous != null && !previous.isExpired(now)) {
+            memberRoles.addAll(previous.memberRoles);
+            nonMemberRoles.addAll(previous.nonMemberRoles);
+            expiryTime = previous.expiryTime;
+        }
+        String key = roleName.toLowerCase();
+        if (member) {
+            nonMemberRoles.remove(key);
+            memberRoles.add(key);
+        } else {
+            memberRoles.remove(key);
+            nonMemberRoles.add(key);
+        }
+        return new RoleMembershipCacheEntry(previous, false, Collections.unmodifiableSet(memberRoles),
+                Collections.unmodifiableSet(nonMemberRoles), expiryTime);
+    }
+
+    /**
+     * @param roleName role name
+     * @param now      current time
+     * @return whether the user is in the role, or null if it is not known
+     */
+    public Boolean isUserInRole(String roleName, long now) {
+        if (isExpired(now)) {
+            return null;
+        }
+        String key = roleName.toLowerCase();
+        if (memberRoles.contains(key)) {
+            return Boolean.TRUE;
+        }
+        if (nonMemberRoles.contains(key)) {
+            return Boolean.FALSE;
+        }
+        return null;
+    }
+
+    /**
+     * @param now current time
+     * @return whether the answers of the entry must not be used any more
+     */
+    public boolean isExpired(long now) {
+        return now >= expiryTime;
+    }
+
+    @Override
+    public boolean equals(Object otherObject) {
+        if (!super.equals(otherObject)) {
+            return false;
+        }
+        RoleMembershipCacheEntry secondObject = (RoleMembershipCacheEntry) otherObject;
+        return expiryTime == secondObject.expiryTime &&
+                memberRoles.equals(secondObject.memberRoles) && nonMemberRoles.equals(secondObject.nonMemberRoles);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode() * 31 + (int) expiryTime + memberRoles.hashCode() * 7 + nonMemberRoles.hashCode();
+    }
+}
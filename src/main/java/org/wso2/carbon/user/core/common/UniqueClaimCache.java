@@ -0,0 +1,70 @@
+/*
+*  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.user.core.common;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Remembers the user which has a value of a claim that only one user may have, such as an
+ * email address, so that looking the user up by the claim value does not search the user
+ * stores.
+ */
+public class UniqueClaimCache extends GenerationCache<UniqueClaimCacheKey, UniqueClaimCacheEntry> {
+
+    private static final String UNIQUE_CLAIM_CACHE_MANAGER = "UNIQUE_CLAIM_CACHE_MANAGER";
+    private static final String UNIQUE_CLAIM_CACHE = "UNIQUE_CLAIM_CACHE";
+    private static Log log = LogFactory.getLog(UniqueClaimCache.class);
+    private static UniqueClaimCache uniqueClaimCache = new UniqueClaimCache();
+
+    private UniqueClaimCache() {
+        super(UNIQUE_CLAIM_CACHE_MANAGER, UNIQUE_CLAIM_CACHE);
+    }
+
+    /**
+     * Gets the instance of UniqueClaimCache.
+     *
+     * @return the instance of UniqueClaimCache.
+     */
+    public static UniqueClaimCache getInstance() {
+        return uniqueClaimCache;
+    }
+
+    @Override
+    protected UniqueClaimCacheEntry cleared(UniqueClaimCacheEntry previous) {
+        return UniqueClaimCacheEntry.cleared(previous);
+    }
+
+    /**
+     * Cache the user which has a claim value, unless the entry of the claim value has changed
+     * since it was read.
+     *
+     * @param key      claim value
+     * @param previous entry of the claim value read before searching, or null if there was none
+     * @param userName domain qualified name of the user which has the claim value
+     * @param timeOut  time in milliseconds for which the user may be used
+     */
+    public void addToCache(UniqueClaimCacheKey key, UniqueClaimCacheEntry previous, String userName, long timeOut) {
+        UniqueClaimCacheEntry entry = UniqueClaimCacheEntry.withUserName(previous, userName,
+                System.currentTimeMillis() + timeOut);
+        if (!addToCache(key, previous, entry) && log.isDebugEnabled()) {
+            log.debug("User " + userName + " is not cached for a unique claim value, as the claim value " +
+                    "has been changed");
+        }
+    }
+}
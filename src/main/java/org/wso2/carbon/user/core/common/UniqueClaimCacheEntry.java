@@ -0,0 +1,78 @@
+/*
+*  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.user.core.common;
+
+/**
+ * The user a value of a unique claim belongs to.
+ */
+public class UniqueClaimCacheEntry extends GenerationCacheEntry {
+
+    private static final long serialVersionUID = -2350975168419628048L;
+
+    private final String userName;
+    private final long expiryTime;
+
+    private UniqueClaimCacheEntry(UniqueClaimCacheEntry previous, boolean newGeneration, String userName,
+                                  long expiryTime) {
+        super(previous, newGeneration);
+        this.userName = userName;
+        this.expiryTime = expiryTime;
+    }
+
+    /**
+     * @param previous previous entry of the claim value, or null
+     * @return an entry without a user, of a newer generation than the previous entry
+     */
+    public static UniqueClaimCacheEntry cleared(UniqueClaimCacheEntry previous) {
+        return new UniqueClaimCacheEntry(previous, true, null, 0);
+    }
+
+    /**
+     * @param previous   previous entry of the claim value, or null
+     * @param userName   domain qualified name of the user which has the claim value
+     * @param expiryTime time after which the user must not be used
+     * @return an entry with the given user, of the generation of the previous entry
+     */
+    public static UniqueClaimCacheEntry withUserName(UniqueClaimCacheEntry previous, String userName,
+                                                     long expiryTime) {
+        return new UniqueClaimCacheEntry(previous, false, userName, expiryTime);
+    }
+
+    /**
+     * @param now current time
+     * @return domain qualified name of the user which has the claim value, or null if it is not known
+     */
+    public String getUserName(long now) {
+        return now < expiryTime ? userName : null;
+    }
+
+    @Override
+    public boolean equals(Object otherObject) {
+        if (!super.equals(otherObject)) {
+            return false;
+        }
+        UniqueClaimCacheEntry secondObject = (UniqueClaimCacheEntry) otherObject;
+        return expiryTime == secondObject.expiryTime &&
+                (userName == null ? secondObject.userName == null : userName.equals(secondObject.userName));
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode() * 31 + (int) expiryTime + (userName == null ? 0 : userName.hashCode());
+    }
+}
@@ -0,0 +1,61 @@
+/*
+*  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.user.core.common;
+
+import java.io.Serializable;
+
+/**
+ * Key of the unique claim cache: a value of a claim in a profile.
+ */
+public class UniqueClaimCacheKey implements Serializable {
+
+    private static final long serialVersionUID = 4170238563107734614L;
+
+    private String serverId;
+    private int tenantId;
+    private String claimURI;
+    private String claimValue;
+    private String profileName;
+
+    public UniqueClaimCacheKey(String serverId, int tenantId, String claimURI, String claimValue,
+                               String profileName) {
+        this.serverId = serverId;
+        this.tenantId = tenantId;
+        this.claimURI = claimURI;
+        this.claimValue = claimValue;
+        this.profileName = profileName;
+    }
+
+    public boolean equals(Object otherObject) {
+        if (!(otherObject instanceof UniqueClaimCacheKey)) {
+            return false;
+        }
+        UniqueClaimCacheKey key = (UniqueClaimCacheKey) otherObject;
+        return tenantId == key.tenantId && claimURI.equals(key.claimURI) && claimValue.equals(key.claimValue) &&
+                profileName.equals(key.profileName) &&
+                (serverId == null ? key.serverId == null : serverId.equals(key.serverId));
+    }
+
+    public int hashCode() {
+        int hash = tenantId + claimURI.hashCode() * 7 + claimValue.hashCode() * 13 + profileName.hashCode();
+        if (serverId != null) {
+            hash += serverId.hashCode() * 11;
+        }
+        return hash;
+    }
+}
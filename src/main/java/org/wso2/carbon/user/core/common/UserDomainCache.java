@@ -0,0 +1,104 @@
+/*
+*  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.user.core.common;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+/**
+ * Remembers the domain of the user store each user was found in, so that a user who logs in
+ * without a domain is authenticated against that user store alone, instead of trying each
+ * user store in turn.
+ */
+public class UserDomainCache {
+
+    private static final String USER_DOMAIN_CACHE_MANAGER = "USER_DOMAIN_CACHE_MANAGER";
+    private static final String USER_DOMAIN_CACHE = "USER_DOMAIN_CACHE";
+    private static Log log = LogFactory.getLog(UserDomainCache.class);
+    private static UserDomainCache userDomainCache = new UserDomainCache();
+
+    private UserDomainCache() {
+    }
+
+    /**
+     * Gets the instance of UserDomainCache.
+     *
+     * @return the instance of UserDomainCache.
+     */
+    public static UserDomainCache getInstance() {
+        return userDomainCache;
+    }
+
+    private Cache<UserDomainCacheKey, UserDomainCacheEntry> getUserDomainCache() {
+        CacheManager cacheManager = Caching.getCacheManagerFactory().getCacheManager(USER_DOMAIN_CACHE_MANAGER);
+        Cache<UserDomainCacheKey, UserDomainCacheEntry> cache = cacheManager.getCache(USER_DOMAIN_CACHE);
+        if (cache == null && log.isDebugEnabled()) {
+            log.debug(USER_DOMAIN_CACHE + " doesn't exist in CacheManager");
+        }
+        return cache;
+    }
+
+    /**
+     * @param serverId cache identifier of the primary user store
+     * @param tenantId tenant id
+     * @param userName user name without the domain
+     * @return domain of the user store the user was found in, or null if it is not known
+     */
+    public String getUserDomain(String serverId, int tenantId, String userName) {
+        Cache<UserDomainCacheKey, UserDomainCacheEntry> cache = getUserDomainCache();
+        if (cache == null) {
+            return null;
+        }
+        UserDomainCacheEntry entry = cache.get(new UserDomainCacheKey(serverId, tenantId, userName));
+        if (entry == null || entry.isExpired(System.currentTimeMillis())) {
+            return null;
+        }
+        return entry.getDomainName();
+    }
+
+    /**
+     * @param serverId   cache identifier of the primary user store
+     * @param tenantId   tenant id
+     * @param userName   user name without the domain
+     * @param domainName domain of the user store the user is in
+     * @param timeOut    time in milliseconds for which the domain may be used
+     */
+    public void addToCache(String serverId, int tenantId, String userName, String domainName, long timeOut) {
+        Cache<UserDomainCacheKey, UserDomainCacheEntry> cache = getUserDomainCache();
+        if (cache != null) {
+            cache.put(new UserDomainCacheKey(serverId, tenantId, userName),
+                    new UserDomainCacheEntry(domainName, System.currentTimeMillis() + timeOut));
+        }
+    }
+
+    /**
+     * @param serverId cache identifier of the primary user store
+     * @param tenantId tenant id
+     * @param userName user name without the domain
+     */
+    public void clearCacheEntry(String serverId, int tenantId, String userName) {
+        Cache<UserDomainCacheKey, UserDomainCacheEntry> cache = getUserDomainCache();
+        if (cache != null) {
+            cache.remove(new UserDomainCacheKey(serverId, tenantId, userName));
+        }
+    }
+}
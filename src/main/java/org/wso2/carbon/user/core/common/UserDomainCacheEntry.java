@@ -0,0 +1,48 @@
+/*
+*  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.user.core.common;
+
+import java.io.Serializable;
+
+/**
+ * Domain of the user store a user was last found in.
+ */
+public class UserDomainCacheEntry implements Serializable {
+
+    private static final long serialVersionUID = -6241573028743165279L;
+
+    private String domainName;
+    private long expiryTime;
+
+    public UserDomainCacheEntry(String domainName, long expiryTime) {
+        this.domainName = domainName;
+        this.expiryTime = expiryTime;
+    }
+
+    public String getDomainName() {
+        return domainName;
+    }
+
+    /**
+     * @param now current time
+     * @return whether the entry must not be used any more
+     */
+    public boolean isExpired(long now) {
+        return now >= expiryTime;
+    }
+}
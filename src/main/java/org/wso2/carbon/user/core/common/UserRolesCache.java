@@ -112,6 +112,27 @@ public class UserRolesCache {
         return userRolesCacheEntry.getUserRolesList();
     }
 
+    /**
+     * @param serverId cache identifier of the user store
+     * @param tenantId tenant id
+     * @param userName user name
+     * @param roleName role name
+     * @return whether the cached role list of the user has the role, or null if the role list
+     * of the user is not cached
+     */
+    public Boolean isUserInRole(String serverId, int tenantId, String userName, String roleName) {
+
+        Cache<UserRolesCacheKey, UserRolesCacheEntry> cache = this.getUserRolesCache();
+        if (isCacheNull(cache)) {
+            return null;
+        }
+        UserRolesCacheEntry userRolesCacheEntry = cache.get(new UserRolesCacheKey(serverId, tenantId, userName));
+        if (userRolesCacheEntry == null) {
+            return null;
+        }
+        return userRolesCacheEntry.isUserInRole(roleName);
+    }
+
     public void setTimeOut(int timeOut) {
         this.timeOut = timeOut;
     }
@@ -135,11 +156,5 @@ public class UserRolesCache {
         if (cache.containsKey(userRolesCacheKey)) {
             cache.remove(userRolesCacheKey);
         }
-        // creating new key for isUserHasRole cache.
-        userRolesCacheKey = new UserRolesCacheKey(serverId, tenantId,
-                UserCoreConstants.IS_USER_IN_ROLE_CACHE_IDENTIFIER + userName);
-        if (cache.containsKey(userRolesCacheKey)) {
-            cache.remove(userRolesCacheKey);
-        }
     }
 }
@@ -20,11 +20,18 @@ package org.wso2.carbon.user.core.common;
 
 import java.io.Serializable;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
 
 public class UserRolesCacheEntry implements Serializable {
     private static final long serialVersionUID = 8978564215468907563L;
 
     private String[] userRolesList;
+    // role names in lower case, as role names are compared case insensitively. Built from the
+    // list when first needed, so that entries serialized without it can still be read
+    private transient volatile Set<String> userRoles;
 
     public UserRolesCacheEntry(String[] userRolesList) {
         this.userRolesList = Arrays.copyOf(userRolesList, userRolesList.length);
@@ -34,4 +41,27 @@ public class UserRolesCacheEntry implements Serializable {
         return Arrays.copyOf(userRolesList, userRolesList.length);
     }
 
+    /**
+     * @param roleName role name
+     * @return whether the role is in the list, ignoring case
+     */
+    public boolean isUserInRole(String roleName) {
+        return roleName != null && getUserRoles().contains(roleName.toLowerCase(Locale.ENGLISH));
+    }
+
+    private Set<String> getUserRoles() {
+        Set<String> roles = userRoles;
+        if (roles == null) {
+            Set<String> lowerCaseRoles = new HashSet<String>(userRolesList.length * 2);
+            for (String role : userRolesList) {
+                if (role != null) {
+                    lowerCaseRoles.add(role.toLowerCase(Locale.ENGLISH));
+                }
+            }
+            roles = Collections.unmodifiableSet(lowerCaseRoles);
+            userRoles = roles;
+        }
+        return roles;
+    }
+
 }
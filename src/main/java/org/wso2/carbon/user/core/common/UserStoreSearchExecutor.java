@@ -0,0 +1,146 @@
+/*
+*  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.user.core.common;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.context.CarbonContext;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.user.core.UserStoreException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs searches of secondary user stores concurrently, so that searching all the user stores
+ * takes as long as the slowest of them. The tasks run with the tenant of the thread which
+ * submits them. When all the threads are busy, a task is run by the submitting thread.
+ */
+final class UserStoreSearchExecutor {
+
+    private static final int QUEUE_SIZE = 100;
+    private static Log log = LogFactory.getLog(UserStoreSearchExecutor.class);
+    private static final ThreadPoolExecutor executor;
+
+    static {
+        // the threads mostly wait for the user stores, hence there are more threads than processors
+        int threads = Math.max(8, 2 * Runtime.getRuntime().availableProcessors());
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(QUEUE_SIZE), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "UserStoreSearchExecutor-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    private UserStoreSearchExecutor() {
+    }
+
+    /**
+     * @param task search to run
+     * @return future of the result of the search
+     */
+    static <T> Future<T> submit(final Callable<T> task) {
+        CarbonContext carbonContext = CarbonContext.getThreadLocalCarbonContext();
+        final int tenantId = carbonContext.getTenantId();
+        final String tenantDomain = carbonContext.getTenantDomain();
+        final String username = carbonContext.getUsername();
+
+        return executor.submit(new Callable<T>() {
+            public T call() throws Exception {
+                PrivilegedCarbonContext.startTenantFlow();
+                try {
+                    PrivilegedCarbonContext context = PrivilegedCarbonContext.getThreadLocalCarbonContext();
+                    context.setTenantId(tenantId);
+                    context.setTenantDomain(tenantDomain);
+                    context.setUsername(username);
+                    return task.call();
+                } finally {
+                    PrivilegedCarbonContext.endTenantFlow();
+                }
+            }
+        });
+    }
+
+    /**
+     * Wait for the result of a search until the deadline. A search which fails or does not
+     * complete in time is logged and left out, so that the other user stores are still listed.
+     *
+     * @param future   future returned by submit
+     * @param domain   domain of the user store searched, for logging
+     * @param deadline time in milliseconds at which to stop waiting
+     * @return the result of the search, or null if it failed or did not complete in time
+     */
+    static <T> T getResult(Future<T> future, String domain, long deadline) {
+        try {
+            return future.get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            log.warn("Search of the user store : " + domain + " did not complete in time. " +
+                    "Results of the user store are ignored.");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // We can ignore and proceed. Ignore the results from this user store.
+            log.error("Error occurred while searching the user store : " + domain, e.getCause());
+        }
+        return null;
+    }
+
+    /**
+     * Wait for the result of a search until the deadline, for the callers which must not return
+     * partial results. A search which fails or does not complete in time is cancelled and fails
+     * the caller.
+     *
+     * @param future   future returned by submit
+     * @param domain   domain of the user store searched, for the error message
+     * @param deadline time in milliseconds at which to stop waiting
+     * @return the result of the search
+     * @throws UserStoreException if the search failed or did not complete in time
+     */
+    static <T> T getResultOrFail(Future<T> future, String domain, long deadline) throws UserStoreException {
+        try {
+            return future.get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new UserStoreException("Search of the user store : " + domain + " did not complete in time", e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new UserStoreException("Interrupted while searching the user store : " + domain, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UserStoreException) {
+                throw (UserStoreException) e.getCause();
+            }
+            throw new UserStoreException("Error occurred while searching the user store : " + domain, e.getCause());
+        }
+    }
+}
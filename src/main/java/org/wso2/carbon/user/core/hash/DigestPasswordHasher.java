@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.user.core.hash;
+
+import org.apache.axiom.om.util.Base64;
+import org.wso2.carbon.user.core.UserStoreException;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Single round MessageDigest hash of the password followed by the salt, which is the format
+ * JDBCUserStoreManager has always used. The hashes are stored without an algorithm prefix, so
+ * that they stay readable by older versions. MessageDigest instances are not thread safe and are
+ * costly to look up, hence each thread keeps its own instance.
+ */
+public class DigestPasswordHasher implements PasswordHasher {
+
+    private final String algorithm;
+    private final ThreadLocal<MessageDigest> digests;
+
+    /**
+     * @param algorithm MessageDigest algorithm
+     * @throws UserStoreException if the algorithm is not available
+     */
+    public DigestPasswordHasher(final String algorithm) throws UserStoreException {
+        try {
+            MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new UserStoreException("Error while getting Message Digest from digest function : " + algorithm, e);
+        }
+        this.algorithm = algorithm;
+        this.digests = new ThreadLocal<MessageDigest>() {
+            @Override
+            protected MessageDigest initialValue() {
+                try {
+                    return MessageDigest.getInstance(algorithm);
+                } catch (NoSuchAlgorithmException e) {
+                    // already checked in the constructor
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public boolean isExpensive() {
+        return false;
+    }
+
+    public String hash(String password, String saltValue) throws UserStoreException {
+        String digestInput = password;
+        if (saltValue != null) {
+            digestInput = password + saltValue;
+        }
+        MessageDigest digest = digests.get();
+        digest.reset();
+        return Base64.encode(digest.digest(digestInput.getBytes()));
+    }
+
+    public boolean verify(String password, String saltValue, String storedHash) throws UserStoreException {
+        return storedHash != null && storedHash.equals(hash(password, saltValue));
+    }
+}
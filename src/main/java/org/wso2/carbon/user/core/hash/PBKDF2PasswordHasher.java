@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.user.core.hash;
+
+import org.apache.axiom.om.util.Base64;
+import org.wso2.carbon.user.core.UserStoreException;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.InvalidKeySpecException;
+
+/**
+ * PBKDF2 password hashing, e.g. PBKDF2WithHmacSHA1. The hash is stored as
+ * <code>iterations:salt:key</code>, so the iteration count can be raised without making the
+ * existing hashes unusable. A random salt is generated for every hash, hence the salt value
+ * of the user is not needed.
+ */
+public class PBKDF2PasswordHasher implements PasswordHasher {
+
+    public static final String ALGORITHM_PREFIX = "PBKDF2";
+    public static final int DEFAULT_ITERATIONS = 10000;
+    private static final int SALT_LENGTH = 16;
+    private static final int KEY_LENGTH = 256;
+    private static final String SEPARATOR = ":";
+
+    private final String algorithm;
+    private final int iterations;
+    private final SecureRandom random = new SecureRandom();
+    private final ThreadLocal<SecretKeyFactory> keyFactories;
+
+    /**
+     * @param algorithm  SecretKeyFactory algorithm
+     * @param iterations number of iterations of new hashes
+     * @throws UserStoreException if the algorithm is not available
+     */
+    public PBKDF2PasswordHasher(final String algorithm, int iterations) throws UserStoreException {
+        if (iterations <= 0) {
+            throw new UserStoreException("Invalid number of password hash iterations : " + iterations);
+        }
+        try {
+            SecretKeyFactory.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new UserStoreException("Error while getting secret key factory for : " + algorithm, e);
+        }
+        this.algorithm = algorithm;
+        this.iterations = iterations;
+        this.keyFactories = new ThreadLocal<SecretKeyFactory>() {
+            @Override
+            protected SecretKeyFactory initialValue() {
+                try {
+                    return SecretKeyFactory.getInstance(algorithm);
+                } catch (NoSuchAlgorithmException e) {
+                    // already checked in the constructor
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public boolean isExpensive() {
+        return true;
+    }
+
+    public String hash(String password, String saltValue) throws UserStoreException {
+        byte[] salt = new byte[SALT_LENGTH];
+        random.nextBytes(salt);
+        byte[] key = deriveKey(password, salt, iterations);
+        return iterations + SEPARATOR + Base64.encode(salt) + SEPARATOR + Base64.encode(key);
+    }
+
+    public boolean verify(String password, String saltValue, String storedHash) throws UserStoreException {
+        if (storedHash == null) {
+            return false;
+        }
+        String[] parts = storedHash.split(SEPARATOR);
+        if (parts.length != 3) {
+            throw new UserStoreException("Invalid " + algorithm + " password hash");
+        }
+        int storedIterations;
+        try {
+            storedIterations = Integer.parseInt(parts[0]);
+        } catch (NumberFormatException e) {
+            throw new UserStoreException("Invalid " + algorithm + " password hash", e);
+        }
+        byte[] storedKey = Base64.decode(parts[2]);
+        byte[] key = deriveKey(password, Base64.decode(parts[1]), storedIterations);
+        return MessageDigest.isEqual(storedKey, key);
+    }
+
+    private byte[] deriveKey(String password, byte[] salt, int iterations) throws UserStoreException {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, KEY_LENGTH);
+        try {
+            return keyFactories.get().generateSecret(spec).getEncoded();
+        } catch (InvalidKeySpecException e) {
+            throw new UserStoreException("Error while hashing the password with " + algorithm, e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.user.core.hash;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.user.core.UserStoreException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs expensive password hashing on a fixed number of threads, one per processor, so that a
+ * burst of logins can not take all the CPU from the request threads. Hashing which is not
+ * expensive is done by the calling thread. Requests beyond the capacity of the queue are
+ * rejected instead of waiting, and a request which is not done within TIMEOUT_SECONDS fails.
+ */
+public final class PasswordHashExecutor {
+
+    private static final int QUEUE_SIZE = 1000;
+    private static final int TIMEOUT_SECONDS = 30;
+    private static Log log = LogFactory.getLog(PasswordHashExecutor.class);
+    private static final ThreadPoolExecutor executor;
+
+    static {
+        int threads = Runtime.getRuntime().availableProcessors();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(QUEUE_SIZE), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "PasswordHashExecutor-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    private PasswordHashExecutor() {
+    }
+
+    /**
+     * @see PasswordHasher#hash(String, String)
+     */
+    public static String hash(final PasswordHasher hasher, final String password, final String saltValue)
+            throws UserStoreException {
+        if (!hasher.isExpensive()) {
+            return hasher.hash(password, saltValue);
+        }
+        return execute(new Callable<String>() {
+            public String call() throws Exception {
+                return hasher.hash(password, saltValue);
+            }
+        });
+    }
+
+    /**
+     * @see PasswordHasher#verify(String, String, String)
+     */
+    public static boolean verify(final PasswordHasher hasher, final String password, final String saltValue,
+                                 final String storedHash) throws UserStoreException {
+        if (!hasher.isExpensive()) {
+            return hasher.verify(password, saltValue, storedHash);
+        }
+        return execute(new Callable<Boolean>() {
+            public Boolean call() throws Exception {
+                return hasher.verify(password, saltValue, storedHash);
+            }
+        });
+    }
+
+    private static <T> T execute(Callable<T> task) throws UserStoreException {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            String errorMessage = "Too many concurrent password hashing requests";
+            if (log.isDebugEnabled()) {
+                log.debug(errorMessage, e);
+            }
+            throw new UserStoreException(errorMessage, e);
+        }
+        try {
+            return future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            String errorMessage = "Password hashing did not complete within " + TIMEOUT_SECONDS + " seconds";
+            if (log.isDebugEnabled()) {
+                log.debug(errorMessage, e);
+            }
+            throw new UserStoreException(errorMessage, e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new UserStoreException("Interrupted while hashing the password", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UserStoreException) {
+                throw (UserStoreException) e.getCause();
+            }
+            throw new UserStoreException("Error while hashing the password", e.getCause());
+        }
+    }
+}
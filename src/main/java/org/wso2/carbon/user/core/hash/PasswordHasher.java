@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.user.core.hash;
+
+import org.wso2.carbon.user.core.UserStoreException;
+
+/**
+ * Hashes passwords before they are stored, and verifies passwords against the stored hashes.
+ * Implementations must be thread safe, as a single instance is shared by all the user stores
+ * which use the algorithm. Additional implementations can be made available through
+ * {@link PasswordHasherFactory#addPasswordHasher(PasswordHasher)}.
+ */
+public interface PasswordHasher {
+
+    /**
+     * @return name of the algorithm, which is kept as the prefix of the stored hashes
+     */
+    String getAlgorithm();
+
+    /**
+     * @return true if hashing takes long enough that it should not be done by the request threads
+     */
+    boolean isExpensive();
+
+    /**
+     * Hash the given password.
+     *
+     * @param password  password
+     * @param saltValue salt of the user, or null if salted passwords are not stored
+     * @return the hash of the password, without the algorithm prefix
+     * @throws UserStoreException if the password can not be hashed
+     */
+    String hash(String password, String saltValue) throws UserStoreException;
+
+    /**
+     * Check whether the given password matches a hash returned by {@link #hash(String, String)}.
+     *
+     * @param password   password
+     * @param saltValue  salt of the user, or null if salted passwords are not stored
+     * @param storedHash stored hash, without the algorithm prefix
+     * @return true if the password matches
+     * @throws UserStoreException if the password can not be hashed
+     */
+    boolean verify(String password, String saltValue, String storedHash) throws UserStoreException;
+}
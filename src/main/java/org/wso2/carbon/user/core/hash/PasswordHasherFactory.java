@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.user.core.hash;
+
+import org.wso2.carbon.user.core.UserStoreException;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Looks up password hashers by algorithm, and reads and writes the algorithm prefix of the
+ * stored hashes, e.g. <code>{SHA-256}hash</code>. Hashers for MessageDigest and PBKDF2
+ * algorithms are created when they are first asked for; other hashers have to be added.
+ */
+public final class PasswordHasherFactory {
+
+    private static final String PREFIX_START = "{";
+    private static final String PREFIX_END = "}";
+
+    private static ConcurrentMap<String, PasswordHasher> hashers =
+            new ConcurrentHashMap<String, PasswordHasher>();
+
+    private PasswordHasherFactory() {
+    }
+
+    /**
+     * Make a hasher available, replacing any hasher of the same algorithm.
+     *
+     * @param hasher password hasher
+     */
+    public static void addPasswordHasher(PasswordHasher hasher) {
+        hashers.put(hasher.getAlgorithm(), hasher);
+    }
+
+    /**
+     * @param algorithm algorithm
+     * @return the hasher of the given algorithm
+     * @throws UserStoreException if the algorithm is not supported
+     */
+    public static PasswordHasher getPasswordHasher(String algorithm) throws UserStoreException {
+        PasswordHasher hasher = hashers.get(algorithm);
+        if (hasher == null) {
+            hasher = createPasswordHasher(algorithm, PBKDF2PasswordHasher.DEFAULT_ITERATIONS);
+            PasswordHasher existing = hashers.putIfAbsent(algorithm, hasher);
+            if (existing != null) {
+                hasher = existing;
+            }
+        }
+        return hasher;
+    }
+
+    /**
+     * @param algorithm  algorithm
+     * @param iterations number of iterations, used by iterative algorithms such as PBKDF2
+     * @return a hasher of the given algorithm which uses the given number of iterations
+     * @throws UserStoreException if the algorithm is not supported
+     */
+    public static PasswordHasher getPasswordHasher(String algorithm, int iterations) throws UserStoreException {
+        if (iterations == PBKDF2PasswordHasher.DEFAULT_ITERATIONS || !isPBKDF2(algorithm)) {
+            return getPasswordHasher(algorithm);
+        }
+        return createPasswordHasher(algorithm, iterations);
+    }
+
+    /**
+     * @param storedPassword stored password
+     * @return the algorithm in the prefix of the stored password, or null if there is no prefix
+     */
+    public static String getAlgorithm(String storedPassword) {
+        if (storedPassword == null || !storedPassword.startsWith(PREFIX_START)) {
+            return null;
+        }
+        int end = storedPassword.indexOf(PREFIX_END);
+        if (end <= 1) {
+            return null;
+        }
+        return storedPassword.substring(1, end);
+    }
+
+    /**
+     * @param storedPassword stored password which has an algorithm prefix
+     * @return the stored password without the algorithm prefix
+     */
+    public static String removeAlgorithm(String storedPassword) {
+        return storedPassword.substring(storedPassword.indexOf(PREFIX_END) + 1);
+    }
+
+    /**
+     * @param algorithm algorithm
+     * @param hash      hash returned by the hasher of the algorithm
+     * @return the hash prefixed with the algorithm
+     */
+    public static String addAlgorithm(String algorithm, String hash) {
+        return PREFIX_START + algorithm + PREFIX_END + hash;
+    }
+
+    private static boolean isPBKDF2(String algorithm) {
+        return algorithm.toUpperCase().startsWith(PBKDF2PasswordHasher.ALGORITHM_PREFIX);
+    }
+
+    private static PasswordHasher createPasswordHasher(String algorithm, int iterations)
+            throws UserStoreException {
+        if (isPBKDF2(algorithm)) {
+            return new PBKDF2PasswordHasher(algorithm, iterations);
+        }
+        return new DigestPasswordHasher(algorithm);
+    }
+}
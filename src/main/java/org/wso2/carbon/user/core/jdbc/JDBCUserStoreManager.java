@@ -32,6 +32,11 @@ import org.wso2.carbon.user.core.claim.ClaimManager;
 import org.wso2.carbon.user.core.common.AbstractUserStoreManager;
 import org.wso2.carbon.user.core.common.RoleContext;
 import org.wso2.carbon.user.core.dto.RoleDTO;
+import org.wso2.carbon.user.core.hash.DigestPasswordHasher;
+import org.wso2.carbon.user.core.hash.PBKDF2PasswordHasher;
+import org.wso2.carbon.user.core.hash.PasswordHashExecutor;
+import org.wso2.carbon.user.core.hash.PasswordHasher;
+import org.wso2.carbon.user.core.hash.PasswordHasherFactory;
 import org.wso2.carbon.user.core.hybrid.HybridJDBCConstants;
 import org.wso2.carbon.user.core.profile.ProfileConfigurationManager;
 import org.wso2.carbon.user.core.tenant.Tenant;
@@ -42,7 +47,6 @@ import org.wso2.carbon.utils.dbcreator.DatabaseCreator;
 import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
 
 import javax.sql.DataSource;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.sql.SQLTimeoutException;
 import java.sql.Timestamp;
@@ -62,6 +66,8 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class JDBCUserStoreManager extends AbstractUserStoreManager {
 
@@ -69,6 +75,13 @@ public class JDBCUserStoreManager extends AbstractUserStoreManager {
     private static Log log = LogFactory.getLog(JDBCUserStoreManager.class);
     protected DataSource jdbcds = null;
     private static final String SHA_1_PRNG = "SHA1PRNG";
+    private static final String IN_PARAMETER = "IN (?)";
+    private static final int MAX_USERS_PER_QUERY = 100;
+    private static final int MAX_PROPERTIES_PER_QUERY = 100;
+    private final ConcurrentMap<Integer, String> propsByNameStatements = new ConcurrentHashMap<Integer, String>();
+    private final ConcurrentMap<Integer, String> usersPropsStatements = new ConcurrentHashMap<Integer, String>();
+    private volatile PasswordHasher passwordHasher;
+    private volatile boolean passwordHasherResolved;
 
     public JDBCUserStoreManager() {
 
@@ -873,6 +886,11 @@ public class JDBCUserStoreManager extends AbstractUserStoreManager {
         if (profileName == null) {
             profileName = UserCoreConstants.DEFAULT_PROFILE;
         }
+        String propsByNameSQL = realmConfig.getUserStoreProperty(JDBCRealmConstants.GET_PROPS_BY_NAME_FOR_PROFILE);
+        if (propsByNameSQL != null && propsByNameSQL.contains(IN_PARAMETER)
+                && propertyNames.length <= MAX_PROPERTIES_PER_QUERY) {
+            return getUserPropertyValuesByName(userName, propertyNames, profileName, propsByNameSQL);
+        }
         Connection dbConnection = null;
         String sqlStmt = null;
         PreparedStatement prepStmt = null;
@@ -916,6 +934,164 @@ public class JDBCUserStoreManager extends AbstractUserStoreManager {
         }
     }
 
+    /**
+     * Reads only the given properties of the user, whose names are bound to the "IN (?)" of the
+     * statement, instead of reading all the properties of the profile and dropping the rest.
+     */
+    private Map<String, String> getUserPropertyValuesByName(String userName, String[] propertyNames,
+                                                            String profileName, String sqlStmt)
+            throws UserStoreException {
+
+        Map<String, String> map = new HashMap<String, String>();
+        if (propertyNames == null || propertyNames.length == 0) {
+            return map;
+        }
+        Connection dbConnection = null;
+        PreparedStatement prepStmt = null;
+        ResultSet rs = null;
+        try {
+            dbConnection = getDBConnection();
+            prepStmt = dbConnection.prepareStatement(
+                    getInParameterSQL(propsByNameStatements, sqlStmt, propertyNames.length));
+            int index = 1;
+            prepStmt.setString(index++, userName);
+            prepStmt.setString(index++, profileName);
+            if (sqlStmt.contains(UserCoreConstants.UM_TENANT_COLUMN)) {
+                prepStmt.setInt(index++, tenantId);
+                prepStmt.setInt(index++, tenantId);
+            }
+            for (String propertyName : propertyNames) {
+                prepStmt.setString(index++, propertyName);
+            }
+            rs = prepStmt.executeQuery();
+            while (rs.next()) {
+                String name = rs.getString(1);
+                String value = rs.getString(2);
+                if (value == null || value.isEmpty()) {
+                    continue;
+                }
+                map.put(name, value);
+            }
+            return map;
+        } catch (SQLException e) {
+            String errorMessage =
+                    "Error Occurred while getting property values for user : " + userName + " & profile name : " +
+                    profileName;
+            if (log.isDebugEnabled()) {
+                log.debug(errorMessage, e);
+            }
+            throw new UserStoreException(errorMessage, e);
+        } finally {
+            DatabaseUtil.closeAllConnections(dbConnection, rs, prepStmt);
+        }
+    }
+
+    /**
+     * Reads the properties of the users with one query for every {@value #MAX_USERS_PER_QUERY} users.
+     */
+    @Override
+    protected Map<String, Map<String, String>> getUsersPropertyValues(String[] userNames, String[] propertyNames,
+                                                                      String profileName) throws UserStoreException {
+
+        String sqlStmt = realmConfig.getUserStoreProperty(JDBCRealmConstants.GET_USERS_PROPS_FOR_PROFILE);
+        if (sqlStmt == null || !sqlStmt.contains(IN_PARAMETER)) {
+            return super.getUsersPropertyValues(userNames, propertyNames, profileName);
+        }
+        if (profileName == null) {
+            profileName = UserCoreConstants.DEFAULT_PROFILE;
+        }
+        String[] propertyNamesSorted = propertyNames.clone();
+        Arrays.sort(propertyNamesSorted);
+        // the database may match user names ignoring case, so the returned names are mapped back
+        // to the requested names, preferring a name requested exactly as returned
+        Map<String, String> requestedNames = new HashMap<String, String>();
+        for (String userName : userNames) {
+            requestedNames.put(userName.toLowerCase(), userName);
+        }
+        for (String userName : userNames) {
+            requestedNames.put(userName, userName);
+        }
+        Map<String, Map<String, String>> values = new HashMap<String, Map<String, String>>();
+        Connection dbConnection = null;
+        PreparedStatement prepStmt = null;
+        ResultSet rs = null;
+        try {
+            dbConnection = getDBConnection();
+            for (int start = 0; start < userNames.length; start += MAX_USERS_PER_QUERY) {
+                int count = Math.min(MAX_USERS_PER_QUERY, userNames.length - start);
+                prepStmt = dbConnection.prepareStatement(getInParameterSQL(usersPropsStatements, sqlStmt, count));
+                int index = 1;
+                for (int i = start; i < start + count; i++) {
+                    prepStmt.setString(index++, userNames[i]);
+                }
+                prepStmt.setString(index++, profileName);
+                if (sqlStmt.contains(UserCoreConstants.UM_TENANT_COLUMN)) {
+                    prepStmt.setInt(index++, tenantId);
+                    prepStmt.setInt(index, tenantId);
+                }
+                rs = prepStmt.executeQuery();
+                while (rs.next()) {
+                    String returnedName = rs.getString(1);
+                    String name = rs.getString(2);
+                    String value = rs.getString(3);
+                    String userName = requestedNames.get(returnedName);
+                    if (userName == null && returnedName != null) {
+                        userName = requestedNames.get(returnedName.toLowerCase());
+                    }
+                    if (userName == null) {
+                        continue;
+                    } else if (Arrays.binarySearch(propertyNamesSorted, name) < 0) {
+                        continue;
+                    } else if (value == null || value.isEmpty()) {
+                        continue;
+                    }
+                    Map<String, String> map = values.get(userName);
+                    if (map == null) {
+                        map = new HashMap<String, String>();
+                        values.put(userName, map);
+                    }
+                    map.put(name, value);
+                }
+                DatabaseUtil.closeAllConnections(null, rs, prepStmt);
+            }
+            return values;
+        } catch (SQLException e) {
+            String errorMessage = "Error Occurred while getting property values of " + userNames.length +
+                    " users & profile name : " + profileName;
+            if (log.isDebugEnabled()) {
+                log.debug(errorMessage, e);
+            }
+            throw new UserStoreException(errorMessage, e);
+        } finally {
+            DatabaseUtil.closeAllConnections(dbConnection, rs, prepStmt);
+        }
+    }
+
+    /**
+     * @param statements statements already expanded from sqlStmt, by the number of parameters
+     * @param sqlStmt    statement with one "IN (?)"
+     * @param count      number of parameters of the "IN"
+     * @return the statement with "IN (?)" expanded to count parameters
+     */
+    private static String getInParameterSQL(ConcurrentMap<Integer, String> statements, String sqlStmt, int count) {
+        String statement = statements.get(count);
+        if (statement == null) {
+            statement = expandInParameter(sqlStmt, count);
+            statements.putIfAbsent(count, statement);
+        }
+        return statement;
+    }
+
+    private static String expandInParameter(String sqlStmt, int count) {
+        StringBuilder parameters = new StringBuilder("IN (?");
+        for (int i = 1; i < count; i++) {
+            parameters.append(",?");
+        }
+        parameters.append(')');
+        int index = sqlStmt.indexOf(IN_PARAMETER);
+        return sqlStmt.substring(0, index) + parameters + sqlStmt.substring(index + IN_PARAMETER.length());
+    }
+
     /**
      * @param sqlStmt
      * @param params
@@ -1139,10 +1315,7 @@ public class JDBCUserStoreManager extends AbstractUserStoreManager {
                 if (requireChange == true && changedTime.before(date)) {
                     isAuthed = false;
                 } else {
-                    password = this.preparePassword(password, saltValue);
-                    if ((storedPassword != null) && (storedPassword.equals(password))) {
-                        isAuthed = true;
-                    }
+                    isAuthed = verifyPassword(password, saltValue, storedPassword);
                 }
             }
         } catch (SQLException e) {
@@ -2320,32 +2493,98 @@ public class JDBCUserStoreManager extends AbstractUserStoreManager {
      */
     protected String preparePassword(String password, String saltValue) throws UserStoreException {
 
-        String digestFunction = null;
-        try {
-            String digestInput = password;
-            if (saltValue != null) {
-                digestInput = password + saltValue;
-            }
-            digestFunction = realmConfig.getUserStoreProperties().get(JDBCRealmConstants.DIGEST_FUNCTION);
-            if (digestFunction != null) {
+        PasswordHasher hasher = getPasswordHasher();
+        if (hasher == null) {
+            return password;
+        }
+        String hash = PasswordHashExecutor.hash(hasher, password, saltValue);
+        if (hasher instanceof DigestPasswordHasher) {
+            // digest hashes are stored without a prefix, as they always have been
+            return hash;
+        }
+        return PasswordHasherFactory.addAlgorithm(hasher.getAlgorithm(), hash);
+    }
 
-                if (digestFunction
-                        .equals(UserCoreConstants.RealmConfig.PASSWORD_HASH_METHOD_PLAIN_TEXT)) {
-                    return password;
-                }
+    /**
+     * Checks the given password against the stored one. Stored passwords which have the prefix of
+     * a known algorithm, such as PBKDF2, are verified with the hasher of that algorithm only.
+     * Other stored passwords are compared with the result of
+     * {@link #preparePassword(String, String)}, hence subclasses which override that method keep
+     * verifying the passwords they store. If the configured hasher stores prefixed hashes, the
+     * unprefixed passwords were stored before it was configured, and are verified with the
+     * LegacyPasswordDigest function instead, SHA-256 by default.
+     *
+     * @param password       password given by the user
+     * @param saltValue      salt of the user, or null if salted passwords are not stored
+     * @param storedPassword stored password
+     * @return true if the password matches
+     * @throws UserStoreException if the password can not be hashed
+     */
+    protected boolean verifyPassword(String password, String saltValue, String storedPassword)
+            throws UserStoreException {
 
-                MessageDigest dgst = MessageDigest.getInstance(digestFunction);
-                byte[] byteValue = dgst.digest(digestInput.getBytes());
-                password = Base64.encode(byteValue);
+        if (storedPassword == null) {
+            return false;
+        }
+        String algorithm = PasswordHasherFactory.getAlgorithm(storedPassword);
+        if (algorithm != null) {
+            PasswordHasher hasher = null;
+            try {
+                hasher = PasswordHasherFactory.getPasswordHasher(algorithm);
+            } catch (UserStoreException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("No password hasher for the prefix of the stored password : " + algorithm, e);
+                }
             }
-            return password;
-        } catch (NoSuchAlgorithmException e) {
-            String errorMessage = "Error while getting Message Digest from digest function : " + digestFunction;
-            if (log.isDebugEnabled()) {
-                log.debug(errorMessage, e);
+            if (hasher != null) {
+                return PasswordHashExecutor.verify(hasher, password, saltValue,
+                        PasswordHasherFactory.removeAlgorithm(storedPassword));
             }
-            throw new UserStoreException(errorMessage, e);
         }
+        PasswordHasher hasher = getPasswordHasher();
+        if (hasher != null && !(hasher instanceof DigestPasswordHasher)) {
+            String legacyDigestFunction = realmConfig.getUserStoreProperty(JDBCRealmConstants.LEGACY_DIGEST_FUNCTION);
+            if (legacyDigestFunction == null || legacyDigestFunction.trim().length() == 0) {
+                legacyDigestFunction = JDBCRealmConstants.DEFAULT_LEGACY_DIGEST_FUNCTION;
+            }
+            if (UserCoreConstants.RealmConfig.PASSWORD_HASH_METHOD_PLAIN_TEXT.equals(legacyDigestFunction)) {
+                return storedPassword.equals(password);
+            }
+            return PasswordHashExecutor.verify(PasswordHasherFactory.getPasswordHasher(legacyDigestFunction.trim()),
+                    password, saltValue, storedPassword);
+        }
+        return storedPassword.equals(preparePassword(password, saltValue));
+    }
+
+    /**
+     * @return the hasher of the configured digest function, or null if passwords are stored in
+     * plain text
+     * @throws UserStoreException if the digest function is not supported
+     */
+    private PasswordHasher getPasswordHasher() throws UserStoreException {
+
+        if (passwordHasherResolved) {
+            return passwordHasher;
+        }
+        String digestFunction = realmConfig.getUserStoreProperty(JDBCRealmConstants.DIGEST_FUNCTION);
+        PasswordHasher hasher = null;
+        if (digestFunction != null &&
+                !digestFunction.equals(UserCoreConstants.RealmConfig.PASSWORD_HASH_METHOD_PLAIN_TEXT)) {
+            int iterations = PBKDF2PasswordHasher.DEFAULT_ITERATIONS;
+            String iterationsValue = realmConfig.getUserStoreProperty(JDBCRealmConstants.PASSWORD_HASH_ITERATIONS);
+            if (iterationsValue != null && iterationsValue.trim().length() > 0) {
+                try {
+                    iterations = Integer.parseInt(iterationsValue.trim());
+                } catch (NumberFormatException e) {
+                    throw new UserStoreException("Invalid value for " +
+                            JDBCRealmConstants.PASSWORD_HASH_ITERATIONS + " : " + iterationsValue, e);
+                }
+            }
+            hasher = PasswordHasherFactory.getPasswordHasher(digestFunction, iterations);
+        }
+        passwordHasher = hasher;
+        passwordHasherResolved = true;
+        return hasher;
     }
 
     /**
@@ -2491,6 +2730,8 @@ public class JDBCUserStoreManager extends AbstractUserStoreManager {
             profileName = UserCoreConstants.DEFAULT_PROFILE;
         }
 
+        // values without wildcards are matched by equality, which can use an index on the value
+        boolean exactValue = !value.contains("*") && !value.contains("%");
         if (value.contains("*")) {
             if ((value.startsWith("*") && !value.substring(1).contains("*")) ||
                     value.endsWith("*") && !value.substring(0, value.length() - 1).contains("*")) {
@@ -2507,7 +2748,12 @@ public class JDBCUserStoreManager extends AbstractUserStoreManager {
         List<String> list = new ArrayList<String>();
         try {
             dbConnection = getDBConnection();
-            sqlStmt = realmConfig.getUserStoreProperty(JDBCRealmConstants.GET_USERS_FOR_PROP);
+            if (exactValue) {
+                sqlStmt = realmConfig.getUserStoreProperty(JDBCRealmConstants.GET_USERS_FOR_PROP_VALUE);
+            }
+            if (sqlStmt == null) {
+                sqlStmt = realmConfig.getUserStoreProperty(JDBCRealmConstants.GET_USERS_FOR_PROP);
+            }
             prepStmt = dbConnection.prepareStatement(sqlStmt);
             prepStmt.setString(1, property);
             prepStmt.setString(2, value);
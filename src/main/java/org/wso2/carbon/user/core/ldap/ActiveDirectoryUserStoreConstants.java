@@ -98,6 +98,10 @@ public class ActiveDirectoryUserStoreConstants {
         setProperty("Referral", "Referral", "follow", "Guides the requests to a domain controller in the correct domain");
         setProperty("BackLinksEnabled", "Enable Back Links", "true", " Whether to allow attributes to be result from references to the object from other objects");
         setProperty("ConnectionPoolingEnabled", "Enable Connection Pooling", "true", "Set this property to enable LDAP connection pooling.");
+        setProperty(LDAPConstants.CONNECTION_POOL_MAX_ACTIVE, "Connection Pool Maximum Active", "", "Maximum number of connections the user store pools and uses at a time. Leave empty to rely on the JNDI connection pooling.");
+        setProperty(LDAPConstants.CONNECTION_POOL_MAX_IDLE, "Connection Pool Maximum Idle", "", "Maximum number of idle connections kept in the pool");
+        setProperty(LDAPConstants.BIND_CONNECTION_POOL_SIZE, "Bind Connection Pool Size", "", "Number of pooled connections used to authenticate users. Leave empty to open a connection per authentication.");
+        setProperty(LDAPConstants.LIST_PAGE_SIZE, "List Page Size", "", "Number of users or roles read at a time when listing them, using the LDAP paged results control. Leave empty to read them in a single search.");
         setProperty("ReadTimeout", "LDAP Read Timeout", "5000", "Set the LDAP connection read time out. Setting it " + "empty will set it to the TCP time out");
         setProperty("UniqueID", "", "", "");
     }
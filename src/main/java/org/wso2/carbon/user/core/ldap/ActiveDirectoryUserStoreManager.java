@@ -557,6 +557,8 @@ public class ActiveDirectoryUserStoreManager extends ReadWriteLDAPUserStoreManag
 
             if (cnModified && cnValue != null) {
                 subDirContext.rename(returnedUserEntry, "CN=" + escapeSpecialCharactersForDN(cnValue));
+                // the DN of the user has changed
+                userCache.remove(userName);
             }
 
         } catch (InvalidAttributeValueException e) {
@@ -644,6 +646,7 @@ public class ActiveDirectoryUserStoreManager extends ReadWriteLDAPUserStoreManag
             if ("CN".equals(attributeName)) {
                 subDirContext = (DirContext) dirContext.lookup(userSearchBase);
                 subDirContext.rename(returnedUserEntry, "CN=" + value);
+                userCache.remove(userName);
                 return;
             }
 
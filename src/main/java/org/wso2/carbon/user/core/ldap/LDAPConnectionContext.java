@@ -58,6 +58,22 @@ public class LDAPConnectionContext {
 
     private static final String READ_TIME_OUT = "ReadTimeout";
 
+    private static final int DEFAULT_CONNECTION_POOL_MAX_IDLE = 8;
+
+    private static final long DEFAULT_CONNECTION_POOL_MAX_WAIT = 5000;
+
+    private static final long DEFAULT_CONNECTION_POOL_VALIDATION_INTERVAL = 30000;
+
+    /**
+     * Environment of the pooled contexts, which do not use the JDK connection pool.
+     */
+    @SuppressWarnings("rawtypes")
+    private Hashtable poolEnvironment;
+
+    private LDAPConnectionPool connectionPool;
+
+    private LDAPConnectionPool bindConnectionPool;
+
     @SuppressWarnings({"rawtypes", "unchecked"})
     public LDAPConnectionContext(RealmConfiguration realmConfig) throws UserStoreException {
 
@@ -166,19 +182,133 @@ public class LDAPConnectionContext {
         if(StringUtils.isNotEmpty(readTimeout)){
             environment.put("com.sun.jndi.ldap.read.timeout", readTimeout);
         }
+
+        initConnectionPools(realmConfig);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void initConnectionPools(RealmConfiguration realmConfig) throws UserStoreException {
+
+        int maxActive = getIntProperty(realmConfig, LDAPConstants.CONNECTION_POOL_MAX_ACTIVE, 0);
+        int bindPoolSize = getIntProperty(realmConfig, LDAPConstants.BIND_CONNECTION_POOL_SIZE, 0);
+        if (maxActive <= 0 && bindPoolSize <= 0) {
+            return;
+        }
+
+        poolEnvironment = (Hashtable) environment.clone();
+        poolEnvironment.put("com.sun.jndi.ldap.connect.pool", "false");
+        long maxWait = getIntProperty(realmConfig, LDAPConstants.CONNECTION_POOL_MAX_WAIT,
+                (int) DEFAULT_CONNECTION_POOL_MAX_WAIT);
+        long validationInterval = getIntProperty(realmConfig, LDAPConstants.CONNECTION_POOL_VALIDATION_INTERVAL,
+                (int) DEFAULT_CONNECTION_POOL_VALIDATION_INTERVAL);
+
+        if (maxActive > 0) {
+            int maxIdle = getIntProperty(realmConfig, LDAPConstants.CONNECTION_POOL_MAX_IDLE,
+                    Math.min(maxActive, DEFAULT_CONNECTION_POOL_MAX_IDLE));
+            connectionPool = new LDAPConnectionPool("search", maxActive, maxIdle, maxWait, validationInterval) {
+                @Override
+                protected LdapContext createContext() throws UserStoreException {
+                    return (LdapContext) connect(poolEnvironment, true);
+                }
+            };
+        }
+
+        if (bindPoolSize > 0) {
+            bindConnectionPool = new LDAPConnectionPool("bind", bindPoolSize, bindPoolSize, maxWait,
+                    validationInterval) {
+                @Override
+                protected LdapContext createContext() throws UserStoreException {
+                    return (LdapContext) connect(poolEnvironment, true);
+                }
+
+                @Override
+                protected void resetContext(LdapContext context) throws NamingException {
+                    super.resetContext(context);
+                    // bind back as the connection user, so that idle connections do not keep
+                    // the identity of the last authenticated user
+                    rebind(context, (String) poolEnvironment.get(Context.SECURITY_PRINCIPAL),
+                            (String) poolEnvironment.get(Context.SECURITY_CREDENTIALS));
+                }
+            };
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("LDAP connection pools are enabled. Maximum active connections : " + maxActive +
+                    ", bind connections : " + bindPoolSize);
+        }
+    }
+
+    private static int getIntProperty(RealmConfiguration realmConfig, String name, int defaultValue)
+            throws UserStoreException {
+        String value = realmConfig.getUserStoreProperty(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new UserStoreException("Invalid value for " + name + " : " + value, e);
+        }
+    }
+
+    private static void rebind(LdapContext context, String principal, String credentials) throws NamingException {
+        if (principal != null) {
+            context.addToEnvironment(Context.SECURITY_PRINCIPAL, principal);
+        } else {
+            context.removeFromEnvironment(Context.SECURITY_PRINCIPAL);
+        }
+        if (credentials != null) {
+            context.addToEnvironment(Context.SECURITY_CREDENTIALS, credentials);
+        } else {
+            context.removeFromEnvironment(Context.SECURITY_CREDENTIALS);
+        }
+        context.reconnect(null);
     }
 
     public DirContext getContext() throws UserStoreException {
+        if (connectionPool != null) {
+            return connectionPool.borrowContext();
+        }
+        return connect(environment, false);
+    }
+
+    /**
+     * @return a context which supports request controls, e.g. for paged searches
+     * @throws UserStoreException if a connection can not be obtained
+     */
+    public LdapContext getLdapContext() throws UserStoreException {
+        if (connectionPool != null) {
+            return connectionPool.borrowContext();
+        }
+        return (LdapContext) connect(environment, true);
+    }
+
+    /**
+     * @return the pool of contexts returned by getContext, or null if they are not pooled
+     */
+    LDAPConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    /**
+     * @return the pool of contexts used to authenticate users, or null if they are not pooled
+     */
+    LDAPConnectionPool getBindConnectionPool() {
+        return bindConnectionPool;
+    }
+
+    @SuppressWarnings("unchecked")
+    private DirContext connect(Hashtable env, boolean ldapContext) throws UserStoreException {
         DirContext context = null;
         //if dcMap is not populated, it is not DNS case
         if (dcMap == null) {
             try {
-                context = new InitialDirContext(environment);
+                context = newContext(env, ldapContext);
 
             } catch (NamingException e) {
                 log.error("Error obtaining connection.Trying again to get connection... ", e);
                 try {
-                    context = new InitialDirContext(environment);
+                    context = newContext(env, ldapContext);
                 } catch (Exception e1) {
                     String errorMessage = "Error obtaining connection.";
                     if (log.isDebugEnabled()) {
@@ -194,8 +324,8 @@ public class LDAPConnectionContext {
                 Integer firstKey = dcMap.firstKey();
                 SRVRecord firstRecord = dcMap.get(firstKey);
                 //compose the connection URL
-                environment.put(Context.PROVIDER_URL, getLDAPURLFromSRVRecord(firstRecord));
-                context = new InitialDirContext(environment);
+                env.put(Context.PROVIDER_URL, getLDAPURLFromSRVRecord(firstRecord));
+                context = newContext(env, ldapContext);
 
             } catch (NamingException e) {
                 log.error("Error obtaining connection to first Domain Controller.Trying to connect with other Domain" +
@@ -204,8 +334,8 @@ public class LDAPConnectionContext {
                 for (Integer integer : dcMap.keySet()) {
                     try {
                         SRVRecord srv = dcMap.get(integer);
-                        environment.put(Context.PROVIDER_URL, getLDAPURLFromSRVRecord(srv));
-                        context = new InitialDirContext(environment);
+                        env.put(Context.PROVIDER_URL, getLDAPURLFromSRVRecord(srv));
+                        context = newContext(env, ldapContext);
                         break;
                     } catch (NamingException e1) {
                         if (integer == (dcMap.lastKey())) {
@@ -224,6 +354,13 @@ public class LDAPConnectionContext {
 
     }
 
+    private static DirContext newContext(Hashtable env, boolean ldapContext) throws NamingException {
+        if (ldapContext) {
+            return new InitialLdapContext(env, null);
+        }
+        return new InitialDirContext(env);
+    }
+
     @SuppressWarnings("unchecked")
     public void updateCredential(String connectionPassword) {
         /*
@@ -231,6 +368,16 @@ public class LDAPConnectionContext {
          * changed
          */
         this.environment.put(Context.SECURITY_CREDENTIALS, connectionPassword);
+        if (poolEnvironment != null) {
+            this.poolEnvironment.put(Context.SECURITY_CREDENTIALS, connectionPassword);
+        }
+        // pooled connections were bound with the old password
+        if (connectionPool != null) {
+            connectionPool.clear();
+        }
+        if (bindConnectionPool != null) {
+            bindConnectionPool.clear();
+        }
     }
 
     private void populateDCMap() throws UserStoreException {
@@ -309,6 +456,9 @@ public class LDAPConnectionContext {
 
     public LdapContext getContextWithCredentials(String userDN, String password)
             throws UserStoreException, NamingException, AuthenticationException {
+        if (bindConnectionPool != null) {
+            return bindWithPooledContext(userDN, password);
+        }
         LdapContext context = null;
 
         //create a temp env for this particular authentication session by copying the original env
@@ -382,4 +532,35 @@ public class LDAPConnectionContext {
         return (context);
     }
 
+    /**
+     * Bind as the given user over a connection of the bind pool. The connection is bound back as
+     * the connection user when the returned context is closed, or right away if the bind fails.
+     */
+    private LdapContext bindWithPooledContext(String userDN, String password)
+            throws UserStoreException, NamingException {
+        LdapContext context = bindConnectionPool.borrowRawContext();
+        boolean usable = true;
+        try {
+            rebind(context, userDN, password);
+            LdapContext pooledContext = bindConnectionPool.wrapContext(context);
+            context = null;
+            return pooledContext;
+        } catch (AuthenticationException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Error occurred while authenticating for user DN : " + userDN);
+            }
+            throw e;
+        } catch (TimeLimitExceededException e) {
+            usable = false;
+            throw new UserStoreException("TimeLimitExceeded : LDAP Read Timed Out");
+        } catch (NamingException e) {
+            usable = false;
+            throw e;
+        } finally {
+            if (context != null) {
+                bindConnectionPool.returnContext(context, usable);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ * 
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.user.core.ldap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.user.core.UserStoreException;
+
+import javax.naming.CommunicationException;
+import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
+import javax.naming.ldap.LdapContext;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of LDAP contexts. Borrowed contexts are handed out wrapped, and closing the
+ * wrapper returns the context to the pool instead of closing the connection, so callers keep
+ * using JNDIUtil.closeContext as before.
+ * <p/>
+ * At most maxActive contexts are borrowed at a time; further borrowers wait up to maxWait
+ * milliseconds. At most maxIdle contexts are kept when they are returned. Contexts which were
+ * idle for longer than the validation interval are checked before they are handed out, and
+ * contexts whose connection failed while borrowed are closed instead of being returned.
+ */
+abstract class LDAPConnectionPool {
+
+    private static Log log = LogFactory.getLog(LDAPConnectionPool.class);
+    private static final String[] NO_ATTRIBUTES = new String[]{"1.1"};
+
+    private final String name;
+    private final int maxIdle;
+    private final long maxWait;
+    private final long validationInterval;
+    private final Semaphore permits;
+    private final int maxActive;
+    private final BlockingDeque<IdleContext> idleContexts = new LinkedBlockingDeque<IdleContext>();
+
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong returnCount = new AtomicLong();
+    private final AtomicLong createCount = new AtomicLong();
+    private final AtomicLong destroyCount = new AtomicLong();
+    private final AtomicLong waitTimeoutCount = new AtomicLong();
+
+    /**
+     * @param name               name of the pool, used in logs
+     * @param maxActive          maximum number of borrowed contexts
+     * @param maxIdle            maximum number of idle contexts
+     * @param maxWait            time in milliseconds to wait for a context when all are borrowed
+     * @param validationInterval idle time in milliseconds after which a context is checked
+     */
+    LDAPConnectionPool(String name, int maxActive, int maxIdle, long maxWait, long validationInterval) {
+        this.name = name;
+        this.maxActive = maxActive;
+        this.maxIdle = maxIdle;
+        this.maxWait = maxWait;
+        this.validationInterval = validationInterval;
+        this.permits = new Semaphore(maxActive, true);
+    }
+
+    /**
+     * @return a new context for the pool
+     * @throws UserStoreException if the connection can not be made
+     */
+    protected abstract LdapContext createContext() throws UserStoreException;
+
+    /**
+     * Bring a context back to the state of a new one before it is returned to the pool.
+     *
+     * @param context context which is returned
+     * @throws NamingException if the context can not be reset, in which case it is closed
+     */
+    protected void resetContext(LdapContext context) throws NamingException {
+        context.setRequestControls(null);
+    }
+
+    /**
+     * @return a context, which is returned to the pool when it is closed
+     * @throws UserStoreException if no context becomes available in time, or the connection can
+     *                            not be made
+     */
+    LdapContext borrowContext() throws UserStoreException {
+        return wrapContext(borrowRawContext());
+    }
+
+    /**
+     * Borrow a context without wrapping it. It must be given back with
+     * {@link #returnContext(LdapContext, boolean)}.
+     */
+    LdapContext borrowRawContext() throws UserStoreException {
+        try {
+            if (!permits.tryAcquire(maxWait, TimeUnit.MILLISECONDS)) {
+                waitTimeoutCount.incrementAndGet();
+                throw new UserStoreException("Timed out waiting for a connection from the LDAP connection pool " +
+                        name + " : " + getStatistics());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UserStoreException("Interrupted while waiting for an LDAP connection", e);
+        }
+
+        try {
+            IdleContext idleContext;
+            while ((idleContext = idleContexts.pollFirst()) != null) {
+                if (System.currentTimeMillis() - idleContext.idleSince < validationInterval ||
+                        isValid(idleContext.context)) {
+                    borrowCount.incrementAndGet();
+                    return idleContext.context;
+                }
+                destroy(idleContext.context);
+            }
+            LdapContext context = createContext();
+            if (context == null) {
+                throw new UserStoreException("Could not create a connection for the LDAP connection pool " + name);
+            }
+            createCount.incrementAndGet();
+            borrowCount.incrementAndGet();
+            return context;
+        } catch (UserStoreException e) {
+            permits.release();
+            throw e;
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Give back a context borrowed with {@link #borrowRawContext()}.
+     *
+     * @param context context
+     * @param usable  false if the connection of the context has failed
+     */
+    void returnContext(LdapContext context, boolean usable) {
+        try {
+            returnCount.incrementAndGet();
+            if (!usable || idleContexts.size() >= maxIdle) {
+                destroy(context);
+                return;
+            }
+            try {
+                resetContext(context);
+            } catch (NamingException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Error while resetting a connection of the LDAP connection pool " + name, e);
+                }
+                destroy(context);
+                return;
+            }
+            idleContexts.offerFirst(new IdleContext(context));
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Close all the idle contexts. Borrowed contexts are closed when they are returned, if
+     * the pool is full by then.
+     */
+    void clear() {
+        IdleContext idleContext;
+        while ((idleContext = idleContexts.pollFirst()) != null) {
+            destroy(idleContext.context);
+        }
+    }
+
+    int getActiveCount() {
+        return maxActive - permits.availablePermits();
+    }
+
+    int getIdleCount() {
+        return idleContexts.size();
+    }
+
+    long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    long getReturnCount() {
+        return returnCount.get();
+    }
+
+    long getCreateCount() {
+        return createCount.get();
+    }
+
+    long getDestroyCount() {
+        return destroyCount.get();
+    }
+
+    long getWaitTimeoutCount() {
+        return waitTimeoutCount.get();
+    }
+
+    String getStatistics() {
+        return "active=" + getActiveCount() + ", idle=" + getIdleCount() + ", borrowed=" + getBorrowCount() +
+                ", returned=" + getReturnCount() + ", created=" + getCreateCount() + ", destroyed=" +
+                getDestroyCount() + ", waitTimeouts=" + getWaitTimeoutCount();
+    }
+
+    private boolean isValid(LdapContext context) {
+        try {
+            context.getAttributes("", NO_ATTRIBUTES);
+            return true;
+        } catch (NamingException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Discarding a broken connection of the LDAP connection pool " + name, e);
+            }
+            return false;
+        }
+    }
+
+    private void destroy(LdapContext context) {
+        destroyCount.incrementAndGet();
+        try {
+            context.close();
+        } catch (NamingException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Error while closing a connection of the LDAP connection pool " + name, e);
+            }
+        }
+    }
+
+    /**
+     * @param context context borrowed with {@link #borrowRawContext()}
+     * @return a wrapper of the context which returns it to the pool when it is closed
+     */
+    LdapContext wrapContext(LdapContext context) {
+        return (LdapContext) Proxy.newProxyInstance(LdapContext.class.getClassLoader(),
+                new Class[]{LdapContext.class}, new PooledContextHandler(context));
+    }
+
+    private static class IdleContext {
+
+        private final LdapContext context;
+        private final long idleSince = System.currentTimeMillis();
+
+        private IdleContext(LdapContext context) {
+            this.context = context;
+        }
+    }
+
+    /**
+     * Delegates to the pooled context until the wrapper is closed, and then returns the context.
+     */
+    private class PooledContextHandler implements InvocationHandler {
+
+        private final LdapContext context;
+        private boolean usable = true;
+        private boolean closed = false;
+
+        private PooledContextHandler(LdapContext context) {
+            this.context = context;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String methodName = method.getName();
+            if ("equals".equals(methodName) && args != null && args.length == 1) {
+                return proxy == args[0];
+            } else if ("hashCode".equals(methodName) && args == null) {
+                return System.identityHashCode(proxy);
+            } else if ("toString".equals(methodName) && args == null) {
+                return "Pooled LDAP context of " + name;
+            }
+
+            synchronized (this) {
+                if ("close".equals(methodName) && args == null) {
+                    if (!closed) {
+                        closed = true;
+                        returnContext(context, usable);
+                    }
+                    return null;
+                }
+                if (closed) {
+                    throw new NamingException("The LDAP context has been returned to the pool");
+                }
+            }
+
+            try {
+                return method.invoke(context, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof CommunicationException || cause instanceof ServiceUnavailableException) {
+                    synchronized (this) {
+                        usable = false;
+                    }
+                }
+                throw cause;
+            }
+        }
+    }
+}
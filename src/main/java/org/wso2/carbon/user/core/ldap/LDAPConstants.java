@@ -69,6 +69,21 @@ public class LDAPConstants {
     //password
     public static final String PASSWORD_HASH_METHOD = "PasswordHashMethod";
 
+    //connection pool, which is not used unless the maximum number of active connections is set
+    public static final String CONNECTION_POOL_MAX_ACTIVE = "LDAPConnectionPoolMaxActive";
+    public static final String CONNECTION_POOL_MAX_IDLE = "LDAPConnectionPoolMaxIdle";
+    public static final String CONNECTION_POOL_MAX_WAIT = "LDAPConnectionPoolMaxWait";
+    public static final String CONNECTION_POOL_VALIDATION_INTERVAL = "LDAPConnectionPoolValidationInterval";
+    //pool of connections used to authenticate users, not used unless the size is set
+    public static final String BIND_CONNECTION_POOL_SIZE = "LDAPBindConnectionPoolSize";
+
+    //maximum number of users whose DN is cached, and the time in seconds for which a DN is cached
+    public static final String USER_DN_CACHE_SIZE = "UserDNCacheSize";
+    public static final String USER_DN_CACHE_TIMEOUT = "UserDNCacheTimeout";
+
+    //number of entries read at a time when listing users and roles, not paged unless it is set
+    public static final String LIST_PAGE_SIZE = "ListPageSize";
+
     // Active Directory specific constants
     public static final String ACTIVE_DIRECTORY_LDS_ROLE = "isADLDSRole";
     public static final String ACTIVE_DIRECTORY_USER_ACCOUNT_CONTROL = "userAccountControl";
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ * 
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.user.core.ldap;
+
+import org.wso2.carbon.user.core.util.JNDIUtil;
+
+import javax.naming.Name;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.PartialResultException;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.PagedResultsControl;
+import javax.naming.ldap.PagedResultsResponseControl;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the results of a search one page at a time, using the paged results control of
+ * RFC 2696. The control is not critical, hence a server which does not support paging returns
+ * all the results in the first page. The cookie returned by the server identifies the next page;
+ * most servers only accept it on the connection the previous page was read on, hence all the
+ * pages are read on the context the search is created with.
+ */
+class LDAPPagedSearch {
+
+    private final LdapContext context;
+    private final Name searchBase;
+    private final String filter;
+    private final SearchControls searchControls;
+    private final int pageSize;
+    private byte[] cookie;
+    private boolean started;
+    private boolean done;
+
+    /**
+     * @param context        context to search on
+     * @param searchBase     escaped search base
+     * @param filter         search filter
+     * @param searchControls search controls
+     * @param pageSize       maximum number of results in a page
+     */
+    LDAPPagedSearch(LdapContext context, Name searchBase, String filter, SearchControls searchControls,
+                    int pageSize) {
+        this.context = context;
+        this.searchBase = searchBase;
+        this.filter = filter;
+        this.searchControls = searchControls;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * @return the results of the next page, which is empty if there are no more pages
+     * @throws NamingException if the search fails
+     */
+    List<SearchResult> nextPage() throws NamingException {
+        List<SearchResult> results = new ArrayList<SearchResult>();
+        if (done) {
+            return results;
+        }
+        started = true;
+        search(pageSize, results);
+        cookie = null;
+        Control[] responseControls = context.getResponseControls();
+        if (responseControls != null) {
+            for (Control control : responseControls) {
+                if (control instanceof PagedResultsResponseControl) {
+                    cookie = ((PagedResultsResponseControl) control).getCookie();
+                }
+            }
+        }
+        done = cookie == null || cookie.length == 0;
+        return results;
+    }
+
+    /**
+     * Tell the server that no more pages are read, so that it can release the state of the
+     * search. Does nothing if all the pages are read, or if no page has been read yet.
+     *
+     * @throws NamingException if the request fails
+     */
+    void abandon() throws NamingException {
+        if (!started || done) {
+            done = true;
+            return;
+        }
+        done = true;
+        // a page size of zero with the cookie of the search abandons it
+        search(0, null);
+    }
+
+    /**
+     * @return whether there may be more pages to read
+     */
+    boolean hasMorePages() {
+        return !done;
+    }
+
+    private void search(int size, List<SearchResult> results) throws NamingException {
+        try {
+            context.setRequestControls(new Control[]{new PagedResultsControl(size, cookie, Control.NONCRITICAL)});
+        } catch (IOException e) {
+            NamingException namingException = new NamingException("Error while creating the paged results control");
+            namingException.setRootCause(e);
+            throw namingException;
+        }
+
+        NamingEnumeration<SearchResult> answer = null;
+        try {
+            answer = context.search(searchBase, filter, searchControls);
+            while (answer.hasMore()) {
+                SearchResult result = answer.next();
+                if (results != null) {
+                    results.add(result);
+                }
+            }
+        } catch (PartialResultException e) {
+            // referrals which are not followed, the results of this server are still returned
+        } finally {
+            JNDIUtil.closeNamingEnumeration(answer);
+        }
+    }
+}
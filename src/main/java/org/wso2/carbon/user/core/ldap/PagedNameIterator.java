@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ * 
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.user.core.ldap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.naming.Name;
+import javax.naming.NamingException;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import javax.naming.ldap.LdapContext;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the names found by a search over one or more search bases, reading the results
+ * a page at a time so that only one page is held in memory. The iterator keeps the connection
+ * it searches on until all the names are read or it is closed, hence it must be closed when it
+ * is not read to the end. A failed search ends the iteration with an IllegalStateException.
+ */
+public abstract class PagedNameIterator implements Iterator<String> {
+
+    private static Log log = LogFactory.getLog(PagedNameIterator.class);
+
+    private final Name[] searchBases;
+    private final String filter;
+    private final SearchControls searchControls;
+    private final int pageSize;
+    private final LinkedList<String> names = new LinkedList<String>();
+    private LdapContext context;
+    private LDAPPagedSearch search;
+    private int searchBaseIndex = -1;
+
+    PagedNameIterator(LdapContext context, Name[] searchBases, String filter, SearchControls searchControls,
+                      int pageSize) {
+        this.context = context;
+        this.searchBases = searchBases;
+        this.filter = filter;
+        this.searchControls = searchControls;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * @param result search result
+     * @return the name to return for the result, or null to skip it
+     * @throws NamingException if the result can not be read
+     */
+    abstract String getName(SearchResult result) throws NamingException;
+
+    public boolean hasNext() {
+        while (names.isEmpty() && context != null) {
+            try {
+                readPage();
+            } catch (NamingException e) {
+                close();
+                String errorMessage = "Error occurred while reading the next page of the search : " + filter;
+                if (log.isDebugEnabled()) {
+                    log.debug(errorMessage, e);
+                }
+                throw new IllegalStateException(errorMessage, e);
+            }
+        }
+        return !names.isEmpty();
+    }
+
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return names.removeFirst();
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException("Names can not be removed");
+    }
+
+    /**
+     * Release the connection of the iterator. No more names are read after it is closed.
+     */
+    public void close() {
+        if (context != null) {
+            try {
+                if (search != null) {
+                    search.abandon();
+                }
+            } catch (NamingException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Error while abandoning the paged search : " + filter, e);
+                }
+            }
+            try {
+                context.close();
+            } catch (NamingException e) {
+                log.error("Error in closing connection context.", e);
+            }
+            context = null;
+        }
+    }
+
+    private void readPage() throws NamingException {
+        if (search == null || !search.hasMorePages()) {
+            searchBaseIndex++;
+            if (searchBaseIndex >= searchBases.length) {
+                close();
+                return;
+            }
+            search = new LDAPPagedSearch(context, searchBases[searchBaseIndex], filter, searchControls,
+                    pageSize);
+        }
+        for (SearchResult result : search.nextPage()) {
+            String name = getName(result);
+            if (name != null) {
+                names.add(name);
+            }
+        }
+    }
+}
@@ -92,6 +92,10 @@ public class ReadOnlyLDAPUserStoreConstants {
 //      LDAP Specific Properties
         setProperty(UserStoreConfigConstants.passwordHashMethod, "Password Hashing Algorithm", "PLAIN_TEXT", UserStoreConfigConstants.passwordHashMethodDescription);
         setProperty("ConnectionPoolingEnabled", "Enable Connection Pooling", "true", "Set this property to enable LDAP connection pooling.");
+        setProperty(LDAPConstants.CONNECTION_POOL_MAX_ACTIVE, "Connection Pool Maximum Active", "", "Maximum number of connections the user store pools and uses at a time. Leave empty to rely on the JNDI connection pooling.");
+        setProperty(LDAPConstants.CONNECTION_POOL_MAX_IDLE, "Connection Pool Maximum Idle", "", "Maximum number of idle connections kept in the pool");
+        setProperty(LDAPConstants.BIND_CONNECTION_POOL_SIZE, "Bind Connection Pool Size", "", "Number of pooled connections used to authenticate users. Leave empty to open a connection per authentication.");
+        setProperty(LDAPConstants.LIST_PAGE_SIZE, "List Page Size", "", "Number of users or roles read at a time when listing them, using the LDAP paged results control. Leave empty to read them in a single search.");
         setProperty("ReplaceEscapeCharactersAtUserLogin", "Enable Escape Characters at User Login", "true", "Whether replace escape character when user login");
 
         setProperty("UniqueID", "", "", "");
@@ -65,18 +65,20 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 public class ReadOnlyLDAPUserStoreManager extends AbstractUserStoreManager {
 
     private static Log log = LogFactory.getLog(ReadOnlyLDAPUserStoreManager.class);
-    private final int MAX_USER_CACHE = 200;
+    private static final int MAX_USER_CACHE = 200;
+    private static final int USER_DN_CACHE_DEFAULT_TIMEOUT = 15 * 60;
 
     private static final String MULTI_ATTRIBUTE_SEPARATOR = "MultiAttributeSeparator";
     private static final String MEMBER_UID = "memberUid";
+    private static final String SERVICE_NAME_ATTRIBUTE = "sn";
+    private static final int MAX_USERS_PER_SEARCH = 100;
 
-    // Todo: use a cache provided by carbon kernel
-    Map<String, Object> userCache = new ConcurrentHashMap<String, Object>(MAX_USER_CACHE);
+    UserDNCache userCache = new UserDNCache(MAX_USER_CACHE, USER_DN_CACHE_DEFAULT_TIMEOUT * 1000L);
+    private final UserListCursors userListCursors = new UserListCursors();
     protected LDAPConnectionContext connectionSource = null;
     protected String userSearchBase = null;
     protected String groupSearchBase = null;
@@ -136,6 +138,7 @@ public class ReadOnlyLDAPUserStoreManager extends AbstractUserStoreManager {
 
         // check if required configurations are in the user-mgt.xml
         checkRequiredUserStoreConfigurations();
+        initUserDNCache();
 
         dataSource = (DataSource) properties.get(UserCoreConstants.DATA_SOURCE);
         if (dataSource == null) {
@@ -155,7 +158,8 @@ public class ReadOnlyLDAPUserStoreManager extends AbstractUserStoreManager {
         connectionSource = new LDAPConnectionContext(realmConfig);
 
         try {
-            connectionSource.getContext();
+            // the context only checks the connection, so give it back right away
+            JNDIUtil.closeContext(connectionSource.getContext());
             if (this.isReadOnly()) {
                 log.info("LDAP connection created successfully in read-only mode");
             }
@@ -201,10 +205,34 @@ public class ReadOnlyLDAPUserStoreManager extends AbstractUserStoreManager {
 
         // check if required configurations are in the user-mgt.xml
         checkRequiredUserStoreConfigurations();
+        initUserDNCache();
 
         this.connectionSource = new LDAPConnectionContext(realmConfig);
     }
 
+    /**
+     * Create the user DN cache with the size and time out given in the user store configuration.
+     *
+     * @throws UserStoreException if the configuration is not valid
+     */
+    private void initUserDNCache() throws UserStoreException {
+        int size = MAX_USER_CACHE;
+        int timeOut = USER_DN_CACHE_DEFAULT_TIMEOUT;
+        try {
+            String sizeString = realmConfig.getUserStoreProperty(LDAPConstants.USER_DN_CACHE_SIZE);
+            if (sizeString != null && sizeString.trim().length() > 0) {
+                size = Integer.parseInt(sizeString.trim());
+            }
+            String timeOutString = realmConfig.getUserStoreProperty(LDAPConstants.USER_DN_CACHE_TIMEOUT);
+            if (timeOutString != null && timeOutString.trim().length() > 0) {
+                timeOut = Integer.parseInt(timeOutString.trim());
+            }
+        } catch (NumberFormatException e) {
+            throw new UserStoreException("Invalid user DN cache configuration", e);
+        }
+        userCache = new UserDNCache(size, timeOut * 1000L);
+    }
+
     /**
      * @throws UserStoreException
      */
@@ -329,7 +357,7 @@ public class ReadOnlyLDAPUserStoreManager extends AbstractUserStoreManager {
         boolean bValue = false;
         // check cached user DN first.
         String name = null;
-        LdapName ldn = (LdapName)userCache.get(userName);
+        LdapName ldn = userCache.get(userName);
         if (ldn != null) {
             name = ldn.toString();
             try {
@@ -438,9 +466,8 @@ public class ReadOnlyLDAPUserStoreManager extends AbstractUserStoreManager {
     public Map<String, String> getUserPropertyValues(String userName, String[] propertyNames,
                                                      String profileName) throws UserStoreException {
 
-        String userAttributeSeparator = ",";
         String userDN = null;
-        LdapName ldn = (LdapName)userCache.get(userName);
+        LdapName ldn = userCache.get(userName);
 
         if (ldn == null) {
             // read list of patterns from user-mgt.xml
@@ -473,7 +500,6 @@ public class ReadOnlyLDAPUserStoreManager extends AbstractUserStoreManager {
         String userSearchFilter = realmConfig.getUserStoreProperty(LDAPConstants.USER_NAME_SEARCH_FILTER);
         String searchFilter = userSearchFilter.replace("?", escapeSpecialCharactersForFilter(userName));
         NamingEnumeration<?> answer = null;
-        NamingEnumeration<?> attrs = null;
         try {
             if (userDN != null) {
                 SearchControls searchCtls = new SearchControls();
@@ -510,64 +536,159 @@ public class ReadOnlyLDAPUserStoreManager extends AbstractUserStoreManager {
             }
             while (answer.hasMoreElements()) {
                 SearchResult sr = (SearchResult) answer.next();
+                if (userDN == null) {
+                    // the search has found the DN, keep it for the next operations on the user
+                    userDN = sr.getNameInNamespace();
+                    userCache.put(userName, new LdapName(userDN));
+                }
                 Attributes attributes = sr.getAttributes();
                 if (attributes != null) {
-                    for (String name : propertyNames) {
-                        if (name != null) {
-                            Attribute attribute = attributes.get(name);
-                            if (attribute != null) {
-                                StringBuffer attrBuffer = new StringBuffer();
-                                for (attrs = attribute.getAll(); attrs.hasMore(); ) {
-                                    Object attObject = attrs.next();
-                                    String attr = null;
-                                    if (attObject instanceof String) {
-                                        attr = (String) attObject;
-                                    } else if (attObject instanceof byte[]) {
-                                        //if the attribute type is binary base64 encoded string will be returned
-                                        attr = new String(Base64.encodeBase64((byte[]) attObject));
-                                    }
+                    addAttributeValues(attributes, propertyNames, values);
+                }
+            }
+        } catch (NamingException e) {
+            String errorMessage = "Error occurred while getting user property values for user : " + userName;
+            if (log.isDebugEnabled()) {
+                log.debug(errorMessage, e);
+            }
+            throw new UserStoreException(errorMessage, e);
+        } finally {
+            // close the naming enumeration and free up resources
+            JNDIUtil.closeNamingEnumeration(answer);
+            // close directory context
+            JNDIUtil.closeContext(dirContext);
+        }
+        return values;
+    }
 
-                                    if (attr != null && attr.trim().length() > 0) {
-                                        String attrSeparator = realmConfig.getUserStoreProperty(MULTI_ATTRIBUTE_SEPARATOR);
-                                        if (attrSeparator != null && !attrSeparator.trim().isEmpty()) {
-                                            userAttributeSeparator = attrSeparator;
-                                        }
-                                        attrBuffer.append(attr + userAttributeSeparator);
-                                    }
-                                    String value = attrBuffer.toString();
-
-                                /*
-                                 * Length needs to be more than userAttributeSeparator.length() for a valid
-                                 * attribute, since we
-                                 * attach userAttributeSeparator
-                                 */
-                                    if (value != null && value.trim().length() > userAttributeSeparator.length()) {
-                                        value = value.substring(0, value.length() - userAttributeSeparator.length());
-                                        values.put(name, value);
-                                    }
+    /**
+     * Reads the properties of up to {@value #MAX_USERS_PER_SEARCH} users with one search, whose
+     * filter is the user name search filter of each user joined with OR.
+     */
+    @Override
+    protected Map<String, Map<String, String>> getUsersPropertyValues(String[] userNames, String[] propertyNames,
+                                                                      String profileName) throws UserStoreException {
 
-                                }
-                            }
+        String userNameProperty = realmConfig.getUserStoreProperty(LDAPConstants.USER_NAME_ATTRIBUTE);
+        String userSearchFilter = realmConfig.getUserStoreProperty(LDAPConstants.USER_NAME_SEARCH_FILTER);
+        String[] searchBases = realmConfig.getUserStoreProperty(LDAPConstants.USER_SEARCH_BASE).split("#");
+
+        String[] returnedAtts = new String[propertyNames.length + 1];
+        System.arraycopy(propertyNames, 0, returnedAtts, 0, propertyNames.length);
+        returnedAtts[propertyNames.length] = userNameProperty;
+        SearchControls searchCtls = new SearchControls();
+        searchCtls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+        searchCtls.setReturningAttributes(returnedAtts);
+
+        // the directory matches user names ignoring case, so the results are matched the same way
+        Map<String, String> requestedNames = new HashMap<String, String>();
+        for (String userName : userNames) {
+            requestedNames.put(userName.toLowerCase(), userName);
+        }
+
+        Map<String, Map<String, String>> values = new HashMap<String, Map<String, String>>();
+        DirContext dirContext = this.connectionSource.getContext();
+        NamingEnumeration<SearchResult> answer = null;
+        String searchFilter = null;
+        try {
+            for (int start = 0; start < userNames.length; start += MAX_USERS_PER_SEARCH) {
+                StringBuffer filter = new StringBuffer("(|");
+                for (int i = start; i < Math.min(start + MAX_USERS_PER_SEARCH, userNames.length); i++) {
+                    filter.append(userSearchFilter.replace("?", escapeSpecialCharactersForFilter(userNames[i])));
+                }
+                searchFilter = filter.append(")").toString();
+                if (log.isDebugEnabled()) {
+                    log.debug("Searching for users with SearchFilter: " + searchFilter);
+                }
+
+                for (String searchBase : searchBases) {
+                    answer = dirContext.search(escapeDNForSearch(searchBase), searchFilter, searchCtls);
+                    while (answer.hasMore()) {
+                        SearchResult sr = answer.next();
+                        Attributes attributes = sr.getAttributes();
+                        if (attributes == null || attributes.get(userNameProperty) == null) {
+                            continue;
                         }
+                        String userName = requestedNames.get(
+                                ((String) attributes.get(userNameProperty).get()).toLowerCase());
+                        if (userName == null) {
+                            continue;
+                        }
+                        userCache.put(userName, new LdapName(sr.getNameInNamespace()));
+                        Map<String, String> userValues = new HashMap<String, String>();
+                        addAttributeValues(attributes, propertyNames, userValues);
+                        values.put(userName, userValues);
                     }
+                    JNDIUtil.closeNamingEnumeration(answer);
+                    answer = null;
                 }
             }
         } catch (NamingException e) {
-            String errorMessage = "Error occurred while getting user property values for user : " + userName;
+            String errorMessage = "Error occurred while getting property values of users with search filter : " +
+                    searchFilter;
             if (log.isDebugEnabled()) {
                 log.debug(errorMessage, e);
             }
             throw new UserStoreException(errorMessage, e);
         } finally {
-            // close the naming enumeration and free up resources
-            JNDIUtil.closeNamingEnumeration(attrs);
             JNDIUtil.closeNamingEnumeration(answer);
-            // close directory context
             JNDIUtil.closeContext(dirContext);
         }
         return values;
     }
 
+    /**
+     * Put the values of the named attributes into the given map. Values of multi valued
+     * attributes are joined with the configured separator, and binary values are base64 encoded.
+     */
+    private void addAttributeValues(Attributes attributes, String[] names, Map<String, String> values)
+            throws NamingException {
+
+        String userAttributeSeparator = ",";
+        String attrSeparator = realmConfig.getUserStoreProperty(MULTI_ATTRIBUTE_SEPARATOR);
+        if (attrSeparator != null && !attrSeparator.trim().isEmpty()) {
+            userAttributeSeparator = attrSeparator;
+        }
+        for (String name : names) {
+            if (name == null) {
+                continue;
+            }
+            Attribute attribute = attributes.get(name);
+            if (attribute == null) {
+                continue;
+            }
+            StringBuffer attrBuffer = new StringBuffer();
+            NamingEnumeration<?> attrs = null;
+            try {
+                for (attrs = attribute.getAll(); attrs.hasMore(); ) {
+                    Object attObject = attrs.next();
+                    String attr = null;
+                    if (attObject instanceof String) {
+                        attr = (String) attObject;
+                    } else if (attObject instanceof byte[]) {
+                        //if the attribute type is binary base64 encoded string will be returned
+                        attr = new String(Base64.encodeBase64((byte[]) attObject));
+                    }
+
+                    if (attr != null && attr.trim().length() > 0) {
+                        attrBuffer.append(attr + userAttributeSeparator);
+                    }
+                }
+            } finally {
+                JNDIUtil.closeNamingEnumeration(attrs);
+            }
+            String value = attrBuffer.toString();
+
+            /*
+             * Length needs to be more than userAttributeSeparator.length() for a valid
+             * attribute, since we attach userAttributeSeparator
+             */
+            if (value.trim().length() > userAttributeSeparator.length()) {
+                values.put(name, value.substring(0, value.length() - userAttributeSeparator.length()));
+            }
+        }
+    }
+
     /**
      *
      */
@@ -664,7 +785,7 @@ public class ReadOnlyLDAPUserStoreManager extends AbstractUserStoreManager {
         try {
             String searchBase = null;
             String userDN = null;
-            LdapName ldn = (LdapName)userCache.get(userName);
+            LdapName ldn = userCache.get(userName);
             if(ldn == null){
                 String userDNPattern = realmConfig.getUserStoreProperty(LDAPConstants.USER_DN_PATTERN);
                 if (userDNPattern != null && userDNPattern.trim().length() > 0) {
@@ -719,7 +840,7 @@ public class ReadOnlyLDAPUserStoreManager extends AbstractUserStoreManager {
         }
 
         int givenMax = UserCoreConstants.MAX_USER_ROLE_LIST;
-        int searchTime = UserCoreConstants.MAX_SEARCH_TIME;
+        int searchTime = getMaxSearchTime();
 
         try {
             givenMax =
@@ -728,125 +849,61 @@ public class ReadOnlyLDAPUserStoreManager extends AbstractUserStoreManager {
             givenMax = UserCoreConstants.MAX_USER_ROLE_LIST;
         }
 
-        try {
-            searchTime =
-                    Integer.parseInt(realmConfig.getUserStoreProperty(UserCoreConstants.RealmConfig.PROPERTY_MAX_SEARCH_TIME));
-        } catch (Exception e) {
-            searchTime = UserCoreConstants.MAX_SEARCH_TIME;
-        }
-
         if (maxItemLimit < 0 || maxItemLimit > givenMax) {
             maxItemLimit = givenMax;
         }
 
-        SearchControls searchCtls = new SearchControls();
-        searchCtls.setSearchScope(SearchControls.SUBTREE_SCOPE);
-        searchCtls.setCountLimit(maxItemLimit);
-        searchCtls.setTimeLimit(searchTime);
-
-        if (filter.contains("?") || filter.contains("**")) {
-            throw new UserStoreException(
-                    "Invalid character sequence entered for user serch. Please enter valid sequence.");
-        }
+        int pageSize = getListPageSize();
+        SearchControls searchCtls = getUserListSearchControls(searchTime);
+        // a paged search is limited while the results are read, since the count limit of
+        // the server applies to the whole search
+        searchCtls.setCountLimit(pageSize > 0 ? 0 : maxItemLimit);
 
-        StringBuffer searchFilter =
-                new StringBuffer(
-                        realmConfig.getUserStoreProperty(LDAPConstants.USER_NAME_LIST_FILTER));
+        String finalFilter = getUserListFilter(filter);
         String searchBases = realmConfig.getUserStoreProperty(LDAPConstants.USER_SEARCH_BASE);
 
-        String userNameProperty =
-                realmConfig.getUserStoreProperty(LDAPConstants.USER_NAME_ATTRIBUTE);
-
-        String serviceNameAttribute = "sn";
-
-        StringBuffer finalFilter = new StringBuffer();
-
-        // read the display name attribute - if provided
-        String displayNameAttribute =
-                realmConfig.getUserStoreProperty(LDAPConstants.DISPLAY_NAME_ATTRIBUTE);
-
-        String[] returnedAtts = null;
-
-        if (displayNameAttribute != null && !("".equals(displayNameAttribute.trim()))) {
-            returnedAtts =
-                    new String[]{userNameProperty, serviceNameAttribute,
-                            displayNameAttribute};
-            finalFilter.append("(&").append(searchFilter).append("(").append(displayNameAttribute)
-                    .append("=").append(escapeSpecialCharactersForFilter(filter)).append("))");
-        } else {
-            returnedAtts = new String[]{userNameProperty, serviceNameAttribute};
-            finalFilter.append("(&").append(searchFilter).append("(").append(userNameProperty).append("=")
-                    .append(escapeSpecialCharactersForFilter(filter)).append("))");
-        }
-
         if (debug) {
-            log.debug("Listing users. SearchBase: " + searchBases + " Constructed-Filter: " + finalFilter.toString());
-            log.debug("Search controls. Max Limit: " + maxItemLimit + " Max Time: " + searchTime);
+            log.debug("Listing users. SearchBase: " + searchBases + " Constructed-Filter: " + finalFilter);
+            log.debug("Search controls. Max Limit: " + maxItemLimit + " Max Time: " + searchTime +
+                    " Page Size: " + pageSize);
         }
 
-        searchCtls.setReturningAttributes(returnedAtts);
         DirContext dirContext = null;
         NamingEnumeration<SearchResult> answer = null;
         List<String> list = new ArrayList<String>();
 
         try {
-            dirContext = connectionSource.getContext();
             // handle multiple search bases
             String[] searchBaseArray = searchBases.split("#");
 
-            for (String searchBase : searchBaseArray) {
-
-                answer = dirContext.search(escapeDNForSearch(searchBase), finalFilter.toString(), searchCtls);
-
-                while (answer.hasMoreElements()) {
-                    SearchResult sr = (SearchResult) answer.next();
-                    if (sr.getAttributes() != null) {
-                        log.debug("Result found ..");
-                        Attribute attr = sr.getAttributes().get(userNameProperty);
-
-						/*
-						 * If this is a service principle, just ignore and
-						 * iterate rest of the array. The entity is a service if
-						 * value of surname is Service
-						 */
-                        Attribute attrSurname = sr.getAttributes().get(serviceNameAttribute);
-
-                        if (attrSurname != null) {
-                            if (debug) {
-                                log.debug(serviceNameAttribute + " : " + attrSurname);
-                            }
-                            String serviceName = (String) attrSurname.get();
-                            if (serviceName != null
-                                    && serviceName
-                                    .equals(LDAPConstants.SERVER_PRINCIPAL_ATTRIBUTE_VALUE)) {
-                                continue;
+            if (pageSize > 0) {
+                LdapContext ldapContext = connectionSource.getLdapContext();
+                dirContext = ldapContext;
+                for (String searchBase : searchBaseArray) {
+                    if (list.size() >= maxItemLimit) {
+                        break;
+                    }
+                    LDAPPagedSearch search = new LDAPPagedSearch(ldapContext, escapeDNForSearch(searchBase),
+                            finalFilter, searchCtls, pageSize);
+                    while (list.size() < maxItemLimit && search.hasMorePages()) {
+                        for (SearchResult sr : search.nextPage()) {
+                            String name = getListedUserName(sr);
+                            if (name != null && list.size() < maxItemLimit) {
+                                list.add(name);
                             }
                         }
+                    }
+                    search.abandon();
+                }
+            } else {
+                dirContext = connectionSource.getContext();
+                for (String searchBase : searchBaseArray) {
 
-						/*
-						 * if display name is provided, read that attribute
-						 */
-                        Attribute displayName = null;
-                        if (displayNameAttribute != null) {
-                            displayName = sr.getAttributes().get(displayNameAttribute);
-                            if (debug) {
-                                log.debug(displayNameAttribute + " : " + displayName);
-                            }
-                        }
+                    answer = dirContext.search(escapeDNForSearch(searchBase), finalFilter, searchCtls);
 
-                        if (attr != null) {
-                            String name = (String) attr.get();
-//                            name = decodeEscapedCharacters(name); //revert encoding for IS special character
-                            String display = null;
-                            if (displayName != null) {
-                                display = (String) displayName.get();
-                            }
-                            // append the domain if exist
-                            String domain = this.getRealmConfiguration().getUserStoreProperty(
-                                    UserCoreConstants.RealmConfig.PROPERTY_DOMAIN_NAME);
-                            // get the name in the format of
-                            // domainName/userName|domainName/displayName
-                            name = UserCoreUtil.getCombinedName(domain, name, display);
+                    while (answer.hasMoreElements()) {
+                        String name = getListedUserName(answer.next());
+                        if (name != null) {
                             list.add(name);
                         }
                     }
@@ -874,6 +931,234 @@ public class ReadOnlyLDAPUserStoreManager extends AbstractUserStoreManager {
         return userNames;
     }
 
+    /**
+     * List a page of the users matching the filter, using the paged results control. The cursor
+     * returned with a page is given to read the next page. The names are in the order the
+     * server returns them.
+     * <p/>
+     * Servers only accept the paging cookie on the connection the previous page was read on,
+     * hence the search and its connection are kept until the next page is asked for. A cursor is
+     * only valid on this node, and expires if it is not used within a few minutes. Cursors which
+     * are not read to the end should be closed with {@link #closeUserListCursor(String)}.
+     *
+     * @param filter   user name filter, as for listUsers
+     * @param pageSize maximum number of users in a page
+     * @param cursor   cursor returned with the previous page, or null for the first page
+     * @return the page of users
+     * @throws UserStoreException if the users can not be listed, or the cursor has expired
+     */
+    public UserListPage listUsers(String filter, int pageSize, String cursor) throws UserStoreException {
+        if (pageSize <= 0) {
+            throw new UserStoreException("Invalid page size : " + pageSize);
+        }
+        PagedNameIterator iterator;
+        if (cursor == null) {
+            iterator = iterateUsers(filter, pageSize);
+        } else {
+            iterator = userListCursors.take(cursor);
+            if (iterator == null) {
+                throw new UserStoreException("Unknown or expired cursor : " + cursor);
+            }
+        }
+
+        boolean hasMore = false;
+        try {
+            List<String> list = new ArrayList<String>(pageSize);
+            while (list.size() < pageSize && iterator.hasNext()) {
+                list.add(iterator.next());
+            }
+            hasMore = iterator.hasNext();
+            String nextCursor = hasMore ? userListCursors.add(iterator) : null;
+            return new UserListPage(list.toArray(new String[list.size()]), nextCursor);
+        } catch (IllegalStateException e) {
+            String errorMessage = "Error occurred while listing a page of users for filter : " + filter;
+            if (log.isDebugEnabled()) {
+                log.debug(errorMessage, e);
+            }
+            throw new UserStoreException(errorMessage, e.getCause());
+        } finally {
+            if (!hasMore) {
+                iterator.close();
+            }
+        }
+    }
+
+    /**
+     * Close a cursor returned by {@link #listUsers(String, int, String)} which is not going to be
+     * read to the end, releasing its connection. Unknown cursors are ignored.
+     *
+     * @param cursor cursor returned with a page of users
+     */
+    public void closeUserListCursor(String cursor) {
+        if (cursor != null) {
+            userListCursors.close(cursor);
+        }
+    }
+
+    /**
+     * Iterate over all the users matching the filter, reading them from the server a page at a
+     * time. The iterator holds a connection until it is read to the end, hence it has to be
+     * closed if it is not.
+     *
+     * @param filter   user name filter, as for listUsers
+     * @param pageSize number of users read from the server at a time
+     * @return iterator of the user names
+     * @throws UserStoreException if the search can not be started
+     */
+    public PagedNameIterator iterateUsers(String filter, int pageSize) throws UserStoreException {
+        if (pageSize <= 0) {
+            throw new UserStoreException("Invalid page size : " + pageSize);
+        }
+        String finalFilter = getUserListFilter(filter);
+        SearchControls searchCtls = getUserListSearchControls(getMaxSearchTime());
+        String[] searchBaseArray =
+                realmConfig.getUserStoreProperty(LDAPConstants.USER_SEARCH_BASE).split("#");
+        Name[] searchBases = new Name[searchBaseArray.length];
+        try {
+            for (int i = 0; i < searchBaseArray.length; i++) {
+                searchBases[i] = escapeDNForSearch(searchBaseArray[i]);
+            }
+        } catch (InvalidNameException e) {
+            throw new UserStoreException("Invalid user search base", e);
+        }
+
+        return new PagedNameIterator(connectionSource.getLdapContext(), searchBases, finalFilter, searchCtls,
+                pageSize) {
+            @Override
+            String getName(SearchResult result) throws NamingException {
+                return getListedUserName(result);
+            }
+        };
+    }
+
+    private int getMaxSearchTime() {
+        try {
+            return Integer.parseInt(
+                    realmConfig.getUserStoreProperty(UserCoreConstants.RealmConfig.PROPERTY_MAX_SEARCH_TIME));
+        } catch (Exception e) {
+            return UserCoreConstants.MAX_SEARCH_TIME;
+        }
+    }
+
+    /**
+     * @return number of entries read at a time when listing users and roles, or 0 if the
+     * listing is not paged
+     */
+    private int getListPageSize() {
+        String pageSize = realmConfig.getUserStoreProperty(LDAPConstants.LIST_PAGE_SIZE);
+        if (pageSize == null || pageSize.trim().length() == 0) {
+            return 0;
+        }
+        try {
+            return Math.max(Integer.parseInt(pageSize.trim()), 0);
+        } catch (NumberFormatException e) {
+            log.warn("Invalid value for " + LDAPConstants.LIST_PAGE_SIZE + " : " + pageSize +
+                    ". Users and roles are listed without paging.");
+            return 0;
+        }
+    }
+
+    private String getUserListFilter(String filter) throws UserStoreException {
+        if (filter.contains("?") || filter.contains("**")) {
+            throw new UserStoreException(
+                    "Invalid character sequence entered for user serch. Please enter valid sequence.");
+        }
+
+        String searchFilter = realmConfig.getUserStoreProperty(LDAPConstants.USER_NAME_LIST_FILTER);
+        // read the display name attribute - if provided
+        String filterAttribute = realmConfig.getUserStoreProperty(LDAPConstants.DISPLAY_NAME_ATTRIBUTE);
+        if (filterAttribute == null || "".equals(filterAttribute.trim())) {
+            filterAttribute = realmConfig.getUserStoreProperty(LDAPConstants.USER_NAME_ATTRIBUTE);
+        }
+
+        StringBuffer finalFilter = new StringBuffer();
+        finalFilter.append("(&").append(searchFilter).append("(").append(filterAttribute)
+                .append("=").append(escapeSpecialCharactersForFilter(filter)).append("))");
+        return finalFilter.toString();
+    }
+
+    private SearchControls getUserListSearchControls(int searchTime) {
+        String userNameProperty = realmConfig.getUserStoreProperty(LDAPConstants.USER_NAME_ATTRIBUTE);
+        String displayNameAttribute = realmConfig.getUserStoreProperty(LDAPConstants.DISPLAY_NAME_ATTRIBUTE);
+
+        String[] returnedAtts = null;
+        if (displayNameAttribute != null && !("".equals(displayNameAttribute.trim()))) {
+            returnedAtts = new String[]{userNameProperty, SERVICE_NAME_ATTRIBUTE, displayNameAttribute};
+        } else {
+            returnedAtts = new String[]{userNameProperty, SERVICE_NAME_ATTRIBUTE};
+        }
+
+        SearchControls searchCtls = new SearchControls();
+        searchCtls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+        searchCtls.setTimeLimit(searchTime);
+        searchCtls.setReturningAttributes(returnedAtts);
+        return searchCtls;
+    }
+
+    /**
+     * @param sr result of a user list search
+     * @return the name to list for the user, or null if the user is not listed
+     * @throws NamingException if the attributes of the user can not be read
+     */
+    private String getListedUserName(SearchResult sr) throws NamingException {
+        boolean debug = log.isDebugEnabled();
+        if (sr.getAttributes() == null) {
+            return null;
+        }
+        if (debug) {
+            log.debug("Result found ..");
+        }
+        String userNameProperty = realmConfig.getUserStoreProperty(LDAPConstants.USER_NAME_ATTRIBUTE);
+        String displayNameAttribute = realmConfig.getUserStoreProperty(LDAPConstants.DISPLAY_NAME_ATTRIBUTE);
+        Attribute attr = sr.getAttributes().get(userNameProperty);
+
+        /*
+         * If this is a service principle, just ignore and
+         * iterate rest of the array. The entity is a service if
+         * value of surname is Service
+         */
+        Attribute attrSurname = sr.getAttributes().get(SERVICE_NAME_ATTRIBUTE);
+
+        if (attrSurname != null) {
+            if (debug) {
+                log.debug(SERVICE_NAME_ATTRIBUTE + " : " + attrSurname);
+            }
+            String serviceName = (String) attrSurname.get();
+            if (serviceName != null
+                    && serviceName
+                    .equals(LDAPConstants.SERVER_PRINCIPAL_ATTRIBUTE_VALUE)) {
+                return null;
+            }
+        }
+
+        /*
+         * if display name is provided, read that attribute
+         */
+        Attribute displayName = null;
+        if (displayNameAttribute != null) {
+            displayName = sr.getAttributes().get(displayNameAttribute);
+            if (debug) {
+                log.debug(displayNameAttribute + " : " + displayName);
+            }
+        }
+
+        if (attr == null) {
+            return null;
+        }
+        String name = (String) attr.get();
+//        name = decodeEscapedCharacters(name); //revert encoding for IS special character
+        String display = null;
+        if (displayName != null) {
+            display = (String) displayName.get();
+        }
+        // append the domain if exist
+        String domain = this.getRealmConfiguration().getUserStoreProperty(
+                UserCoreConstants.RealmConfig.PROPERTY_DOMAIN_NAME);
+        // get the name in the format of
+        // domainName/userName|domainName/displayName
+        return UserCoreUtil.getCombinedName(domain, name, display);
+    }
+
     @Override
     protected String[] doGetDisplayNamesForInternalRole(String[] userNames)
             throws UserStoreException {
@@ -1217,10 +1502,11 @@ public class ReadOnlyLDAPUserStoreManager extends AbstractUserStoreManager {
             throws UserStoreException {
         boolean debug = log.isDebugEnabled();
         List<String> roles = new ArrayList<String>();
+        int pageSize = getListPageSize();
 
         SearchControls searchCtls = new SearchControls();
         searchCtls.setSearchScope(SearchControls.SUBTREE_SCOPE);
-        searchCtls.setCountLimit(maxItemLimit);
+        searchCtls.setCountLimit(pageSize > 0 ? 0 : maxItemLimit);
         searchCtls.setTimeLimit(searchTime);
 
         String returnedAtts[] = {roleNameProperty};
@@ -1240,25 +1526,32 @@ public class ReadOnlyLDAPUserStoreManager extends AbstractUserStoreManager {
         NamingEnumeration<SearchResult> answer = null;
 
         try {
-            dirContext = connectionSource.getContext();
-            answer = dirContext.search(escapeDNForSearch(searchBase), finalFilter.toString(), searchCtls);
             // append the domain if exist
             String domain =
                     this.getRealmConfiguration()
                             .getUserStoreProperty(UserCoreConstants.RealmConfig.PROPERTY_DOMAIN_NAME);
 
-            while (answer.hasMoreElements()) {
-                SearchResult sr = (SearchResult) answer.next();
-                if (sr.getAttributes() != null) {
-                    Attribute attr = sr.getAttributes().get(roleNameProperty);
-                    if (attr != null) {
-                        String name = (String) attr.get();
-                        name = UserCoreUtil.addDomainToName(name, domain);
-                        if (appendTenantDomain) {
-                            String dn = sr.getNameInNamespace();
-                            name = UserCoreUtil.addTenantDomainToEntry(name,
-                                    getTenantDomainFromRoleDN(dn, name));
+            if (pageSize > 0) {
+                LdapContext ldapContext = connectionSource.getLdapContext();
+                dirContext = ldapContext;
+                LDAPPagedSearch search = new LDAPPagedSearch(ldapContext, escapeDNForSearch(searchBase),
+                        finalFilter.toString(), searchCtls, pageSize);
+                while (roles.size() < maxItemLimit && search.hasMorePages()) {
+                    for (SearchResult sr : search.nextPage()) {
+                        String name = getListedRoleName(sr, roleNameProperty, domain, appendTenantDomain);
+                        if (name != null && roles.size() < maxItemLimit) {
+                            roles.add(name);
                         }
+                    }
+                }
+                search.abandon();
+            } else {
+                dirContext = connectionSource.getContext();
+                answer = dirContext.search(escapeDNForSearch(searchBase), finalFilter.toString(), searchCtls);
+
+                while (answer.hasMoreElements()) {
+                    String name = getListedRoleName(answer.next(), roleNameProperty, domain, appendTenantDomain);
+                    if (name != null) {
                         roles.add(name);
                     }
                 }
@@ -1284,6 +1577,25 @@ public class ReadOnlyLDAPUserStoreManager extends AbstractUserStoreManager {
         return roles;
     }
 
+    private String getListedRoleName(SearchResult sr, String roleNameProperty, String domain,
+                                     boolean appendTenantDomain) throws NamingException {
+        if (sr.getAttributes() == null) {
+            return null;
+        }
+        Attribute attr = sr.getAttributes().get(roleNameProperty);
+        if (attr == null) {
+            return null;
+        }
+        String name = (String) attr.get();
+        name = UserCoreUtil.addDomainToName(name, domain);
+        if (appendTenantDomain) {
+            String dn = sr.getNameInNamespace();
+            name = UserCoreUtil.addTenantDomainToEntry(name,
+                    getTenantDomainFromRoleDN(dn, name));
+        }
+        return name;
+    }
+
     /**
      * Get the tenant domain for the provided distinguished name. If the role is
      * not a shared role returns the super tenant domain
@@ -1805,7 +2117,7 @@ public class ReadOnlyLDAPUserStoreManager extends AbstractUserStoreManager {
                                     memberOfProperty);
                 } else {
                     // use cache
-                    LdapName ldn = (LdapName)userCache.get(userName);
+                    LdapName ldn = userCache.get(userName);
                     if (ldn != null) {
                         searchBase = ldn.toString();
                     } else {
@@ -1949,7 +2261,7 @@ public class ReadOnlyLDAPUserStoreManager extends AbstractUserStoreManager {
      */
     protected String getNameInSpaceForUserName(String userName) throws UserStoreException {
         // check the cache first
-        LdapName ldn = (LdapName)userCache.get(userName);
+        LdapName ldn = userCache.get(userName);
         if (ldn != null) {
             return ldn.toString();
         }
@@ -2409,7 +2721,7 @@ public class ReadOnlyLDAPUserStoreManager extends AbstractUserStoreManager {
                                 memberOfProperty);
             } else {
                 // use cache
-                LdapName ldn = (LdapName)userCache.get(userName);
+                LdapName ldn = userCache.get(userName);
                 if (ldn != null) {
                     searchBases = ldn.toString();
                 } else {
@@ -2417,6 +2729,13 @@ public class ReadOnlyLDAPUserStoreManager extends AbstractUserStoreManager {
                     String userDNPattern = realmConfig.getUserStoreProperty(LDAPConstants.USER_DN_PATTERN);
                     if (userDNPattern != null && !userDNPattern.contains("#")) {
                         searchBases = MessageFormat.format(userDNPattern, escapeSpecialCharactersForDN(userName));
+                    } else {
+                        // resolve the DN once, so that it is cached and the searches below and
+                        // in the next checks start from the user entry
+                        String userDN = getNameInSpaceForUserName(userName);
+                        if (userDN != null) {
+                            searchBases = userDN;
+                        }
                     }
                 }
 
@@ -2782,8 +3101,9 @@ public class ReadOnlyLDAPUserStoreManager extends AbstractUserStoreManager {
                 realmConfig.getUserStoreProperty(LDAPConstants.GROUP_NAME_ATTRIBUTE);
         String[] returnedAttributes = {groupNameAttribute};
         List<String> groupNameAttributeValues = new ArrayList<String>();
+        DirContext dirContext = null;
         try {
-            DirContext dirContext = this.connectionSource.getContext();
+            dirContext = this.connectionSource.getContext();
 
             for (String group : groupDNs) {
                 if (debug) {
@@ -2814,7 +3134,9 @@ public class ReadOnlyLDAPUserStoreManager extends AbstractUserStoreManager {
                 log.debug(errorMessage, e);
             }
 			throw new UserStoreException(errorMessage, e);
-		}
+		} finally {
+            JNDIUtil.closeContext(dirContext);
+        }
         return groupNameAttributeValues;
     }
 
@@ -93,6 +93,10 @@ public class ReadWriteLDAPUserStoreConstants {
         setProperty(UserStoreConfigConstants.writeGroups, "Enable Write Groups", "true", UserStoreConfigConstants.writeGroupsDescription);
         setProperty(UserStoreConfigConstants.emptyRolesAllowed, "Allow Empty Roles", "true", UserStoreConfigConstants.emptyRolesAllowedDescription);
         setProperty("ConnectionPoolingEnabled", "Enable Connection Pooling", "true", "Set this property to enable LDAP connection pooling.");
+        setProperty(LDAPConstants.CONNECTION_POOL_MAX_ACTIVE, "Connection Pool Maximum Active", "", "Maximum number of connections the user store pools and uses at a time. Leave empty to rely on the JNDI connection pooling.");
+        setProperty(LDAPConstants.CONNECTION_POOL_MAX_IDLE, "Connection Pool Maximum Idle", "", "Maximum number of idle connections kept in the pool");
+        setProperty(LDAPConstants.BIND_CONNECTION_POOL_SIZE, "Bind Connection Pool Size", "", "Number of pooled connections used to authenticate users. Leave empty to open a connection per authentication.");
+        setProperty(LDAPConstants.LIST_PAGE_SIZE, "List Page Size", "", "Number of users or roles read at a time when listing them, using the LDAP paged results control. Leave empty to read them in a single search.");
         setProperty(UserStoreConfigConstants.memberOfAttribute, "Member Of Attribute", "", UserStoreConfigConstants.memberOfAttribute);
         setProperty("UniqueID", "", "", "");
         setProperty("ReadTimeout", "LDAP Read Timeout", "5000", "Set the LDAP connection read time out. Setting it " + "empty will set it to the TCP time out");
@@ -140,7 +140,8 @@ public class ReadWriteLDAPUserStoreManager extends ReadOnlyLDAPUserStoreManager
         }
 
         try {
-            connectionSource.getContext();
+            // the context only checks the connection, so give it back right away
+            JNDIUtil.closeContext(connectionSource.getContext());
             log.info("LDAP connection created successfully in read-write mode");
         } catch (Exception e) {
             throw new UserStoreException("Cannot create connection to LDAP server. Error message "
@@ -990,6 +991,10 @@ public class ReadWriteLDAPUserStoreManager extends ReadOnlyLDAPUserStoreManager
             // get the claimMapping related to this claimURI
             String attributeName = null;
             attributeName = getClaimAtrribute(claimURI, userName, null);
+            //remove user DN from cache if changing username attribute
+            if (realmConfig.getUserStoreProperty(LDAPConstants.USER_NAME_ATTRIBUTE).equals(attributeName)) {
+                userCache.remove(userName);
+            }
 
             Attribute currentUpdatedAttribute = new BasicAttribute(attributeName);
 			/* if updated attribute value is null, remove its values. */
@@ -1112,6 +1117,10 @@ public class ReadWriteLDAPUserStoreManager extends ReadOnlyLDAPUserStoreManager
             // get the claimMapping related to this claimURI
             String attributeName = null;
             attributeName = getClaimAtrribute(claimURI, userName, null);
+            //remove user DN from cache if changing username attribute
+            if (realmConfig.getUserStoreProperty(LDAPConstants.USER_NAME_ATTRIBUTE).equals(attributeName)) {
+                userCache.remove(userName);
+            }
 
             Attribute currentUpdatedAttribute = new BasicAttribute(attributeName);
 
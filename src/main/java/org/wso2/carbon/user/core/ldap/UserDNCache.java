@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ * 
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.user.core.ldap;
+
+import javax.naming.ldap.LdapName;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the DNs of users, so that the DN of a user need not be searched for on every
+ * operation. The cache holds at most a fixed number of users, evicting the least recently used
+ * ones, and an entry is not used after it has been in the cache for longer than the time out,
+ * so that DNs changed outside the user store manager are eventually picked up.
+ */
+class UserDNCache {
+
+    private final int maxSize;
+    private final long timeOut;
+    private final Map<String, Entry> entries;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * @param maxSize maximum number of users
+     * @param timeOut time in milliseconds for which an entry is used
+     */
+    UserDNCache(final int maxSize, long timeOut) {
+        this.maxSize = maxSize;
+        this.timeOut = timeOut;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * @param userName user name
+     * @return the cached DN of the user, or null if it is not cached
+     */
+    LdapName get(String userName) {
+        if (userName == null) {
+            return null;
+        }
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(userName);
+            if (entry != null && entry.expiryTime <= System.currentTimeMillis()) {
+                entries.remove(userName);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return entry.name;
+    }
+
+    void put(String userName, LdapName name) {
+        if (userName == null || name == null || maxSize <= 0) {
+            return;
+        }
+        Entry entry = new Entry(name, System.currentTimeMillis() + timeOut);
+        synchronized (entries) {
+            entries.put(userName, entry);
+        }
+    }
+
+    void remove(String userName) {
+        if (userName == null) {
+            return;
+        }
+        synchronized (entries) {
+            entries.remove(userName);
+        }
+    }
+
+    void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    long getHitCount() {
+        return hitCount.get();
+    }
+
+    long getMissCount() {
+        return missCount.get();
+    }
+
+    String getStatistics() {
+        return "size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount();
+    }
+
+    private static class Entry {
+
+        private final LdapName name;
+        private final long expiryTime;
+
+        private Entry(LdapName name, long expiryTime) {
+            this.name = name;
+            this.expiryTime = expiryTime;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ * 
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.user.core.ldap;
+
+import org.wso2.carbon.user.core.UserStoreException;
+
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Open user listings of a user store, which are continued by the cursors returned with their
+ * pages. Servers only accept the paging cookie on the connection the previous page was read on,
+ * hence each cursor keeps the iterator of its search, and with it a connection, between calls.
+ * <p/>
+ * A cursor is used by one call at a time, as a call takes it out until its page is read. Cursors
+ * which are not continued within the time out are closed by the next call, and the number of
+ * open cursors is limited so that they can not take all the connections. The cursors only exist
+ * on the node which returned them.
+ */
+final class UserListCursors {
+
+    private static final long CURSOR_TIME_OUT = 2 * 60 * 1000L;
+    private static final int MAX_OPEN_CURSORS = 10;
+
+    private final ConcurrentMap<String, OpenCursor> cursors = new ConcurrentHashMap<String, OpenCursor>();
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Keep an iterator to be continued later.
+     *
+     * @param iterator iterator which has more names
+     * @return the cursor to continue the iterator with
+     * @throws UserStoreException if too many cursors are open, in which case the iterator is closed
+     */
+    String add(PagedNameIterator iterator) throws UserStoreException {
+        closeExpired();
+        if (cursors.size() >= MAX_OPEN_CURSORS) {
+            iterator.close();
+            throw new UserStoreException("Too many open user list cursors, close the unused cursors or read " +
+                    "them to the end");
+        }
+        String cursor = Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong());
+        cursors.put(cursor, new OpenCursor(iterator, System.currentTimeMillis() + CURSOR_TIME_OUT));
+        return cursor;
+    }
+
+    /**
+     * Take out the iterator of a cursor. The cursor is no longer valid afterwards.
+     *
+     * @param cursor cursor
+     * @return the iterator of the cursor, or null if the cursor is unknown or has expired
+     */
+    PagedNameIterator take(String cursor) {
+        closeExpired();
+        OpenCursor openCursor = cursors.remove(cursor);
+        return openCursor == null ? null : openCursor.iterator;
+    }
+
+    /**
+     * Close a cursor and release its connection.
+     *
+     * @param cursor cursor
+     */
+    void close(String cursor) {
+        PagedNameIterator iterator = take(cursor);
+        if (iterator != null) {
+            iterator.close();
+        }
+    }
+
+    private void closeExpired() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, OpenCursor> entry : cursors.entrySet()) {
+            OpenCursor openCursor = entry.getValue();
+            if (openCursor.expiryTime <= now && cursors.remove(entry.getKey(), openCursor)) {
+                openCursor.iterator.close();
+            }
+        }
+    }
+
+    private static final class OpenCursor {
+
+        private final PagedNameIterator iterator;
+        private final long expiryTime;
+
+        private OpenCursor(PagedNameIterator iterator, long expiryTime) {
+            this.iterator = iterator;
+            this.expiryTime = expiryTime;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ * 
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.user.core.ldap;
+
+/**
+ * A page of user names returned by a paged listing, with the cursor to read the next page from.
+ */
+public class UserListPage {
+
+    private final String[] userNames;
+    private final String nextCursor;
+
+    public UserListPage(String[] userNames, String nextCursor) {
+        this.userNames = userNames;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * @return user names in the page, which may be fewer than the page size even if there are
+     * more pages
+     */
+    public String[] getUserNames() {
+        return userNames;
+    }
+
+    /**
+     * @return cursor of the next page, or null if this is the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
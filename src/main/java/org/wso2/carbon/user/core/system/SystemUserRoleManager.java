@@ -43,6 +43,8 @@ import java.security.SecureRandom;
 public class SystemUserRoleManager {
 
     private static final String SHA_1_PRNG = "SHA1PRNG";
+    // time in milliseconds for which the names of the system users are reused
+    private static final long SYSTEM_USERS_TIME_OUT = 60 * 1000L;
     private static Log log = LogFactory.getLog(SystemUserRoleManager.class);
     int tenantId;
     private DataSource dataSource;
@@ -307,6 +309,50 @@ public class SystemUserRoleManager {
         return isUserInRole;
     }
 
+    /**
+     * Same as isExistingSystemUser, but answered from the names of the system users of the
+     * tenant, which are read at most once a minute and kept in a cache shared by the nodes of a
+     * cluster. There are only a few system users, and every user is checked on the authorization
+     * path. Names are compared case insensitively.
+     *
+     * @param userName user name without the domain
+     * @return whether the user is a system user
+     * @throws UserStoreException if the system users can not be read
+     */
+    public boolean isSystemUser(String userName) throws UserStoreException {
+        SystemUsersCache cache = SystemUsersCache.getInstance();
+        SystemUsersCacheEntry previous = cache.getCacheEntry(tenantId);
+        if (previous != null) {
+            Boolean systemUser = previous.isSystemUser(userName, System.currentTimeMillis());
+            if (systemUser != null) {
+                return systemUser;
+            }
+        }
+        Connection dbConnection = null;
+        String[] names;
+        try {
+            dbConnection = DatabaseUtil.getDBConnection(dataSource);
+            names = DatabaseUtil.getStringValuesFromDatabase(dbConnection,
+                    SystemJDBCConstants.GET_USERNAME_FROM_TENANT_ID_SQL, tenantId);
+        } catch (SQLException e) {
+            String errorMessage = "Error occurred while getting system users of tenant : " + tenantId;
+            if (log.isDebugEnabled()) {
+                log.debug(errorMessage, e);
+            }
+            throw new UserStoreException(errorMessage, e);
+        } finally {
+            DatabaseUtil.closeAllConnections(dbConnection);
+        }
+        SystemUsersCacheEntry entry = SystemUsersCacheEntry.withUserNames(previous, names,
+                System.currentTimeMillis() + SYSTEM_USERS_TIME_OUT);
+        cache.addToCache(tenantId, previous, entry);
+        return entry.isSystemUser(userName, 0);
+    }
+
+    private void clearSystemUsersCache() {
+        SystemUsersCache.getInstance().clearCacheEntry(tenantId);
+    }
+
     public boolean isExistingSystemUser(String userName) throws UserStoreException {
 
         Connection dbConnection = null;
@@ -370,6 +416,7 @@ public class SystemUserRoleManager {
             updateSystemRoleListOfUser(userName, null, roleList);
 
             dbConnection.commit();
+            clearSystemUsersCache();
         } catch (Throwable e) {
             try {
                 if (dbConnection != null) {
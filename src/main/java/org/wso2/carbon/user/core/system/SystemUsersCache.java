@@ -0,0 +1,66 @@
+/*
+*  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.user.core.system;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.user.core.common.GenerationCache;
+
+/**
+ * Caches the names of the system users of each tenant. The entry of a tenant is cleared
+ * whenever a system user is added to the tenant.
+ */
+public class SystemUsersCache extends GenerationCache<Integer, SystemUsersCacheEntry> {
+
+    private static final String SYSTEM_USERS_CACHE_MANAGER = "SYSTEM_USERS_CACHE_MANAGER";
+    private static final String SYSTEM_USERS_CACHE = "SYSTEM_USERS_CACHE";
+    private static Log log = LogFactory.getLog(SystemUsersCache.class);
+    private static SystemUsersCache systemUsersCache = new SystemUsersCache();
+
+    private SystemUsersCache() {
+        super(SYSTEM_USERS_CACHE_MANAGER, SYSTEM_USERS_CACHE);
+    }
+
+    /**
+     * Gets the instance of SystemUsersCache.
+     *
+     * @return the instance of SystemUsersCache.
+     */
+    public static SystemUsersCache getInstance() {
+        return systemUsersCache;
+    }
+
+    @Override
+    protected SystemUsersCacheEntry cleared(SystemUsersCacheEntry previous) {
+        return SystemUsersCacheEntry.cleared(previous);
+    }
+
+    /**
+     * Cache the names of the system users of a tenant, unless the entry of the tenant has
+     * changed since it was read.
+     *
+     * @param tenantId tenant id
+     * @param previous entry of the tenant read before reading the names, or null if there was none
+     * @param entry    entry with the names, of the generation of the previous entry
+     */
+    public void addToCache(int tenantId, SystemUsersCacheEntry previous, SystemUsersCacheEntry entry) {
+        if (!addToCache(Integer.valueOf(tenantId), previous, entry) && log.isDebugEnabled()) {
+            log.debug("System users of tenant " + tenantId + " are not cached, as a system user has been added");
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+*  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.user.core.system;
+
+import org.wso2.carbon.user.core.common.GenerationCacheEntry;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Names of the system users of a tenant, in lower case.
+ */
+public class SystemUsersCacheEntry extends GenerationCacheEntry {
+
+    private static final long serialVersionUID = -6235418705526914108L;
+
+    private final Set<String> userNames;
+    private final long expiryTime;
+
+    private SystemUsersCacheEntry(SystemUsersCacheEntry previous, boolean newGeneration, Set<String> userNames,
+                                  long expiryTime) {
+        super(previous, newGeneration);
+        this.userNames = userNames;
+        this.expiryTime = expiryTime;
+    }
+
+    /**
+     * @param previous previous entry of the tenant, or null
+     * @return an entry without names, of a newer generation than the previous entry
+     */
+    public static SystemUsersCacheEntry cleared(SystemUsersCacheEntry previous) {
+        return new SystemUsersCacheEntry(previous, true, null, 0);
+    }
+
+    /**
+     * @param previous   previous entry of the tenant, or null
+     * @param userNames  names of the system users of the tenant
+     * @param expiryTime time after which the names must not be used
+     * @return an entry with the given names, of the generation of the previous entry
+     */
+    public static SystemUsersCacheEntry withUserNames(SystemUsersCacheEntry previous, String[] userNames,
+                                                      long expiryTime) {
+        Set<String> names = new HashSet<String>();
+        for (String userName : userNames) {
+            names.add(userName.toLowerCase());
+        }
+        return new SystemUsersCacheEntry(previous, false, Collections.unmodifiableSet(names), expiryTime);
+    }
+
+    /**
+     * @param userName user name without the domain
+     * @param now      current time
+     * @return whether the user is a system user, or null if it is not known
+     */
+    public Boolean isSystemUser(String userName, long now) {
+        if (userNames == null || now >= expiryTime) {
+            return null;
+        }
+        return userNames.contains(userName.toLowerCase());
+    }
+
+    @Override
+    public boolean equals(Object otherObject) {
+        if (!super.equals(otherObject)) {
+            return false;
+        }
+        SystemUsersCacheEntry secondObject = (SystemUsersCacheEntry) otherObject;
+        return expiryTime == secondObject.expiryTime &&
+                (userNames == null ? secondObject.userNames == null : userNames.equals(secondObject.userNames));
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode() * 31 + (int) expiryTime + (userNames == null ? 0 : userNames.hashCode());
+    }
+}
@@ -54,6 +54,7 @@ public class JDBCTenantManager implements TenantManager {
     private static Log log = LogFactory.getLog(TenantManager.class);
     protected BundleContext bundleContext;
     protected TenantCache tenantCacheManager = TenantCache.getInstance();
+    protected TenantStatusCache tenantStatusCache = TenantStatusCache.getInstance();
     DataSource dataSource;
     /**
      * Map which maps tenant domains to tenant IDs
@@ -72,6 +73,7 @@ public class JDBCTenantManager implements TenantManager {
             throw new Exception("Data Source is null");
         }
         this.tenantCacheManager.clear();
+        this.tenantStatusCache.clear();
     }
 
     //TODO : Remove the unused variable
@@ -549,8 +551,10 @@ public class JDBCTenantManager implements TenantManager {
             prepStmt.setInt(1, tenantId);
             prepStmt.executeUpdate();
             dbConnection.commit();
+            tenantStatusCache.addToCache(tenantId, true);
         } catch (SQLException e) {
             DatabaseUtil.rollBack(dbConnection);
+            tenantStatusCache.clearCacheEntry(tenantId);
             String msg = "Error in activating the tenant with " + "tenant id: "
                          + tenantId + ".";
             if (log.isDebugEnabled()) {
@@ -577,9 +581,11 @@ public class JDBCTenantManager implements TenantManager {
             prepStmt.setInt(1, tenantId);
             prepStmt.executeUpdate();
             dbConnection.commit();
+            tenantStatusCache.addToCache(tenantId, false);
         } catch (SQLException e) {
 
             DatabaseUtil.rollBack(dbConnection);
+            tenantStatusCache.clearCacheEntry(tenantId);
 
             String msg = "Error in deactivating the tenant with tenant id: " + tenantId;
             if (log.isDebugEnabled()) {
@@ -595,18 +601,29 @@ public class JDBCTenantManager implements TenantManager {
         if (tenantId == MultitenantConstants.SUPER_TENANT_ID) {
             return true;
         }
+        Boolean cachedStatus = tenantStatusCache.isTenantActive(tenantId);
+        if (cachedStatus != null) {
+            return cachedStatus;
+        }
         Connection dbConnection = null;
         PreparedStatement prepStmt = null;
+        ResultSet result = null;
         try {
             dbConnection = getDBConnection();
             String sqlStmt = TenantConstants.IS_TENANT_ACTIVE_SQL;
             prepStmt = dbConnection.prepareStatement(sqlStmt);
             prepStmt.setInt(1, tenantId);
-            ResultSet result = prepStmt.executeQuery();
+            result = prepStmt.executeQuery();
+            boolean active = false;
             if (result.next()) {
-                return result.getBoolean("UM_ACTIVE");
+                active = result.getBoolean("UM_ACTIVE");
             }
             dbConnection.commit();
+            // unknown tenants are not cached, as they may be added later
+            if (active) {
+                tenantStatusCache.addToCacheIfAbsent(tenantId, true);
+            }
+            return active;
         } catch (SQLException e) {
 
             DatabaseUtil.rollBack(dbConnection);
@@ -618,9 +635,8 @@ public class JDBCTenantManager implements TenantManager {
             }
             throw new UserStoreException(msg, e);
         } finally {
-            DatabaseUtil.closeAllConnections(dbConnection, prepStmt);
+            DatabaseUtil.closeAllConnections(dbConnection, result, prepStmt);
         }
-        return false;
     }
 
     public void deleteTenant(int tenantId) throws UserStoreException {
@@ -628,6 +644,8 @@ public class JDBCTenantManager implements TenantManager {
         // Remove tenant information from the cache.
         tenantIdDomainMap.remove(tenantId);
         tenantCacheManager.clearCacheEntry(new TenantIdKey(tenantId));
+        // cached as inactive rather than removed, so that a concurrent lookup can not cache it as active
+        tenantStatusCache.addToCache(tenantId, false);
 
         Connection dbConnection = null;
         PreparedStatement prepStmt = null;
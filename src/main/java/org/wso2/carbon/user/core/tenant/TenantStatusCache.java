@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.user.core.tenant;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+/**
+ * Caches whether tenants are active, which is checked on every authentication. Entries are
+ * replaced when a tenant is activated or deactivated, and also expire after a while so that
+ * status changes made directly in the database are eventually seen.
+ * <p/>
+ * A status read from the database is only added if it does not overwrite an entry written
+ * after the read, so that a lookup which raced with a deactivation can not bring back the old
+ * status.
+ */
+class TenantStatusCache {
+
+    public static final String TENANT_STATUS_CACHE_MANAGER = "TENANT_STATUS_CACHE_MANAGER";
+    public static final String TENANT_STATUS_CACHE = "TENANT_STATUS_CACHE";
+    /**
+     * Time to live of a cache entry in milliseconds.
+     */
+    public static final long TENANT_STATUS_CACHE_TIMEOUT = 60 * 1000L;
+    private static Log log = LogFactory.getLog(TenantStatusCache.class);
+    private static TenantStatusCache tenantStatusCache = new TenantStatusCache();
+
+    private TenantStatusCache() {
+    }
+
+    /**
+     * Gets the instance of TenantStatusCache.
+     *
+     * @return the instance of TenantStatusCache.
+     */
+    public static TenantStatusCache getInstance() {
+        return tenantStatusCache;
+    }
+
+    private Cache<TenantIdKey, TenantStatusEntry> getTenantStatusCache() {
+        CacheManager cacheManager = Caching.getCacheManagerFactory().getCacheManager(TENANT_STATUS_CACHE_MANAGER);
+        return cacheManager.getCache(TENANT_STATUS_CACHE);
+    }
+
+    /**
+     * Cache the status of a tenant.
+     *
+     * @param tenantId tenant id
+     * @param active   whether the tenant is active
+     */
+    public void addToCache(int tenantId, boolean active) {
+        Cache<TenantIdKey, TenantStatusEntry> cache = getTenantStatusCache();
+        if (cache != null) {
+            cache.put(new TenantIdKey(tenantId),
+                    new TenantStatusEntry(active, System.currentTimeMillis() + TENANT_STATUS_CACHE_TIMEOUT));
+        } else if (log.isDebugEnabled()) {
+            log.debug("Error while getting the cache : " + TENANT_STATUS_CACHE + " which is under " +
+                    TENANT_STATUS_CACHE_MANAGER);
+        }
+    }
+
+    /**
+     * Cache the status of a tenant read from the database, unless the cache already has a live
+     * entry of the tenant. Such an entry has been written by an activation or deactivation, which
+     * may have committed after the status was read.
+     *
+     * @param tenantId tenant id
+     * @param active   whether the tenant is active
+     */
+    public void addToCacheIfAbsent(int tenantId, boolean active) {
+        Cache<TenantIdKey, TenantStatusEntry> cache = getTenantStatusCache();
+        if (cache == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        TenantIdKey key = new TenantIdKey(tenantId);
+        TenantStatusEntry entry = new TenantStatusEntry(active, now + TENANT_STATUS_CACHE_TIMEOUT);
+        if (cache.putIfAbsent(key, entry)) {
+            return;
+        }
+        TenantStatusEntry existing = cache.get(key);
+        if (existing != null && existing.isExpired(now)) {
+            // fails if the expired entry has been replaced in the mean time
+            cache.replace(key, existing, entry);
+        }
+    }
+
+    /**
+     * Get the cached status of a tenant.
+     *
+     * @param tenantId tenant id
+     * @return whether the tenant is active, or null if the status is not cached or has expired
+     */
+    public Boolean isTenantActive(int tenantId) {
+        Cache<TenantIdKey, TenantStatusEntry> cache = getTenantStatusCache();
+        if (cache == null) {
+            return null;
+        }
+        TenantStatusEntry entry = cache.get(new TenantIdKey(tenantId));
+        if (entry == null || entry.isExpired(System.currentTimeMillis())) {
+            return null;
+        }
+        return entry.isActive();
+    }
+
+    /**
+     * Clears the cached status of a tenant.
+     *
+     * @param tenantId tenant id
+     */
+    public void clearCacheEntry(int tenantId) {
+        Cache<TenantIdKey, TenantStatusEntry> cache = getTenantStatusCache();
+        if (cache != null) {
+            cache.remove(new TenantIdKey(tenantId));
+        }
+    }
+
+    /**
+     * Remove everything in the cache.
+     */
+    public void clear() {
+        Cache<TenantIdKey, TenantStatusEntry> cache = getTenantStatusCache();
+        if (cache != null) {
+            cache.removeAll();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.user.core.tenant;
+
+import java.io.Serializable;
+
+/**
+ * Cache entry class for tenant status cache.
+ */
+class TenantStatusEntry implements Serializable {
+
+    private static final long serialVersionUID = 4725311930153926187L;
+    private boolean active;
+    private long expiryTime;
+
+    public TenantStatusEntry(boolean active, long expiryTime) {
+        this.active = active;
+        this.expiryTime = expiryTime;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public boolean isExpired(long now) {
+        return now >= expiryTime;
+    }
+
+    @Override
+    public boolean equals(Object otherObject) {
+        if (!(otherObject instanceof TenantStatusEntry)) {
+            return false;
+        }
+        TenantStatusEntry secondObject = (TenantStatusEntry) otherObject;
+        return active == secondObject.active && expiryTime == secondObject.expiryTime;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (expiryTime ^ (expiryTime >>> 32)) * 2 + (active ? 1 : 0);
+    }
+}
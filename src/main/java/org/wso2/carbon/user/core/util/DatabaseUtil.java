@@ -544,6 +544,54 @@ public class DatabaseUtil {
         }
     }
 
+    /**
+     * Execute the given update statement once for each of the given parameter rows, as a single
+     * JDBC batch on the given connection. The connection is neither committed nor closed.
+     *
+     * @param dbConnection database connection
+     * @param sqlStmt      update statement
+     * @param paramRows    parameters of each execution of the statement
+     * @throws UserStoreException if the batch fails
+     */
+    public static void updateDatabaseInBatch(Connection dbConnection, String sqlStmt,
+                                             List<Object[]> paramRows) throws UserStoreException {
+        if (paramRows == null || paramRows.isEmpty()) {
+            return;
+        }
+        PreparedStatement prepStmt = null;
+        try {
+            prepStmt = dbConnection.prepareStatement(sqlStmt);
+            for (Object[] params : paramRows) {
+                for (int i = 0; i < params.length; i++) {
+                    Object param = params[i];
+                    if (param == null) {
+                        prepStmt.setString(i + 1, null);
+                    } else if (param instanceof String) {
+                        prepStmt.setString(i + 1, (String) param);
+                    } else if (param instanceof Integer) {
+                        prepStmt.setInt(i + 1, (Integer) param);
+                    } else if (param instanceof Short) {
+                        prepStmt.setShort(i + 1, (Short) param);
+                    }
+                }
+                prepStmt.addBatch();
+            }
+            int[] count = prepStmt.executeBatch();
+            if (log.isDebugEnabled()) {
+                log.debug("Executed a batch update. Query is : " + sqlStmt + ": and result is"
+                        + Arrays.toString(count));
+            }
+        } catch (SQLException e) {
+            String errorMessage = "Error occurred while updating database in batch mode";
+            if (log.isDebugEnabled()) {
+                log.debug(errorMessage, e);
+            }
+            throw new UserStoreException(errorMessage, e);
+        } finally {
+            DatabaseUtil.closeAllConnections(null, prepStmt);
+        }
+    }
+
     public static Connection getDBConnection(DataSource dataSource) throws SQLException {
         Connection dbConnection = dataSource.getConnection();
         dbConnection.setAutoCommit(false);
@@ -66,6 +66,12 @@ public class JDBCRealmUtil {
             properties.put(JDBCRealmConstants.GET_PROPS_FOR_PROFILE,
                     JDBCRealmConstants.GET_PROPS_FOR_PROFILE_SQL);
         }
+        putNarrowingSQL(properties, JDBCRealmConstants.GET_USERS_PROPS_FOR_PROFILE,
+                JDBCRealmConstants.GET_USERS_PROPS_FOR_PROFILE_SQL, JDBCRealmConstants.GET_PROPS_FOR_PROFILE,
+                JDBCRealmConstants.GET_PROPS_FOR_PROFILE_SQL);
+        putNarrowingSQL(properties, JDBCRealmConstants.GET_PROPS_BY_NAME_FOR_PROFILE,
+                JDBCRealmConstants.GET_PROPS_BY_NAME_FOR_PROFILE_SQL, JDBCRealmConstants.GET_PROPS_FOR_PROFILE,
+                JDBCRealmConstants.GET_PROPS_FOR_PROFILE_SQL);
         if (!properties.containsKey(JDBCRealmConstants.GET_PROP_FOR_PROFILE)) {
             properties.put(JDBCRealmConstants.GET_PROP_FOR_PROFILE,
                     JDBCRealmConstants.GET_PROP_FOR_PROFILE_SQL);
@@ -74,6 +80,9 @@ public class JDBCRealmUtil {
             properties.put(JDBCRealmConstants.GET_USERS_FOR_PROP,
                     JDBCRealmConstants.GET_USERS_FOR_PROP_SQL);
         }
+        putNarrowingSQL(properties, JDBCRealmConstants.GET_USERS_FOR_PROP_VALUE,
+                JDBCRealmConstants.GET_USERS_FOR_PROP_VALUE_SQL, JDBCRealmConstants.GET_USERS_FOR_PROP,
+                JDBCRealmConstants.GET_USERS_FOR_PROP_SQL);
         if (!properties.containsKey(JDBCRealmConstants.GET_PROFILE_NAMES)) {
             properties.put(JDBCRealmConstants.GET_PROFILE_NAMES,
                     JDBCRealmConstants.GET_PROFILE_NAMES_SQL);
@@ -217,4 +226,30 @@ public class JDBCRealmUtil {
         }
         return properties;
     }
+
+    /**
+     * Sets the default of a statement which narrows down another statement, such as reading
+     * properties by name instead of all properties. The default is only used when the other
+     * statement is the default one too. When the other statement is customized, the narrowing
+     * statement is dropped unless it is customized as well, so that the user store keeps reading
+     * its own schema through the other statement.
+     *
+     * @param properties user store properties
+     * @param property   narrowing statement
+     * @param defaultSQL default of the narrowing statement
+     * @param broader    statement narrowed down, which already has its default set
+     * @param broaderSQL default of the statement narrowed down
+     */
+    private static void putNarrowingSQL(Map<String, String> properties, String property, String defaultSQL,
+                                        String broader, String broaderSQL) {
+        boolean broaderIsDefault = broaderSQL.equals(properties.get(broader));
+        String sql = properties.get(property);
+        if (sql == null) {
+            if (broaderIsDefault) {
+                properties.put(property, defaultSQL);
+            }
+        } else if (!broaderIsDefault && sql.equals(defaultSQL)) {
+            properties.remove(property);
+        }
+    }
 }
@@ -56,6 +56,7 @@ import java.util.regex.Pattern;
 public final class UserCoreUtil {
 
     private static final String DUMMY_VALUE = "dummy";
+    private static final Pattern PARENT_PATH_PATTERN = Pattern.compile("(.*)/.*$");
     private static Log log = LogFactory.getLog(UserCoreUtil.class);
     private static Boolean isEmailUserName;
     private static Boolean isCrossTenantUniqueUserName;
@@ -80,15 +81,31 @@ public final class UserCoreUtil {
             return arr1;
         }
         String[] newArray = new String[arr1.length + arr2.length];
-        for (int i = 0; i < arr1.length; i++) {
-            newArray[i] = arr1[i];
-        }
+        System.arraycopy(arr1, 0, newArray, 0, arr1.length);
+        System.arraycopy(arr2, 0, newArray, arr1.length, arr2.length);
+        return newArray;
+    }
 
-        int j = 0;
-        for (int i = arr1.length; i < newArray.length; i++) {
-            Arrays.toString(newArray);
-            newArray[i] = arr2[j];
-            j++;
+    /**
+     * Combine the arrays in to one array, in the order of the list. Null arrays are skipped.
+     *
+     * @param arrays arrays to combine
+     * @return the combined array
+     */
+    public static String[] combineArrays(List<String[]> arrays) {
+        int length = 0;
+        for (String[] array : arrays) {
+            if (array != null) {
+                length += array.length;
+            }
+        }
+        String[] newArray = new String[length];
+        int position = 0;
+        for (String[] array : arrays) {
+            if (array != null) {
+                System.arraycopy(array, 0, newArray, position, array.length);
+                position += array.length;
+            }
         }
         return newArray;
     }
@@ -123,16 +140,12 @@ public final class UserCoreUtil {
             String shortestString = rawResourcePath[index];
             lst.add(shortestString);
             index++;
-            Pattern p = Pattern.compile("(.*)/.*$");
             while (index < rawResourcePath.length) {
-                Matcher m = p.matcher(rawResourcePath[index]);
-                if (m.find()) {
-                    String s = m.group(1);
-                    if (s.equals(shortestString)) {
-                        index++;
-                    } else {
-                        break;
-                    }
+                Matcher m = PARENT_PATH_PATTERN.matcher(rawResourcePath[index]);
+                if (m.find() && m.group(1).equals(shortestString)) {
+                    index++;
+                } else {
+                    break;
                 }
             }
         }
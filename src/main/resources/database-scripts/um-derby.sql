@@ -99,4 +99,30 @@ CREATE TABLE HYBRID_USER_PERMISSIONS (
             IS_ALLOWED SMALLINT NOT NULL,
             UNIQUE (PERMISSION_ID, USER_ID),
             FOREIGN KEY (PERMISSION_ID) REFERENCES HYBRID_PERMISSIONS(ID) ON DELETE CASCADE,
-            PRIMARY KEY (ID));
\ No newline at end of file
+            PRIMARY KEY (ID));
+
+-- log of the permission changes, used when IncrementalPermissionTreeReload is enabled
+CREATE TABLE UM_PERMISSION_CHANGE_LOG (
+            UM_ID INTEGER GENERATED ALWAYS AS IDENTITY,
+            UM_TENANT_ID INTEGER DEFAULT 0,
+            UM_VERSION INTEGER NOT NULL,
+            UM_ENTITY_TYPE CHAR(1) NOT NULL,
+            UM_ENTITY_NAME VARCHAR(255),
+            UM_DOMAIN_NAME VARCHAR(255),
+            UM_RESOURCE_ID VARCHAR(255),
+            UM_ACTION VARCHAR(255),
+            UM_OPERATION SMALLINT NOT NULL,
+            PRIMARY KEY (UM_ID));
+
+CREATE INDEX INDEX_UM_PERMISSION_CHANGE_LOG ON UM_PERMISSION_CHANGE_LOG (UM_TENANT_ID, UM_VERSION);
+
+CREATE TABLE UM_PERMISSION_VERSION (
+            UM_TENANT_ID INTEGER NOT NULL,
+            UM_VERSION INTEGER NOT NULL,
+            PRIMARY KEY (UM_TENANT_ID));
+
+-- The attributes of the users are stored in the UM_USER_ATTRIBUTE table of the Carbon database,
+-- which is read by user, profile and attribute name. Recommended index for that table:
+-- CREATE INDEX INDEX_UM_USER_ATTRIBUTE ON UM_USER_ATTRIBUTE (UM_USER_ID, UM_PROFILE_ID, UM_ATTR_NAME, UM_TENANT_ID);
+-- Users are also looked up by the exact value of an attribute, e.g. the email address. Recommended index for that:
+-- CREATE INDEX INDEX_UM_USER_ATTR_VALUE ON UM_USER_ATTRIBUTE (UM_TENANT_ID, UM_ATTR_NAME, UM_ATTR_VALUE);
@@ -18,6 +18,9 @@ package org.wso2.carbon.user.core.authorization;
 
 import org.wso2.carbon.user.core.BaseTestCase;
 
+import javax.cache.Cache;
+import javax.cache.Caching;
+
 /**
  * Date: Oct 1, 2010 Time: 1:35:11 PM
  */
@@ -54,5 +57,76 @@ public class AuthorizationCacheTest extends BaseTestCase {
         }
     }
 
+    public void testInvalidateUser() throws Exception {
+        AuthorizationCache cache = AuthorizationCache.getInstance();
+        cache.addToCache(null, 1, "roadrunner", "/x/z", "read", true);
+        cache.addToCache(null, 1, "coyote", "/x/z", "read", false);
+        assertTrue(cache.isUserAuthorized(null, 1, "roadrunner", "/x/z", "read"));
+
+        cache.invalidateUser(1, "RoadRunner");
+        try {
+            cache.isUserAuthorized(null, 1, "roadrunner", "/x/z", "read");
+            fail("Decisions of the user are invalidated. Should be a cache miss");
+        } catch (AuthorizationCacheException e) {
+            assertTrue(true);
+        }
+        // other users of the tenant keep their decisions
+        assertFalse(cache.isUserAuthorized(null, 1, "coyote", "/x/z", "read"));
+
+        cache.addToCache(null, 1, "roadrunner", "/x/z", "read", false);
+        assertFalse(cache.isUserAuthorized(null, 1, "roadrunner", "/x/z", "read"));
+    }
+
+    public void testEvictedGenerationInvalidatesUser() throws Exception {
+        AuthorizationCache cache = AuthorizationCache.getInstance();
+        cache.addToCache(null, 4, "roadrunner", "/x/z", "read", true);
+        assertTrue(cache.isUserAuthorized(null, 4, "roadrunner", "/x/z", "read"));
+
+        Cache<AuthorizationGenerationKey, Long> generations = Caching.getCacheManagerFactory()
+                .getCacheManager(AuthorizationCache.AUTHORIZATION_CACHE_MANAGER)
+                .getCache(AuthorizationCache.AUTHORIZATION_GENERATION_CACHE_NAME);
+        generations.remove(new AuthorizationGenerationKey(AuthorizationGenerationKey.USER, 4, "RoadRunner"));
+        // the invalidations of the user are not known anymore
+        assertMiss(cache, 4, "roadrunner", "/x/z");
+    }
+
+    public void testClearCacheByTenantAndResource() throws Exception {
+        AuthorizationCache cache = AuthorizationCache.getInstance();
+        cache.addToCache(null, 2, "roadrunner", "/x/a", "read", true);
+        cache.addToCache(null, 2, "roadrunner", "/x/b", "read", true);
+        cache.addToCache(null, 3, "roadrunner", "/x/a", "read", true);
+
+        cache.clearCacheByResource(null, 2, "/x/a");
+        assertMiss(cache, 2, "roadrunner", "/x/a");
+        assertTrue(cache.isUserAuthorized(null, 2, "roadrunner", "/x/b", "read"));
+        assertTrue(cache.isUserAuthorized(null, 3, "roadrunner", "/x/a", "read"));
 
+        cache.clearCacheByTenant(2);
+        assertMiss(cache, 2, "roadrunner", "/x/b");
+        assertTrue(cache.isUserAuthorized(null, 3, "roadrunner", "/x/a", "read"));
+    }
+
+    public void testClearCacheByServerId() throws Exception {
+        AuthorizationCache cache = AuthorizationCache.getInstance();
+        cache.addToCache("server1", 5, "roadrunner", "/x/a", "read", true);
+        cache.addToCache("server2", 5, "roadrunner", "/x/a", "read", false);
+
+        cache.clearCacheByServerId("server1");
+        try {
+            cache.isUserAuthorized("server1", 5, "roadrunner", "/x/a", "read");
+            fail("The entry is cleared. Should be a cache miss");
+        } catch (AuthorizationCacheException e) {
+            assertTrue(true);
+        }
+        assertFalse(cache.isUserAuthorized("server2", 5, "roadrunner", "/x/a", "read"));
+    }
+
+    private void assertMiss(AuthorizationCache cache, int tenantId, String userName, String resourceId) {
+        try {
+            cache.isUserAuthorized(null, tenantId, userName, resourceId, "read");
+            fail("The entry is cleared. Should be a cache miss");
+        } catch (AuthorizationCacheException e) {
+            assertTrue(true);
+        }
+    }
 }
@@ -0,0 +1,306 @@
+/*
+*  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.user.core.authorization;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.wso2.carbon.user.core.BaseTestCase;
+import org.wso2.carbon.user.core.Permission;
+import org.wso2.carbon.user.core.UserCoreConstants;
+import org.wso2.carbon.user.core.UserCoreTestConstants;
+import org.wso2.carbon.user.core.util.DatabaseUtil;
+
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.List;
+
+public class PermissionTreeTest extends BaseTestCase {
+
+    public void testLockedTree() throws Exception {
+        checkAuthorizations(new PermissionTree("test", 1, null, false));
+    }
+
+    public void testCopyOnWriteTree() throws Exception {
+        PermissionTree tree = new PermissionTree("test", 1, null, true);
+        checkAuthorizations(tree);
+
+        // a snapshot taken before an update must not see the update
+        TreeNode snapshot = tree.root;
+        tree.denyRoleInTree("role1", "/a/b", "read", false);
+        assertFalse(isRoleAuthorized(tree, "role1", "/a/b"));
+        assertTrue(isRoleAuthorized(tree, "role1", "/a"));
+        assertNotSame(snapshot, tree.root);
+        assertTrue(isRoleAuthorized(tree, snapshot, "role1", "/a/b"));
+
+        snapshot = tree.root;
+        tree.clearRoleAuthorization("role1");
+        assertFalse(isRoleAuthorized(tree, "role1", "/a"));
+        assertTrue(isRoleAuthorized(tree, snapshot, "role1", "/a"));
+    }
+
+    public void testResolvePermission() throws Exception {
+        PermissionTree tree = new PermissionTree("test", 1, null, false);
+        tree.authorizeRoleInTree("role1", "/a", "read", false);
+        tree.denyRoleInTree("role1", "/a/b/c", "read", false);
+        tree.authorizeUserInTree("user1", "/a/b", "read", false);
+
+        String[] paths = new String[]{"", "/", "/a", "a", "/a/", "/a/b", "/a//b", "//a", "/a/b/c",
+                "a/b/c/d", "/a/bc", "/x/a"};
+        for (String path : paths) {
+            assertEquals(path, isRoleAuthorized(tree, "role1", path),
+                    tree.resolveRolePermission("role1", TreeNode.Permission.GET, path) ==
+                            TreeNode.PERMISSION_ALLOWED);
+            assertEquals(path, tree.getUserPermission("user1", TreeNode.Permission.GET, null, null,
+                    PermissionTreeUtil.toComponenets(path)).getLastNodeAllowedAccess().booleanValue(),
+                    tree.resolveUserPermission("user1", TreeNode.Permission.GET, path) ==
+                            TreeNode.PERMISSION_ALLOWED);
+        }
+        assertEquals(TreeNode.PERMISSION_NOT_DEFINED,
+                tree.resolveRolePermission("role2", TreeNode.Permission.GET, "/a"));
+        assertEquals(TreeNode.PERMISSION_DENIED,
+                tree.resolveRolePermission("role1", TreeNode.Permission.GET, "/a/b/c"));
+    }
+
+    public void testRoleNames() throws Exception {
+        PermissionTree tree = new PermissionTree("test", 1, null, false);
+        tree.authorizeRoleInTree("Domain/role1", "/a", "read", false);
+        tree.authorizeRoleInTree("role2", "/a", "read", false);
+        tree.denyRoleInTree("role2", "/a/b", "read", false);
+        assertTrue(isRoleAuthorized(tree, "Domain/role1", "/a/b"));
+        assertEquals(TreeNode.PERMISSION_ALLOWED,
+                tree.resolveRolePermission("Domain/role1", TreeNode.Permission.GET, "/a/b"));
+        assertEquals(TreeNode.PERMISSION_DENIED,
+                tree.resolveRolePermission("role2", TreeNode.Permission.GET, "/a/b"));
+
+        List<String> allowedRoles = tree.getAllowedRolesForResource(null, null, TreeNode.Permission.GET,
+                PermissionTreeUtil.toComponenets("/a/b")).getAllowedEntities();
+        assertEquals(1, allowedRoles.size());
+        assertEquals("DOMAIN/role1", allowedRoles.get(0));
+
+        tree.updateRoleNameInCache("role2", "role3");
+        assertEquals(TreeNode.PERMISSION_NOT_DEFINED,
+                tree.resolveRolePermission("role2", TreeNode.Permission.GET, "/a"));
+        assertEquals(TreeNode.PERMISSION_ALLOWED,
+                tree.resolveRolePermission("role3", TreeNode.Permission.GET, "/a"));
+        assertEquals(TreeNode.PERMISSION_DENIED,
+                tree.resolveRolePermission("role3", TreeNode.Permission.GET, "/a/b"));
+    }
+
+    public void testAnyRoleAuthorized() throws Exception {
+        PermissionTree tree = new PermissionTree("test", 1, null, false);
+        tree.authorizeRoleInTree("role1", "/a", "read", false);
+        tree.denyRoleInTree("role1", "/a/b", "read", false);
+        tree.authorizeRoleInTree("Domain/role2", "/a/b/c", "read", false);
+
+        String[] roles = new String[]{"unknown", "role1", "Domain/role2"};
+        String[] paths = new String[]{"", "/a", "/a/b", "/a/b/c", "/a/b/c/d", "/x"};
+        for (String path : paths) {
+            boolean expected = false;
+            for (String role : roles) {
+                expected |= tree.resolveRolePermission(role, TreeNode.Permission.GET, path) ==
+                        TreeNode.PERMISSION_ALLOWED;
+            }
+            assertEquals(path, expected, tree.isAnyRoleAuthorized(roles, TreeNode.Permission.GET, path));
+        }
+        assertTrue(tree.isAnyRoleAuthorized(roles, TreeNode.Permission.GET, "/a"));
+        assertFalse(tree.isAnyRoleAuthorized(roles, TreeNode.Permission.GET, "/a/b"));
+        assertTrue(tree.isAnyRoleAuthorized(new String[]{"DOMAIN/role2"}, TreeNode.Permission.GET, "/a/b/c"));
+        assertFalse(tree.isAnyRoleAuthorized(new String[]{"unknown"}, TreeNode.Permission.GET, "/a"));
+        assertFalse(tree.isAnyRoleAuthorized(new String[0], TreeNode.Permission.GET, "/a"));
+    }
+
+    public void testBulkRoleAuthorization() throws Exception {
+        PermissionTree tree = new PermissionTree("test", 1, null, true);
+        List<Permission> permissions = Arrays.asList(new Permission("/a", "read"),
+                new Permission("/a/b", "write"), new Permission("/c/d", "read"));
+        tree.authorizeRoleInTree("role1", permissions, true, false);
+        assertEquals(TreeNode.PERMISSION_ALLOWED,
+                tree.resolveRolePermission("role1", TreeNode.Permission.GET, "/a/b/c"));
+        assertEquals(TreeNode.PERMISSION_ALLOWED,
+                tree.resolveRolePermission("role1", TreeNode.Permission.ADD, "/a/b"));
+        assertEquals(TreeNode.PERMISSION_ALLOWED,
+                tree.resolveRolePermission("role1", TreeNode.Permission.GET, "/c/d"));
+        assertEquals(TreeNode.PERMISSION_NOT_DEFINED,
+                tree.resolveRolePermission("role1", TreeNode.Permission.GET, "/c"));
+
+        TreeNode snapshot = tree.root;
+        tree.authorizeRoleInTree("role1", Arrays.asList(new Permission("/a/b", "read")), false, false);
+        assertEquals(TreeNode.PERMISSION_DENIED,
+                tree.resolveRolePermission("role1", TreeNode.Permission.GET, "/a/b"));
+        assertTrue(isRoleAuthorized(tree, snapshot, "role1", "/a/b"));
+
+        tree.clearRoleAuthorization("role1", Arrays.asList(new Permission("/a", "read"),
+                new Permission("/c/d", "read"), new Permission("/x", "read")), false);
+        assertEquals(TreeNode.PERMISSION_NOT_DEFINED,
+                tree.resolveRolePermission("role1", TreeNode.Permission.GET, "/a"));
+        assertEquals(TreeNode.PERMISSION_NOT_DEFINED,
+                tree.resolveRolePermission("role1", TreeNode.Permission.GET, "/c/d"));
+        assertEquals(TreeNode.PERMISSION_ALLOWED,
+                tree.resolveRolePermission("role1", TreeNode.Permission.ADD, "/a/b"));
+    }
+
+    public void testAllowedUIResourcesForRoles() throws Exception {
+        PermissionTree tree = new PermissionTree("test", 1, null, false);
+        tree.authorizeRoleInTree("role1", "/permission/admin/login", "ui.execute", false);
+        tree.authorizeRoleInTree("role2", "/permission/admin/manage", "ui.execute", false);
+        tree.authorizeRoleInTree("role2", "/permission/admin/manage/users", "ui.execute", false);
+
+        String[] resources = tree.getAllowedUIResourcesForRoles(new String[]{"role1", "role2"}, "/");
+        assertEquals(Arrays.asList("/permission/admin/login", "/permission/admin/manage"),
+                Arrays.asList(resources));
+        // the result is shared by any order of the same roles, but never exposed for modification
+        resources[0] = null;
+        assertEquals(Arrays.asList("/permission/admin/login", "/permission/admin/manage"),
+                Arrays.asList(tree.getAllowedUIResourcesForRoles(new String[]{"role2", "role1"}, "/")));
+
+        tree.authorizeRoleInTree("role1", "/permission/admin", "ui.execute", false);
+        assertEquals(Arrays.asList("/permission/admin"),
+                Arrays.asList(tree.getAllowedUIResourcesForRoles(new String[]{"role1", "role2"}, "/")));
+        assertEquals(Arrays.asList("/permission/admin/manage"),
+                Arrays.asList(tree.getAllowedUIResourcesForRoles(new String[]{"role2"}, "/")));
+    }
+
+    public void testChangeLogReplay() throws Exception {
+        BasicDataSource ds = new BasicDataSource();
+        ds.setDriverClassName(UserCoreTestConstants.DB_DRIVER);
+        ds.setUrl("jdbc:h2:mem:permissionChangeLogTest");
+        Connection dbConnection = ds.getConnection();
+        try {
+            createChangeLogTables(dbConnection);
+            PermissionChangeLog changeLog = new PermissionChangeLog(1);
+            PermissionChangeLog otherTenant = new PermissionChangeLog(2);
+            assertTrue(changeLog.init(ds));
+            assertTrue(otherTenant.init(ds));
+            // the version row of a tenant is created only once
+            assertTrue(changeLog.init(ds));
+            PermissionTree tree = new PermissionTree("test", 1, null, true);
+            int version = changeLog.getVersion(dbConnection);
+            assertEquals(0, version);
+
+            changeLog.addRoleChange(dbConnection, "role1", null, "/a", "read", UserCoreConstants.ALLOW);
+            changeLog.addRoleChange(dbConnection, "role2", "DOMAIN", "/a", "read", UserCoreConstants.ALLOW);
+            changeLog.addUserChange(dbConnection, "user1", "/a/b", "read", UserCoreConstants.DENY);
+            otherTenant.addRoleChange(dbConnection, "role3", null, "/a", "read", UserCoreConstants.ALLOW);
+            version = changeLog.replay(dbConnection, tree, version);
+            assertEquals(3, version);
+            assertEquals(changeLog.getVersion(dbConnection), version);
+            assertEquals(TreeNode.PERMISSION_ALLOWED,
+                    tree.resolveRolePermission("role1", TreeNode.Permission.GET, "/a/b"));
+            assertEquals(TreeNode.PERMISSION_ALLOWED,
+                    tree.resolveRolePermission("DOMAIN/role2", TreeNode.Permission.GET, "/a"));
+            assertEquals(TreeNode.PERMISSION_DENIED,
+                    tree.resolveUserPermission("user1", TreeNode.Permission.GET, "/a/b"));
+            assertEquals(TreeNode.PERMISSION_NOT_DEFINED,
+                    tree.resolveRolePermission("role3", TreeNode.Permission.GET, "/a"));
+
+            assertEquals(version, changeLog.replay(dbConnection, tree, version));
+
+            changeLog.addRoleChange(dbConnection, "role1", null, "/a", "read", PermissionChangeLog.CLEAR);
+            changeLog.addRoleChange(dbConnection, "role2", "DOMAIN", null, null, PermissionChangeLog.CLEAR);
+            version = changeLog.replay(dbConnection, tree, version);
+            assertEquals(TreeNode.PERMISSION_NOT_DEFINED,
+                    tree.resolveRolePermission("role1", TreeNode.Permission.GET, "/a"));
+            assertEquals(TreeNode.PERMISSION_NOT_DEFINED,
+                    tree.resolveRolePermission("DOMAIN/role2", TreeNode.Permission.GET, "/a"));
+
+            changeLog.addReset(dbConnection);
+            assertEquals(-1, changeLog.replay(dbConnection, tree, version));
+            // entries of other tenants are kept when the log of a tenant is compacted
+            PermissionTree otherTree = new PermissionTree("test", 2, null, true);
+            assertEquals(1, otherTenant.replay(dbConnection, otherTree, 0));
+            assertEquals(TreeNode.PERMISSION_ALLOWED,
+                    otherTree.resolveRolePermission("role3", TreeNode.Permission.GET, "/a"));
+        } finally {
+            DatabaseUtil.closeAllConnections(dbConnection);
+            ds.close();
+        }
+    }
+
+    public void testChangeLogPruning() throws Exception {
+        BasicDataSource ds = new BasicDataSource();
+        ds.setDriverClassName(UserCoreTestConstants.DB_DRIVER);
+        ds.setUrl("jdbc:h2:mem:permissionChangeLogPruningTest");
+        Connection dbConnection = ds.getConnection();
+        try {
+            createChangeLogTables(dbConnection);
+            PermissionChangeLog changeLog = new PermissionChangeLog(1);
+            assertTrue(changeLog.init(ds));
+            int changes = PermissionChangeLog.MAX_RETAINED_VERSIONS + PermissionChangeLog.PRUNE_INTERVAL;
+            for (int i = 1; i <= changes; i++) {
+                changeLog.addRoleChange(dbConnection, "role" + i, null, "/a", "read", UserCoreConstants.ALLOW);
+            }
+            assertEquals(PermissionChangeLog.MAX_RETAINED_VERSIONS, DatabaseUtil.getIntegerValueFromDatabase(
+                    dbConnection, "SELECT COUNT(*) FROM UM_PERMISSION_CHANGE_LOG WHERE UM_TENANT_ID=?", 1));
+
+            // a tree older than the retained versions has to be loaded again
+            assertEquals(-1, changeLog.replay(dbConnection, new PermissionTree("test", 1, null, true), 0));
+            PermissionTree tree = new PermissionTree("test", 1, null, true);
+            assertEquals(changes, changeLog.replay(dbConnection, tree, changes - 1));
+            assertEquals(TreeNode.PERMISSION_ALLOWED,
+                    tree.resolveRolePermission("role" + changes, TreeNode.Permission.GET, "/a"));
+        } finally {
+            DatabaseUtil.closeAllConnections(dbConnection);
+            ds.close();
+        }
+    }
+
+    public void testChangeLogWithoutTables() throws Exception {
+        BasicDataSource ds = new BasicDataSource();
+        ds.setDriverClassName(UserCoreTestConstants.DB_DRIVER);
+        ds.setUrl("jdbc:h2:mem:permissionChangeLogMissingTest");
+        try {
+            assertFalse(new PermissionChangeLog(1).init(ds));
+        } finally {
+            ds.close();
+        }
+    }
+
+    private void createChangeLogTables(Connection dbConnection) throws Exception {
+        DatabaseUtil.updateDatabase(dbConnection, "CREATE TABLE UM_PERMISSION_CHANGE_LOG (" +
+                "UM_ID INTEGER NOT NULL AUTO_INCREMENT, UM_TENANT_ID INTEGER DEFAULT 0, " +
+                "UM_VERSION INTEGER NOT NULL, UM_ENTITY_TYPE CHAR(1) NOT NULL, UM_ENTITY_NAME VARCHAR(255), UM_DOMAIN_NAME VARCHAR(255), " +
+                "UM_RESOURCE_ID VARCHAR(255), UM_ACTION VARCHAR(255), UM_OPERATION SMALLINT NOT NULL, " +
+                "PRIMARY KEY (UM_ID))");
+        DatabaseUtil.updateDatabase(dbConnection, "CREATE TABLE UM_PERMISSION_VERSION (" +
+                "UM_TENANT_ID INTEGER NOT NULL, UM_VERSION INTEGER NOT NULL, PRIMARY KEY (UM_TENANT_ID))");
+    }
+
+    private void checkAuthorizations(PermissionTree tree) throws Exception {
+        tree.authorizeRoleInTree("role1", "/a", "read", false);
+        assertTrue(isRoleAuthorized(tree, "role1", "/a"));
+        assertTrue(isRoleAuthorized(tree, "role1", "/a/b/c"));
+        assertFalse(isRoleAuthorized(tree, "role2", "/a"));
+        assertFalse(isRoleAuthorized(tree, "role1", "/x"));
+
+        tree.denyRoleInTree("role1", "/a/b/c", "read", false);
+        assertTrue(isRoleAuthorized(tree, "role1", "/a/b"));
+        assertFalse(isRoleAuthorized(tree, "role1", "/a/b/c/d"));
+
+        tree.clearRoleAuthorization("role1", "/a/b/c", "read");
+        assertTrue(isRoleAuthorized(tree, "role1", "/a/b/c/d"));
+    }
+
+    private boolean isRoleAuthorized(PermissionTree tree, String role, String resourceId) {
+        return tree.getRolePermission(role, TreeNode.Permission.GET, null, null,
+                PermissionTreeUtil.toComponenets(resourceId)).getLastNodeAllowedAccess();
+    }
+
+    private boolean isRoleAuthorized(PermissionTree tree, TreeNode root, String role, String resourceId) {
+        return tree.getRolePermission(role, TreeNode.Permission.GET, null, root,
+                PermissionTreeUtil.toComponenets(resourceId)).getLastNodeAllowedAccess();
+    }
+}
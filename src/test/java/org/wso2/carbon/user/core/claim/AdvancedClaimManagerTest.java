@@ -25,6 +25,8 @@ import org.wso2.carbon.user.core.claim.builder.ClaimBuilder;
 import org.wso2.carbon.user.core.claim.dao.ClaimDAO;
 import org.wso2.carbon.utils.dbcreator.DatabaseCreator;
 
+import javax.cache.Cache;
+import javax.cache.Caching;
 import java.io.File;
 import java.util.Arrays;
 import java.util.Map;
@@ -167,6 +169,35 @@ public class AdvancedClaimManagerTest extends BaseTestCase {
         assertEquals(5,claimMan.getAllClaimMappings().length);
     }
 
+    public void testChangeOfAnotherNodeIsNotLost() throws Exception {
+        String dbFolder = "target/claimversiontest";
+        if ((new File(dbFolder)).exists()) {
+            deleteDir(new File(dbFolder));
+        }
+        ds = new BasicDataSource();
+        ds.setDriverClassName(UserCoreTestConstants.DB_DRIVER);
+        ds.setUrl("jdbc:h2:target/claimversiontest/CARBON_TEST");
+        new DatabaseCreator(ds).createRegistryDatabase();
+
+        int tenantId = 7;
+        ClaimDAO claimDao = new ClaimDAO(ds, tenantId);
+        Map<String, ClaimMapping> defaultClaims = ClaimTestUtil.getClaimTestData();
+        claimDao.addCliamMappings(defaultClaims.values().toArray(new ClaimMapping[defaultClaims.size()]));
+        ClaimManager claimManager = new DefaultClaimManager(
+                new ClaimBuilder(tenantId).buildClaimMappingsFromDatabase(ds, "test"), ds, tenantId);
+        assertEquals(3, claimManager.getAllClaimUris().length);
+
+        // another node adds a mapping, this node has not read the shared version yet
+        ClaimMapping[] newClaimMappings = AdvancedClaimManagerTest.makeClaimMap();
+        claimDao.addClaimMapping(newClaimMappings[0]);
+        Cache<String, Integer> versions = Caching.getCacheManagerFactory()
+                .getCacheManager("Claim.Cache.Manager").getCache("Claim.Cache");
+        versions.put("Invalidate.Cache.Key" + tenantId, versions.get("Invalidate.Cache.Key" + tenantId) + 1);
+
+        claimManager.addNewClaimMapping(newClaimMappings[1]);
+        assertEquals(5, claimManager.getAllClaimUris().length);
+    }
+
     public Map<String, ClaimMapping> doClaimBuilderStuff() throws Exception{
         ClaimBuilder claimB = new ClaimBuilder(0);
         Map<String, ClaimMapping> claims ;
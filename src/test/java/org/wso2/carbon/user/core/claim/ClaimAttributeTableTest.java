@@ -0,0 +1,47 @@
+/*
+*  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.user.core.claim;
+
+import org.wso2.carbon.user.core.BaseTestCase;
+import org.wso2.carbon.user.core.ClaimTestUtil;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class ClaimAttributeTableTest extends BaseTestCase {
+
+    public void testDomainAttributes() throws Exception {
+        Map<String, ClaimMapping> claims = ClaimTestUtil.getClaimTestData();
+        Map<String, String> mappedAttributes = new HashMap<String, String>();
+        mappedAttributes.put("SECONDARY", "attr1s");
+        claims.get(ClaimTestUtil.CLAIM_URI1).setMappedAttributes(mappedAttributes);
+
+        ClaimAttributeTable table = new ClaimAttributeTable(claims);
+        assertEquals("attr1", table.getAttributeName(ClaimTestUtil.CLAIM_URI1));
+        assertEquals("attr1", table.getAttributeName(null, ClaimTestUtil.CLAIM_URI1));
+        assertEquals("attr1", table.getAttributeName("OTHER", ClaimTestUtil.CLAIM_URI1));
+        assertEquals("attr1s", table.getAttributeName("secondary", ClaimTestUtil.CLAIM_URI1));
+        assertEquals("attr2", table.getAttributeName("SECONDARY", ClaimTestUtil.CLAIM_URI2));
+        assertNull(table.getAttributeName("SECONDARY", "http://wso2.org/unknown"));
+
+        assertEquals(ClaimTestUtil.CLAIM_URI1, table.getClaimURIs("SECONDARY", "attr1s").get(0));
+        assertTrue(table.getClaimURIs("SECONDARY", "attr1").isEmpty());
+        assertEquals(ClaimTestUtil.CLAIM_URI1, table.getClaimURIs(null, "attr1").get(0));
+        assertEquals(ClaimTestUtil.CLAIM_URI3, table.getClaimURIs("SECONDARY", "attr3").get(0));
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.user.core.common;
+
+import org.wso2.carbon.user.core.BaseTestCase;
+
+public class AuthenticationCacheTest extends BaseTestCase {
+
+    public void testFingerprint() {
+        AuthenticationCache cache = AuthenticationCache.getInstance();
+        String fingerprint = cache.getFingerprint(1, "PRIMARY/bob", "secret");
+        assertNotNull(fingerprint);
+        assertFalse(fingerprint.contains("secret"));
+        assertEquals(fingerprint, cache.getFingerprint(1, "PRIMARY/bob", "secret"));
+        assertFalse(fingerprint.equals(cache.getFingerprint(1, "PRIMARY/bob", "secret2")));
+        assertFalse(fingerprint.equals(cache.getFingerprint(2, "PRIMARY/bob", "secret")));
+        assertFalse(fingerprint.equals(cache.getFingerprint(1, "PRIMARY/Bob", "secret")));
+        assertNull(cache.getFingerprint(1, "PRIMARY/bob", new Object()));
+    }
+
+    public void testEntryKeepsSuccessAndFailure() {
+        long now = System.currentTimeMillis();
+        AuthenticationCacheEntry entry = AuthenticationCacheEntry.withResult(null, "good", true, now + 1000);
+        entry = AuthenticationCacheEntry.withResult(entry, "bad", false, now + 1000);
+
+        assertEquals(Boolean.TRUE, entry.isAuthenticated("good", now));
+        assertEquals(Boolean.FALSE, entry.isAuthenticated("bad", now));
+        assertNull(entry.isAuthenticated("other", now));
+        assertNull(entry.isAuthenticated("good", now + 1000));
+    }
+}
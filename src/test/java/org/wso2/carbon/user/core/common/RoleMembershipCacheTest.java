@@ -0,0 +1,39 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.user.core.common;
+
+import org.wso2.carbon.user.core.BaseTestCase;
+
+public class RoleMembershipCacheTest extends BaseTestCase {
+
+    public void testEntryKeepsAnswers() {
+        long now = System.currentTimeMillis();
+        RoleMembershipCacheEntry entry = RoleMembershipCacheEntry.withAnswer(null, "Admin", true, now, now + 1000);
+        entry = RoleMembershipCacheEntry.withAnswer(entry, "Guest", false, now, now + 5000);
+
+        assertEquals(Boolean.TRUE, entry.isUserInRole("admin", now));
+        assertEquals(Boolean.FALSE, entry.isUserInRole("GUEST", now));
+        assertNull(entry.isUserInRole("other", now));
+
+        entry = RoleMembershipCacheEntry.withAnswer(entry, "guest", true, now, now + 5000);
+        assertEquals(Boolean.TRUE, entry.isUserInRole("Guest", now));
+        // answers added to an entry expire with it
+        assertFalse(entry.isExpired(now));
+        assertTrue(entry.isExpired(now + 1000));
+        assertNull(entry.isUserInRole("admin", now + 1000));
+    }
+}
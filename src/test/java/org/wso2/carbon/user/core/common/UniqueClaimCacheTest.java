@@ -0,0 +1,44 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.user.core.common;
+
+import org.wso2.carbon.user.core.BaseTestCase;
+
+public class UniqueClaimCacheTest extends BaseTestCase {
+
+    public void testEntryExpires() {
+        long now = System.currentTimeMillis();
+        UniqueClaimCacheEntry entry = UniqueClaimCacheEntry.withUserName(null, "PRIMARY/bob", now + 1000);
+
+        assertEquals("PRIMARY/bob", entry.getUserName(now));
+        assertNull(entry.getUserName(now + 1000));
+    }
+
+    public void testKeyMatchesClaimValue() {
+        UniqueClaimCacheKey key = new UniqueClaimCacheKey("server", 1, "http://wso2.org/claims/emailaddress",
+                "bob@example.com", "default");
+
+        assertEquals(key, new UniqueClaimCacheKey("server", 1, "http://wso2.org/claims/emailaddress",
+                "bob@example.com", "default"));
+        assertEquals(key.hashCode(), new UniqueClaimCacheKey("server", 1, "http://wso2.org/claims/emailaddress",
+                "bob@example.com", "default").hashCode());
+        assertFalse(key.equals(new UniqueClaimCacheKey("server", 2, "http://wso2.org/claims/emailaddress",
+                "bob@example.com", "default")));
+        assertFalse(key.equals(new UniqueClaimCacheKey("server", 1, "http://wso2.org/claims/emailaddress",
+                "bob@example.com", "home")));
+    }
+}
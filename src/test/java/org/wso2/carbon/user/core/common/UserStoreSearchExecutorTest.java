@@ -0,0 +1,73 @@
+/*
+*  Copyright (c) 2005-2010, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.carbon.user.core.common;
+
+import org.wso2.carbon.user.core.BaseTestCase;
+import org.wso2.carbon.user.core.UserStoreException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+public class UserStoreSearchExecutorTest extends BaseTestCase {
+
+    public void testFailedSearch() throws Exception {
+        final UserStoreException error = new UserStoreException("user store is down");
+        FutureTask<String[]> search = new FutureTask<String[]>(new Callable<String[]>() {
+            public String[] call() throws Exception {
+                throw error;
+            }
+        });
+        search.run();
+
+        assertNull(UserStoreSearchExecutor.getResult(search, "SECONDARY", System.currentTimeMillis()));
+        try {
+            UserStoreSearchExecutor.getResultOrFail(search, "SECONDARY", System.currentTimeMillis());
+            fail("The search failed. Should fail the caller");
+        } catch (UserStoreException e) {
+            assertSame(error, e);
+        }
+    }
+
+    public void testTimedOutSearch() throws Exception {
+        // never run, hence never completes
+        FutureTask<String[]> search = new FutureTask<String[]>(new Callable<String[]>() {
+            public String[] call() throws Exception {
+                return new String[]{"user1"};
+            }
+        });
+
+        try {
+            UserStoreSearchExecutor.getResultOrFail(search, "SECONDARY", System.currentTimeMillis() + 10);
+            fail("The search did not complete. Should fail the caller");
+        } catch (UserStoreException e) {
+            assertTrue(e.getMessage().contains("SECONDARY"));
+        }
+        assertTrue(search.isCancelled());
+    }
+
+    public void testCompletedSearch() throws Exception {
+        FutureTask<String[]> search = new FutureTask<String[]>(new Callable<String[]>() {
+            public String[] call() throws Exception {
+                return new String[]{"user1"};
+            }
+        });
+        search.run();
+
+        assertEquals("user1", UserStoreSearchExecutor.getResultOrFail(search, "SECONDARY", 0)[0]);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.user.core.hash;
+
+import org.apache.axiom.om.util.Base64;
+import org.wso2.carbon.user.core.BaseTestCase;
+
+import java.security.MessageDigest;
+
+public class PasswordHasherTest extends BaseTestCase {
+
+    public void testDigestHashIsCompatible() throws Exception {
+        PasswordHasher hasher = PasswordHasherFactory.getPasswordHasher("SHA-256");
+        String expected = Base64.encode(MessageDigest.getInstance("SHA-256").digest("pass123salt".getBytes()));
+        assertEquals(expected, hasher.hash("pass123", "salt"));
+        assertTrue(hasher.verify("pass123", "salt", expected));
+        assertFalse(hasher.verify("pass124", "salt", expected));
+        assertSame(hasher, PasswordHasherFactory.getPasswordHasher("SHA-256"));
+    }
+
+    public void testPBKDF2() throws Exception {
+        PasswordHasher hasher = PasswordHasherFactory.getPasswordHasher("PBKDF2WithHmacSHA1", 1000);
+        String hash = PasswordHashExecutor.hash(hasher, "pass123", null);
+        assertTrue(hash.startsWith("1000:"));
+        assertFalse(hash.equals(hasher.hash("pass123", null)));
+        assertTrue(PasswordHashExecutor.verify(hasher, "pass123", null, hash));
+        assertFalse(PasswordHashExecutor.verify(hasher, "pass124", null, hash));
+
+        // hashes made with other iteration counts are verified by the default hasher
+        assertTrue(PasswordHasherFactory.getPasswordHasher("PBKDF2WithHmacSHA1").verify("pass123", null, hash));
+    }
+
+    public void testAlgorithmPrefix() throws Exception {
+        String stored = PasswordHasherFactory.addAlgorithm("SHA-256", "abc=");
+        assertEquals("{SHA-256}abc=", stored);
+        assertEquals("SHA-256", PasswordHasherFactory.getAlgorithm(stored));
+        assertEquals("abc=", PasswordHasherFactory.removeAlgorithm(stored));
+        assertNull(PasswordHasherFactory.getAlgorithm("abc="));
+        assertNull(PasswordHasherFactory.getAlgorithm("{}abc="));
+    }
+}
@@ -24,6 +24,8 @@ import org.wso2.carbon.user.core.util.JDBCRealmUtil;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
 Test case for getSQL function
@@ -56,4 +58,29 @@ public class JDBCConfigurationTest extends BaseTestCase {
         assertEquals(realmConfig.getUserStoreProperty(JDBCRealmConstants.SELECT_USER), JDBCRealmConstants.SELECT_USER_SQL);
 
     }
+
+    public void testNarrowingSQLFollowsCustomizedSQL() {
+        Map<String, String> properties = JDBCRealmUtil.getSQL(new HashMap<String, String>());
+        assertEquals(JDBCRealmConstants.GET_PROPS_BY_NAME_FOR_PROFILE_SQL,
+                properties.get(JDBCRealmConstants.GET_PROPS_BY_NAME_FOR_PROFILE));
+        assertEquals(JDBCRealmConstants.GET_USERS_FOR_PROP_VALUE_SQL,
+                properties.get(JDBCRealmConstants.GET_USERS_FOR_PROP_VALUE));
+
+        properties = new HashMap<String, String>();
+        properties.put(JDBCRealmConstants.GET_PROPS_FOR_PROFILE, "SELECT NAME, VALUE FROM CUSTOM WHERE USER=?");
+        properties.put(JDBCRealmConstants.GET_USERS_PROPS_FOR_PROFILE,
+                JDBCRealmConstants.GET_USERS_PROPS_FOR_PROFILE_SQL);
+        properties.put(JDBCRealmConstants.GET_USERS_FOR_PROP, "SELECT USER FROM CUSTOM WHERE VALUE LIKE ?");
+        properties = JDBCRealmUtil.getSQL(properties);
+        assertNull(properties.get(JDBCRealmConstants.GET_PROPS_BY_NAME_FOR_PROFILE));
+        assertNull(properties.get(JDBCRealmConstants.GET_USERS_PROPS_FOR_PROFILE));
+        assertNull(properties.get(JDBCRealmConstants.GET_USERS_FOR_PROP_VALUE));
+
+        properties = new HashMap<String, String>();
+        properties.put(JDBCRealmConstants.GET_USERS_FOR_PROP, "SELECT USER FROM CUSTOM WHERE VALUE LIKE ?");
+        properties.put(JDBCRealmConstants.GET_USERS_FOR_PROP_VALUE, "SELECT USER FROM CUSTOM WHERE VALUE = ?");
+        properties = JDBCRealmUtil.getSQL(properties);
+        assertEquals("SELECT USER FROM CUSTOM WHERE VALUE = ?",
+                properties.get(JDBCRealmConstants.GET_USERS_FOR_PROP_VALUE));
+    }
 }
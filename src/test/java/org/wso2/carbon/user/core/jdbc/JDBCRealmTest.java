@@ -32,8 +32,12 @@ import org.wso2.carbon.user.core.UserStoreManager;
 import org.wso2.carbon.user.core.authman.AdvancedPermissionTreeTest;
 import org.wso2.carbon.user.core.authorization.JDBCAuthorizationManager;
 import org.wso2.carbon.user.core.common.DefaultRealm;
+import org.wso2.carbon.user.core.common.UniqueClaimCache;
+import org.wso2.carbon.user.core.common.UniqueClaimCacheEntry;
+import org.wso2.carbon.user.core.common.UniqueClaimCacheKey;
 import org.wso2.carbon.user.core.config.RealmConfigXMLProcessor;
 import org.wso2.carbon.user.core.config.TestRealmConfigBuilder;
+import org.wso2.carbon.user.core.hash.PasswordHasherFactory;
 import org.wso2.carbon.user.core.util.DatabaseUtil;
 import org.wso2.carbon.utils.dbcreator.DatabaseCreator;
 import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
@@ -118,6 +122,92 @@ public class JDBCRealmTest extends BaseTestCase {
         assertEquals(roles.length,1);
     }
 
+    public void testPasswordDigestChange() throws Exception {
+        String dbUrl = "jdbc:h2:target/PasswordDigestTest/CARBON_TEST";
+        createDatabase("target/PasswordDigestTest", dbUrl);
+        try {
+            UserStoreManager admin = createUserStoreManager(dbUrl, JDBCRealmConstants.DIGEST_FUNCTION, "SHA-256");
+            admin.addUser("digestuser", "pass123", null, null, null, false);
+
+            // passwords stored before the switch to PBKDF2 keep working
+            UserStoreManager pbkdf2Admin = createUserStoreManager(dbUrl, JDBCRealmConstants.DIGEST_FUNCTION,
+                    "PBKDF2WithHmacSHA1");
+            assertTrue(pbkdf2Admin.authenticate("digestuser", "pass123"));
+            assertFalse(pbkdf2Admin.authenticate("digestuser", "pass124"));
+            pbkdf2Admin.addUser("pbkdf2user", "pass123", null, null, null, false);
+            assertTrue(pbkdf2Admin.authenticate("pbkdf2user", "pass123"));
+        } finally {
+            DatabaseUtil.closeDatabasePoolConnection();
+        }
+    }
+
+    public void testPlainTextDoesNotAcceptPrefixedHash() throws Exception {
+        String dbUrl = "jdbc:h2:target/PlainTextPasswordTest/CARBON_TEST";
+        createDatabase("target/PlainTextPasswordTest", dbUrl);
+        try {
+            String hash = "{MD5}" + PasswordHasherFactory.getPasswordHasher("MD5").hash("pass123", null);
+            // a plain text password which looks like a hash is verified as that hash only
+            UserStoreManager plainTextAdmin = createUserStoreManager(dbUrl, JDBCRealmConstants.DIGEST_FUNCTION,
+                    UserCoreConstants.RealmConfig.PASSWORD_HASH_METHOD_PLAIN_TEXT);
+            plainTextAdmin.addUser("plainuser", hash, null, null, null, false);
+            assertFalse(plainTextAdmin.authenticate("plainuser", hash));
+        } finally {
+            DatabaseUtil.closeDatabasePoolConnection();
+        }
+    }
+
+    public void testUniqueClaimCacheIsClearedOnChange() throws Exception {
+        String dbUrl = "jdbc:h2:target/UniqueClaimTest/CARBON_TEST";
+        createDatabase("target/UniqueClaimTest", dbUrl);
+        try {
+            UserStoreManager admin = createUserStoreManager(dbUrl,
+                    UserCoreConstants.RealmConfig.PROPERTY_UNIQUE_CLAIMS, ClaimTestUtil.CLAIM_URI1);
+            admin.addUser("uniqueuser", "pass123", null, null, null, false);
+            admin.setUserClaimValue("uniqueuser", ClaimTestUtil.CLAIM_URI1, "uniqueold", null);
+            assertEquals(1, admin.getUserList(ClaimTestUtil.CLAIM_URI1, "uniqueold", null).length);
+
+            UniqueClaimCacheKey oldKey = new UniqueClaimCacheKey(UserCoreConstants.DEFAULT_CACHE_IDENTIFIER,
+                    MultitenantConstants.SUPER_TENANT_ID, ClaimTestUtil.CLAIM_URI1, "uniqueold",
+                    UserCoreConstants.DEFAULT_PROFILE);
+            UniqueClaimCacheEntry entry = UniqueClaimCache.getInstance().getCacheEntry(oldKey);
+            assertNotNull(entry);
+            assertNotNull(entry.getUserName(System.currentTimeMillis()));
+
+            admin.setUserClaimValue("uniqueuser", ClaimTestUtil.CLAIM_URI1, "uniquenew", null);
+            entry = UniqueClaimCache.getInstance().getCacheEntry(oldKey);
+            assertNull(entry.getUserName(System.currentTimeMillis()));
+            assertEquals(0, admin.getUserList(ClaimTestUtil.CLAIM_URI1, "uniqueold", null).length);
+            assertEquals(1, admin.getUserList(ClaimTestUtil.CLAIM_URI1, "uniquenew", null).length);
+        } finally {
+            DatabaseUtil.closeDatabasePoolConnection();
+        }
+    }
+
+    private void createDatabase(String dbFolder, String dbUrl) throws Exception {
+        DatabaseUtil.closeDatabasePoolConnection();
+        if ((new File(dbFolder)).exists()) {
+            deleteDir(new File(dbFolder));
+        }
+        BasicDataSource ds = new BasicDataSource();
+        ds.setDriverClassName(UserCoreTestConstants.DB_DRIVER);
+        ds.setUrl(dbUrl);
+        new DatabaseCreator(ds).createRegistryDatabase();
+        ds.close();
+    }
+
+    private UserStoreManager createUserStoreManager(String dbUrl, String property, String value)
+            throws Exception {
+        InputStream inStream = this.getClass().getClassLoader().getResource(
+                JDBCRealmTest.JDBC_TEST_USERMGT_XML).openStream();
+        RealmConfiguration realmConfig = TestRealmConfigBuilder
+                .buildRealmConfigWithJDBCConnectionUrl(inStream, dbUrl);
+        realmConfig.getUserStoreProperties().put(property, value);
+        UserRealm userRealm = new DefaultRealm();
+        userRealm.init(realmConfig, ClaimTestUtil.getClaimTestData(), ClaimTestUtil
+                .getProfileTestData(), MultitenantConstants.SUPER_TENANT_ID);
+        return userRealm.getUserStoreManager();
+    }
+
     public void doUserStuff() throws Exception {
         UserStoreManager admin = realm.getUserStoreManager();
 
@@ -261,6 +351,14 @@ public class JDBCRealmTest extends BaseTestCase {
         value = usWriter.getUserClaimValue("dimuthu", ClaimTestUtil.CLAIM_URI1, null);
         assertEquals("dimzi lee", value);
 
+        // values without wildcards are matched by equality
+        JDBCUserStoreManager jdbcStore = (JDBCUserStoreManager) usWriter;
+        String[] users = jdbcStore.getUserListFromProperties("attr1", "dimzi lee", null);
+        assertEquals(1, users.length);
+        assertEquals("dimuthu", users[0]);
+        assertEquals(0, jdbcStore.getUserListFromProperties("attr1", "dimzi", null).length);
+        assertEquals(1, jdbcStore.getUserListFromProperties("attr1", "dimzi*", null).length);
+
         // multiple additions
         Map<String, String> map = new HashMap<String, String>();
         map.put(ClaimTestUtil.CLAIM_URI1, "lee");
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2004,2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.user.core.ldap;
+
+import org.wso2.carbon.user.core.BaseTestCase;
+
+import javax.naming.ldap.LdapName;
+
+public class UserDNCacheTest extends BaseTestCase {
+
+    public void testLeastRecentlyUsedUserIsEvicted() throws Exception {
+        UserDNCache cache = new UserDNCache(2, 60000);
+        cache.put("alice", new LdapName("uid=alice,ou=users"));
+        cache.put("bob", new LdapName("uid=bob,ou=users"));
+        assertEquals("uid=alice,ou=users", cache.get("alice").toString());
+
+        cache.put("carol", new LdapName("uid=carol,ou=users"));
+        assertEquals(2, cache.size());
+        assertNull(cache.get("bob"));
+        assertNotNull(cache.get("alice"));
+        assertNotNull(cache.get("carol"));
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        cache.remove("alice");
+        assertNull(cache.get("alice"));
+    }
+
+    public void testExpiredEntryIsNotUsed() throws Exception {
+        UserDNCache cache = new UserDNCache(10, 0);
+        cache.put("alice", new LdapName("uid=alice,ou=users"));
+        assertNull(cache.get("alice"));
+        assertEquals(0, cache.size());
+    }
+}
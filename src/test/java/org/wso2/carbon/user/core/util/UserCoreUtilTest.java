@@ -44,4 +44,18 @@ public class UserCoreUtilTest extends BaseTestCase {
 
         Assert.assertTrue(Arrays.equals(combined, expected));
     }
+
+    public void testCombineArrays() throws Exception {
+        String[] first = {"a", "b"};
+        String[] second = {"c"};
+        Assert.assertTrue(Arrays.equals(new String[]{"a", "b", "c"}, UserCoreUtil.combineArrays(first, second)));
+        Assert.assertSame(first, UserCoreUtil.combineArrays(first, new String[0]));
+
+        List<String[]> arrays = new ArrayList<String[]>();
+        arrays.add(first);
+        arrays.add(null);
+        arrays.add(new String[0]);
+        arrays.add(second);
+        Assert.assertTrue(Arrays.equals(new String[]{"a", "b", "c"}, UserCoreUtil.combineArrays(arrays)));
+    }
 }